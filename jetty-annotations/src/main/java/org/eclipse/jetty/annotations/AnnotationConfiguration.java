@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.annotations;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -72,6 +73,7 @@ public class AnnotationConfiguration extends AbstractConfiguration
     public static final String CONTAINER_INITIALIZER_STARTER = "org.eclipse.jetty.containerInitializerStarter";
     public static final String MULTI_THREADED = "org.eclipse.jetty.annotations.multiThreaded";
     public static final String MAX_SCAN_WAIT = "org.eclipse.jetty.annotations.maxWait";
+    public static final String SCAN_CACHE_DIR = "org.eclipse.jetty.annotations.scanCacheDir";
     
     public static final int DEFAULT_MAX_SCAN_WAIT = 60; /* time in sec */  
     public static final boolean DEFAULT_MULTI_THREADED = true;
@@ -421,18 +423,22 @@ public class AnnotationConfiguration extends AbstractConfiguration
     throws Exception
     {
         AnnotationParser parser = createAnnotationParser();
+        File scanCacheDir = getScanCacheDirectory(context);
+        if (scanCacheDir != null)
+            parser.setScanCache(new AnnotationScanCache(scanCacheDir));
         _parserTasks = new ArrayList<ParserTask>();
 
         long start = 0; 
 
 
         if (LOG.isDebugEnabled())
-            LOG.debug("Annotation scanning commencing: webxml={}, metadatacomplete={}, configurationDiscovered={}, multiThreaded={}, maxScanWait={}", 
+            LOG.debug("Annotation scanning commencing: webxml={}, metadatacomplete={}, configurationDiscovered={}, multiThreaded={}, maxScanWait={}, scanCacheDir={}", 
                       context.getServletContext().getEffectiveMajorVersion(), 
                       context.getMetaData().isMetaDataComplete(),
                       context.isConfigurationDiscovered(),
                       isUseMultiThreading(context),
-                      getMaxScanWait(context));
+                      getMaxScanWait(context),
+                      scanCacheDir);
 
              
         parseContainerPath(context, parser);
@@ -490,6 +496,9 @@ public class AnnotationConfiguration extends AbstractConfiguration
                     _containerPathStats.getTotal(), _webInfLibStats.getTotal(), _webInfClassesStats.getTotal(),
                     elapsedMs,
                     context);
+
+            if (parser.getScanCache() != null)
+                LOG.debug("Scan cache {}", parser.getScanCache());
         }
 
         if (timeout)
@@ -559,6 +568,35 @@ public class AnnotationConfiguration extends AbstractConfiguration
         return Integer.getInteger(MAX_SCAN_WAIT, DEFAULT_MAX_SCAN_WAIT).intValue();
     }
     
+    /**
+     * Work out the directory in which jar scan results are cached, if any.
+     * 
+     * @param context the context of the scan cache setting
+     * @return the scan cache directory set on the context, or server, or via a System property, or null if scan results are not cached.
+     * @see #SCAN_CACHE_DIR
+     */
+    protected File getScanCacheDirectory (WebAppContext context)
+    {
+        //try context attribute to get the scan cache directory
+        Object o = context.getAttribute(SCAN_CACHE_DIR);
+        if (o == null)
+        {
+            //try server attribute to get the scan cache directory
+            o = context.getServer().getAttribute(SCAN_CACHE_DIR);
+        }
+        if (o == null)
+        {
+            //try system property to get the scan cache directory
+            o = System.getProperty(SCAN_CACHE_DIR);
+        }
+
+        if (o instanceof File)
+            return (File)o;
+        if (o != null && StringUtil.isNotBlank(o.toString()))
+            return new File(o.toString().trim());
+        return null;
+    }
+    
     /** 
      * @see org.eclipse.jetty.webapp.AbstractConfiguration#cloneConfigure(org.eclipse.jetty.webapp.WebAppContext, org.eclipse.jetty.webapp.WebAppContext)
      */
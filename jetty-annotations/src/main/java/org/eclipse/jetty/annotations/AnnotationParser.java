@@ -25,12 +25,17 @@ import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
+import org.eclipse.jetty.annotations.AnnotationScanCache.ScannedClass;
+import org.eclipse.jetty.annotations.AnnotationScanCache.ScannedField;
+import org.eclipse.jetty.annotations.AnnotationScanCache.ScannedMethod;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.eclipse.jetty.util.Loader;
 import org.eclipse.jetty.util.MultiException;
@@ -70,6 +75,8 @@ public class AnnotationParser
 
     protected Set<String> _parsedClassNames = new ConcurrentHashSet<String>();
     
+    protected AnnotationScanCache _scanCache;
+    
     protected static int ASM_OPCODE_VERSION = Opcodes.ASM5; //compatibility of api
    
 
@@ -527,6 +534,27 @@ public class AnnotationParser
 
  
 
+    /**
+     * @return the cache of jar scan results, or null if jars are always scanned
+     */
+    public AnnotationScanCache getScanCache()
+    {
+        return _scanCache;
+    }
+
+    
+    /**
+     * Set a cache of jar scan results. Jars whose content is unchanged since
+     * they were last scanned are replayed from the cache instead of being parsed.
+     * 
+     * @param scanCache the cache of jar scan results, or null to always scan jars
+     */
+    public void setScanCache(AnnotationScanCache scanCache)
+    {
+        _scanCache = scanCache;
+    }
+
+
     /**
      * True if the class has already been processed, false otherwise
      * @param className the classname
@@ -868,6 +896,13 @@ public class AnnotationParser
        
         if (jarResource.toString().endsWith(".jar"))
         {
+            AnnotationScanCache cache = _scanCache;
+            if (cache != null && cache.isCacheable(jarResource))
+            {
+                parseJar(handlers, jarResource, cache);
+                return;
+            }
+
             if (LOG.isDebugEnabled()) {LOG.debug("Scanning jar {}", jarResource);};
 
             //treat it as a jar that we need to open and scan all entries from  
@@ -906,6 +941,123 @@ public class AnnotationParser
         }        
     }
 
+    /**
+     * Parse a resource that is a jar file, using the scan cache.
+     * <p>
+     * If the cache holds the results of a previous scan of the same jar content,
+     * they are replayed to the handlers. Otherwise the jar is scanned and every class
+     * in it is recorded, including classes that were already parsed from elsewhere
+     * (which are not passed to the handlers), so that the cached entry is complete.
+     * 
+     * @param handlers the handlers to look for classes in  
+     * @param jarResource the jar resource to parse
+     * @param cache the scan cache
+     * @throws Exception if unable to parse
+     */
+    protected void parseJar (Set<? extends Handler> handlers, Resource jarResource, AnnotationScanCache cache)
+    throws Exception
+    {
+        AnnotationScanCache.Key key = cache.newKey(jarResource);
+        List<ScannedClass> scanned = cache.load(key);
+        if (scanned != null)
+        {
+            if (LOG.isDebugEnabled()) {LOG.debug("Replaying {} cached classes for jar {}", scanned.size(), jarResource);};
+            for (ScannedClass c : scanned)
+                replayClass(handlers, jarResource, c);
+            return;
+        }
+
+        if (LOG.isDebugEnabled()) {LOG.debug("Scanning jar {} for scan cache", jarResource);};
+
+        AnnotationScanCache.RecordingHandler recorder = new AnnotationScanCache.RecordingHandler();
+        Set<Handler> recordOnly = Collections.<Handler>singleton(recorder);
+        Set<Handler> all = new HashSet<Handler>(handlers);
+        all.add(recorder);
+
+        MultiException me = new MultiException();
+        try (InputStream in = jarResource.getInputStream(); JarInputStream jar_in = new JarInputStream(in))
+        {
+            JarEntry entry = jar_in.getNextJarEntry();
+            while (entry!=null)
+            {
+                String name = entry.getName();
+                if (!entry.isDirectory() && isValidClassFileName(name) && isValidClassFilePath(name))
+                {
+                    try
+                    {
+                        String shortName =  name.replace('/', '.').substring(0,name.length()-6);
+                        Resource clazz = Resource.newResource("jar:"+jarResource.getURI()+"!/"+name);
+                        try (InputStream is = clazz.getInputStream())
+                        {
+                            scanClass(isParsed(shortName)?recordOnly:all, jarResource, is);
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        me.add(new RuntimeException("Error scanning entry "+name+" from jar "+jarResource, e));
+                    }
+                }
+                entry = jar_in.getNextJarEntry();
+            }
+        }
+        catch (Exception e)
+        {
+            me.add(new RuntimeException("Error scanning jar "+jarResource, e));
+        }
+
+        //only cache a complete scan
+        if (me.size() == 0)
+            cache.store(key, recorder.getScannedClasses());
+        me.ifExceptionThrow();
+    }
+
+
+    /**
+     * Pass the recorded scan of a class to the handlers, as if it had been parsed.
+     * 
+     * @param handlers the handlers to look for classes in  
+     * @param containingResource the jar that the class is contained within
+     * @param scanned the recorded scan of the class
+     */
+    protected void replayClass (Set<? extends Handler> handlers, Resource containingResource, ScannedClass scanned)
+    {
+        if (isParsed(scanned._className))
+            return;
+
+        ClassInfo ci = new ClassInfo(containingResource, scanned._className, scanned._version, scanned._access, scanned._signature, scanned._superName, scanned._interfaces);
+        _parsedClassNames.add(ci.getClassName());
+
+        for (Handler h:handlers)
+            h.handle(ci);
+
+        for (String annotationName : scanned._annotations)
+        {
+            for (Handler h:handlers)
+                h.handle(ci, annotationName);
+        }
+
+        for (ScannedField f : scanned._fields)
+        {
+            FieldInfo fi = new FieldInfo(ci, f._fieldName, f._access, f._fieldType, f._signature, f._value);
+            for (String annotationName : f._annotations)
+            {
+                for (Handler h:handlers)
+                    h.handle(fi, annotationName);
+            }
+        }
+
+        for (ScannedMethod m : scanned._methods)
+        {
+            MethodInfo mi = new MethodInfo(ci, m._methodName, m._access, m._desc, m._signature, m._exceptions);
+            for (String annotationName : m._annotations)
+            {
+                for (Handler h:handlers)
+                    h.handle(mi, annotationName);
+            }
+        }
+    }
+
+
     /**
      * Parse a single entry in a jar file
      * 
@@ -0,0 +1,610 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.annotations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.annotations.AnnotationParser.ClassInfo;
+import org.eclipse.jetty.annotations.AnnotationParser.FieldInfo;
+import org.eclipse.jetty.annotations.AnnotationParser.MethodInfo;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.resource.Resource;
+
+/**
+ * AnnotationScanCache
+ * <p>
+ * An on-disk cache of the results of scanning a jar with the {@link AnnotationParser}.
+ * <p>
+ * For every jar scanned, the class headers and the annotations found on classes,
+ * methods and fields are recorded and written to a file in the cache directory.
+ * An entry is keyed by the canonical path of the jar, its size and a digest of its
+ * content, so an unchanged jar can be replayed to the parser handlers without
+ * parsing any bytecode, whilst a jar that has been replaced is scanned again.
+ * <p>
+ * Only jars that are backed by a file are cached.
+ */
+public class AnnotationScanCache
+{
+    private static final Logger LOG = Log.getLogger(AnnotationScanCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final String SUFFIX = ".scan";
+
+    private final File _directory;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * @param directory the directory in which scan results are stored, created if it does not exist
+     */
+    public AnnotationScanCache(File directory)
+    {
+        if (directory == null)
+            throw new IllegalArgumentException("No cache directory");
+        _directory = directory;
+    }
+
+    public File getDirectory()
+    {
+        return _directory;
+    }
+
+    /**
+     * @return the number of jars whose scan results were replayed from the cache
+     */
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /**
+     * @return the number of jars that had to be scanned because no valid entry was cached
+     */
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /**
+     * @param jar the jar resource
+     * @return true if the jar is backed by a regular file and can be cached
+     */
+    public boolean isCacheable(Resource jar)
+    {
+        try
+        {
+            File file = jar.getFile();
+            return file != null && file.isFile();
+        }
+        catch (IOException e)
+        {
+            LOG.ignore(e);
+            return false;
+        }
+    }
+
+    /**
+     * Compute the cache key of a jar.
+     *
+     * @param jar the jar resource, which must be {@link #isCacheable(Resource) cacheable}
+     * @return the key of the jar
+     * @throws IOException if the jar cannot be read
+     */
+    public Key newKey(Resource jar) throws IOException
+    {
+        File file = jar.getFile().getCanonicalFile();
+        MessageDigest digest = newDigest();
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(file))
+        {
+            int len;
+            while ((len = in.read(buffer)) >= 0)
+            {
+                digest.update(buffer, 0, len);
+                size += len;
+            }
+        }
+        return new Key(file.getPath(), size, TypeUtil.toHexString(digest.digest()));
+    }
+
+    /**
+     * Load the scan results of a jar.
+     *
+     * @param key the key of the jar
+     * @return the scanned classes, or null if there is no valid entry for the key
+     */
+    public List<ScannedClass> load(Key key)
+    {
+        File file = getCacheFile(key);
+        if (!file.exists())
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != FORMAT_VERSION ||
+                !key._path.equals(in.readUTF()) ||
+                key._size != in.readLong() ||
+                !key._digest.equals(in.readUTF()))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Stale scan cache entry {} for {}", file, key);
+                _misses.incrementAndGet();
+                return null;
+            }
+
+            int count = in.readInt();
+            List<ScannedClass> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                classes.add(readClass(in));
+
+            _hits.incrementAndGet();
+            return classes;
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unreadable scan cache entry {} for {}", file, key._path);
+            LOG.ignore(e);
+            _misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store the scan results of a jar.
+     * Failure to store is logged and otherwise ignored.
+     *
+     * @param key the key of the jar
+     * @param classes the scanned classes
+     */
+    public void store(Key key, List<ScannedClass> classes)
+    {
+        File file = getCacheFile(key);
+        File tmp = null;
+        try
+        {
+            if (!_directory.exists() && !_directory.mkdirs() && !_directory.exists())
+                throw new IOException("Cannot create "+_directory);
+
+            tmp = File.createTempFile(file.getName(), ".tmp", _directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key._path);
+                out.writeLong(key._size);
+                out.writeUTF(key._digest);
+                out.writeInt(classes.size());
+                for (ScannedClass c : classes)
+                    writeClass(out, c);
+            }
+
+            try
+            {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Stored {} scanned classes for {} in {}", classes.size(), key, file);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unable to store scan cache entry for {}: {}", key._path, e.toString());
+            LOG.ignore(e);
+            if (tmp != null && tmp.exists() && !tmp.delete())
+                LOG.debug("Unable to delete {}", tmp);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear()
+    {
+        File[] files = _directory.listFiles();
+        if (files == null)
+            return;
+        for (File f : files)
+        {
+            if (f.getName().endsWith(SUFFIX) && !f.delete())
+                LOG.warn("Unable to delete {}", f);
+        }
+    }
+
+    protected File getCacheFile(Key key)
+    {
+        MessageDigest digest = newDigest();
+        digest.update(key._path.getBytes(StandardCharsets.UTF_8));
+        return new File(_directory, TypeUtil.toHexString(digest.digest()) + SUFFIX);
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeClass(DataOutputStream out, ScannedClass c) throws IOException
+    {
+        writeString(out, c._className);
+        out.writeInt(c._version);
+        out.writeInt(c._access);
+        writeString(out, c._signature);
+        writeString(out, c._superName);
+        writeStrings(out, c._interfaces);
+        writeStrings(out, c._annotations.toArray(new String[0]));
+
+        out.writeInt(c._methods.size());
+        for (ScannedMethod m : c._methods)
+        {
+            writeString(out, m._methodName);
+            out.writeInt(m._access);
+            writeString(out, m._desc);
+            writeString(out, m._signature);
+            writeStrings(out, m._exceptions);
+            writeStrings(out, m._annotations.toArray(new String[0]));
+        }
+
+        out.writeInt(c._fields.size());
+        for (ScannedField f : c._fields)
+        {
+            writeString(out, f._fieldName);
+            out.writeInt(f._access);
+            writeString(out, f._fieldType);
+            writeString(out, f._signature);
+            writeValue(out, f._value);
+            writeStrings(out, f._annotations.toArray(new String[0]));
+        }
+    }
+
+    private static ScannedClass readClass(DataInputStream in) throws IOException
+    {
+        ScannedClass c = new ScannedClass(readString(in), in.readInt(), in.readInt(), readString(in), readString(in), readStrings(in));
+        addAll(c._annotations, readStrings(in));
+
+        int methods = in.readInt();
+        for (int i = 0; i < methods; i++)
+        {
+            ScannedMethod m = new ScannedMethod(readString(in), in.readInt(), readString(in), readString(in), readStrings(in));
+            addAll(m._annotations, readStrings(in));
+            c._methods.add(m);
+        }
+
+        int fields = in.readInt();
+        for (int i = 0; i < fields; i++)
+        {
+            ScannedField f = new ScannedField(readString(in), in.readInt(), readString(in), readString(in), readValue(in));
+            addAll(f._annotations, readStrings(in));
+            c._fields.add(f);
+        }
+        return c;
+    }
+
+    private static void addAll(List<String> list, String[] values)
+    {
+        if (values != null)
+        {
+            for (String v : values)
+                list.add(v);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException
+    {
+        out.writeInt(strings == null ? -1 : strings.length);
+        if (strings != null)
+        {
+            for (String s : strings)
+                writeString(out, s);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        String[] strings = new String[length];
+        for (int i = 0; i < length; i++)
+            strings[i] = readString(in);
+        return strings;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        // Constant values of fields are restricted by the class file format
+        if (value instanceof Integer)
+        {
+            out.writeByte('I');
+            out.writeInt((Integer)value);
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte('J');
+            out.writeLong((Long)value);
+        }
+        else if (value instanceof Float)
+        {
+            out.writeByte('F');
+            out.writeFloat((Float)value);
+        }
+        else if (value instanceof Double)
+        {
+            out.writeByte('D');
+            out.writeDouble((Double)value);
+        }
+        else if (value instanceof String)
+        {
+            out.writeByte('S');
+            out.writeUTF((String)value);
+        }
+        else
+        {
+            out.writeByte('N');
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException
+    {
+        byte type = in.readByte();
+        switch (type)
+        {
+            case 'I':
+                return in.readInt();
+            case 'J':
+                return in.readLong();
+            case 'F':
+                return in.readFloat();
+            case 'D':
+                return in.readDouble();
+            case 'S':
+                return in.readUTF();
+            case 'N':
+                return null;
+            default:
+                throw new IOException("Unknown constant type " + type);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{dir=%s,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), _directory, getHits(), getMisses());
+    }
+
+
+    /**
+     * Key
+     * <p>
+     * Identity of a jar: its canonical path, size and content digest.
+     */
+    public static class Key
+    {
+        private final String _path;
+        private final long _size;
+        private final String _digest;
+
+        public Key(String path, long size, String digest)
+        {
+            _path = path;
+            _size = size;
+            _digest = digest;
+        }
+
+        public String getPath()
+        {
+            return _path;
+        }
+
+        public long getSize()
+        {
+            return _size;
+        }
+
+        public String getDigest()
+        {
+            return _digest;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s{size=%d,digest=%s}", _path, _size, _digest);
+        }
+    }
+
+
+    /**
+     * ScannedClass
+     * <p>
+     * The class header and the annotations recorded for a class, its methods and fields.
+     */
+    public static class ScannedClass
+    {
+        final String _className;
+        final int _version;
+        final int _access;
+        final String _signature;
+        final String _superName;
+        final String[] _interfaces;
+        final List<String> _annotations = new ArrayList<>();
+        final List<ScannedMethod> _methods = new ArrayList<>();
+        final List<ScannedField> _fields = new ArrayList<>();
+
+        ScannedClass(String className, int version, int access, String signature, String superName, String[] interfaces)
+        {
+            _className = className;
+            _version = version;
+            _access = access;
+            _signature = signature;
+            _superName = superName;
+            _interfaces = interfaces;
+        }
+
+        public String getClassName()
+        {
+            return _className;
+        }
+    }
+
+    static class ScannedMethod
+    {
+        final String _methodName;
+        final int _access;
+        final String _desc;
+        final String _signature;
+        final String[] _exceptions;
+        final List<String> _annotations = new ArrayList<>();
+
+        ScannedMethod(String methodName, int access, String desc, String signature, String[] exceptions)
+        {
+            _methodName = methodName;
+            _access = access;
+            _desc = desc;
+            _signature = signature;
+            _exceptions = exceptions;
+        }
+    }
+
+    static class ScannedField
+    {
+        final String _fieldName;
+        final int _access;
+        final String _fieldType;
+        final String _signature;
+        final Object _value;
+        final List<String> _annotations = new ArrayList<>();
+
+        ScannedField(String fieldName, int access, String fieldType, String signature, Object value)
+        {
+            _fieldName = fieldName;
+            _access = access;
+            _fieldType = fieldType;
+            _signature = signature;
+            _value = value;
+        }
+    }
+
+
+    /**
+     * RecordingHandler
+     * <p>
+     * Handler that records the events produced by the {@link AnnotationParser}
+     * while scanning a single jar, so that they can be stored in the cache.
+     * Only annotated methods and fields are recorded, as these are the only ones
+     * for which the parser calls back the handlers.
+     */
+    public static class RecordingHandler extends AnnotationParser.AbstractHandler
+    {
+        private final List<ScannedClass> _classes = new ArrayList<>();
+        private ScannedClass _class;
+        private MethodInfo _methodInfo;
+        private ScannedMethod _method;
+        private FieldInfo _fieldInfo;
+        private ScannedField _field;
+
+        public List<ScannedClass> getScannedClasses()
+        {
+            return _classes;
+        }
+
+        @Override
+        public void handle(ClassInfo info)
+        {
+            _class = new ScannedClass(info.getClassName(), info.getVersion(), info.getAccess(), info.getSignature(), info.getSuperName(), info.getInterfaces());
+            _methodInfo = null;
+            _fieldInfo = null;
+            _classes.add(_class);
+        }
+
+        @Override
+        public void handle(ClassInfo info, String annotationName)
+        {
+            _class._annotations.add(annotationName);
+        }
+
+        @Override
+        public void handle(MethodInfo info, String annotationName)
+        {
+            if (info != _methodInfo)
+            {
+                _methodInfo = info;
+                _method = new ScannedMethod(info.getMethodName(), info.getAccess(), info.getDesc(), info.getSignature(), info.getExceptions());
+                _class._methods.add(_method);
+            }
+            _method._annotations.add(annotationName);
+        }
+
+        @Override
+        public void handle(FieldInfo info, String annotationName)
+        {
+            if (info != _fieldInfo)
+            {
+                _fieldInfo = info;
+                _field = new ScannedField(info.getFieldName(), info.getAccess(), info.getFieldType(), info.getSignature(), info.getValue());
+                _class._fields.add(_field);
+            }
+            _field._annotations.add(annotationName);
+        }
+    }
+}
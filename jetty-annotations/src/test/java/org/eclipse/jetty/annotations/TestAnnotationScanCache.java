@@ -0,0 +1,173 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.annotations;
+
+package org.eclipse.jetty.annotations;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.eclipse.jetty.annotations.AnnotationParser.ClassInfo;
+import org.eclipse.jetty.annotations.AnnotationParser.FieldInfo;
+import org.eclipse.jetty.annotations.AnnotationParser.MethodInfo;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.IO;
+import org.eclipse.jetty.toolchain.test.TestingDir;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestAnnotationScanCache
+{
+    public static class RecordingAnnotationHandler extends AnnotationParser.AbstractHandler
+    {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void handle(ClassInfo info)
+        {
+            events.add("class " + info.getClassName() + " extends " + info.getSuperName());
+        }
+
+        @Override
+        public void handle(ClassInfo info, String annotationName)
+        {
+            events.add("@" + annotationName + " " + info.getClassName());
+        }
+
+        @Override
+        public void handle(MethodInfo info, String annotationName)
+        {
+            events.add("@" + annotationName + " " + info.getClassInfo().getClassName() + "." + info.getMethodName() + info.getDesc());
+        }
+
+        @Override
+        public void handle(FieldInfo info, String annotationName)
+        {
+            events.add("@" + annotationName + " " + info.getClassInfo().getClassName() + "." + info.getFieldName() + ":" + info.getFieldType());
+        }
+    }
+
+    @Rule
+    public TestingDir testdir = new TestingDir();
+
+    @Test
+    public void testReplayUnchangedJar() throws Exception
+    {
+        File jar = testdir.getFile("lib/classes.jar");
+        FS.ensureDirExists(jar.getParentFile());
+        createJar(jar, ClassA.class, ClassB.class);
+
+        AnnotationScanCache cache = new AnnotationScanCache(testdir.getFile("cache"));
+
+        RecordingAnnotationHandler scanned = new RecordingAnnotationHandler();
+        AnnotationParser parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.singleton(scanned), jar.toURI());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        RecordingAnnotationHandler replayed = new RecordingAnnotationHandler();
+        parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.singleton(replayed), jar.toURI());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertThat(replayed.events, containsInAnyOrder(scanned.events.toArray()));
+        assertEquals(true, parser.isParsed(ClassA.class.getName()));
+        assertEquals(true, parser.isParsed(ClassB.class.getName()));
+    }
+
+    @Test
+    public void testRescanChangedJar() throws Exception
+    {
+        File jar = testdir.getFile("lib/classes.jar");
+        FS.ensureDirExists(jar.getParentFile());
+        createJar(jar, ClassA.class);
+
+        AnnotationScanCache cache = new AnnotationScanCache(testdir.getFile("cache"));
+
+        AnnotationParser parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.singleton(new RecordingAnnotationHandler()), jar.toURI());
+
+        createJar(jar, ClassA.class, ClassB.class);
+
+        RecordingAnnotationHandler handler = new RecordingAnnotationHandler();
+        parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.singleton(handler), jar.toURI());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(true, parser.isParsed(ClassB.class.getName()));
+    }
+
+    @Test
+    public void testAlreadyParsedClassesAreCached() throws Exception
+    {
+        File jar = testdir.getFile("lib/classes.jar");
+        FS.ensureDirExists(jar.getParentFile());
+        createJar(jar, ClassA.class, ClassB.class);
+
+        AnnotationScanCache cache = new AnnotationScanCache(testdir.getFile("cache"));
+
+        // ClassA is parsed before the jar, so is not passed to the handlers again, but is still cached
+        AnnotationParser parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.<AnnotationParser.Handler>emptySet(), ClassA.class.getName());
+        RecordingAnnotationHandler handler = new RecordingAnnotationHandler();
+        parser.parse(Collections.singleton(handler), jar.toURI());
+        for (String event : handler.events)
+            assertEquals(false, event.contains(ClassA.class.getName()));
+
+        TestAnnotationParser.TrackingAnnotationHandler tracker = new TestAnnotationParser.TrackingAnnotationHandler(Sample.class.getName());
+        parser = new AnnotationParser();
+        parser.setScanCache(cache);
+        parser.parse(Collections.singleton(tracker), jar.toURI());
+        assertEquals(1, cache.getHits());
+        assertThat(tracker.foundClasses, containsInAnyOrder(ClassA.class.getName()));
+    }
+
+    private void createJar(File jar, Class<?>... classes) throws Exception
+    {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            for (Class<?> clazz : classes)
+            {
+                String name = clazz.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(name));
+                try (InputStream in = getClass().getResourceAsStream('/' + name))
+                {
+                    IO.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+}
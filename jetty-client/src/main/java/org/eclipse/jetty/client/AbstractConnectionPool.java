@@ -18,7 +18,10 @@
 
 package org.eclipse.jetty.client;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -38,6 +41,7 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger pendingCount = new AtomicInteger();
     private final Destination destination;
     private final int maxConnections;
     private final Callback requester;
@@ -77,7 +81,9 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
     public Connection acquire()
     {
         Connection connection = activate();
-        if (connection == null)
+        // Connections opened in advance are used when they are created,
+        // rather than opening one more; proceed() is called at that point.
+        if (connection == null && pendingCount.get() == 0)
             connection = tryCreate();
         return connection;
     }
@@ -99,29 +105,7 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
 
             if (connectionCount.compareAndSet(current, next))
             {
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Connection {}/{} creation", next, maxConnections);
-
-                destination.newConnection(new Promise<Connection>()
-                {
-                    @Override
-                    public void succeeded(Connection connection)
-                    {
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Connection {}/{} creation succeeded {}", next, maxConnections, connection);
-                        onCreated(connection);
-                        proceed();
-                    }
-
-                    @Override
-                    public void failed(Throwable x)
-                    {
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Connection " + next + "/" + maxConnections + " creation failed", x);
-                        connectionCount.decrementAndGet();
-                        requester.failed(x);
-                    }
-                });
+                create(next, new Promise.Adapter<>(), false);
 
                 // Try again the idle connections
                 return activate();
@@ -129,6 +113,85 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
         }
     }
 
+    /**
+     * <p>Opens new connections, without using them, until the pool holds
+     * at least the given number of connections, or the max number of connections.</p>
+     * <p>Connections opened in advance save the connect (and TLS handshake)
+     * latency to the first requests sent to the destination.
+     * While they are being opened, {@link #acquire()} does not open other connections.
+     * The failure to open one of them fails the returned future, but not the
+     * requests waiting for a connection, which then try to open their own.</p>
+     *
+     * @param connectionCount the number of connections the pool should hold
+     * @return a future completed when the connections have been opened
+     */
+    public CompletableFuture<Void> preCreateConnections(int connectionCount)
+    {
+        List<CompletableFuture<Connection>> futures = new ArrayList<>();
+        while (!isClosed())
+        {
+            int current = getConnectionCount();
+            int next = current + 1;
+            if (next > Math.min(connectionCount, maxConnections))
+                break;
+            // Counted as pending before the connection count grows,
+            // so that a concurrent acquire() does not open one more.
+            pendingCount.incrementAndGet();
+            if (this.connectionCount.compareAndSet(current, next))
+            {
+                Promise.Completable<Connection> promise = new Promise.Completable<>();
+                create(next, promise, true);
+                futures.add(promise);
+            }
+            else
+            {
+                pendingCount.decrementAndGet();
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+    }
+
+    private void create(int next, Promise<Connection> promise, boolean advance)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Connection {}/{} creation", next, maxConnections);
+
+        destination.newConnection(new Promise<Connection>()
+        {
+            @Override
+            public void succeeded(Connection connection)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Connection {}/{} creation succeeded {}", next, maxConnections, connection);
+                onCreated(connection);
+                if (advance)
+                    pendingCount.decrementAndGet();
+                promise.succeeded(connection);
+                proceed();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Connection " + next + "/" + maxConnections + " creation failed", x);
+                connectionCount.decrementAndGet();
+                promise.failed(x);
+                if (advance)
+                {
+                    // No request was waiting for this connection in particular,
+                    // so let the waiting requests open their own connections.
+                    pendingCount.decrementAndGet();
+                    proceed();
+                }
+                else
+                {
+                    requester.failed(x);
+                }
+            }
+        });
+    }
+
     protected abstract void onCreated(Connection connection);
 
     protected void proceed()
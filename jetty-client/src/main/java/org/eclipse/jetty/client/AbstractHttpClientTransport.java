@@ -72,6 +72,11 @@ public abstract class AbstractHttpClientTransport extends ContainerLifeCycle imp
         return selectors;
     }
 
+    protected SelectorManager getSelectorManager()
+    {
+        return selectorManager;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -95,6 +100,7 @@ public abstract class AbstractHttpClientTransport extends ContainerLifeCycle imp
         try
         {
             channel = SocketChannel.open();
+            context.put(CONNECT_CHANNEL_CONTEXT_KEY, channel);
             HttpDestination destination = (HttpDestination)context.get(HTTP_DESTINATION_CONTEXT_KEY);
             HttpClient client = destination.getHttpClient();
             SocketAddress bindAddress = client.getBindAddress();
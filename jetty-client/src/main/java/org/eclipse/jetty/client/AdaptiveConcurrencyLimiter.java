@@ -0,0 +1,312 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Limits the number of requests that a {@link HttpDestination} has in flight,
+ * adapting the limit to the round-trip times observed for the completed exchanges.</p>
+ * <p>The limit grows while the round-trip time stays close to the minimum observed,
+ * and shrinks in proportion to the ratio between the minimum and the current
+ * round-trip time when the server slows down, so that requests wait in the
+ * destination queue rather than in the server queues (gradient algorithm).
+ * When an exchange fails or the server answers that it is overloaded,
+ * the limit is reduced multiplicatively (AIMD backoff).</p>
+ * <p>The limiter also estimates how long a request waits in the destination
+ * queue, so that new requests can be rejected immediately rather than queued
+ * when the estimate exceeds {@link #getMaxQueueLatency() a latency budget}.</p>
+ *
+ * @see HttpClient#setAdaptiveConcurrency(boolean)
+ */
+@ManagedObject("Adaptive concurrency limiter")
+public class AdaptiveConcurrencyLimiter
+{
+    private static final Logger LOG = Log.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile double limit;
+    private volatile long maxQueueLatency;
+    private double tolerance = 2.0;
+    private double smoothing = 0.2;
+    private double backoffRatio = 0.9;
+    private int probeInterval = 1000;
+    private long minRtt;
+    private double smoothedRtt;
+    private long samples;
+
+    /**
+     * @param initialLimit the initial number of requests that may be in flight
+     * @param minLimit the min number of requests that may be in flight
+     * @param maxLimit the max number of requests that may be in flight
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit)
+    {
+        if (minLimit < 1 || maxLimit < minLimit)
+            throw new IllegalArgumentException("Invalid limits " + minLimit + "/" + maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    @ManagedAttribute(value = "The current limit of requests in flight", readonly = true)
+    public int getLimit()
+    {
+        return (int)limit;
+    }
+
+    @ManagedAttribute(value = "The min limit of requests in flight", readonly = true)
+    public int getMinLimit()
+    {
+        return minLimit;
+    }
+
+    @ManagedAttribute(value = "The max limit of requests in flight", readonly = true)
+    public int getMaxLimit()
+    {
+        return maxLimit;
+    }
+
+    @ManagedAttribute(value = "The number of requests in flight", readonly = true)
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    @ManagedAttribute("The max estimated time, in milliseconds, a request may wait in the queue")
+    public long getMaxQueueLatency()
+    {
+        return maxQueueLatency;
+    }
+
+    /**
+     * @param maxQueueLatency the max estimated time, in milliseconds, a request
+     * may wait in the queue before being sent, or zero to never reject requests
+     */
+    public void setMaxQueueLatency(long maxQueueLatency)
+    {
+        this.maxQueueLatency = maxQueueLatency;
+    }
+
+    @ManagedAttribute("The ratio of the round-trip time to the min round-trip time tolerated before the limit is reduced")
+    public double getTolerance()
+    {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance)
+    {
+        if (tolerance < 1)
+            throw new IllegalArgumentException("Invalid tolerance " + tolerance);
+        this.tolerance = tolerance;
+    }
+
+    @ManagedAttribute("The factor the limit is multiplied by when a request fails")
+    public double getBackoffRatio()
+    {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio)
+    {
+        if (backoffRatio <= 0 || backoffRatio >= 1)
+            throw new IllegalArgumentException("Invalid backoff ratio " + backoffRatio);
+        this.backoffRatio = backoffRatio;
+    }
+
+    @ManagedAttribute("The number of samples after which the min round-trip time is measured again")
+    public int getProbeInterval()
+    {
+        return probeInterval;
+    }
+
+    /**
+     * @param probeInterval the number of samples after which the min round-trip time is
+     * measured again, so that a permanent change of the server latency is eventually
+     * taken as the new baseline, or zero to keep the min ever observed
+     */
+    public void setProbeInterval(int probeInterval)
+    {
+        this.probeInterval = probeInterval;
+    }
+
+    @ManagedAttribute(value = "The min round-trip time, in milliseconds", readonly = true)
+    public double getMinRoundTripTime()
+    {
+        synchronized (this)
+        {
+            return minRtt / 1_000_000D;
+        }
+    }
+
+    @ManagedAttribute(value = "The smoothed round-trip time, in milliseconds", readonly = true)
+    public double getRoundTripTime()
+    {
+        synchronized (this)
+        {
+            return smoothedRtt / 1_000_000D;
+        }
+    }
+
+    @ManagedAttribute(value = "The number of times a request was held in the queue by the limit", readonly = true)
+    public long getLimitedCount()
+    {
+        return limited.sum();
+    }
+
+    @ManagedAttribute(value = "The number of failed or overloaded exchanges", readonly = true)
+    public long getDroppedCount()
+    {
+        return dropped.sum();
+    }
+
+    @ManagedAttribute(value = "The number of requests rejected because of the queue latency", readonly = true)
+    public long getRejectedCount()
+    {
+        return rejected.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        limited.reset();
+        dropped.reset();
+        rejected.reset();
+    }
+
+    /**
+     * @return whether a request may be sent, in which case either
+     * {@link #release(long, boolean)} or {@link #cancel()} must be called
+     */
+    public boolean tryAcquire()
+    {
+        while (true)
+        {
+            int current = inFlight.get();
+            if (current >= (int)limit)
+            {
+                limited.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Gives back a permit obtained from {@link #tryAcquire()} without using it.
+     */
+    public void cancel()
+    {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * <p>Gives back a permit obtained from {@link #tryAcquire()}, adapting the
+     * limit to the outcome of the exchange that has been sent with it.</p>
+     *
+     * @param roundTripNanos the time, in nanoseconds, from sending the request to the exchange termination
+     * @param success whether the exchange succeeded, as opposed to failing or the server being overloaded
+     */
+    public void release(long roundTripNanos, boolean success)
+    {
+        int current = inFlight.getAndDecrement();
+        if (!success)
+            dropped.increment();
+        synchronized (this)
+        {
+            double newLimit;
+            if (success)
+            {
+                if (smoothedRtt == 0)
+                    smoothedRtt = roundTripNanos;
+                else
+                    smoothedRtt = smoothedRtt * (1 - smoothing) + roundTripNanos * smoothing;
+
+                // Measure again the min RTT from time to time, in case the server became slower for good.
+                if (minRtt == 0 || roundTripNanos < minRtt || (probeInterval > 0 && ++samples % probeInterval == 0))
+                    minRtt = roundTripNanos;
+
+                double gradient = Math.max(0.5, Math.min(1.0, tolerance * minRtt / smoothedRtt));
+                newLimit = limit * gradient + Math.sqrt(limit);
+                // Do not grow the limit if it is not used.
+                if (newLimit > limit && current < limit / 2)
+                    newLimit = limit;
+                newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+            }
+            else
+            {
+                newLimit = limit * backoffRatio;
+            }
+            newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            if (LOG.isDebugEnabled() && (int)newLimit != (int)limit)
+                LOG.debug("Limit {} -> {}, rtt={}/{}ms, {}", (int)limit, (int)newLimit,
+                        TimeUnit.NANOSECONDS.toMillis(minRtt), TimeUnit.NANOSECONDS.toMillis((long)smoothedRtt), this);
+            limit = newLimit;
+        }
+    }
+
+    /**
+     * @param queued the number of requests already queued
+     * @return whether a new request would wait in the queue for longer than
+     * {@link #getMaxQueueLatency() the latency budget}, in which case it is counted as rejected
+     */
+    public boolean isOverBudget(int queued)
+    {
+        long budget = maxQueueLatency;
+        if (budget <= 0 || queued == 0)
+            return false;
+        double rtt;
+        synchronized (this)
+        {
+            rtt = smoothedRtt;
+        }
+        // Little's law: the queue drains at a rate of limit/rtt requests per unit of time.
+        double wait = (queued + 1) * rtt / limit;
+        if (wait <= TimeUnit.MILLISECONDS.toNanos(budget))
+            return false;
+        rejected.increment();
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[limit=%d,min=%d,max=%d,inFlight=%d]",
+                getClass().getSimpleName(),
+                hashCode(),
+                getLimit(),
+                minLimit,
+                maxLimit,
+                getInFlight());
+    }
+}
@@ -0,0 +1,806 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.client;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A protocol handler that caches responses as specified by RFC 7234.</p>
+ * <p>Responses to {@code GET} requests are stored, unless forbidden by
+ * {@code Cache-Control} directives, and served from the cache without
+ * contacting the server while they are fresh. Stale responses with an
+ * {@code ETag} or {@code Last-Modified} validator are revalidated with a
+ * conditional request, and a {@code 304} response is answered with the
+ * stored response. Responses with a {@code Vary} header are stored once
+ * for each variant of the request headers they vary on.</p>
+ * <p>Concurrent requests for the same resource that miss the cache are
+ * collapsed: only the first is sent to the server, and the others wait
+ * for its response to be stored, so that a resource that is polled by
+ * many clients is fetched only once when it expires. If that response
+ * cannot be reused, for example because it is marked {@code no-store}
+ * or it failed, the waiting requests are all sent to the server at once.</p>
+ * <p>By default the cache is a private cache, as a browser cache is. When
+ * {@link HttpClient} is used on behalf of multiple users, for example by
+ * a proxy, the cache should be {@link #setShared(boolean) shared}, so that
+ * responses marked as {@code private} are not stored, and requests with
+ * credentials are not cached.</p>
+ * <p>Stored content is kept in memory up to {@link #getMaxMemorySize() a
+ * maximum size}; if {@link #setDirectory(Path) a directory} is configured,
+ * less recently used content is then moved to files in that directory,
+ * up to {@link #getMaxDiskSize() a maximum disk size}.</p>
+ * <p>The cache is not enabled by default; to enable it:</p>
+ * <pre>
+ * httpClient.getProtocolHandlers().put(new CacheProtocolHandler(httpClient));
+ * </pre>
+ */
+@ManagedObject("The HTTP cache protocol handler")
+public class CacheProtocolHandler implements ProtocolHandler
+{
+    public static final String NAME = "cache";
+    private static final Logger LOG = Log.getLogger(CacheProtocolHandler.class);
+    private static final String ATTRIBUTE = CacheProtocolHandler.class.getName() + ".flight";
+    private static final Set<String> HOP_HEADERS = new HashSet<>();
+    static
+    {
+        HOP_HEADERS.add("connection");
+        HOP_HEADERS.add("keep-alive");
+        HOP_HEADERS.add("proxy-connection");
+        HOP_HEADERS.add("proxy-authenticate");
+        HOP_HEADERS.add("transfer-encoding");
+        HOP_HEADERS.add("te");
+        HOP_HEADERS.add("trailer");
+        HOP_HEADERS.add("upgrade");
+    }
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final HttpCache cache = new HttpCache();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final ResponseNotifier notifier = new ResponseNotifier();
+    private final HttpClient client;
+    private volatile boolean shared;
+    private volatile int maxEntrySize = 1024 * 1024;
+
+    public CacheProtocolHandler(HttpClient client)
+    {
+        this.client = client;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @ManagedAttribute("Whether the cache is shared among multiple users")
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    /**
+     * @param shared whether the cache is a shared cache, as defined by RFC 7234,
+     * rather than a private cache
+     */
+    public void setShared(boolean shared)
+    {
+        this.shared = shared;
+    }
+
+    @ManagedAttribute("The maximum size, in bytes, of the content of a cached response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute("The maximum size, in bytes, of the cached content kept in memory")
+    public long getMaxMemorySize()
+    {
+        return cache.getMaxMemorySize();
+    }
+
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        cache.setMaxMemorySize(maxMemorySize);
+    }
+
+    @ManagedAttribute("The maximum size, in bytes, of the cached content kept in files")
+    public long getMaxDiskSize()
+    {
+        return cache.getMaxDiskSize();
+    }
+
+    public void setMaxDiskSize(long maxDiskSize)
+    {
+        cache.setMaxDiskSize(maxDiskSize);
+    }
+
+    public Path getDirectory()
+    {
+        return cache.getDirectory();
+    }
+
+    /**
+     * @param directory the directory where cached content that does not fit in memory
+     * is stored, or null to evict such content
+     */
+    public void setDirectory(Path directory)
+    {
+        cache.setDirectory(directory);
+    }
+
+    @ManagedAttribute("The number of cached responses")
+    public int getSize()
+    {
+        return cache.getSize();
+    }
+
+    @ManagedAttribute("The size, in bytes, of the cached content kept in memory")
+    public long getMemorySize()
+    {
+        return cache.getMemorySize();
+    }
+
+    @ManagedAttribute("The size, in bytes, of the cached content kept in files")
+    public long getDiskSize()
+    {
+        return cache.getDiskSize();
+    }
+
+    @ManagedAttribute("The number of requests served from the cache")
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("The number of requests sent to the server")
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("The number of stale responses revalidated by the server")
+    public long getValidations()
+    {
+        return validations.sum();
+    }
+
+    @ManagedAttribute("The number of requests that waited for an identical request")
+    public long getCollapsed()
+    {
+        return collapsed.sum();
+    }
+
+    @ManagedAttribute("The number of cached responses evicted")
+    public long getEvictions()
+    {
+        return cache.getEvictions();
+    }
+
+    @ManagedOperation(value = "Removes all cached responses", impact = "ACTION")
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        validations.reset();
+        collapsed.reset();
+        cache.resetStatistics();
+    }
+
+    @Override
+    public boolean accept(Request request, Response response)
+    {
+        Object flight = ((HttpRequest)request).getConversation().getAttribute(ATTRIBUTE);
+        if (!(flight instanceof Flight) || ((Flight)flight).request != request)
+            return false;
+        int status = response.getStatus();
+        if (status == HttpStatus.NOT_MODIFIED_304)
+            return ((Flight)flight).entry != null;
+        return isCacheable(status);
+    }
+
+    @Override
+    public Response.Listener getResponseListener()
+    {
+        // Return new instances every time to keep track of the response content
+        return new CacheListener();
+    }
+
+    /**
+     * @param status the response status code
+     * @return whether responses with the given status code are cacheable by default,
+     * excluding redirects that are handled by {@link RedirectProtocolHandler}
+     */
+    protected boolean isCacheable(int status)
+    {
+        switch (status)
+        {
+            case HttpStatus.OK_200:
+            case HttpStatus.NON_AUTHORITATIVE_INFORMATION_203:
+            case HttpStatus.NO_CONTENT_204:
+            case HttpStatus.MULTIPLE_CHOICES_300:
+            case HttpStatus.NOT_FOUND_404:
+            case HttpStatus.METHOD_NOT_ALLOWED_405:
+            case HttpStatus.GONE_410:
+            case HttpStatus.REQUEST_URI_TOO_LONG_414:
+            case HttpStatus.NOT_IMPLEMENTED_501:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param request the request
+     * @return whether the cache may be used for the given {@code GET} request
+     */
+    protected boolean isCacheable(HttpRequest request)
+    {
+        // Only the first request of a conversation is cached, so that the
+        // response listeners of the application are those of its exchange.
+        if (!request.getConversation().getExchanges().isEmpty())
+            return false;
+        if (request.getContent() != null)
+            return false;
+        HttpFields headers = request.getHeaders();
+        // Conditional and range requests made by the application are not cached.
+        if (headers.containsKey(HttpHeader.RANGE.asString()) ||
+                headers.containsKey(HttpHeader.IF_RANGE.asString()) ||
+                headers.containsKey(HttpHeader.IF_MATCH.asString()) ||
+                headers.containsKey(HttpHeader.IF_NONE_MATCH.asString()) ||
+                headers.containsKey(HttpHeader.IF_MODIFIED_SINCE.asString()) ||
+                headers.containsKey(HttpHeader.IF_UNMODIFIED_SINCE.asString()))
+            return false;
+        // RFC 7234, 3.2.
+        return !isShared() || !headers.containsKey(HttpHeader.AUTHORIZATION.asString());
+    }
+
+    /**
+     * <p>Aborts the given request if it is waiting for an identical request.</p>
+     *
+     * @param request the request to abort
+     * @param cause the abort cause
+     * @return true if the request was waiting and has been failed,
+     * false if it was not waiting
+     */
+    boolean abort(HttpRequest request, Throwable cause)
+    {
+        Object flight = request.getConversation().getAttribute(ATTRIBUTE);
+        if (!(flight instanceof Flight))
+            return false;
+        Waiter waiter = ((Flight)flight).leave(request);
+        if (waiter == null)
+            return false;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Aborted {} waiting for {}", request, flight);
+        fail(waiter.request, waiter.listeners, cause);
+        return true;
+    }
+
+    /**
+     * <p>Serves the given request from the cache, or prepares it to be sent to the server.</p>
+     *
+     * @param request the request to send
+     * @param listeners the response listeners of the request
+     * @return true if the request has been taken over by the cache,
+     * false if it must be sent to the server
+     */
+    boolean intercept(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.is(method))
+        {
+            // RFC 7234, 4.4: unsafe methods invalidate the target URI.
+            if (!HttpMethod.HEAD.is(method) && !HttpMethod.OPTIONS.is(method) && !HttpMethod.TRACE.is(method))
+                cache.remove(key(request));
+            return false;
+        }
+
+        if (!isCacheable(request))
+            return false;
+        HttpCache.CacheControl control = HttpCache.CacheControl.from(request.getHeaders());
+        if (control.noStore)
+            return false;
+
+        String key = key(request);
+        while (true)
+        {
+            long now = System.currentTimeMillis();
+            HttpCache.Entry entry = cache.get(key, request.getHeaders());
+            if (entry != null && isFresh(entry, control, now))
+            {
+                byte[] content = cache.getContent(entry);
+                if (content != null)
+                {
+                    hits.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Cache hit {} for {}", entry, request);
+                    serve(request, listeners, entry, content, now);
+                    return true;
+                }
+                entry = null;
+            }
+
+            if (control.onlyIfCached)
+            {
+                // RFC 7234, 5.2.1.7.
+                HttpResponse response = new HttpResponse(request, listeners)
+                        .version(request.getVersion())
+                        .status(HttpStatus.GATEWAY_TIMEOUT_504)
+                        .reason(HttpStatus.getMessage(HttpStatus.GATEWAY_TIMEOUT_504));
+                notifier.forwardSuccessComplete(listeners, request, response);
+                return true;
+            }
+
+            Flight flight = flights.get(key);
+            if (flight != null)
+            {
+                if (flight.join(request, listeners))
+                {
+                    collapsed.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Collapsed {} into {}", request, flight);
+                    return true;
+                }
+                // The flight completed while we were joining it.
+                flights.remove(key, flight);
+                continue;
+            }
+
+            if (entry != null && !entry.hasValidators())
+                entry = null;
+            flight = new Flight(key, request, entry, now);
+            if (flights.putIfAbsent(key, flight) != null)
+                continue;
+
+            if (entry != null)
+            {
+                if (entry.etag != null)
+                    request.header(HttpHeader.IF_NONE_MATCH, entry.etag);
+                if (entry.lastModified != null)
+                    request.header(HttpHeader.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+            misses.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Cache miss for {}, revalidating {}", request, entry);
+            request.getConversation().setAttribute(ATTRIBUTE, flight);
+            listeners.add(flight);
+            return false;
+        }
+    }
+
+    private String key(HttpRequest request)
+    {
+        String query = request.getQuery();
+        String path = request.getPath();
+        StringBuilder builder = new StringBuilder(64);
+        builder.append(request.getScheme()).append("://").append(request.getHost()).append(':').append(request.getPort());
+        builder.append(path);
+        if (query != null && path.indexOf('?') < 0)
+            builder.append('?').append(query);
+        return builder.toString();
+    }
+
+    private boolean isFresh(HttpCache.Entry entry, HttpCache.CacheControl request, long now)
+    {
+        // RFC 7234, 4.2 and 5.2.
+        if (request.noCache || entry.control.noCache)
+            return false;
+        long age = entry.getAge(now);
+        if (request.maxAge >= 0 && age > request.maxAge)
+            return false;
+        long lifetime = entry.lifetime;
+        if (request.minFresh >= 0)
+            age += request.minFresh;
+        if (age < lifetime)
+            return true;
+        if (request.maxStale < 0 || entry.control.mustRevalidate)
+            return false;
+        if (isShared() && (entry.control.proxyRevalidate || entry.control.sMaxAge >= 0))
+            return false;
+        return age - lifetime <= request.maxStale;
+    }
+
+    private void serve(HttpRequest request, List<Response.ResponseListener> listeners, HttpCache.Entry entry, byte[] content, long now)
+    {
+        HttpResponse response = new HttpResponse(request, listeners)
+                .version(entry.version)
+                .status(entry.status)
+                .reason(entry.reason);
+        HttpFields headers = response.getHeaders();
+        headers.addAll(entry.headers);
+        headers.put(HttpHeader.AGE, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(entry.getAge(now))));
+        notifier.forwardSuccessComplete(listeners, request, new HttpContentResponse(response, content, null, null));
+    }
+
+    private void resume(HttpRequest request, List<Response.ResponseListener> listeners, boolean reusable)
+    {
+        Throwable failure = request.getAbortCause();
+        if (failure == null)
+        {
+            try
+            {
+                // A response that cannot be reused would not be reused by a new
+                // flight either, so the waiters are sent all at once, not collapsed.
+                if (!reusable || !intercept(request, listeners))
+                    client.sendToDestination(request, listeners);
+                return;
+            }
+            catch (Throwable x)
+            {
+                failure = x;
+            }
+        }
+        fail(request, listeners, failure);
+    }
+
+    private void fail(HttpRequest request, List<Response.ResponseListener> listeners, Throwable failure)
+    {
+        HttpResponse response = new HttpResponse(request, listeners);
+        notifier.notifyFailure(listeners, response, failure);
+        notifier.notifyComplete(listeners, new Result(request, failure, response, failure));
+    }
+
+    private HttpCache.Entry store(Flight flight, Response response, byte[] content, boolean decoded, long responseTime)
+    {
+        HttpFields headers = new HttpFields(response.getHeaders().size());
+        for (HttpField field : response.getHeaders())
+        {
+            String name = StringUtil.asciiToLowerCase(field.getName());
+            if (HOP_HEADERS.contains(name))
+                continue;
+            if (field.getHeader() == HttpHeader.CONTENT_LENGTH)
+                continue;
+            if (decoded && field.getHeader() == HttpHeader.CONTENT_ENCODING)
+                continue;
+            // A shared cache must not replay cookies to other users.
+            if (isShared() && field.getHeader() == HttpHeader.SET_COOKIE)
+                continue;
+            headers.add(field);
+        }
+        headers.putLongField(HttpHeader.CONTENT_LENGTH, content.length);
+        Map<String, String> vary = HttpCache.Entry.vary(response.getHeaders(), flight.headers);
+        HttpCache.Entry entry = new HttpCache.Entry(flight.key, vary, response.getStatus(), response.getReason(), response.getVersion(), headers, content, flight.requestTime, responseTime, isShared());
+        // Store only responses that can be reused, either fresh or revalidated.
+        if (entry.lifetime <= 0 && !entry.hasValidators())
+            return null;
+        cache.put(entry);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stored {}", entry);
+        return entry;
+    }
+
+    private HttpCache.Entry revalidated(Flight flight, Response response, byte[] content, long responseTime)
+    {
+        // RFC 7234, 4.3.4: the 304 response headers replace the stored ones.
+        HttpCache.Entry entry = flight.entry;
+        HttpFields headers = new HttpFields(entry.headers);
+        List<HttpField> updates = new ArrayList<>();
+        for (HttpField field : response.getHeaders())
+        {
+            String name = StringUtil.asciiToLowerCase(field.getName());
+            if (HOP_HEADERS.contains(name))
+                continue;
+            if (field.getHeader() == HttpHeader.CONTENT_LENGTH || field.getHeader() == HttpHeader.CONTENT_ENCODING)
+                continue;
+            if (isShared() && field.getHeader() == HttpHeader.SET_COOKIE)
+                continue;
+            headers.remove(field.getName());
+            updates.add(field);
+        }
+        for (HttpField field : updates)
+            headers.add(field);
+        HttpCache.Entry updated = new HttpCache.Entry(entry.key, entry.vary, entry.status, entry.reason, entry.version, headers, content, flight.requestTime, responseTime, isShared());
+        if (updated.control.noStore)
+            cache.remove(entry.key);
+        else
+            cache.put(updated);
+        return updated;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), cache, getHits(), getMisses());
+    }
+
+    /**
+     * <p>A request sent to the server on behalf of the cache, that identical
+     * requests may join while it is in progress.</p>
+     * <p>It is added as a response listener of the request, so that it
+     * completes whether or not {@link CacheListener} handles the response.</p>
+     */
+    private class Flight implements Response.CompleteListener
+    {
+        private final List<Waiter> waiters = new ArrayList<>();
+        private final String key;
+        private final HttpRequest request;
+        private final HttpCache.Entry entry;
+        private final HttpFields headers;
+        private final long requestTime;
+        private volatile boolean reusable;
+        private boolean complete;
+
+        private Flight(String key, HttpRequest request, HttpCache.Entry entry, long requestTime)
+        {
+            this.key = key;
+            this.request = request;
+            this.entry = entry;
+            // Vary is evaluated on the request headers as they were when looked up,
+            // since the headers added while sending the request are the same every time.
+            this.headers = new HttpFields(request.getHeaders());
+            this.requestTime = requestTime;
+        }
+
+        private synchronized boolean join(HttpRequest request, List<Response.ResponseListener> listeners)
+        {
+            if (complete)
+                return false;
+            waiters.add(new Waiter(request, listeners));
+            request.getConversation().setAttribute(ATTRIBUTE, this);
+            return true;
+        }
+
+        private synchronized Waiter leave(HttpRequest request)
+        {
+            if (complete)
+                return null;
+            for (int i = 0; i < waiters.size(); ++i)
+            {
+                if (waiters.get(i).request == request)
+                    return waiters.remove(i);
+            }
+            return null;
+        }
+
+        /**
+         * @param entry the stored or revalidated entry, or null if the response has not been stored
+         */
+        private void stored(HttpCache.Entry entry)
+        {
+            reusable = entry != null && entry.lifetime > 0;
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            List<Waiter> waiters;
+            synchronized (this)
+            {
+                complete = true;
+                waiters = this.waiters;
+            }
+            flights.remove(key, this);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Resuming {} waiters of {}, reusable={}", waiters.size(), this, reusable);
+            for (Waiter waiter : waiters)
+                resume(waiter.request, waiter.listeners, reusable);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), key);
+        }
+    }
+
+    private static class Waiter
+    {
+        private final HttpRequest request;
+        private final List<Response.ResponseListener> listeners;
+
+        private Waiter(HttpRequest request, List<Response.ResponseListener> listeners)
+        {
+            this.request = request;
+            this.listeners = listeners;
+        }
+    }
+
+    /**
+     * <p>Forwards the response events to the application while buffering
+     * the content to store it, or answers a {@code 304} response with
+     * the stored response.</p>
+     */
+    private class CacheListener extends Response.Listener.Adapter
+    {
+        private Flight flight;
+        private List<Response.ResponseListener> listeners;
+        private boolean notModified;
+        private boolean storable;
+        private boolean decoded;
+        private long responseTime;
+        private ByteArrayOutputStream content;
+
+        @Override
+        public void onBegin(Response response)
+        {
+            HttpRequest request = (HttpRequest)response.getRequest();
+            HttpConversation conversation = request.getConversation();
+            flight = (Flight)conversation.getAttribute(ATTRIBUTE);
+            // The cache handles only the first exchange of a conversation.
+            listeners = conversation.getExchanges().peekFirst().getResponseListeners();
+            notModified = response.getStatus() == HttpStatus.NOT_MODIFIED_304;
+            if (!notModified)
+                notifier.notifyBegin(listeners, response);
+        }
+
+        @Override
+        public boolean onHeader(Response response, HttpField field)
+        {
+            return notModified || notifier.notifyHeader(listeners, response, field);
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            responseTime = System.currentTimeMillis();
+            if (notModified)
+                return;
+
+            notifier.notifyHeaders(listeners, response);
+
+            HttpFields headers = response.getHeaders();
+            HttpCache.CacheControl control = HttpCache.CacheControl.from(headers);
+            long contentLength = headers.getLongField(HttpHeader.CONTENT_LENGTH.asString());
+            storable = !control.noStore &&
+                    !(isShared() && control.isPrivate) &&
+                    !headers.getCSV(HttpHeader.VARY, false).contains("*") &&
+                    contentLength <= getMaxEntrySize();
+            if (storable)
+            {
+                decoded = isDecoded(headers);
+                content = new ByteArrayOutputStream(contentLength > 0 ? (int)contentLength : 1024);
+            }
+        }
+
+        private boolean isDecoded(HttpFields headers)
+        {
+            List<String> encodings = headers.getCSV(HttpHeader.CONTENT_ENCODING, false);
+            for (ContentDecoder.Factory factory : client.getContentDecoderFactories())
+            {
+                for (String encoding : encodings)
+                {
+                    if (factory.getEncoding().equalsIgnoreCase(encoding))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer buffer, Callback callback)
+        {
+            if (notModified)
+            {
+                callback.succeeded();
+                return;
+            }
+
+            if (storable)
+            {
+                int length = buffer.remaining();
+                if (content.size() + length > getMaxEntrySize())
+                {
+                    storable = false;
+                    content = null;
+                }
+                else if (buffer.hasArray())
+                {
+                    content.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                }
+                else
+                {
+                    byte[] bytes = new byte[length];
+                    buffer.slice().get(bytes);
+                    content.write(bytes, 0, length);
+                }
+            }
+            notifier.notifyContent(listeners, response, buffer, callback);
+        }
+
+        @Override
+        public void onSuccess(Response response)
+        {
+            if (!notModified)
+                notifier.notifySuccess(listeners, response);
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable failure)
+        {
+            if (notModified)
+                notifier.forwardFailure(listeners, response, failure);
+            else
+                notifier.notifyFailure(listeners, response, failure);
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            Response response = result.getResponse();
+            if (notModified)
+            {
+                if (result.isSucceeded())
+                {
+                    HttpRequest request = (HttpRequest)result.getRequest();
+                    byte[] bytes = cache.getContent(flight.entry);
+                    if (bytes == null)
+                    {
+                        // The stored response has been evicted meanwhile.
+                        notifier.forwardSuccessComplete(listeners, request, response);
+                    }
+                    else
+                    {
+                        validations.increment();
+                        HttpCache.Entry entry = revalidated(flight, response, bytes, responseTime);
+                        flight.stored(entry.control.noStore ? null : entry);
+                        serve(request, listeners, entry, bytes, System.currentTimeMillis());
+                    }
+                    return;
+                }
+            }
+            else if (result.isSucceeded() && storable)
+            {
+                flight.stored(store(flight, response, content.toByteArray(), decoded, responseTime));
+            }
+            notifier.notifyComplete(listeners, result);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Sweeper;
+
+/**
+ * <p>A connection pool for duplex connections that does not serialize
+ * acquires and releases behind a lock, unlike {@link DuplexConnectionPool}.</p>
+ * <p>Each connection has a holder whose state is changed atomically;
+ * idle connections are kept in a lock-free deque and are reused in
+ * LIFO order, so that the most recently used (and therefore "hot")
+ * connections are reused first, while the others idle timeout.</p>
+ * <p>Connections may be retired after {@link #getMaxUsageCount() a number of usages}
+ * or after {@link #getMaxAge() an age}, and {@link #getMinConnectionCount() a minimum
+ * number of connections} may be kept open, created in advance of the first request.</p>
+ * <p>To use this pool, override {@link HttpDestination#newConnectionPool(HttpClient)}:</p>
+ * <pre>
+ * protected ConnectionPool newConnectionPool(HttpClient client)
+ * {
+ *     return new ConcurrentConnectionPool(this, client.getMaxConnectionsPerDestination(), this);
+ * }
+ * </pre>
+ */
+@ManagedObject("The concurrent connection pool")
+public class ConcurrentConnectionPool extends AbstractConnectionPool implements Sweeper.Sweepable
+{
+    private static final Logger LOG = Log.getLogger(ConcurrentConnectionPool.class);
+
+    private final ConcurrentMap<Connection, Holder> connections = new ConcurrentHashMap<>();
+    private final Deque<Holder> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicBoolean warmed = new AtomicBoolean();
+    private int minConnections;
+    private int maxUsageCount;
+    private long maxAge;
+
+    public ConcurrentConnectionPool(Destination destination, int maxConnections, Callback requester)
+    {
+        super(destination, maxConnections, requester);
+    }
+
+    @ManagedAttribute(value = "The min number of connections kept open")
+    public int getMinConnectionCount()
+    {
+        return minConnections;
+    }
+
+    /**
+     * @param minConnections the min number of connections to open in advance
+     * of the first request, and to reopen when connections are closed
+     */
+    public void setMinConnectionCount(int minConnections)
+    {
+        this.minConnections = minConnections;
+    }
+
+    @ManagedAttribute(value = "The max number of times a connection is used before being closed")
+    public int getMaxUsageCount()
+    {
+        return maxUsageCount;
+    }
+
+    /**
+     * @param maxUsageCount the max number of times a connection is used before
+     * being closed, or a non-positive value for no limit
+     */
+    public void setMaxUsageCount(int maxUsageCount)
+    {
+        this.maxUsageCount = maxUsageCount;
+    }
+
+    @ManagedAttribute(value = "The max age, in milliseconds, of a connection before being closed")
+    public long getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * @param maxAge the max age, in milliseconds, after which a connection is
+     * closed when it is released or found idle, or a non-positive value for no limit
+     */
+    public void setMaxAge(long maxAge)
+    {
+        this.maxAge = maxAge;
+    }
+
+    @ManagedAttribute(value = "The number of idle connections", readonly = true)
+    public int getIdleConnectionCount()
+    {
+        return idleCount.get();
+    }
+
+    @ManagedAttribute(value = "The number of active connections", readonly = true)
+    public int getActiveConnectionCount()
+    {
+        return activeCount.get();
+    }
+
+    @Override
+    public Connection acquire()
+    {
+        if (minConnections > 0 && warmed.compareAndSet(false, true))
+            preCreateConnections(minConnections);
+        return super.acquire();
+    }
+
+    @Override
+    public boolean isActive(Connection connection)
+    {
+        Holder holder = connections.get(connection);
+        return holder != null && holder.state.get() == State.ACTIVE;
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        Holder holder = new Holder(connection);
+        connections.put(connection, holder);
+        idleCount.incrementAndGet();
+        // Use "cold" new connections as last.
+        idleConnections.offerLast(holder);
+        idle(connection, false);
+    }
+
+    @Override
+    protected Connection activate()
+    {
+        while (true)
+        {
+            Holder holder = idleConnections.pollFirst();
+            if (holder == null)
+                return null;
+
+            if (!holder.state.compareAndSet(State.IDLE, State.ACTIVE))
+                continue;
+            idleCount.decrementAndGet();
+
+            if (isExpired(holder, System.nanoTime()))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Connection expired {}", holder.connection);
+                holder.state.set(State.RETIRED);
+                holder.connection.close();
+                continue;
+            }
+
+            activeCount.incrementAndGet();
+            holder.usage.incrementAndGet();
+            return active(holder.connection);
+        }
+    }
+
+    @Override
+    public boolean release(Connection connection)
+    {
+        Holder holder = connections.get(connection);
+        if (holder == null)
+            return false;
+
+        boolean closed = isClosed();
+        if (closed || isRetired(holder))
+        {
+            if (!holder.state.compareAndSet(State.ACTIVE, State.RETIRED))
+                return false;
+            activeCount.decrementAndGet();
+            released(connection);
+            if (!closed && LOG.isDebugEnabled())
+                LOG.debug("Connection retired {}", connection);
+            // Returning false makes the destination close the connection.
+            return idle(connection, true);
+        }
+
+        if (!holder.state.compareAndSet(State.ACTIVE, State.IDLE))
+            return false;
+        activeCount.decrementAndGet();
+        idleCount.incrementAndGet();
+        // Make sure we use "hot" connections first.
+        idleConnections.offerFirst(holder);
+
+        released(connection);
+        return idle(connection, false);
+    }
+
+    private boolean isRetired(Holder holder)
+    {
+        return (maxUsageCount > 0 && holder.usage.get() >= maxUsageCount) ||
+                isExpired(holder, System.nanoTime());
+    }
+
+    private boolean isExpired(Holder holder, long now)
+    {
+        return maxAge > 0 && now - holder.created >= TimeUnit.MILLISECONDS.toNanos(maxAge);
+    }
+
+    @Override
+    public boolean remove(Connection connection)
+    {
+        return remove(connection, false);
+    }
+
+    protected boolean remove(Connection connection, boolean force)
+    {
+        Holder holder = connections.remove(connection);
+        State state = holder == null ? State.REMOVED : holder.state.getAndSet(State.REMOVED);
+        boolean activeRemoved = state == State.ACTIVE;
+        if (activeRemoved)
+            activeCount.decrementAndGet();
+        boolean idleRemoved = state == State.IDLE;
+        if (idleRemoved)
+        {
+            idleCount.decrementAndGet();
+            idleConnections.remove(holder);
+        }
+
+        if (activeRemoved || force)
+            released(connection);
+        boolean removed = activeRemoved || idleRemoved || state == State.RETIRED || force;
+        if (removed)
+        {
+            removed(connection);
+            // Keep the min number of connections open.
+            if (!isClosed() && getConnectionCount() < minConnections)
+                preCreateConnections(minConnections);
+        }
+        return removed;
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+
+        List<Connection> toClose = new ArrayList<>(connections.keySet());
+        connections.clear();
+        idleConnections.clear();
+        idleCount.set(0);
+        activeCount.set(0);
+
+        close(toClose);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out, this);
+        ContainerLifeCycle.dump(out, indent, connections.values());
+    }
+
+    @Override
+    public boolean sweep()
+    {
+        List<Connection> toSweep = connections.values().stream()
+                .filter(holder -> holder.state.get() == State.ACTIVE)
+                .map(holder -> holder.connection)
+                .filter(connection -> connection instanceof Sweeper.Sweepable)
+                .collect(Collectors.toList());
+
+        for (Connection connection : toSweep)
+        {
+            if (((Sweeper.Sweepable)connection).sweep())
+            {
+                boolean removed = remove(connection, true);
+                LOG.warn("Connection swept: {}{}{} from active connections{}{}",
+                        connection,
+                        System.lineSeparator(),
+                        removed ? "Removed" : "Not removed",
+                        System.lineSeparator(),
+                        dump());
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[c=%d/%d,a=%d,i=%d]",
+                getClass().getSimpleName(),
+                hashCode(),
+                getConnectionCount(),
+                getMaxConnectionCount(),
+                getActiveConnectionCount(),
+                getIdleConnectionCount());
+    }
+
+    private enum State
+    {
+        IDLE, ACTIVE, RETIRED, REMOVED
+    }
+
+    private static class Holder
+    {
+        private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+        private final AtomicInteger usage = new AtomicInteger();
+        private final long created = System.nanoTime();
+        private final Connection connection;
+
+        private Holder(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[%s,usage=%d]", connection, state.get(), usage.get());
+        }
+    }
+}
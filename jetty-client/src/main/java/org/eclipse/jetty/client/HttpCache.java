@@ -0,0 +1,632 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.QuotedStringTokenizer;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>The store of {@link CacheProtocolHandler}.</p>
+ * <p>Entries are indexed by URI and, for responses that carry a {@code Vary} header,
+ * by the values of the request headers they vary on. The content of the entries is
+ * kept in memory up to {@link #getMaxMemorySize() a maximum size}; beyond that, the
+ * least recently used entries are either moved to files in
+ * {@link #getDirectory() a directory}, when one is configured, or evicted.
+ * Entries in files are evicted, least recently used first, beyond
+ * {@link #getMaxDiskSize() a maximum disk size}.</p>
+ */
+class HttpCache
+{
+    private static final Logger LOG = Log.getLogger(HttpCache.class);
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+    private final Map<String, List<Entry>> entries = new HashMap<>();
+    private final LinkedHashMap<Entry, Entry> lru = new LinkedHashMap<>(16, 0.75F, true);
+    private final LongAdder evictions = new LongAdder();
+    private long memorySize;
+    private long diskSize;
+    private volatile long maxMemorySize = 32 * 1024 * 1024;
+    private volatile long maxDiskSize = 256 * 1024 * 1024;
+    private volatile Path directory;
+
+    long getMaxMemorySize()
+    {
+        return maxMemorySize;
+    }
+
+    void setMaxMemorySize(long maxMemorySize)
+    {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    long getMaxDiskSize()
+    {
+        return maxDiskSize;
+    }
+
+    void setMaxDiskSize(long maxDiskSize)
+    {
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    Path getDirectory()
+    {
+        return directory;
+    }
+
+    void setDirectory(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    synchronized int getSize()
+    {
+        return lru.size();
+    }
+
+    synchronized long getMemorySize()
+    {
+        return memorySize;
+    }
+
+    synchronized long getDiskSize()
+    {
+        return diskSize;
+    }
+
+    long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    void resetStatistics()
+    {
+        evictions.reset();
+    }
+
+    /**
+     * @param key the URI key
+     * @param requestHeaders the request headers, matched against the {@code Vary} header of the entries
+     * @return the entry for the given key whose variant matches the given request headers, or null
+     */
+    Entry get(String key, HttpFields requestHeaders)
+    {
+        synchronized (this)
+        {
+            List<Entry> variants = entries.get(key);
+            if (variants != null)
+            {
+                for (Entry entry : variants)
+                {
+                    if (entry.matches(requestHeaders))
+                    {
+                        // Update the access order.
+                        lru.get(entry);
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param entry the entry
+     * @return the content of the given entry, possibly read from its file,
+     * or null if the content is not available anymore
+     */
+    byte[] getContent(Entry entry)
+    {
+        byte[] content = entry.content;
+        if (content != null)
+            return content;
+        Path file = entry.file;
+        if (file == null)
+            return null;
+        try
+        {
+            return Files.readAllBytes(file);
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not read " + file, x);
+            remove(entry);
+            return null;
+        }
+    }
+
+    void put(Entry entry)
+    {
+        List<Entry> spills = new ArrayList<>();
+        List<Path> deletes = new ArrayList<>();
+        synchronized (this)
+        {
+            List<Entry> variants = entries.computeIfAbsent(entry.key, k -> new ArrayList<>(1));
+            for (Iterator<Entry> iterator = variants.iterator(); iterator.hasNext();)
+            {
+                Entry variant = iterator.next();
+                if (variant.vary.equals(entry.vary))
+                {
+                    iterator.remove();
+                    release(variant, deletes);
+                }
+            }
+            variants.add(entry);
+            lru.put(entry, entry);
+            memorySize += entry.size;
+            trim(spills, deletes);
+        }
+
+        for (Entry spill : spills)
+            spill(spill, deletes);
+        delete(deletes);
+    }
+
+    void remove(String key)
+    {
+        List<Path> deletes = new ArrayList<>();
+        synchronized (this)
+        {
+            List<Entry> variants = entries.remove(key);
+            if (variants == null)
+                return;
+            for (Entry variant : variants)
+                release(variant, deletes);
+        }
+        delete(deletes);
+    }
+
+    void clear()
+    {
+        List<Path> deletes = new ArrayList<>();
+        synchronized (this)
+        {
+            for (Entry entry : new ArrayList<>(lru.keySet()))
+                release(entry, deletes);
+            entries.clear();
+        }
+        delete(deletes);
+    }
+
+    private void remove(Entry entry)
+    {
+        List<Path> deletes = new ArrayList<>();
+        synchronized (this)
+        {
+            List<Entry> variants = entries.get(entry.key);
+            if (variants == null || !variants.remove(entry))
+                return;
+            if (variants.isEmpty())
+                entries.remove(entry.key);
+            release(entry, deletes);
+        }
+        delete(deletes);
+    }
+
+    private void release(Entry entry, List<Path> deletes)
+    {
+        assert Thread.holdsLock(this);
+        lru.remove(entry);
+        if (entry.file != null)
+        {
+            diskSize -= entry.size;
+            deletes.add(entry.file);
+        }
+        else if (!entry.spilling)
+        {
+            memorySize -= entry.size;
+        }
+    }
+
+    private void trim(List<Entry> spills, List<Path> deletes)
+    {
+        assert Thread.holdsLock(this);
+        Path directory = this.directory;
+        long maxMemorySize = this.maxMemorySize;
+        long maxDiskSize = this.maxDiskSize;
+        Iterator<Entry> iterator = lru.keySet().iterator();
+        while (memorySize > maxMemorySize && iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+            if (entry.file != null || entry.spilling)
+                continue;
+            if (directory != null && entry.size <= maxDiskSize)
+            {
+                // The content is written to the file outside
+                // the lock, and remains readable meanwhile.
+                entry.spilling = true;
+                memorySize -= entry.size;
+                spills.add(entry);
+            }
+            else
+            {
+                iterator.remove();
+                evict(entry, deletes);
+            }
+        }
+
+        iterator = lru.keySet().iterator();
+        while (diskSize > maxDiskSize && iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+            if (entry.file == null)
+                continue;
+            iterator.remove();
+            evict(entry, deletes);
+        }
+    }
+
+    private void evict(Entry entry, List<Path> deletes)
+    {
+        List<Entry> variants = entries.get(entry.key);
+        if (variants != null)
+        {
+            variants.remove(entry);
+            if (variants.isEmpty())
+                entries.remove(entry.key);
+        }
+        if (entry.file != null)
+        {
+            diskSize -= entry.size;
+            deletes.add(entry.file);
+        }
+        else if (!entry.spilling)
+        {
+            memorySize -= entry.size;
+        }
+        evictions.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Evicted {}", entry);
+    }
+
+    private void spill(Entry entry, List<Path> deletes)
+    {
+        Path file = null;
+        try
+        {
+            file = Files.createTempFile(directory, "jetty-client-cache-", ".tmp");
+            Files.write(file, entry.content);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not write " + entry, x);
+            if (file != null)
+                deletes.add(file);
+            file = null;
+        }
+
+        List<Entry> spills = new ArrayList<>();
+        synchronized (this)
+        {
+            if (!lru.containsKey(entry))
+            {
+                // Removed while it was being written.
+                if (file != null)
+                    deletes.add(file);
+                return;
+            }
+
+            if (file == null)
+            {
+                lru.remove(entry);
+                evict(entry, deletes);
+                return;
+            }
+
+            entry.spilling = false;
+            entry.file = file;
+            entry.content = null;
+            diskSize += entry.size;
+            trim(spills, deletes);
+        }
+
+        for (Entry spill : spills)
+            spill(spill, deletes);
+    }
+
+    private void delete(List<Path> files)
+    {
+        for (Path file : files)
+        {
+            try
+            {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException x)
+            {
+                LOG.ignore(x);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{entries=%d,memory=%d,disk=%d}", getClass().getSimpleName(), hashCode(), getSize(), getMemorySize(), getDiskSize());
+    }
+
+    /**
+     * <p>The parsed directives of a {@code Cache-Control} header.</p>
+     */
+    static class CacheControl
+    {
+        boolean noStore;
+        boolean noCache;
+        boolean isPrivate;
+        boolean isPublic;
+        boolean mustRevalidate;
+        boolean proxyRevalidate;
+        boolean onlyIfCached;
+        long maxAge = -1;
+        long sMaxAge = -1;
+        long maxStale = -1;
+        long minFresh = -1;
+
+        static CacheControl from(HttpFields fields)
+        {
+            CacheControl result = new CacheControl();
+            List<String> directives = fields.getCSV(HttpHeader.CACHE_CONTROL, false);
+            if (directives.isEmpty())
+            {
+                // RFC 7234, 5.4: Pragma: no-cache is only honored without Cache-Control.
+                for (String pragma : fields.getCSV(HttpHeader.PRAGMA, false))
+                {
+                    if ("no-cache".equalsIgnoreCase(pragma))
+                        result.noCache = true;
+                }
+                return result;
+            }
+
+            for (String directive : directives)
+            {
+                String name = directive;
+                String value = null;
+                int equals = directive.indexOf('=');
+                if (equals >= 0)
+                {
+                    name = directive.substring(0, equals).trim();
+                    value = QuotedStringTokenizer.unquote(directive.substring(equals + 1).trim());
+                }
+                switch (StringUtil.asciiToLowerCase(name))
+                {
+                    case "no-store":
+                        result.noStore = true;
+                        break;
+                    case "no-cache":
+                        // The field-specific form is treated conservatively.
+                        result.noCache = true;
+                        break;
+                    case "private":
+                        result.isPrivate = true;
+                        break;
+                    case "public":
+                        result.isPublic = true;
+                        break;
+                    case "must-revalidate":
+                        result.mustRevalidate = true;
+                        break;
+                    case "proxy-revalidate":
+                        result.proxyRevalidate = true;
+                        break;
+                    case "only-if-cached":
+                        result.onlyIfCached = true;
+                        break;
+                    case "max-age":
+                        result.maxAge = seconds(value, 0);
+                        break;
+                    case "s-maxage":
+                        result.sMaxAge = seconds(value, 0);
+                        break;
+                    case "max-stale":
+                        result.maxStale = seconds(value, Long.MAX_VALUE);
+                        break;
+                    case "min-fresh":
+                        result.minFresh = seconds(value, 0);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return result;
+        }
+
+        private static long seconds(String value, long defaultValue)
+        {
+            if (value == null)
+                return defaultValue;
+            try
+            {
+                long seconds = Long.parseLong(value);
+                // Values too large to be represented in milliseconds are capped.
+                return seconds < 0 ? 0 : TimeUnit.SECONDS.toMillis(Math.min(seconds, Integer.MAX_VALUE));
+            }
+            catch (NumberFormatException x)
+            {
+                // RFC 7234, 4.2.1: invalid values are treated as stale.
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * <p>A stored response.</p>
+     * <p>Durations and times are in milliseconds; times are wall clock times,
+     * since they are computed together with the {@code Date} header.</p>
+     */
+    static class Entry
+    {
+        final String key;
+        final Map<String, String> vary;
+        final int status;
+        final String reason;
+        final HttpVersion version;
+        final HttpFields headers;
+        final CacheControl control;
+        final String etag;
+        final String lastModified;
+        final int size;
+        final long responseTime;
+        final long lifetime;
+        private final long initialAge;
+        private volatile byte[] content;
+        private volatile Path file;
+        private boolean spilling;
+
+        Entry(String key, Map<String, String> vary, int status, String reason, HttpVersion version, HttpFields headers, byte[] content, long requestTime, long responseTime, boolean shared)
+        {
+            this.key = key;
+            this.vary = vary;
+            this.status = status;
+            this.reason = reason;
+            this.version = version;
+            this.headers = headers;
+            this.content = content;
+            this.size = content.length;
+            this.responseTime = responseTime;
+            this.control = CacheControl.from(headers);
+            this.etag = headers.get(HttpHeader.ETAG);
+            this.lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+
+            // RFC 7234, 4.2.3.
+            long date = date(headers.get(HttpHeader.DATE), responseTime);
+            long ageValue = CacheControl.seconds(headers.get(HttpHeader.AGE), 0);
+            long apparentAge = Math.max(0, responseTime - date);
+            long correctedAgeValue = ageValue + (responseTime - requestTime);
+            this.initialAge = Math.max(apparentAge, correctedAgeValue);
+
+            // RFC 7234, 4.2.1.
+            if (shared && control.sMaxAge >= 0)
+            {
+                this.lifetime = control.sMaxAge;
+            }
+            else if (control.maxAge >= 0)
+            {
+                this.lifetime = control.maxAge;
+            }
+            else if (headers.containsKey(HttpHeader.EXPIRES.asString()))
+            {
+                // Invalid dates, like "0", mean already expired.
+                this.lifetime = Math.max(0, date(headers.get(HttpHeader.EXPIRES), date) - date);
+            }
+            else if (lastModified != null)
+            {
+                // RFC 7234, 4.2.2: heuristic freshness.
+                long modified = date(lastModified, date);
+                this.lifetime = Math.min(MAX_HEURISTIC_LIFETIME, Math.max(0, (date - modified) / 10));
+            }
+            else
+            {
+                this.lifetime = 0;
+            }
+        }
+
+        /**
+         * @param now the current time
+         * @return the current age of this entry
+         */
+        long getAge(long now)
+        {
+            return initialAge + Math.max(0, now - responseTime);
+        }
+
+        boolean hasValidators()
+        {
+            return etag != null || lastModified != null;
+        }
+
+        boolean matches(HttpFields requestHeaders)
+        {
+            for (Map.Entry<String, String> field : vary.entrySet())
+            {
+                if (!Objects.equals(field.getValue(), varyValue(requestHeaders, field.getKey())))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * @param responseHeaders the response headers, possibly containing a {@code Vary} header
+         * @param requestHeaders the request headers
+         * @return the request header values selected by the {@code Vary} header,
+         * or null if the response varies on {@code *}
+         */
+        static Map<String, String> vary(HttpFields responseHeaders, HttpFields requestHeaders)
+        {
+            List<String> names = responseHeaders.getCSV(HttpHeader.VARY, false);
+            if (names.isEmpty())
+                return Collections.emptyMap();
+            Map<String, String> result = new HashMap<>(names.size());
+            for (String name : names)
+            {
+                if ("*".equals(name))
+                    return null;
+                name = StringUtil.asciiToLowerCase(name);
+                result.put(name, varyValue(requestHeaders, name));
+            }
+            return result;
+        }
+
+        private static String varyValue(HttpFields requestHeaders, String name)
+        {
+            List<String> values = requestHeaders.getValuesList(name);
+            if (values.isEmpty())
+                return null;
+            if (values.size() == 1)
+                return values.get(0);
+            return String.join(", ", values);
+        }
+
+        private static long date(String value, long defaultValue)
+        {
+            if (value == null)
+                return defaultValue;
+            long date = DateParser.parseDate(value);
+            return date == -1 ? 0 : date;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,%d,vary=%s,size=%d,%s]", getClass().getSimpleName(), hashCode(), key, status, vary, size, file == null ? "memory" : file);
+        }
+    }
+}
@@ -136,6 +136,7 @@ public abstract class HttpChannel
 
     public void exchangeTerminated(HttpExchange exchange, Result result)
     {
+        getHttpDestination().exchangeTerminated(exchange, result);
         disassociate(exchange);
     }
 
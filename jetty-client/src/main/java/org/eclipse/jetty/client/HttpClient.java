@@ -18,9 +18,11 @@
 
 package org.eclipse.jetty.client;
 
+import java.io.Closeable;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.CookieStore;
+import java.net.Inet6Address;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
@@ -43,6 +45,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jetty.client.api.AuthenticationStore;
 import org.eclipse.jetty.client.api.Connection;
@@ -60,6 +63,7 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.util.Fields;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.Jetty;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.SocketAddressResolver;
@@ -138,6 +142,10 @@ public class HttpClient extends ContainerLifeCycle
     private volatile SocketAddress bindAddress;
     private volatile long connectTimeout = 15000;
     private volatile long addressResolutionTimeout = 15000;
+    private volatile long connectionAttemptDelay;
+    private volatile boolean adaptiveConcurrency;
+    private volatile boolean destinationMetrics;
+    private volatile long maxQueueLatency;
     private volatile long idleTimeout;
     private volatile boolean tcpNoDelay = true;
     private volatile boolean strictEventOrdering = false;
@@ -551,6 +559,14 @@ public class HttpClient extends ContainerLifeCycle
     }
 
     protected void send(final HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        ProtocolHandler cache = handlers.get(CacheProtocolHandler.NAME);
+        if (cache instanceof CacheProtocolHandler && ((CacheProtocolHandler)cache).intercept(request, listeners))
+            return;
+        sendToDestination(request, listeners);
+    }
+
+    void sendToDestination(HttpRequest request, List<Response.ResponseListener> listeners)
     {
         HttpDestination destination = destinationFor(request.getScheme(), request.getHost(), request.getPort());
         destination.send(request, listeners);
@@ -567,7 +583,11 @@ public class HttpClient extends ContainerLifeCycle
                 Map<String, Object> context = new HashMap<>();
                 context.put(ClientConnectionFactory.CONNECTOR_CONTEXT_KEY, HttpClient.this);
                 context.put(HttpClientTransport.HTTP_DESTINATION_CONTEXT_KEY, destination);
-                connect(socketAddresses, 0, context);
+                long delay = getConnectionAttemptDelay();
+                if (delay > 0 && socketAddresses.size() > 1)
+                    new StaggeredConnect(socketAddresses, context, delay, promise).connect();
+                else
+                    connect(socketAddresses, 0, context);
             }
 
             @Override
@@ -595,6 +615,144 @@ public class HttpClient extends ContainerLifeCycle
         });
     }
 
+    /**
+     * <p>Connects to multiple resolved addresses in parallel, starting a new attempt every
+     * {@link #getConnectionAttemptDelay() connection attempt delay} or as soon as the previous attempt fails,
+     * alternating IPv6 and IPv4 addresses (as in RFC 8305, "Happy Eyeballs").</p>
+     * <p>The first connection established wins; connections established later are closed,
+     * and the attempts still in progress are cancelled by closing their
+     * {@link HttpClientTransport#CONNECT_CHANNEL_CONTEXT_KEY channel}, if the transport provides it.</p>
+     */
+    private class StaggeredConnect
+    {
+        private final AtomicBoolean complete = new AtomicBoolean();
+        private final List<Map<String, Object>> attempts = new ArrayList<>();
+        private final List<InetSocketAddress> socketAddresses;
+        private final Map<String, Object> context;
+        private final long delay;
+        private final Promise<Connection> promise;
+        private int started;
+        private int failed;
+        private Scheduler.Task task;
+
+        private StaggeredConnect(List<InetSocketAddress> socketAddresses, Map<String, Object> context, long delay, Promise<Connection> promise)
+        {
+            this.socketAddresses = interleave(socketAddresses);
+            this.context = context;
+            this.delay = delay;
+            this.promise = promise;
+        }
+
+        private List<InetSocketAddress> interleave(List<InetSocketAddress> socketAddresses)
+        {
+            List<InetSocketAddress> first = new ArrayList<>();
+            List<InetSocketAddress> second = new ArrayList<>();
+            boolean firstIsIPv6 = socketAddresses.get(0).getAddress() instanceof Inet6Address;
+            for (InetSocketAddress address : socketAddresses)
+            {
+                if ((address.getAddress() instanceof Inet6Address) == firstIsIPv6)
+                    first.add(address);
+                else
+                    second.add(address);
+            }
+            List<InetSocketAddress> result = new ArrayList<>(socketAddresses.size());
+            for (int i = 0; i < Math.max(first.size(), second.size()); ++i)
+            {
+                if (i < first.size())
+                    result.add(first.get(i));
+                if (i < second.size())
+                    result.add(second.get(i));
+            }
+            return result;
+        }
+
+        private void connect()
+        {
+            InetSocketAddress address;
+            Map<String, Object> attempt = new HashMap<>(context);
+            synchronized (this)
+            {
+                if (complete.get() || started == socketAddresses.size())
+                    return;
+                address = socketAddresses.get(started++);
+                attempts.add(attempt);
+                if (task != null)
+                    task.cancel();
+                task = started < socketAddresses.size() ? scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS) : null;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Connection attempt to {}", address);
+
+            attempt.put(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY, new Promise<Connection>()
+            {
+                @Override
+                public void succeeded(Connection connection)
+                {
+                    if (complete.compareAndSet(false, true))
+                    {
+                        cancel(attempt);
+                        promise.succeeded(connection);
+                    }
+                    else
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Closing connection to {} that lost the race", address);
+                        connection.close();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    boolean all;
+                    synchronized (StaggeredConnect.this)
+                    {
+                        all = ++failed == socketAddresses.size();
+                    }
+                    if (all)
+                    {
+                        if (complete.compareAndSet(false, true))
+                            promise.failed(x);
+                    }
+                    else
+                    {
+                        // Do not wait for the delay to try the next address
+                        connect();
+                    }
+                }
+            });
+            transport.connect(address, attempt);
+        }
+
+        private void cancel(Map<String, Object> winner)
+        {
+            List<Map<String, Object>> losers;
+            synchronized (this)
+            {
+                if (task != null)
+                    task.cancel();
+                task = null;
+                losers = new ArrayList<>(attempts);
+                attempts.clear();
+            }
+
+            for (Map<String, Object> attempt : losers)
+            {
+                if (attempt == winner)
+                    continue;
+                // The attempts that already failed or connected are closed again, which is a no-op.
+                Object channel = attempt.get(HttpClientTransport.CONNECT_CHANNEL_CONTEXT_KEY);
+                if (channel instanceof Closeable)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Cancelling connection attempt {}", channel);
+                    IO.close((Closeable)channel);
+                }
+            }
+        }
+    }
+
     private HttpConversation newConversation()
     {
         return new HttpConversation();
@@ -667,6 +825,31 @@ public class HttpClient extends ContainerLifeCycle
         this.addressResolutionTimeout = addressResolutionTimeout;
     }
 
+    /**
+     * @return the delay, in milliseconds, before starting a connection attempt to the next resolved address
+     * @see #setConnectionAttemptDelay(long)
+     */
+    @ManagedAttribute("The delay, in milliseconds, between parallel connection attempts to resolved addresses")
+    public long getConnectionAttemptDelay()
+    {
+        return connectionAttemptDelay;
+    }
+
+    /**
+     * <p>Sets the delay before starting a connection attempt to the next address resolved for a destination,
+     * while the previous attempts are still in progress.</p>
+     * <p>When the delay is positive and a host resolves to multiple addresses, connection attempts are
+     * staggered over the addresses (alternating IPv6 and IPv4) and the first connection established is used.
+     * A value of zero (the default) tries the addresses strictly one after another.
+     * RFC 8305 recommends a delay of 250 ms.</p>
+     *
+     * @param connectionAttemptDelay the delay, in milliseconds, before starting a connection attempt to the next resolved address
+     */
+    public void setConnectionAttemptDelay(long connectionAttemptDelay)
+    {
+        this.connectionAttemptDelay = connectionAttemptDelay;
+    }
+
     /**
      * @return the max time, in milliseconds, a connection can be idle (that is, without traffic of bytes in either direction)
      */
@@ -840,6 +1023,83 @@ public class HttpClient extends ContainerLifeCycle
         this.maxRequestsQueuedPerDestination = maxRequestsQueuedPerDestination;
     }
 
+    /**
+     * @return whether the number of requests in flight to each destination is adapted to the server latency
+     * @see #setAdaptiveConcurrency(boolean)
+     */
+    @ManagedAttribute("Whether the requests in flight per destination are adaptively limited")
+    public boolean isAdaptiveConcurrency()
+    {
+        return adaptiveConcurrency;
+    }
+
+    /**
+     * Sets whether the number of requests in flight to each destination is limited adaptively.
+     * <p>
+     * When enabled, each destination measures the round-trip time of its exchanges and
+     * lowers the number of requests it sends concurrently when the server slows down,
+     * keeping the other requests queued, and raises it again when the server recovers.
+     * The requests in flight remain capped by {@link #getMaxConnectionsPerDestination()} for HTTP/1.1.
+     * Only destinations created after this method is called are affected.
+     *
+     * @param adaptiveConcurrency whether the requests in flight per destination are adaptively limited
+     * @see AdaptiveConcurrencyLimiter
+     * @see #setMaxQueueLatency(long)
+     */
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency)
+    {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    /**
+     * @return the max estimated time, in milliseconds, a request may wait in a destination queue
+     * @see #setMaxQueueLatency(long)
+     */
+    @ManagedAttribute("The max estimated time, in milliseconds, a request may wait in a destination queue")
+    public long getMaxQueueLatency()
+    {
+        return maxQueueLatency;
+    }
+
+    /**
+     * Sets the latency budget of the destination queues, when {@link #isAdaptiveConcurrency()
+     * adaptive concurrency} is enabled.
+     * <p>
+     * A request that would wait in the destination queue longer than this budget, as estimated
+     * from the observed round-trip times and the current limit, is failed immediately with a
+     * {@link java.util.concurrent.RejectedExecutionException} instead of being queued.
+     *
+     * @param maxQueueLatency the max estimated time, in milliseconds, a request may wait in a
+     * destination queue, or zero to queue requests up to {@link #getMaxRequestsQueuedPerDestination()}
+     */
+    public void setMaxQueueLatency(long maxQueueLatency)
+    {
+        this.maxQueueLatency = maxQueueLatency;
+    }
+
+    /**
+     * @return whether the time spent in each phase of the exchanges is recorded per destination
+     * @see #setDestinationMetrics(boolean)
+     */
+    @ManagedAttribute("Whether the time spent in each phase of the exchanges is recorded per destination")
+    public boolean isDestinationMetrics()
+    {
+        return destinationMetrics;
+    }
+
+    /**
+     * Sets whether each destination records the time its exchanges spend in each phase,
+     * from the wait in the destination queue to the transfer of the response content.
+     * Only destinations created after this method is called are affected.
+     *
+     * @param destinationMetrics whether the time spent in each phase of the exchanges is recorded per destination
+     * @see HttpDestinationMetrics
+     */
+    public void setDestinationMetrics(boolean destinationMetrics)
+    {
+        this.destinationMetrics = destinationMetrics;
+    }
+
     /**
      * @return the size of the buffer used to write requests
      */
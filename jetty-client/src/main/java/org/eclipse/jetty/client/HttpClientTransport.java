@@ -38,6 +38,11 @@ public interface HttpClientTransport extends ClientConnectionFactory
 {
     public static final String HTTP_DESTINATION_CONTEXT_KEY = "http.destination";
     public static final String HTTP_CONNECTION_PROMISE_CONTEXT_KEY = "http.connection.promise";
+    /**
+     * The key of the context entry, put by transports that support it, of the
+     * {@link java.io.Closeable} channel being connected; closing it cancels the connection attempt.
+     */
+    public static final String CONNECT_CHANNEL_CONTEXT_KEY = "http.connect.channel";
 
     /**
      * Sets the {@link HttpClient} instance on this transport.
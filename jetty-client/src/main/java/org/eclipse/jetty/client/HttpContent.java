@@ -74,6 +74,7 @@ public class HttpContent implements Callback, Closeable
     private ByteBuffer buffer;
     private ByteBuffer content;
     private boolean last;
+    private boolean transferred;
 
     public HttpContent(ContentProvider provider)
     {
@@ -126,6 +127,8 @@ public class HttpContent implements Callback, Closeable
      */
     public boolean advance()
     {
+        if (transferred)
+            return advance(Collections.<ByteBuffer>emptyIterator());
         if (iterator instanceof Synchronizable)
         {
             synchronized (((Synchronizable)iterator).getLock())
@@ -174,6 +177,18 @@ public class HttpContent implements Callback, Closeable
         }
     }
 
+    /**
+     * <p>Marks the content as already written by means other than
+     * iterating over the {@link ContentProvider}, for example via a
+     * zero-copy transfer of a {@link ContentProvider.Transferable}.</p>
+     * <p>After this call, {@link #advance()} behaves as if the content
+     * had been fully iterated.</p>
+     */
+    public void transferred()
+    {
+        transferred = true;
+    }
+
     /**
      * @return whether the cursor has been advanced past the {@link #isLast() last} position.
      */
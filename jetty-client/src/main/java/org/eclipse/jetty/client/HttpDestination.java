@@ -24,17 +24,22 @@ import java.nio.channels.AsynchronousCloseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Destination;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.ssl.SslClientConnectionFactory;
+import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.HostPort;
@@ -61,6 +66,8 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
     private final ClientConnectionFactory connectionFactory;
     private final HttpField hostField;
     private ConnectionPool connectionPool;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private HttpDestinationMetrics metrics;
 
     public HttpDestination(HttpClient client, Origin origin)
     {
@@ -99,6 +106,10 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
     {
         this.connectionPool = newConnectionPool(client);
         addBean(connectionPool);
+        this.concurrencyLimiter = newConcurrencyLimiter(client);
+        addBean(concurrencyLimiter);
+        this.metrics = newMetrics(client);
+        addBean(metrics);
         super.doStart();
         Sweeper sweeper = client.getBean(Sweeper.class);
         if (sweeper != null && connectionPool instanceof Sweeper.Sweepable)
@@ -113,10 +124,37 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             sweeper.remove((Sweeper.Sweepable)connectionPool);
         super.doStop();
         removeBean(connectionPool);
+        removeBean(concurrencyLimiter);
+        removeBean(metrics);
     }
 
     protected abstract ConnectionPool newConnectionPool(HttpClient client);
 
+    /**
+     * @param client the {@link HttpClient}
+     * @return the limiter of the requests in flight to this destination,
+     * or null if {@link HttpClient#isAdaptiveConcurrency() not enabled}
+     */
+    protected AdaptiveConcurrencyLimiter newConcurrencyLimiter(HttpClient client)
+    {
+        if (!client.isAdaptiveConcurrency())
+            return null;
+        int maxLimit = Math.max(1, Math.max(client.getMaxConnectionsPerDestination(), client.getMaxRequestsQueuedPerDestination()));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(Math.min(20, maxLimit), 1, maxLimit);
+        limiter.setMaxQueueLatency(client.getMaxQueueLatency());
+        return limiter;
+    }
+
+    /**
+     * @param client the {@link HttpClient}
+     * @return the recorder of the time spent by the exchanges in each phase,
+     * or null if {@link HttpClient#isDestinationMetrics() not enabled}
+     */
+    protected HttpDestinationMetrics newMetrics(HttpClient client)
+    {
+        return client.isDestinationMetrics() ? new HttpDestinationMetrics() : null;
+    }
+
     protected Queue<HttpExchange> newExchangeQueue(HttpClient client)
     {
         return new BlockingArrayQueue<>(client.getMaxRequestsQueuedPerDestination());
@@ -124,7 +162,17 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
 
     protected ClientConnectionFactory newSslClientConnectionFactory(ClientConnectionFactory connectionFactory)
     {
-        return new SslClientConnectionFactory(client.getSslContextFactory(), client.getByteBufferPool(), client.getExecutor(), connectionFactory);
+        return new SslClientConnectionFactory(client.getSslContextFactory(), client.getByteBufferPool(), client.getExecutor(), connectionFactory)
+        {
+            @Override
+            public org.eclipse.jetty.io.Connection customize(org.eclipse.jetty.io.Connection connection, Map<String, Object> context)
+            {
+                HttpDestinationMetrics metrics = HttpDestination.this.metrics;
+                if (metrics != null && connection instanceof SslConnection)
+                    ((SslConnection)connection).addHandshakeListener(metrics.newSslHandshakeListener());
+                return super.customize(connection, context);
+            }
+        };
     }
 
     public boolean isSecure()
@@ -212,6 +260,18 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         return connectionPool;
     }
 
+    @ManagedAttribute(value = "The concurrency limiter", readonly = true)
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return concurrencyLimiter;
+    }
+
+    @ManagedAttribute(value = "The exchange timings", readonly = true)
+    public HttpDestinationMetrics getMetrics()
+    {
+        return metrics;
+    }
+
     @Override
     public void succeeded()
     {
@@ -235,10 +295,20 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             throw new IllegalArgumentException("Invalid request port " + port + " for destination " + this);
 
         HttpExchange exchange = new HttpExchange(this, request, listeners);
+        HttpDestinationMetrics metrics = this.metrics;
+        if (metrics != null)
+            metrics.exchangeQueued(exchange);
 
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
         if (client.isRunning())
         {
-            if (enqueue(exchanges, exchange))
+            if (limiter != null && limiter.isOverBudget(exchanges.size()))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Max queue latency {} ms exceeded by {} for {}", limiter.getMaxQueueLatency(), request, this);
+                request.abort(new RejectedExecutionException("Max queue latency " + limiter.getMaxQueueLatency() + " ms exceeded for " + this));
+            }
+            else if (enqueue(exchanges, exchange))
             {
                 if (!client.isRunning() && exchanges.remove(exchange))
                 {
@@ -270,6 +340,42 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         return queue.offer(exchange);
     }
 
+    /**
+     * <p>Queues again, with a new exchange, the request of the given exchange
+     * that has not been answered because its connection has been closed.</p>
+     * <p>Connections only resend requests that are safe to send again,
+     * for example because they have not been written yet.</p>
+     *
+     * @param exchange the exchange whose request is to be sent again
+     * @return whether the request has been queued again; if false the exchange must be failed
+     */
+    public boolean resend(HttpExchange exchange)
+    {
+        HttpRequest request = exchange.getRequest();
+        if (request.getAbortCause() != null || !client.isRunning())
+            return false;
+        if (!exchange.supersede())
+            return false;
+
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter != null && exchange.releasePermit() != null)
+            limiter.cancel();
+
+        request.getConversation().getExchanges().remove(exchange);
+        HttpExchange retry = new HttpExchange(this, request, exchange.getResponseListeners());
+        HttpDestinationMetrics metrics = this.metrics;
+        if (metrics != null)
+            metrics.exchangeQueued(retry);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resending {} as {} for {}", exchange, retry, this);
+        if (enqueue(exchanges, retry))
+            send();
+        else
+            request.abort(new RejectedExecutionException("Max requests per destination " + client.getMaxRequestsQueuedPerDestination() + " exceeded for " + this));
+        return true;
+    }
+
     public void send()
     {
         if (getHttpExchanges().isEmpty())
@@ -293,7 +399,20 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
     public boolean process(final Connection connection)
     {
         HttpClient client = getHttpClient();
-        final HttpExchange exchange = getHttpExchanges().poll();
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        final HttpExchange exchange;
+        if (limiter != null && !limiter.tryAcquire())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Concurrency limit reached {}", limiter);
+            exchange = null;
+        }
+        else
+        {
+            exchange = getHttpExchanges().poll();
+            if (exchange == null && limiter != null)
+                limiter.cancel();
+        }
         if (LOG.isDebugEnabled())
             LOG.debug("Processing exchange {} on {} of {}", exchange, connection, this);
         if (exchange == null)
@@ -316,6 +435,8 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("Aborted before processing {}: {}", exchange, cause);
+                if (limiter != null)
+                    limiter.cancel();
                 // Won't use this connection, release it back.
                 if (!connectionPool.release(connection))
                     connection.close();
@@ -326,9 +447,17 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             }
             else
             {
+                if (limiter != null)
+                    exchange.acquirePermit(System.nanoTime());
+                HttpDestinationMetrics metrics = this.metrics;
+                if (metrics != null)
+                    metrics.exchangeSent(exchange);
                 SendFailure result = send(connection, exchange);
                 if (result != null)
                 {
+                    // The exchange has not been sent, give back its permit.
+                    if (limiter != null && exchange.releasePermit() != null)
+                        limiter.cancel();
                     if (LOG.isDebugEnabled())
                         LOG.debug("Send failed {} for {}", result, exchange);
                     if (result.retry)
@@ -346,6 +475,43 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
 
     protected abstract SendFailure send(Connection connection, HttpExchange exchange);
 
+    /**
+     * <p>Invoked when an exchange sent by this destination terminates,
+     * to adapt the concurrency limit to its outcome and to record its timings.</p>
+     *
+     * @param exchange the exchange that terminated
+     * @param result the result of the exchange
+     */
+    protected void exchangeTerminated(HttpExchange exchange, Result result)
+    {
+        HttpDestinationMetrics metrics = this.metrics;
+        if (metrics != null)
+            metrics.exchangeTerminated(exchange, result);
+
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null)
+            return;
+        Long sent = exchange.releasePermit();
+        if (sent == null)
+            return;
+        long roundTrip = System.nanoTime() - sent;
+        if (result.isFailed())
+        {
+            // Failures caused by the application do not tell anything about the server.
+            Throwable failure = result.getFailure();
+            if (failure instanceof TimeoutException || failure instanceof IOException)
+                limiter.release(roundTrip, false);
+            else
+                limiter.cancel();
+        }
+        else
+        {
+            int status = result.getResponse().getStatus();
+            boolean overloaded = status == HttpStatus.SERVICE_UNAVAILABLE_503 || status == HttpStatus.TOO_MANY_REQUESTS_429;
+            limiter.release(roundTrip, !overloaded);
+        }
+    }
+
     public void newConnection(Promise<Connection> promise)
     {
         createConnection(promise);
@@ -353,6 +519,9 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
 
     protected void createConnection(Promise<Connection> promise)
     {
+        HttpDestinationMetrics metrics = this.metrics;
+        if (metrics != null)
+            promise = metrics.connecting(promise);
         client.newConnection(this, promise);
     }
 
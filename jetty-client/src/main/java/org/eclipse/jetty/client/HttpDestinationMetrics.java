@@ -0,0 +1,286 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+
+/**
+ * <p>Histograms of the time spent by the exchanges of a {@link HttpDestination}
+ * in each phase, in microseconds:</p>
+ * <ul>
+ * <li>queue: from when the request is queued in the destination until it is sent on a connection</li>
+ * <li>connect: from when a new connection is requested, including the address resolution, until it is open</li>
+ * <li>TLS handshake: from when a TLS connection is open until the handshake completes</li>
+ * <li>response headers: from when the request is sent until the response headers are received</li>
+ * <li>response content: from when the response headers are received until the exchange completes</li>
+ * <li>exchange: from when the request is queued until the exchange completes</li>
+ * </ul>
+ * <p>The phases of a single exchange are recorded in fields of the exchange,
+ * and the histograms have a fixed size, so recording does not allocate.</p>
+ *
+ * @see HttpClient#setDestinationMetrics(boolean)
+ */
+@ManagedObject("Timings of the exchanges of a destination")
+public class HttpDestinationMetrics
+{
+    private final HistogramStatistic queueTime = new HistogramStatistic();
+    private final HistogramStatistic connectTime = new HistogramStatistic();
+    private final HistogramStatistic tlsHandshakeTime = new HistogramStatistic();
+    private final HistogramStatistic responseHeadersTime = new HistogramStatistic();
+    private final HistogramStatistic responseContentTime = new HistogramStatistic();
+    private final HistogramStatistic exchangeTime = new HistogramStatistic();
+
+    public HistogramStatistic getQueueTime()
+    {
+        return queueTime;
+    }
+
+    public HistogramStatistic getConnectTime()
+    {
+        return connectTime;
+    }
+
+    public HistogramStatistic getTLSHandshakeTime()
+    {
+        return tlsHandshakeTime;
+    }
+
+    public HistogramStatistic getResponseHeadersTime()
+    {
+        return responseHeadersTime;
+    }
+
+    public HistogramStatistic getResponseContentTime()
+    {
+        return responseContentTime;
+    }
+
+    public HistogramStatistic getExchangeTime()
+    {
+        return exchangeTime;
+    }
+
+    @ManagedAttribute("The number of completed exchanges")
+    public long getExchangeCount()
+    {
+        return exchangeTime.getCount();
+    }
+
+    @ManagedAttribute("The mean time, in microseconds, requests wait in the queue")
+    public double getQueueTimeMean()
+    {
+        return queueTime.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile, in microseconds, of the time requests wait in the queue")
+    public long getQueueTime99()
+    {
+        return queueTime.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max time, in microseconds, requests waited in the queue")
+    public long getQueueTimeMax()
+    {
+        return queueTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time, in microseconds, to open a connection")
+    public double getConnectTimeMean()
+    {
+        return connectTime.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile, in microseconds, of the time to open a connection")
+    public long getConnectTime99()
+    {
+        return connectTime.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max time, in microseconds, to open a connection")
+    public long getConnectTimeMax()
+    {
+        return connectTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time, in microseconds, of the TLS handshakes")
+    public double getTLSHandshakeTimeMean()
+    {
+        return tlsHandshakeTime.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile, in microseconds, of the time of the TLS handshakes")
+    public long getTLSHandshakeTime99()
+    {
+        return tlsHandshakeTime.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max time, in microseconds, of the TLS handshakes")
+    public long getTLSHandshakeTimeMax()
+    {
+        return tlsHandshakeTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time, in microseconds, from request sent to response headers")
+    public double getResponseHeadersTimeMean()
+    {
+        return responseHeadersTime.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile, in microseconds, of the time from request sent to response headers")
+    public long getResponseHeadersTime99()
+    {
+        return responseHeadersTime.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max time, in microseconds, from request sent to response headers")
+    public long getResponseHeadersTimeMax()
+    {
+        return responseHeadersTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time, in microseconds, from response headers to exchange completion")
+    public double getResponseContentTimeMean()
+    {
+        return responseContentTime.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile, in microseconds, of the time from response headers to exchange completion")
+    public long getResponseContentTime99()
+    {
+        return responseContentTime.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max time, in microseconds, from response headers to exchange completion")
+    public long getResponseContentTimeMax()
+    {
+        return responseContentTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time, in microseconds, of the exchanges")
+    public double getExchangeTimeMean()
+    {
+        return exchangeTime.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile, in microseconds, of the time of the exchanges")
+    public long getExchangeTime99()
+    {
+        return exchangeTime.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max time, in microseconds, of the exchanges")
+    public long getExchangeTimeMax()
+    {
+        return exchangeTime.getMax();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        queueTime.reset();
+        connectTime.reset();
+        tlsHandshakeTime.reset();
+        responseHeadersTime.reset();
+        responseContentTime.reset();
+        exchangeTime.reset();
+    }
+
+    void exchangeQueued(HttpExchange exchange)
+    {
+        exchange.setQueuedNanoTime(System.nanoTime());
+    }
+
+    void exchangeSent(HttpExchange exchange)
+    {
+        long now = System.nanoTime();
+        exchange.setSentNanoTime(now);
+        record(queueTime, exchange.getQueuedNanoTime(), now);
+    }
+
+    void responseHeaders(HttpExchange exchange)
+    {
+        long now = System.nanoTime();
+        exchange.setHeadersNanoTime(now);
+        record(responseHeadersTime, exchange.getSentNanoTime(), now);
+    }
+
+    void exchangeTerminated(HttpExchange exchange, Result result)
+    {
+        long now = System.nanoTime();
+        if (result.isSucceeded())
+            record(responseContentTime, exchange.getHeadersNanoTime(), now);
+        record(exchangeTime, exchange.getQueuedNanoTime(), now);
+    }
+
+    Promise<Connection> connecting(Promise<Connection> promise)
+    {
+        long begin = System.nanoTime();
+        return new Promise.Wrapper<Connection>(promise)
+        {
+            @Override
+            public void succeeded(Connection connection)
+            {
+                record(connectTime, begin, System.nanoTime());
+                super.succeeded(connection);
+            }
+        };
+    }
+
+    SslHandshakeListener newSslHandshakeListener()
+    {
+        long begin = System.nanoTime();
+        return new SslHandshakeListener()
+        {
+            @Override
+            public void handshakeSucceeded(Event event)
+            {
+                record(tlsHandshakeTime, begin, System.nanoTime());
+            }
+        };
+    }
+
+    private static void record(HistogramStatistic histogram, long begin, long end)
+    {
+        // Zero means that the phase began before the metrics were enabled.
+        if (begin != 0)
+            histogram.set(TimeUnit.NANOSECONDS.toMicros(end - begin));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{exchanges=%d,queue=%.0fus,headers=%.0fus,content=%.0fus}",
+                getClass().getSimpleName(),
+                hashCode(),
+                getExchangeCount(),
+                getQueueTimeMean(),
+                getResponseHeadersTimeMean(),
+                getResponseContentTimeMean());
+    }
+}
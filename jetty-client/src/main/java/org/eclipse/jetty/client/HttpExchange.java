@@ -38,6 +38,13 @@ public class HttpExchange
     private HttpChannel _channel;
     private Throwable requestFailure;
     private Throwable responseFailure;
+    private boolean permit;
+    private long permitNanoTime;
+    // Written and read by the threads that move the exchange through its phases,
+    // which already synchronize with each other, see HttpDestinationMetrics.
+    private long queuedNanoTime;
+    private long sentNanoTime;
+    private long headersNanoTime;
 
     public HttpExchange(HttpDestination destination, HttpRequest request, List<Response.ResponseListener> listeners)
     {
@@ -132,6 +139,85 @@ public class HttpExchange
             request.abort(new IllegalStateException(toString()));
     }
 
+    /**
+     * Records that this exchange is sent with a permit of the destination concurrency limiter.
+     *
+     * @param nanoTime the time the request is sent
+     */
+    void acquirePermit(long nanoTime)
+    {
+        synchronized (this)
+        {
+            permit = true;
+            permitNanoTime = nanoTime;
+        }
+    }
+
+    /**
+     * @return the time the request was sent with a permit of the destination concurrency limiter,
+     * or null if this exchange has no permit or the permit has already been released
+     */
+    Long releasePermit()
+    {
+        synchronized (this)
+        {
+            if (!permit)
+                return null;
+            permit = false;
+            return permitNanoTime;
+        }
+    }
+
+    long getQueuedNanoTime()
+    {
+        return queuedNanoTime;
+    }
+
+    void setQueuedNanoTime(long queuedNanoTime)
+    {
+        this.queuedNanoTime = queuedNanoTime;
+    }
+
+    long getSentNanoTime()
+    {
+        return sentNanoTime;
+    }
+
+    void setSentNanoTime(long sentNanoTime)
+    {
+        this.sentNanoTime = sentNanoTime;
+    }
+
+    long getHeadersNanoTime()
+    {
+        return headersNanoTime;
+    }
+
+    void setHeadersNanoTime(long headersNanoTime)
+    {
+        this.headersNanoTime = headersNanoTime;
+    }
+
+    /**
+     * <p>Terminates this exchange without notifying its listeners,
+     * so that its request can be sent again with a new exchange.</p>
+     *
+     * @return whether this exchange has been terminated, or false if
+     * it has already been completed, failed or aborted
+     */
+    boolean supersede()
+    {
+        synchronized (this)
+        {
+            if (requestFailure != null || responseState != State.PENDING)
+                return false;
+            requestState = State.TERMINATED;
+            responseState = State.TERMINATED;
+            _channel = null;
+            return true;
+        }
+    }
+
     private HttpChannel getHttpChannel()
     {
         synchronized (this)
@@ -256,13 +256,17 @@ public abstract class HttpReceiver
         HttpResponse response = exchange.getResponse();
         if (LOG.isDebugEnabled())
             LOG.debug("Response headers {}{}{}", response, System.lineSeparator(), response.getHeaders().toString().trim());
-        ResponseNotifier notifier = getHttpDestination().getResponseNotifier();
+        HttpDestination destination = getHttpDestination();
+        HttpDestinationMetrics metrics = destination.getMetrics();
+        if (metrics != null)
+            metrics.responseHeaders(exchange);
+        ResponseNotifier notifier = destination.getResponseNotifier();
         notifier.notifyHeaders(exchange.getConversation().getResponseListeners(), response);
 
         Enumeration<String> contentEncodings = response.getHeaders().getValues(HttpHeader.CONTENT_ENCODING.asString(), ",");
         if (contentEncodings != null)
         {
-            for (ContentDecoder.Factory factory : getHttpDestination().getHttpClient().getContentDecoderFactories())
+            for (ContentDecoder.Factory factory : destination.getHttpClient().getContentDecoderFactories())
             {
                 while (contentEncodings.hasMoreElements())
                 {
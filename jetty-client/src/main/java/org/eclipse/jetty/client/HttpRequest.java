@@ -705,7 +705,11 @@ public class HttpRequest implements Request
         {
             if (content instanceof Callback)
                 ((Callback)content).failed(cause);
-            return conversation.abort(cause);
+            if (conversation.abort(cause))
+                return true;
+            // The request may be waiting in the cache for an identical request.
+            ProtocolHandler cache = client.getProtocolHandlers().get(CacheProtocolHandler.NAME);
+            return cache instanceof CacheProtocolHandler && ((CacheProtocolHandler)cache).abort(this, cause);
         }
         return false;
     }
@@ -50,6 +50,18 @@ public class ProtocolHandlers
         return handlers.put(protocolHandler.getName(), protocolHandler);
     }
 
+    /**
+     * <p>Returns the protocol handler with the given name.</p>
+     *
+     * @param name the name of the protocol handler
+     * @return the protocol handler with the given name,
+     * or null if no protocol handler with that name is stored
+     */
+    public ProtocolHandler get(String name)
+    {
+        return handlers.get(name);
+    }
+
     /**
      * <p>Removes the protocol handler with the given name.</p>
      *
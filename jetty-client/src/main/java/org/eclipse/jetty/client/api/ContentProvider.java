@@ -19,7 +19,9 @@
 package org.eclipse.jetty.client.api;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 
 import org.eclipse.jetty.client.util.ByteBufferContentProvider;
@@ -60,4 +62,23 @@ public interface ContentProvider extends Iterable<ByteBuffer>
          */
         public String getContentType();
     }
+
+    /**
+     * <p>An extension of {@link ContentProvider} whose content is backed by a file.</p>
+     * <p>Transports that write directly to a socket may transfer the content from
+     * the file to the socket via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * without copying the content through user space buffers; in this case the
+     * {@link #iterator() iterator} is not used.
+     * Transports that cannot do so (for example because the connection is
+     * encrypted) fall back to the {@link #iterator() iterator}.</p>
+     * <p>Zero-copy transfer requires the {@link #getLength() length} to be known.</p>
+     */
+    public interface Transferable extends ContentProvider
+    {
+        /**
+         * @return a new channel from which the first {@link #getLength() length} bytes of content are read
+         * @throws IOException if the channel cannot be opened
+         */
+        public FileChannel newFileChannel() throws IOException;
+    }
 }
@@ -39,6 +39,8 @@ public class HttpChannelOverHTTP extends HttpChannel
     private final HttpConnectionOverHTTP connection;
     private final HttpSenderOverHTTP sender;
     private final HttpReceiverOverHTTP receiver;
+    private boolean pipelinable;
+    private int completions;
 
     public HttpChannelOverHTTP(HttpConnectionOverHTTP connection)
     {
@@ -77,12 +79,50 @@ public class HttpChannelOverHTTP extends HttpChannel
 
     @Override
     public void send()
+    {
+        if (connection.isPipelined())
+            connection.pipeline(this);
+        else
+            sendRequest();
+    }
+
+    protected void sendRequest()
     {
         HttpExchange exchange = getHttpExchange();
         if (exchange != null)
             sender.send(exchange);
     }
 
+    /**
+     * @return whether the request of this channel has been sent pipelined,
+     * so that other requests may be pipelined behind it
+     */
+    protected boolean isPipelinable()
+    {
+        return pipelinable;
+    }
+
+    protected void setPipelinable(boolean pipelinable)
+    {
+        this.pipelinable = pipelinable;
+    }
+
+    /**
+     * Counts the completion of one of the request sending, the response
+     * receiving and the exchange termination of a pipelined request.
+     * <p>
+     * Guarded by the connection lock.
+     *
+     * @return whether all three have completed, so that this channel may be reused
+     */
+    protected boolean done()
+    {
+        if (++completions < 3)
+            return false;
+        completions = 0;
+        return true;
+    }
+
     @Override
     public void release()
     {
@@ -174,9 +214,14 @@ public class HttpChannelOverHTTP extends HttpChannel
         else
         {
             if (response.getStatus() == HttpStatus.SWITCHING_PROTOCOLS_101)
+            {
                 connection.remove();
+            }
             else
+            {
+                connection.channelDone(this);
                 release();
+            }
         }
     }
 
@@ -27,11 +27,14 @@ import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 
 @ManagedObject("The HTTP/1.1 client transport")
 public class HttpClientTransportOverHTTP extends AbstractHttpClientTransport
 {
+    private int maxPipelinedRequests = 1;
+
     public HttpClientTransportOverHTTP()
     {
         this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
@@ -42,9 +45,32 @@ public class HttpClientTransportOverHTTP extends AbstractHttpClientTransport
         super(selectors);
     }
 
+    @ManagedAttribute("The maximum number of requests pipelined on a connection")
+    public int getMaxPipelinedRequests()
+    {
+        return maxPipelinedRequests;
+    }
+
+    /**
+     * <p>Sets the maximum number of requests that may be sent on a connection
+     * before the responses to the previous requests have been received.</p>
+     * <p>The default value of 1 disables pipelining.
+     * Only destinations created after this method is called are affected.</p>
+     *
+     * @param maxPipelinedRequests the maximum number of requests pipelined on a connection
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests)
+    {
+        if (maxPipelinedRequests < 1)
+            throw new IllegalArgumentException("Invalid max pipelined requests " + maxPipelinedRequests);
+        this.maxPipelinedRequests = maxPipelinedRequests;
+    }
+
     @Override
     public HttpDestination newHttpDestination(Origin origin)
     {
+        if (getMaxPipelinedRequests() > 1)
+            return new PipelinedHttpDestinationOverHTTP(getHttpClient(), origin);
         return new HttpDestinationOverHTTP(getHttpClient(), origin);
     }
 
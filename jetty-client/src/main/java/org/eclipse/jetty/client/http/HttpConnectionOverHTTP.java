@@ -20,6 +20,10 @@ package org.eclipse.jetty.client.http;
 
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,8 +35,13 @@ import org.eclipse.jetty.client.SendFailure;
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -47,6 +56,11 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
     private final Promise<Connection> promise;
     private final Delegate delegate;
     private final HttpChannelOverHTTP channel;
+    private final boolean pipelined;
+    private final Deque<HttpChannelOverHTTP> idleChannels = new ArrayDeque<>();
+    private final Deque<HttpChannelOverHTTP> pendingChannels = new ArrayDeque<>();
+    private final Deque<HttpChannelOverHTTP> activeChannels = new ArrayDeque<>();
+    private HttpChannelOverHTTP sendingChannel;
     private long idleTimeout;
 
     public HttpConnectionOverHTTP(EndPoint endPoint, HttpDestination destination, Promise<Connection> promise)
@@ -54,7 +68,10 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
         super(endPoint, destination.getHttpClient().getExecutor());
         this.promise = promise;
         this.delegate = new Delegate(destination);
+        this.pipelined = destination instanceof PipelinedHttpDestinationOverHTTP;
         this.channel = newHttpChannel();
+        if (pipelined)
+            idleChannels.offer(channel);
     }
 
     protected HttpChannelOverHTTP newHttpChannel()
@@ -72,6 +89,15 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
         return (HttpDestinationOverHTTP)delegate.getHttpDestination();
     }
 
+    /**
+     * @return whether this connection pipelines requests, that is, whether it sends
+     * a request before the responses to the previous requests have been received
+     */
+    public boolean isPipelined()
+    {
+        return pipelined;
+    }
+
     @Override
     public void send(Request request, Response.CompleteListener listener)
     {
@@ -110,7 +136,8 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
     @Override
     public void onFillable()
     {
-        HttpExchange exchange = channel.getHttpExchange();
+        HttpChannelOverHTTP channel = getReceivingChannel();
+        HttpExchange exchange = channel == null ? null : channel.getHttpExchange();
         if (exchange != null)
         {
             channel.receive();
@@ -133,7 +160,16 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
     public void release()
     {
         // Restore idle timeout
-        getEndPoint().setIdleTimeout(idleTimeout);
+        boolean idle = true;
+        if (pipelined)
+        {
+            synchronized (this)
+            {
+                idle = pendingChannels.isEmpty() && activeChannels.size() <= 1;
+            }
+        }
+        if (idle)
+            getEndPoint().setIdleTimeout(idleTimeout);
         getHttpDestination().release(this);
     }
 
@@ -161,11 +197,241 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
     }
 
     protected boolean abort(Throwable failure)
+    {
+        if (pipelined)
+        {
+            List<HttpChannelOverHTTP> unsent;
+            List<HttpChannelOverHTTP> sent;
+            HttpChannelOverHTTP sending;
+            synchronized (this)
+            {
+                unsent = new ArrayList<>(pendingChannels);
+                pendingChannels.clear();
+                sent = new ArrayList<>(activeChannels);
+                sending = sendingChannel;
+            }
+            boolean aborted = false;
+            // Requests that have not been written are sent again on another connection.
+            for (HttpChannelOverHTTP channel : unsent)
+            {
+                if (!resend(channel) && abort(channel, failure))
+                    aborted = true;
+            }
+            // Requests that have been written are sent again only if they are
+            // idempotent and their response has not started to arrive.
+            for (HttpChannelOverHTTP channel : sent)
+            {
+                boolean resend = channel != sending && isResendable(channel) && resend(channel);
+                if (!resend && abort(channel, failure))
+                    aborted = true;
+            }
+            return aborted;
+        }
+
+        return abort(channel, failure);
+    }
+
+    private boolean abort(HttpChannelOverHTTP channel, Throwable failure)
     {
         HttpExchange exchange = channel.getHttpExchange();
         return exchange != null && exchange.getRequest().abort(failure);
     }
 
+    private boolean isResendable(HttpChannelOverHTTP channel)
+    {
+        HttpExchange exchange = channel.getHttpExchange();
+        return exchange != null &&
+                channel.isPipelinable() &&
+                exchange.getRequest().getContent() == null &&
+                exchange.getResponse().getStatus() == 0;
+    }
+
+    private boolean resend(HttpChannelOverHTTP channel)
+    {
+        HttpExchange exchange = channel.getHttpExchange();
+        return exchange != null && getHttpDestination().resend(exchange);
+    }
+
+    /**
+     * @return the channel whose response is being received: with pipelining,
+     * the channel of the oldest request that has not been answered yet
+     */
+    private HttpChannelOverHTTP getReceivingChannel()
+    {
+        if (!pipelined)
+            return channel;
+        synchronized (this)
+        {
+            return activeChannels.peek();
+        }
+    }
+
+    private HttpChannelOverHTTP acquireChannel()
+    {
+        HttpChannelOverHTTP channel;
+        synchronized (this)
+        {
+            channel = idleChannels.poll();
+        }
+        if (channel == null)
+            channel = newHttpChannel();
+        return channel;
+    }
+
+    /**
+     * <p>Queues the given channel to send its request over this pipelined connection.</p>
+     * <p>Requests are written one after the other, in order.
+     * Only requests that are safe to repeat (see {@link #isPipelinable(Request)})
+     * are written while there are responses outstanding; other requests wait until
+     * all the previous responses have been received, and block the requests behind them.</p>
+     *
+     * @param channel the channel to send
+     */
+    protected void pipeline(HttpChannelOverHTTP channel)
+    {
+        synchronized (this)
+        {
+            pendingChannels.offer(channel);
+        }
+        sendNext();
+    }
+
+    private void sendNext()
+    {
+        HttpChannelOverHTTP next;
+        synchronized (this)
+        {
+            if (sendingChannel != null)
+                return;
+            next = pendingChannels.peek();
+            if (next == null)
+                return;
+            HttpExchange exchange = next.getHttpExchange();
+            boolean pipelinable = exchange != null && isPipelinable(exchange.getRequest());
+            if (!activeChannels.isEmpty())
+            {
+                if (!pipelinable)
+                    return;
+                for (HttpChannelOverHTTP active : activeChannels)
+                {
+                    if (!active.isPipelinable())
+                        return;
+                }
+            }
+            pendingChannels.poll();
+            next.setPipelinable(pipelinable);
+            activeChannels.offer(next);
+            sendingChannel = next;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Pipelining {} on {}", next, this);
+        next.sendRequest();
+    }
+
+    /**
+     * @param request the request to test
+     * @return whether the request may be sent while responses to previous requests are outstanding
+     */
+    protected boolean isPipelinable(Request request)
+    {
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method == null)
+            return false;
+        switch (method)
+        {
+            case GET:
+            case HEAD:
+            case PUT:
+            case DELETE:
+            case OPTIONS:
+            case TRACE:
+                break;
+            default:
+                return false;
+        }
+        return !request.getHeaders().containsKey(HttpHeader.UPGRADE.asString()) &&
+                !request.getHeaders().contains(HttpHeader.EXPECT, HttpHeaderValue.CONTINUE.asString()) &&
+                !request.getHeaders().contains(HttpHeader.CONNECTION, HttpHeaderValue.CLOSE.asString());
+    }
+
+    /**
+     * Invoked when the given channel has written its request, to write the next one.
+     *
+     * @param channel the channel that has written its request
+     */
+    protected void requestSent(HttpChannelOverHTTP channel)
+    {
+        if (!pipelined)
+            return;
+        synchronized (this)
+        {
+            if (sendingChannel == channel)
+                sendingChannel = null;
+        }
+        channelDone(channel);
+        sendNext();
+    }
+
+    /**
+     * <p>Invoked when the given channel has received its response, to hand over
+     * the bytes that follow the response to the channel of the next request.</p>
+     *
+     * @param channel the channel that has received its response
+     * @param buffer the receive buffer, possibly containing the next response
+     */
+    protected void responseReceived(HttpChannelOverHTTP channel, ByteBuffer buffer)
+    {
+        HttpChannelOverHTTP next;
+        synchronized (this)
+        {
+            activeChannels.remove(channel);
+            next = activeChannels.peek();
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Received response on {}, next {} on {}", channel, next, this);
+
+        channelDone(channel);
+        sendNext();
+
+        if (isClosed())
+        {
+            BufferUtil.clear(buffer);
+            getHttpDestination().getHttpClient().getByteBufferPool().release(buffer);
+        }
+        else if (next != null)
+        {
+            next.getHttpReceiver().receive(buffer);
+        }
+        else
+        {
+            boolean garbage = BufferUtil.hasContent(buffer);
+            ByteBufferPool bufferPool = getHttpDestination().getHttpClient().getByteBufferPool();
+            BufferUtil.clear(buffer);
+            bufferPool.release(buffer);
+            if (garbage)
+                close();
+            else
+                fillInterested();
+        }
+    }
+
+    /**
+     * <p>Recycles the given channel once its request has been sent, its response has
+     * been handed over and its exchange has terminated, in whatever order these happen.</p>
+     *
+     * @param channel the channel
+     */
+    protected void channelDone(HttpChannelOverHTTP channel)
+    {
+        if (!pipelined)
+            return;
+        synchronized (this)
+        {
+            if (channel.done())
+                idleChannels.offer(channel);
+        }
+    }
+
     @Override
     public boolean sweep()
     {
@@ -190,7 +456,7 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
             getEndPoint().getLocalAddress(),
             getEndPoint().getRemoteAddress(),
             closed.get(),
-            channel);
+            pipelined ? getReceivingChannel() : channel);
     }
 
     private class Delegate extends HttpConnection
@@ -208,10 +474,20 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements Connec
 
             // Save the old idle timeout to restore it.
             EndPoint endPoint = getEndPoint();
-            idleTimeout = endPoint.getIdleTimeout();
+            boolean idle = true;
+            if (pipelined)
+            {
+                synchronized (HttpConnectionOverHTTP.this)
+                {
+                    idle = activeChannels.isEmpty() && pendingChannels.isEmpty();
+                }
+            }
+            if (idle)
+                idleTimeout = endPoint.getIdleTimeout();
             endPoint.setIdleTimeout(request.getIdleTimeout());
 
-            // One channel per connection, just delegate the send.
+            // One channel per connection, unless pipelining.
+            HttpChannelOverHTTP channel = pipelined ? acquireChannel() : HttpConnectionOverHTTP.this.channel;
             return send(channel, exchange);
         }
 
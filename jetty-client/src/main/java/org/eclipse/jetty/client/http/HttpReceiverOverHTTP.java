@@ -41,6 +41,7 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
     private final HttpParser parser = new HttpParser(this);
     private ByteBuffer buffer;
     private boolean shutdown;
+    private boolean complete;
 
     public HttpReceiverOverHTTP(HttpChannelOverHTTP channel)
     {
@@ -70,6 +71,18 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
         process();
     }
 
+    /**
+     * Resumes receiving with a buffer handed over by the channel of the
+     * previous pipelined request, which may already contain the response.
+     *
+     * @param buffer the buffer handed over
+     */
+    void receive(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        process();
+    }
+
     private void acquireBuffer()
     {
         HttpClient client = getHttpDestination().getHttpClient();
@@ -120,7 +133,10 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 }
 
                 if (parse())
+                {
+                    handOver();
                     return;
+                }
 
                 int read = endPoint.fill(buffer);
                 if (LOG.isDebugEnabled())
@@ -129,7 +145,10 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 if (read > 0)
                 {
                     if (parse())
+                    {
+                        handOver();
                         return;
+                    }
                 }
                 else if (read == 0)
                 {
@@ -140,6 +159,13 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 else
                 {
                     releaseBuffer();
+                    // A server that closes a pipelined connection between two responses
+                    // has not answered the outstanding requests, that may be sent again.
+                    if (connection.isPipelined() && parser.isStart())
+                    {
+                        connection.close(new EOFException(String.valueOf(connection)));
+                        return;
+                    }
                     shutdown();
                     return;
                 }
@@ -156,6 +182,20 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
         }
     }
 
+    /**
+     * Hands over the buffer, which may contain the next pipelined
+     * response, once the response of this receiver is complete.
+     */
+    private void handOver()
+    {
+        if (!complete)
+            return;
+        complete = false;
+        ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        getHttpConnection().responseReceived(getHttpChannel(), buffer);
+    }
+
     /**
      * Parses a HTTP response in the receivers buffer.
      *
@@ -290,6 +330,13 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 status == HttpStatus.OK_200)
             return true;
 
+        // Pipelined responses are read by the channel of the next request.
+        if (getHttpConnection().isPipelined())
+        {
+            complete = true;
+            return true;
+        }
+
         return false;
     }
 
@@ -320,6 +367,7 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
     protected void reset()
     {
         super.reset();
+        complete = false;
         parser.reset();
     }
 
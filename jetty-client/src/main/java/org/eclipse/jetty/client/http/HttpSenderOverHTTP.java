@@ -18,7 +18,11 @@
 
 package org.eclipse.jetty.client.http;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpContent;
@@ -31,12 +35,16 @@ import org.eclipse.jetty.http.HttpGenerator;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ChannelEndPoint;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.NetworkTrafficSelectChannelEndPoint;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 
 public class HttpSenderOverHTTP extends HttpSender
 {
+    private static final int TRANSFER_REGION_SIZE = 4 * 1024 * 1024;
+
     private final HttpGenerator generator = new HttpGenerator();
     private boolean shutdown;
 
@@ -131,6 +139,15 @@ public class HttpSenderOverHTTP extends HttpSender
         }
     }
 
+    @Override
+    protected boolean someToSuccess(HttpExchange exchange)
+    {
+        boolean result = super.someToSuccess(exchange);
+        if (result)
+            getHttpChannel().getHttpConnection().requestSent(getHttpChannel());
+        return result;
+    }
+
     @Override
     protected void reset()
     {
@@ -146,6 +163,34 @@ public class HttpSenderOverHTTP extends HttpSender
         shutdownOutput();
     }
 
+    /**
+     * <p>Returns whether the request content can be transferred directly from
+     * a file to the socket, without being copied through user space buffers.</p>
+     * <p>This is only possible for {@link ContentProvider.Transferable} content
+     * of known length, written to a cleartext socket, when the content is not
+     * held back by a {@code 100-continue} expectation and there are no listeners
+     * that need to be notified of the content.</p>
+     *
+     * @param request the request to send
+     * @return whether the request content can be transferred
+     */
+    protected boolean isTransferable(Request request)
+    {
+        ContentProvider content = request.getContent();
+        if (!(content instanceof ContentProvider.Transferable) || content.getLength() <= 0)
+            return false;
+        if (expects100Continue(request))
+            return false;
+        EndPoint endPoint = getHttpChannel().getHttpConnection().getEndPoint();
+        if (!(endPoint instanceof ChannelEndPoint) || endPoint instanceof NetworkTrafficSelectChannelEndPoint)
+            return false;
+        if (!(((ChannelEndPoint)endPoint).getChannel() instanceof SocketChannel))
+            return false;
+        HttpClient client = getHttpChannel().getHttpDestination().getHttpClient();
+        return client.getRequestListeners().isEmpty() &&
+                request.getRequestListeners(Request.ContentListener.class).isEmpty();
+    }
+
     private void shutdownOutput()
     {
         if (LOG.isDebugEnabled())
@@ -167,8 +212,10 @@ public class HttpSenderOverHTTP extends HttpSender
     private class HeadersCallback extends IteratingCallback
     {
         private final HttpExchange exchange;
+        private final HttpContent content;
         private final Callback callback;
         private final MetaData.Request metaData;
+        private final ContentProvider.Transferable transferable;
         private ByteBuffer headerBuffer;
         private ByteBuffer chunkBuffer;
         private ByteBuffer contentBuffer;
@@ -179,6 +226,7 @@ public class HttpSenderOverHTTP extends HttpSender
         {
             super(false);
             this.exchange = exchange;
+            this.content = content;
             this.callback = callback;
 
             Request request = exchange.getRequest();
@@ -190,7 +238,9 @@ public class HttpSenderOverHTTP extends HttpSender
                 path += "?" + query;
             metaData = new MetaData.Request(request.getMethod(), new HttpURI(path), request.getVersion(), request.getHeaders(), contentLength);
 
-            if (!expects100Continue(request))
+            // Transferred content is written after the headers, bypassing the iterator.
+            transferable = isTransferable(request) ? (ContentProvider.Transferable)requestContent : null;
+            if (transferable == null && !expects100Continue(request))
             {
                 content.advance();
                 contentBuffer = content.getByteBuffer();
@@ -291,7 +341,25 @@ public class HttpSenderOverHTTP extends HttpSender
         protected void onCompleteSuccess()
         {
             super.onCompleteSuccess();
-            callback.succeeded();
+            if (transferable == null || !generated)
+            {
+                callback.succeeded();
+                return;
+            }
+
+            TransferCallback transfer;
+            try
+            {
+                transfer = new TransferCallback(transferable, content, callback);
+            }
+            catch (Throwable x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug(x);
+                callback.failed(x);
+                return;
+            }
+            transfer.iterate();
         }
 
         private void release()
@@ -306,6 +374,92 @@ public class HttpSenderOverHTTP extends HttpSender
         }
     }
 
+    /**
+     * <p>Transfers the request content from a file to the socket
+     * via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.</p>
+     * <p>The bytes written bypass the {@link HttpGenerator}, so they are
+     * accounted to it via {@link HttpGenerator#contentTransferred(long)}.</p>
+     * <p>When the socket cannot accept more bytes, the next region of
+     * the file is memory mapped and written via the {@link EndPoint},
+     * which takes care of waiting for the socket to be writable.</p>
+     */
+    private class TransferCallback extends IteratingCallback
+    {
+        private final HttpContent content;
+        private final Callback callback;
+        private final ChannelEndPoint endPoint;
+        private final FileChannel channel;
+        private final long length;
+        private long position;
+
+        private TransferCallback(ContentProvider.Transferable transferable, HttpContent content, Callback callback) throws IOException
+        {
+            this.content = content;
+            this.callback = callback;
+            this.endPoint = (ChannelEndPoint)getHttpChannel().getHttpConnection().getEndPoint();
+            this.channel = transferable.newFileChannel();
+            this.length = transferable.getLength();
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            while (position < length)
+            {
+                long transferred = channel.transferTo(position, length - position, endPoint.getChannel());
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Transferred {} bytes at {}/{} to {}", transferred, position, length, endPoint);
+                if (transferred > 0)
+                {
+                    generator.contentTransferred(transferred);
+                    position += transferred;
+                    endPoint.notIdle();
+                    continue;
+                }
+
+                if (position >= channel.size())
+                    throw new EOFException("Unexpected end of file at " + position + "/" + length);
+
+                // The socket is congested, let the EndPoint
+                // write the next region when it is writable.
+                long region = Math.min(length - position, TRANSFER_REGION_SIZE);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, region);
+                generator.contentTransferred(region);
+                position += region;
+                endPoint.write(this, buffer);
+                return Action.SCHEDULED;
+            }
+            return Action.SUCCEEDED;
+        }
+
+        @Override
+        protected void onCompleteSuccess()
+        {
+            closeChannel();
+            content.transferred();
+            callback.succeeded();
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable x)
+        {
+            closeChannel();
+            callback.failed(x);
+        }
+
+        private void closeChannel()
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (Throwable x)
+            {
+                LOG.ignore(x);
+            }
+        }
+    }
+
     private class ByteBufferRecyclerCallback extends Callback.Nested
     {
         private final ByteBufferPool pool;
@@ -0,0 +1,70 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client.http;
+
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.Origin;
+
+/**
+ * <p>A destination that pipelines HTTP/1.1 requests, sending up to
+ * {@link #getMaxRequestsPerConnection()} requests on a connection
+ * before the responses to the previous requests have been received.</p>
+ * <p>Only requests with idempotent methods and without {@code Expect: 100-continue},
+ * {@code Upgrade} or {@code Connection: close} headers are pipelined; other requests
+ * are sent once all the previous responses on the connection have been received.</p>
+ * <p>When a connection is closed, for example because the server reached its keep-alive
+ * limit, the requests that have not been written yet and the idempotent requests whose
+ * response has not started to arrive are sent again on another connection; the other
+ * outstanding requests fail.</p>
+ *
+ * @see HttpClientTransportOverHTTP#setMaxPipelinedRequests(int)
+ */
+public class PipelinedHttpDestinationOverHTTP extends HttpDestinationOverHTTP
+{
+    public PipelinedHttpDestinationOverHTTP(HttpClient client, Origin origin)
+    {
+        super(client, origin);
+    }
+
+    @Override
+    protected ConnectionPool newConnectionPool(HttpClient client)
+    {
+        int maxPipelined = 1;
+        if (client.getTransport() instanceof HttpClientTransportOverHTTP)
+            maxPipelined = ((HttpClientTransportOverHTTP)client.getTransport()).getMaxPipelinedRequests();
+        return new MultiplexConnectionPool(this, client.getMaxConnectionsPerDestination(), this, maxPipelined);
+    }
+
+    public int getMaxRequestsPerConnection()
+    {
+        ConnectionPool connectionPool = getConnectionPool();
+        if (connectionPool instanceof MultiplexConnectionPool)
+            return ((MultiplexConnectionPool)connectionPool).getMaxMultiplex();
+        return 1;
+    }
+
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection)
+    {
+        ConnectionPool connectionPool = getConnectionPool();
+        if (connectionPool instanceof MultiplexConnectionPool)
+            ((MultiplexConnectionPool)connectionPool).setMaxMultiplex(maxRequestsPerConnection);
+    }
+}
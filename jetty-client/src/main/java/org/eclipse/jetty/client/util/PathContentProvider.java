@@ -21,7 +21,7 @@ package org.eclipse.jetty.client.util;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -42,15 +42,23 @@ import org.eclipse.jetty.util.log.Logger;
  * If a {@link ByteBufferPool} is provided via {@link #setByteBufferPool(ByteBufferPool)},
  * the buffer will be allocated from that pool, otherwise one buffer will be
  * allocated and used to read the file.</p>
+ * <p>If {@link #setMemoryMapped(boolean) memory mapped} is enabled, the file is
+ * iterated over as a sequence of read-only memory mapped regions rather than
+ * being read into a buffer; this avoids a copy when the content cannot be
+ * transferred directly from the file to the socket, for example over TLS or HTTP/2.</p>
+ * <p>This class is {@link ContentProvider.Transferable}, so that cleartext HTTP/1.1
+ * connections can send the file content without copying it.</p>
  */
-public class PathContentProvider extends AbstractTypedContentProvider
+public class PathContentProvider extends AbstractTypedContentProvider implements ContentProvider.Transferable
 {
     private static final Logger LOG = Log.getLogger(PathContentProvider.class);
+    private static final int MAPPED_REGION_SIZE = 4 * 1024 * 1024;
 
     private final Path filePath;
     private final long fileSize;
     private final int bufferSize;
     private ByteBufferPool bufferPool;
+    private boolean memoryMapped;
 
     public PathContentProvider(Path filePath) throws IOException
     {
@@ -95,6 +103,28 @@ public class PathContentProvider extends AbstractTypedContentProvider
         this.bufferPool = byteBufferPool;
     }
 
+    /**
+     * @return whether the content is iterated over as memory mapped regions of the file
+     */
+    public boolean isMemoryMapped()
+    {
+        return memoryMapped;
+    }
+
+    /**
+     * @param memoryMapped whether the content is iterated over as memory mapped regions of the file
+     */
+    public void setMemoryMapped(boolean memoryMapped)
+    {
+        this.memoryMapped = memoryMapped;
+    }
+
+    @Override
+    public FileChannel newFileChannel() throws IOException
+    {
+        return FileChannel.open(filePath, StandardOpenOption.READ);
+    }
+
     @Override
     public Iterator<ByteBuffer> iterator()
     {
@@ -104,7 +134,7 @@ public class PathContentProvider extends AbstractTypedContentProvider
     private class PathIterator implements Iterator<ByteBuffer>, Closeable
     {
         private ByteBuffer buffer;
-        private SeekableByteChannel channel;
+        private FileChannel channel;
         private long position;
 
         @Override
@@ -120,14 +150,27 @@ public class PathContentProvider extends AbstractTypedContentProvider
             {
                 if (channel == null)
                 {
-                    buffer = bufferPool == null ?
-                            ByteBuffer.allocateDirect(bufferSize) :
-                            bufferPool.acquire(bufferSize, true);
-                    channel = Files.newByteChannel(filePath, StandardOpenOption.READ);
+                    if (!memoryMapped)
+                        buffer = bufferPool == null ?
+                                ByteBuffer.allocateDirect(bufferSize) :
+                                bufferPool.acquire(bufferSize, true);
+                    channel = newFileChannel();
                     if (LOG.isDebugEnabled())
                         LOG.debug("Opened file {}", filePath);
                 }
 
+                if (memoryMapped)
+                {
+                    long length = Math.min(getLength() - position, MAPPED_REGION_SIZE);
+                    if (position + length > channel.size())
+                        throw new NoSuchElementException();
+                    ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Mapped {} bytes from {}", length, filePath);
+                    position += length;
+                    return region;
+                }
+
                 buffer.clear();
                 int read = channel.read(buffer);
                 if (read < 0)
@@ -0,0 +1,439 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpResponseException;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A {@link Response.Listener} that writes the response content to a file,
+ * without buffering the whole content in memory and without blocking threads.</p>
+ * <p>Each content chunk is written via an {@link AsynchronousFileChannel}, and
+ * the chunk is acknowledged only when the write is complete, so that a slow
+ * disk applies backpressure to the download.</p>
+ * <p>If the download is resumed, the request is sent with a {@code Range} header
+ * asking for the bytes that follow the existing content of the file.
+ * If the server replies with {@code 206 Partial Content}, the content is appended
+ * to the file; if the server replies with {@code 200 OK}, the file is overwritten.
+ * If the server replies with {@code 416 Range Not Satisfiable} and the file
+ * already has the complete length, the file is considered complete.</p>
+ * <p>Optionally, a {@link MessageDigest} of the whole file content can be
+ * computed while the content is written.</p>
+ * <p>Only the content of successful responses is written to the file;
+ * if the download fails, the partially written file is kept so that the
+ * download can be resumed.</p>
+ * <p>Typical usage is:</p>
+ * <pre>
+ * Request request = httpClient.newRequest(...)...;
+ * PathResponseListener listener = new PathResponseListener(request, path, true, "SHA-256");
+ * request.send(listener);
+ * Response response = listener.get(5, TimeUnit.MINUTES);
+ * byte[] digest = listener.getDigest();
+ * </pre>
+ */
+public class PathResponseListener extends Response.Listener.Adapter implements Future<Response>
+{
+    private static final Logger LOG = Log.getLogger(PathResponseListener.class);
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final Request request;
+    private final Path path;
+    private final MessageDigest digest;
+    private final long offset;
+    private AsynchronousFileChannel channel;
+    private long position;
+    private boolean discard;
+    private Response response;
+    private Throwable failure;
+    private byte[] digestBytes;
+    private volatile boolean cancelled;
+
+    /**
+     * @param request the request whose response content is written to the file
+     * @param path the file to write the response content to
+     * @throws IOException if the listener cannot be created
+     */
+    public PathResponseListener(Request request, Path path) throws IOException
+    {
+        this(request, path, false, null);
+    }
+
+    /**
+     * @param request the request whose response content is written to the file
+     * @param path the file to write the response content to
+     * @param resume whether to resume the download from the end of the existing file
+     * @param digestAlgorithm the {@link MessageDigest} algorithm name, or null to not compute the digest
+     * @throws IOException if the listener cannot be created
+     */
+    public PathResponseListener(Request request, Path path, boolean resume, String digestAlgorithm) throws IOException
+    {
+        this.request = request;
+        this.path = path;
+        this.digest = newMessageDigest(digestAlgorithm);
+        this.offset = resume && Files.isRegularFile(path) ? Files.size(path) : 0;
+        if (offset > 0)
+        {
+            request.header(HttpHeader.RANGE, "bytes=" + offset + "-");
+            if (digest != null)
+                digest(path, offset);
+        }
+    }
+
+    private static MessageDigest newMessageDigest(String algorithm) throws IOException
+    {
+        if (algorithm == null)
+            return null;
+        try
+        {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IOException(x);
+        }
+    }
+
+    private void digest(Path path, long length) throws IOException
+    {
+        try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long read = 0;
+            while (read < length)
+            {
+                buffer.clear();
+                buffer.limit((int)Math.min(buffer.capacity(), length - read));
+                int filled = input.read(buffer, read);
+                if (filled < 0)
+                    break;
+                buffer.flip();
+                digest.update(buffer);
+                read += filled;
+            }
+        }
+    }
+
+    public Request getRequest()
+    {
+        return request;
+    }
+
+    /**
+     * @return the file the response content is written to
+     */
+    public Path getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return the number of bytes of the file, including those written by this listener
+     */
+    public long getLength()
+    {
+        synchronized (this)
+        {
+            return position;
+        }
+    }
+
+    /**
+     * @return the digest of the file content, available after a successful download,
+     * or null if no digest was requested
+     */
+    public byte[] getDigest()
+    {
+        synchronized (this)
+        {
+            return digestBytes;
+        }
+    }
+
+    @Override
+    public void onHeaders(Response response)
+    {
+        try
+        {
+            int status = response.getStatus();
+            long start;
+            if (status == HttpStatus.PARTIAL_CONTENT_206 && offset > 0)
+            {
+                start = parseContentRangeStart(response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+                if (start != offset)
+                    throw new HttpResponseException("Unexpected Content-Range, expected offset " + offset, response);
+            }
+            else if (status == HttpStatus.RANGE_NOT_SATISFIABLE_416 && offset > 0)
+            {
+                long length = parseContentRangeLength(response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+                if (length != offset)
+                    throw new HttpResponseException("Could not resume download at offset " + offset, response);
+                // The file is already complete.
+                synchronized (this)
+                {
+                    position = offset;
+                    discard = true;
+                }
+                return;
+            }
+            else if (HttpStatus.isSuccess(status))
+            {
+                start = 0;
+                if (digest != null)
+                    digest.reset();
+            }
+            else
+            {
+                synchronized (this)
+                {
+                    discard = true;
+                }
+                return;
+            }
+
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(start);
+            synchronized (this)
+            {
+                this.channel = channel;
+                this.position = start;
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Writing response content to {} from offset {}", path, start);
+        }
+        catch (Throwable x)
+        {
+            response.abort(x);
+        }
+    }
+
+    private long parseContentRangeStart(String value)
+    {
+        // Format is "bytes <start>-<end>/<length>".
+        if (value != null && value.startsWith("bytes "))
+        {
+            int dash = value.indexOf('-');
+            if (dash > 0)
+            {
+                try
+                {
+                    return Long.parseLong(value.substring(6, dash).trim());
+                }
+                catch (NumberFormatException x)
+                {
+                    LOG.ignore(x);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private long parseContentRangeLength(String value)
+    {
+        // Format is "bytes */<length>".
+        if (value != null && value.startsWith("bytes "))
+        {
+            int slash = value.lastIndexOf('/');
+            if (slash > 0)
+            {
+                try
+                {
+                    return Long.parseLong(value.substring(slash + 1).trim());
+                }
+                catch (NumberFormatException x)
+                {
+                    LOG.ignore(x);
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void onContent(Response response, ByteBuffer content, Callback callback)
+    {
+        AsynchronousFileChannel channel;
+        long position;
+        synchronized (this)
+        {
+            channel = this.channel;
+            position = this.position;
+            if (discard || channel == null || !content.hasRemaining())
+            {
+                callback.succeeded();
+                return;
+            }
+        }
+
+        if (digest != null)
+            digest.update(content.slice());
+        new Writer(channel, content, position, callback).write();
+    }
+
+    @Override
+    public void onComplete(Result result)
+    {
+        synchronized (this)
+        {
+            close();
+            response = result.getResponse();
+            failure = result.getFailure();
+            if (failure == null && digest != null)
+                digestBytes = digest.digest();
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Completed {} bytes to {}", getLength(), path, failure);
+        latch.countDown();
+    }
+
+    private void close()
+    {
+        try
+        {
+            if (channel != null)
+                channel.close();
+        }
+        catch (Throwable x)
+        {
+            LOG.ignore(x);
+        }
+        channel = null;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        cancelled = true;
+        return request.abort(new CancellationException());
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return latch.getCount() == 0 || isCancelled();
+    }
+
+    @Override
+    public Response get() throws InterruptedException, ExecutionException
+    {
+        latch.await();
+        return getResult();
+    }
+
+    @Override
+    public Response get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        boolean expired = !latch.await(timeout, unit);
+        if (expired)
+            throw new TimeoutException();
+        return getResult();
+    }
+
+    private Response getResult() throws ExecutionException
+    {
+        synchronized (this)
+        {
+            if (isCancelled())
+                throw (CancellationException)new CancellationException().initCause(failure);
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return response;
+        }
+    }
+
+    private class Writer implements CompletionHandler<Integer, Void>
+    {
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer;
+        private final Callback callback;
+        private long position;
+
+        private Writer(AsynchronousFileChannel channel, ByteBuffer buffer, long position, Callback callback)
+        {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.position = position;
+            this.callback = callback;
+        }
+
+        private void write()
+        {
+            try
+            {
+                channel.write(buffer, position, null, this);
+            }
+            catch (Throwable x)
+            {
+                failed(x, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer written, Void attachment)
+        {
+            position += written;
+            synchronized (PathResponseListener.this)
+            {
+                PathResponseListener.this.position = position;
+            }
+            if (buffer.hasRemaining())
+                write();
+            else
+                callback.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x, Void attachment)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not write {} to {}", BufferUtil.toDetailString(buffer), path, x);
+            callback.failed(x);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest
+{
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testLimitCapsInFlight() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getLimitedCount());
+
+        limiter.cancel();
+        Assert.assertEquals(1, limiter.getInFlight());
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testLimitGrowsWithStableLatency() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            cycle(limiter, RTT);
+        }
+
+        Assert.assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    public void testLimitDoesNotGrowWhenUnused() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(RTT, true);
+        }
+
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyIncreases() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100);
+        // Do not take the higher latency as the new min latency.
+        limiter.setProbeInterval(0);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            cycle(limiter, RTT);
+        }
+        int limit = limiter.getLimit();
+
+        // The server becomes 10 times slower.
+        for (int i = 0; i < 50; ++i)
+        {
+            cycle(limiter, RTT * 10);
+        }
+
+        Assert.assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void testLimitBacksOffOnFailures() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 100);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(RTT, false);
+        }
+
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(100, limiter.getDroppedCount());
+    }
+
+    @Test
+    public void testQueueLatencyBudget() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 10, 10);
+        limiter.setMaxQueueLatency(100);
+
+        // No latency observed yet.
+        Assert.assertFalse(limiter.isOverBudget(1000));
+
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.release(RTT, true);
+
+        // 10 requests in flight of 10 ms each drain 1 request per ms.
+        Assert.assertFalse(limiter.isOverBudget(0));
+        Assert.assertFalse(limiter.isOverBudget(50));
+        Assert.assertTrue(limiter.isOverBudget(200));
+        Assert.assertEquals(1, limiter.getRejectedCount());
+
+        limiter.setMaxQueueLatency(0);
+        Assert.assertFalse(limiter.isOverBudget(200));
+    }
+
+    private void cycle(AdaptiveConcurrencyLimiter limiter, long roundTrip)
+    {
+        // Use all the permits, then release them.
+        int permits = 0;
+        while (limiter.tryAcquire())
+            ++permits;
+        for (int i = 0; i < permits; ++i)
+            limiter.release(roundTrip, true);
+    }
+}
@@ -0,0 +1,352 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.toolchain.test.AdvancedRunner;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AdvancedRunner.class)
+public class ConcurrentConnectionPoolTest
+{
+    private static final Logger logger = Log.getLogger(ConcurrentConnectionPoolTest.class);
+
+    @Test
+    public void testHotConnectionIsReusedFirst() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 4, Callback.NOOP);
+        destination.pool = pool;
+
+        // The test destination creates connections synchronously.
+        Connection c1 = pool.acquire();
+        Assert.assertNotNull(c1);
+        Connection c2 = pool.acquire();
+        Assert.assertNotNull(c2);
+        Assert.assertNotSame(c1, c2);
+
+        Assert.assertTrue(pool.release(c1));
+        Assert.assertTrue(pool.release(c2));
+        Assert.assertEquals(2, pool.getIdleConnectionCount());
+
+        // The most recently released connection is reused first.
+        Assert.assertSame(c2, pool.acquire());
+        Assert.assertTrue(pool.isActive(c2));
+        Assert.assertFalse(pool.isActive(c1));
+    }
+
+    @Test
+    public void testPreCreateConnections() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 8, Callback.NOOP);
+        destination.pool = pool;
+
+        pool.preCreateConnections(3).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(3, pool.getConnectionCount());
+        Assert.assertEquals(3, pool.getIdleConnectionCount());
+
+        // Does not go beyond the max number of connections.
+        pool.preCreateConnections(16).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(8, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testMinConnectionsAreKeptOpen() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 8, Callback.NOOP);
+        destination.pool = pool;
+        pool.setMinConnectionCount(2);
+
+        Connection connection = pool.acquire();
+        Assert.assertNotNull(connection);
+        Assert.assertEquals(2, pool.getConnectionCount());
+
+        connection.close();
+        Assert.assertEquals(2, pool.getConnectionCount());
+        Assert.assertEquals(2, pool.getIdleConnectionCount());
+    }
+
+    @Test
+    public void testFirstAcquireDoesNotExceedMinConnections() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        destination.pending = new ArrayList<>();
+        AtomicInteger proceeds = new AtomicInteger();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 8, new Callback()
+        {
+            @Override
+            public void succeeded()
+            {
+                proceeds.incrementAndGet();
+            }
+        });
+        destination.pool = pool;
+        pool.setMinConnectionCount(3);
+
+        // The request waits for the connections opened in advance.
+        Assert.assertNull(pool.acquire());
+        Assert.assertNull(pool.acquire());
+        Assert.assertEquals(3, pool.getConnectionCount());
+        Assert.assertEquals(3, destination.pending.size());
+
+        for (Promise<Connection> promise : destination.pending)
+            promise.succeeded(new TestConnection(destination));
+        Assert.assertEquals(3, proceeds.get());
+        Assert.assertNotNull(pool.acquire());
+        Assert.assertEquals(3, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testFailedPreCreatedConnectionDoesNotFailRequester() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        AtomicInteger proceeds = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 8, new Callback()
+        {
+            @Override
+            public void succeeded()
+            {
+                proceeds.incrementAndGet();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                failures.incrementAndGet();
+            }
+        });
+        destination.pool = pool;
+        pool.setMinConnectionCount(2);
+
+        Connection connection = pool.acquire();
+        Assert.assertNotNull(connection);
+
+        // The connection opened again to keep the min number of connections fails.
+        destination.pending = new ArrayList<>();
+        connection.close();
+        Assert.assertEquals(1, destination.pending.size());
+        proceeds.set(0);
+        destination.pending.get(0).failed(new Exception("explicitly failed"));
+
+        // The waiting requests are told to proceed, rather than failed.
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(1, proceeds.get());
+        Assert.assertEquals(1, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testConnectionRetiredAfterMaxUsage() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 1, Callback.NOOP);
+        destination.pool = pool;
+        pool.setMaxUsageCount(2);
+
+        pool.preCreateConnections(1).get(5, TimeUnit.SECONDS);
+        Connection connection = pool.acquire();
+        Assert.assertTrue(pool.release(connection));
+        Assert.assertSame(connection, pool.acquire());
+        // Second usage reached, the connection must be closed by the caller.
+        Assert.assertFalse(pool.release(connection));
+        connection.close();
+
+        Assert.assertEquals(0, pool.getConnectionCount());
+        Connection replacement = pool.acquire();
+        Assert.assertNotNull(replacement);
+        Assert.assertNotSame(connection, replacement);
+    }
+
+    @Test
+    public void testExpiredIdleConnectionIsNotReused() throws Exception
+    {
+        TestDestination destination = new TestDestination();
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 1, Callback.NOOP);
+        destination.pool = pool;
+        pool.setMaxAge(100);
+
+        pool.preCreateConnections(1).get(5, TimeUnit.SECONDS);
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // The expired connection is closed, and a new one created.
+        Assert.assertNotNull(pool.acquire());
+        Assert.assertEquals(1, destination.closed.get());
+        Assert.assertEquals(1, pool.getConnectionCount());
+    }
+
+    @Stress("High CPU")
+    @Test
+    public void testBenchmark() throws Exception
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Assume.assumeTrue(cores > 1);
+
+        int threads = cores * 4;
+        int connections = cores;
+        int iterations = 1024 * 1024;
+
+        for (int run = 0; run < 4; ++run)
+        {
+            TestDestination duplexDestination = new TestDestination();
+            duplexDestination.pool = new DuplexConnectionPool(duplexDestination, connections, Callback.NOOP);
+            benchmark(duplexDestination.pool, threads, connections, iterations);
+
+            TestDestination concurrentDestination = new TestDestination();
+            concurrentDestination.pool = new ConcurrentConnectionPool(concurrentDestination, connections, Callback.NOOP);
+            benchmark(concurrentDestination.pool, threads, connections, iterations);
+        }
+    }
+
+    private void benchmark(AbstractConnectionPool pool, int threads, int connections, int iterations) throws Exception
+    {
+        pool.preCreateConnections(connections).get(5, TimeUnit.SECONDS);
+
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        LongAdder misses = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; ++i)
+        {
+            Thread thread = new Thread(() ->
+            {
+                try
+                {
+                    barrier.await();
+                    for (int j = 0; j < iterations / threads; ++j)
+                    {
+                        Connection connection = pool.acquire();
+                        if (connection == null)
+                            misses.increment();
+                        else
+                            pool.release(connection);
+                    }
+                    barrier.await();
+                }
+                catch (Exception x)
+                {
+                    logger.warn(x);
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+
+        barrier.await();
+        long begin = System.nanoTime();
+        barrier.await();
+        long elapsed = System.nanoTime() - begin;
+        for (Thread thread : workers)
+            thread.join();
+
+        logger.info("{} {} threads, {} acquire/release in {} ms ({} misses)",
+                pool.getClass().getSimpleName(),
+                threads,
+                iterations,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                misses.sum());
+        pool.close();
+    }
+
+    private static class TestDestination implements Destination
+    {
+        private final AtomicInteger closed = new AtomicInteger();
+        private AbstractConnectionPool pool;
+        private List<Promise<Connection>> pending;
+
+        @Override
+        public String getScheme()
+        {
+            return "http";
+        }
+
+        @Override
+        public String getHost()
+        {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort()
+        {
+            return 8080;
+        }
+
+        @Override
+        public void newConnection(Promise<Connection> promise)
+        {
+            // When pending is set, connections are created when the test completes the promises.
+            if (pending != null)
+                pending.add(promise);
+            else
+                promise.succeeded(new TestConnection(this));
+        }
+    }
+
+    private static class TestConnection implements Connection
+    {
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final TestDestination destination;
+
+        private TestConnection(TestDestination destination)
+        {
+            this.destination = destination;
+        }
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            if (closed.compareAndSet(false, true))
+            {
+                destination.closed.incrementAndGet();
+                destination.pool.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return closed.get();
+        }
+    }
+}
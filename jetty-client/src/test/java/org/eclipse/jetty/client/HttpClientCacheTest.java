@@ -0,0 +1,407 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpClientCacheTest extends AbstractHttpClientServerTest
+{
+    private CacheProtocolHandler cache;
+
+    public HttpClientCacheTest(SslContextFactory sslContextFactory)
+    {
+        super(sslContextFactory);
+    }
+
+    private void startCache(AbstractHandler handler) throws Exception
+    {
+        start(handler);
+        cache = new CacheProtocolHandler(client);
+        client.getProtocolHandlers().put(cache);
+    }
+
+    private ContentResponse get(String path) throws Exception
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .path(path)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        startCache(new CountingHandler(requests, "Cache-Control", "max-age=60"));
+
+        for (int i = 0; i < 3; ++i)
+        {
+            ContentResponse response = get("/fresh");
+            Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+            Assert.assertEquals("1", response.getContentAsString());
+        }
+
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testNoStoreResponseIsNotCached() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        startCache(new CountingHandler(requests, "Cache-Control", "no-store, max-age=60"));
+
+        Assert.assertEquals("1", get("/no-store").getContentAsString());
+        Assert.assertEquals("2", get("/no-store").getContentAsString());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testRequestNoCacheForcesRevalidation() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        startCache(new CountingHandler(requests, "Cache-Control", "max-age=60"));
+
+        Assert.assertEquals("1", get("/fresh").getContentAsString());
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .path("/fresh")
+                .header(HttpHeader.CACHE_CONTROL, "no-cache")
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+        Assert.assertEquals("2", response.getContentAsString());
+        // The new response replaced the stored one.
+        Assert.assertEquals("2", get("/fresh").getContentAsString());
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithETag() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+        startCache(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                requests.incrementAndGet();
+                response.setHeader("Cache-Control", "no-cache");
+                response.setHeader("ETag", "\"v1\"");
+                if ("\"v1\"".equals(request.getHeader("If-None-Match")))
+                {
+                    notModified.incrementAndGet();
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    return;
+                }
+                response.getOutputStream().print("content");
+            }
+        });
+
+        for (int i = 0; i < 3; ++i)
+        {
+            ContentResponse response = get("/etag");
+            Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+            Assert.assertEquals("content", response.getContentAsString());
+        }
+
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(2, notModified.get());
+        Assert.assertEquals(2, cache.getValidations());
+    }
+
+    @Test
+    public void testVaryStoresOneResponsePerVariant() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        startCache(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                requests.incrementAndGet();
+                response.setHeader("Cache-Control", "max-age=60");
+                response.setHeader("Vary", "Accept-Language");
+                response.getOutputStream().print(request.getHeader("Accept-Language"));
+            }
+        });
+
+        for (String language : new String[]{"en", "fr", "en", "fr"})
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .path("/vary")
+                    .header(HttpHeader.ACCEPT_LANGUAGE, language)
+                    .timeout(5, TimeUnit.SECONDS)
+                    .send();
+            Assert.assertEquals(language, response.getContentAsString());
+        }
+
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testUnsafeMethodInvalidatesStoredResponse() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        startCache(new CountingHandler(requests, "Cache-Control", "max-age=60"));
+
+        Assert.assertEquals("1", get("/resource").getContentAsString());
+        client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .method(HttpMethod.POST)
+                .path("/resource")
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+        Assert.assertEquals("3", get("/resource").getContentAsString());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCollapsed() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        startCache(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                requests.incrementAndGet();
+                try
+                {
+                    serverLatch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new ServletException(x);
+                }
+                response.setHeader("Cache-Control", "max-age=60");
+                response.getOutputStream().print("content");
+            }
+        });
+
+        int count = 16;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < count; ++i)
+        {
+            client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .path("/collapsed")
+                    .send(new BufferingResponseListener()
+                    {
+                        @Override
+                        public void onComplete(Result result)
+                        {
+                            if (result.isFailed() || !"content".equals(getContentAsString()))
+                                failures.incrementAndGet();
+                            latch.countDown();
+                        }
+                    });
+        }
+
+        Assert.assertEquals(count - 1, cache.getCollapsed());
+        serverLatch.countDown();
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testCollapsedRequestsForNoStoreResponseAreSentConcurrently() throws Exception
+    {
+        int count = 4;
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        CountDownLatch concurrentLatch = new CountDownLatch(count - 1);
+        startCache(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.setHeader("Cache-Control", "no-store");
+                try
+                {
+                    if (requests.incrementAndGet() == 1)
+                    {
+                        serverLatch.await(5, TimeUnit.SECONDS);
+                    }
+                    else
+                    {
+                        // The waiting requests complete only if they are all sent at once.
+                        concurrentLatch.countDown();
+                        if (!concurrentLatch.await(5, TimeUnit.SECONDS))
+                            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    throw new ServletException(x);
+                }
+            }
+        });
+
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < count; ++i)
+        {
+            client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .path("/no-store")
+                    .send(result ->
+                    {
+                        if (result.isFailed() || result.getResponse().getStatus() != HttpStatus.OK_200)
+                            failures.incrementAndGet();
+                        latch.countDown();
+                    });
+        }
+
+        Assert.assertEquals(count - 1, cache.getCollapsed());
+        serverLatch.countDown();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(count, requests.get());
+        Assert.assertEquals(count - 1, cache.getCollapsed());
+    }
+
+    @Test
+    public void testAbortedCollapsedRequestLeavesFlight() throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        startCache(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                try
+                {
+                    serverLatch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new ServletException(x);
+                }
+                response.setHeader("Cache-Control", "max-age=60");
+            }
+        });
+
+        CountDownLatch firstLatch = new CountDownLatch(1);
+        client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .path("/aborted")
+                .send(result -> firstLatch.countDown());
+
+        CountDownLatch abortLatch = new CountDownLatch(1);
+        org.eclipse.jetty.client.api.Request waiter = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .path("/aborted");
+        waiter.send(result ->
+        {
+            if (result.isFailed())
+                abortLatch.countDown();
+        });
+        Assert.assertEquals(1, cache.getCollapsed());
+
+        // The waiter is failed without waiting for the request it joined.
+        Assert.assertTrue(waiter.abort(new Exception("explicitly aborted")));
+        Assert.assertTrue(abortLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, firstLatch.getCount());
+
+        serverLatch.countDown();
+        Assert.assertTrue(firstLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testContentMovedToDirectory() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        startCache(new CountingHandler(requests, "Cache-Control", "max-age=60"));
+        Path directory = Files.createDirectories(MavenTestingUtils.getTargetTestingPath().resolve("http-cache"));
+        cache.setDirectory(directory);
+        cache.setMaxMemorySize(1);
+
+        Assert.assertEquals("1", get("/a").getContentAsString());
+        Assert.assertEquals("2", get("/b").getContentAsString());
+        Assert.assertTrue(cache.getDiskSize() > 0);
+        Assert.assertEquals("1", get("/a").getContentAsString());
+        Assert.assertEquals("2", get("/b").getContentAsString());
+        Assert.assertEquals(2, requests.get());
+
+        cache.clear();
+        try (Stream<Path> files = Files.list(directory))
+        {
+            Assert.assertEquals(0, files.count());
+        }
+    }
+
+    private static class CountingHandler extends AbstractHandler
+    {
+        private final AtomicInteger requests;
+        private final String name;
+        private final String value;
+
+        private CountingHandler(AtomicInteger requests, String name, String value)
+        {
+            this.requests = requests;
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+        {
+            baseRequest.setHandled(true);
+            response.setHeader(name, value);
+            response.getOutputStream().print(String.valueOf(requests.incrementAndGet()));
+        }
+    }
+}
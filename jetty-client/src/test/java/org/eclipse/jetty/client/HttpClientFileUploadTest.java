@@ -0,0 +1,399 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.PathContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientFileUploadTest extends AbstractHttpClientServerTest
+{
+    private Path file;
+
+    public HttpClientFileUploadTest(SslContextFactory sslContextFactory)
+    {
+        super(sslContextFactory);
+    }
+
+    @Before
+    public void prepare() throws Exception
+    {
+        Path dir = MavenTestingUtils.getTargetTestingPath().resolve("file-upload");
+        Files.createDirectories(dir);
+        file = Files.createTempFile(dir, "upload", ".bin");
+    }
+
+    @After
+    public void cleanup() throws Exception
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testUpload() throws Exception
+    {
+        start(new ChecksumHandler(0));
+        String checksum = writeRandom(file, 16 * 1024 * 1024 + 13);
+
+        ContentResponse response = upload(new PathContentProvider(file));
+
+        Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+        Assert.assertEquals(checksum, response.getContentAsString());
+    }
+
+    @Test
+    public void testUploadMemoryMapped() throws Exception
+    {
+        start(new ChecksumHandler(0));
+        String checksum = writeRandom(file, 16 * 1024 * 1024 + 13);
+
+        PathContentProvider content = new PathContentProvider(file);
+        content.setMemoryMapped(true);
+        ContentResponse response = upload(content);
+
+        Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+        Assert.assertEquals(checksum, response.getContentAsString());
+    }
+
+    @Test
+    public void testUploadIsTransferred() throws Exception
+    {
+        start(new ChecksumHandler(0));
+        String checksum = writeRandom(file, 4 * 1024 * 1024 + 13);
+
+        AtomicInteger transfers = new AtomicInteger();
+        ContentResponse response = upload(newTransferCountingContent(transfers));
+
+        Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+        Assert.assertEquals(checksum, response.getContentAsString());
+        // Only cleartext connections transfer the file to the socket.
+        if (sslContextFactory == null)
+            Assert.assertThat(transfers.get(), Matchers.greaterThan(0));
+        else
+            Assert.assertEquals(0, transfers.get());
+    }
+
+    @Test
+    public void testUploadWithContentListenerIsNotTransferred() throws Exception
+    {
+        start(new ChecksumHandler(0));
+        int length = 4 * 1024 * 1024 + 13;
+        String checksum = writeRandom(file, length);
+
+        AtomicInteger transfers = new AtomicInteger();
+        AtomicLong notified = new AtomicLong();
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .method(HttpMethod.POST)
+                .content(newTransferCountingContent(transfers))
+                .onRequestContent((request, buffer) -> notified.addAndGet(buffer.remaining()))
+                .timeout(15, TimeUnit.SECONDS)
+                .send();
+
+        Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+        Assert.assertEquals(checksum, response.getContentAsString());
+        Assert.assertEquals(length, notified.get());
+        Assert.assertEquals(0, transfers.get());
+    }
+
+    @Test
+    public void testUploadToSlowServer() throws Exception
+    {
+        start(new ChecksumHandler(2));
+        String checksum = writeRandom(file, 8 * 1024 * 1024 + 13);
+
+        for (int i = 0; i < 2; ++i)
+        {
+            // Also verifies that the connection can be reused after a transfer.
+            ContentResponse response = upload(new PathContentProvider(file));
+            Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+            Assert.assertEquals(checksum, response.getContentAsString());
+        }
+    }
+
+    @Stress("Multi-GB uploads")
+    @Test
+    public void testUploadBenchmark() throws Exception
+    {
+        start(new ChecksumHandler(0));
+        long length = 4L * 1024 * 1024 * 1024;
+        // A sparse file, so that the benchmark measures the network path.
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+        {
+            raf.setLength(length);
+        }
+
+        for (int run = 0; run < 3; ++run)
+        {
+            benchmark("transferred", new PathContentProvider(file), false);
+            PathContentProvider mapped = new PathContentProvider(file);
+            mapped.setMemoryMapped(true);
+            benchmark("mapped", mapped, true);
+            PathContentProvider buffered = new PathContentProvider(file, 64 * 1024);
+            buffered.setByteBufferPool(client.getByteBufferPool());
+            benchmark("buffered", buffered, true);
+        }
+    }
+
+    private void benchmark(String name, PathContentProvider content, boolean iterate) throws Exception
+    {
+        long begin = System.nanoTime();
+        org.eclipse.jetty.client.api.Request request = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .method(HttpMethod.POST)
+                .content(content)
+                .timeout(5, TimeUnit.MINUTES);
+        // A content listener disables the zero-copy transfer.
+        if (iterate)
+            request.onRequestContent((r, b) -> {});
+        ContentResponse response = request.send();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+        System.err.printf("%s %s: %d MiB in %d ms, %d MiB/s%n", scheme, name,
+                content.getLength() >> 20, elapsed, (content.getLength() >> 20) * 1000 / Math.max(1, elapsed));
+    }
+
+    private ContentResponse upload(PathContentProvider content) throws Exception
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .method(HttpMethod.POST)
+                .content(content)
+                .timeout(15, TimeUnit.SECONDS)
+                .send();
+    }
+
+    private static String writeRandom(Path file, int length) throws IOException
+    {
+        byte[] bytes = new byte[length];
+        new Random().nextBytes(bytes);
+        Files.write(file, bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return length + "/" + crc.getValue();
+    }
+
+    private PathContentProvider newTransferCountingContent(AtomicInteger transfers) throws IOException
+    {
+        return new PathContentProvider(file)
+        {
+            @Override
+            public FileChannel newFileChannel() throws IOException
+            {
+                return new TransferCountingFileChannel(super.newFileChannel(), transfers);
+            }
+        };
+    }
+
+    /**
+     * A {@link FileChannel} that counts the calls to {@link #transferTo(long, long, WritableByteChannel)}.
+     */
+    private static class TransferCountingFileChannel extends FileChannel
+    {
+        private final FileChannel channel;
+        private final AtomicInteger transfers;
+
+        private TransferCountingFileChannel(FileChannel channel, AtomicInteger transfers)
+        {
+            this.channel = channel;
+            this.transfers = transfers;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException
+        {
+            transfers.incrementAndGet();
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException
+        {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+        {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException
+        {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+        {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException
+        {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public long position() throws IOException
+        {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException
+        {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException
+        {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException
+        {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException
+        {
+            channel.force(metaData);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException
+        {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException
+        {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException
+        {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    private static class ChecksumHandler extends AbstractHandler
+    {
+        private final long pause;
+
+        private ChecksumHandler(long pause)
+        {
+            this.pause = pause;
+        }
+
+        @Override
+        public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+        {
+            jettyRequest.setHandled(true);
+            CRC32 crc = new CRC32();
+            long length = 0;
+            byte[] buffer = new byte[64 * 1024];
+            InputStream input = request.getInputStream();
+            while (true)
+            {
+                int read = input.read(buffer);
+                if (read < 0)
+                    break;
+                crc.update(buffer, 0, read);
+                length += read;
+                if (pause > 0)
+                    sleep(pause);
+            }
+            response.getOutputStream().write((length + "/" + crc.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void sleep(long millis) throws IOException
+        {
+            try
+            {
+                Thread.sleep(millis);
+            }
+            catch (InterruptedException x)
+            {
+                throw new IOException(x);
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.client.http.PipelinedHttpDestinationOverHTTP;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpClientPipeliningTest extends AbstractHttpClientServerTest
+{
+    public HttpClientPipeliningTest(SslContextFactory sslContextFactory)
+    {
+        super(sslContextFactory);
+    }
+
+    private void startPipelining(AbstractHandler handler, int maxPipelined, int maxConnections) throws Exception
+    {
+        startServer(handler);
+        HttpClientTransportOverHTTP transport = new HttpClientTransportOverHTTP(1);
+        transport.setMaxPipelinedRequests(maxPipelined);
+        startClient(transport);
+        client.setMaxConnectionsPerDestination(maxConnections);
+    }
+
+    @Test
+    public void testPipelinedRequestsShareConnection() throws Exception
+    {
+        Set<Integer> ports = ConcurrentHashMap.newKeySet();
+        startPipelining(new EchoPathHandler(ports), 8, 1);
+
+        int count = 32;
+        CountDownLatch latch = new CountDownLatch(count);
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            String path = "/" + i;
+            client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .path(path)
+                    .send(result ->
+                    {
+                        if (result.isFailed())
+                        {
+                            synchronized (failures)
+                            {
+                                failures.add(path + ": " + result.getFailure());
+                            }
+                        }
+                        latch.countDown();
+                    });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+        Assert.assertEquals(1, ports.size());
+
+        HttpDestination destination = (HttpDestination)client.getDestination(scheme, "localhost", connector.getLocalPort());
+        Assert.assertTrue(destination instanceof PipelinedHttpDestinationOverHTTP);
+        Assert.assertEquals(1, ((AbstractConnectionPool)destination.getConnectionPool()).getConnectionCount());
+    }
+
+    @Test
+    public void testPipelinedResponsesMatchRequests() throws Exception
+    {
+        startPipelining(new EchoPathHandler(ConcurrentHashMap.newKeySet()), 4, 1);
+
+        int count = 16;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger mismatches = new AtomicInteger();
+        for (int i = 0; i < count; ++i)
+        {
+            String path = "/" + i;
+            client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .method(i % 3 == 0 ? HttpMethod.HEAD : HttpMethod.GET)
+                    .path(path)
+                    .send(new BufferingResponseListener()
+                    {
+                        @Override
+                        public void onComplete(Result result)
+                        {
+                            boolean head = HttpMethod.HEAD.is(result.getRequest().getMethod());
+                            if (result.isFailed() || (!head && !path.equals(getContentAsString())))
+                                mismatches.incrementAndGet();
+                            latch.countDown();
+                        }
+                    });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    public void testNonIdempotentRequestIsNotPipelined() throws Exception
+    {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        startPipelining(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                int current = concurrent.incrementAndGet();
+                maxConcurrent.accumulateAndGet(current, Math::max);
+                try
+                {
+                    IO.copy(request.getInputStream(), response.getOutputStream());
+                }
+                finally
+                {
+                    concurrent.decrementAndGet();
+                }
+            }
+        }, 4, 1);
+
+        int count = 8;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < count; ++i)
+        {
+            client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .method(HttpMethod.POST)
+                    .content(new StringContentProvider("data" + i))
+                    .send(result ->
+                    {
+                        if (result.isFailed() || result.getResponse().getStatus() != HttpStatus.OK_200)
+                            failures.incrementAndGet();
+                        latch.countDown();
+                    });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    public void testUnansweredRequestsResentWhenServerClosesConnection() throws Exception
+    {
+        int maxRequestsPerConnection = 3;
+        Map<Integer, AtomicInteger> requestsPerPort = new ConcurrentHashMap<>();
+        startPipelining(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                int requests = requestsPerPort.computeIfAbsent(request.getRemotePort(), port -> new AtomicInteger()).incrementAndGet();
+                // Like a server with a keep-alive limit, discarding the pipelined requests that follow.
+                if (requests == maxRequestsPerConnection)
+                    response.setHeader(HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
+                response.getOutputStream().print(target);
+            }
+        }, 8, 1);
+
+        int count = 16;
+        CountDownLatch latch = new CountDownLatch(count);
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            String path = "/" + i;
+            client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .path(path)
+                    .send(new BufferingResponseListener()
+                    {
+                        @Override
+                        public void onComplete(Result result)
+                        {
+                            if (result.isFailed() || !path.equals(getContentAsString()))
+                            {
+                                synchronized (failures)
+                                {
+                                    failures.add(path + ": " + result.getFailure());
+                                }
+                            }
+                            latch.countDown();
+                        }
+                    });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+        Assert.assertTrue(requestsPerPort.size() >= count / maxRequestsPerConnection);
+    }
+
+    @Stress("Compares the throughput of pipelined and non pipelined requests")
+    @Test
+    public void testLoadPipelinedVsNonPipelined() throws Exception
+    {
+        Set<Integer> ports = ConcurrentHashMap.newKeySet();
+        startServer(new EchoPathHandler(ports));
+
+        int requests = 1000;
+        long[] elapsed = new long[2];
+        int[] connections = new int[2];
+        int[] pipelining = {1, 16};
+        for (int i = 0; i < pipelining.length; ++i)
+        {
+            ports.clear();
+            HttpClientTransportOverHTTP transport = new HttpClientTransportOverHTTP(1);
+            transport.setMaxPipelinedRequests(pipelining[i]);
+            startClient(transport);
+            client.setMaxConnectionsPerDestination(4);
+            try
+            {
+                // Warm up.
+                ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                        .scheme(scheme)
+                        .timeout(5, TimeUnit.SECONDS)
+                        .send();
+                Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+
+                CountDownLatch latch = new CountDownLatch(requests);
+                AtomicInteger failures = new AtomicInteger();
+                long begin = System.nanoTime();
+                for (int j = 0; j < requests; ++j)
+                {
+                    client.newRequest("localhost", connector.getLocalPort())
+                            .scheme(scheme)
+                            .path("/" + j)
+                            .send(result ->
+                            {
+                                if (result.isFailed())
+                                    failures.incrementAndGet();
+                                latch.countDown();
+                            });
+                }
+                Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+                elapsed[i] = System.nanoTime() - begin;
+                connections[i] = ports.size();
+                Assert.assertEquals(0, failures.get());
+            }
+            finally
+            {
+                client.stop();
+            }
+        }
+
+        for (int i = 0; i < pipelining.length; ++i)
+        {
+            System.err.printf("pipelining=%d: %d requests in %d ms (%.0f req/s) over %d connections%n",
+                    pipelining[i], requests, TimeUnit.NANOSECONDS.toMillis(elapsed[i]),
+                    requests * 1_000_000_000D / elapsed[i], connections[i]);
+        }
+        Assert.assertTrue(connections[1] <= connections[0]);
+        Assert.assertTrue(connections[1] <= 4);
+    }
+
+    private static class EchoPathHandler extends AbstractHandler
+    {
+        private final Set<Integer> ports;
+
+        private EchoPathHandler(Set<Integer> ports)
+        {
+            this.ports = ports;
+        }
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+        {
+            baseRequest.setHandled(true);
+            ports.add(request.getRemotePort());
+            response.getOutputStream().print(target);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpClientStaggeredConnectTest extends AbstractHttpClientServerTest
+{
+    public HttpClientStaggeredConnectTest(SslContextFactory sslContextFactory)
+    {
+        super(sslContextFactory);
+    }
+
+    @Test
+    public void testFirstAddressUnreachable() throws Exception
+    {
+        startServer(new EmptyServerHandler());
+        int port = connector.getLocalPort();
+        // An address of the TEST-NET-1 block, whose connection attempt never completes.
+        InetSocketAddress unreachable = new InetSocketAddress("192.0.2.1", port);
+        CountDownLatch cancelLatch = new CountDownLatch(1);
+        startClient(new HttpClientTransportOverHTTP(1)
+        {
+            @Override
+            public void connect(InetSocketAddress address, Map<String, Object> context)
+            {
+                if (address.equals(unreachable))
+                    context.put(CONNECT_CHANNEL_CONTEXT_KEY, (Closeable)cancelLatch::countDown);
+                else
+                    super.connect(address, context);
+            }
+        });
+        client.setConnectionAttemptDelay(100);
+        client.setSocketAddressResolver((host, p, promise) ->
+                promise.succeeded(Arrays.asList(unreachable, new InetSocketAddress("127.0.0.1", port))));
+
+        ContentResponse response = client.newRequest("localhost", port)
+                .scheme(scheme)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+
+        Assert.assertEquals(200, response.getStatus());
+        // The attempt that lost the race is cancelled.
+        Assert.assertTrue(cancelLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBothAddressesConnect() throws Exception
+    {
+        startServer(new EmptyServerHandler());
+        int port = connector.getLocalPort();
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicReferenceArray<Connection> connections = new AtomicReferenceArray<>(2);
+        CountDownLatch secondLatch = new CountDownLatch(1);
+        startClient(new HttpClientTransportOverHTTP(1)
+        {
+            @Override
+            public void connect(InetSocketAddress address, Map<String, Object> context)
+            {
+                int attempt = attempts.getAndIncrement();
+                @SuppressWarnings("unchecked")
+                Promise<Connection> promise = (Promise<Connection>)context.get(HTTP_CONNECTION_PROMISE_CONTEXT_KEY);
+                context.put(HTTP_CONNECTION_PROMISE_CONTEXT_KEY, new Promise.Wrapper<Connection>(promise)
+                {
+                    @Override
+                    public void succeeded(Connection connection)
+                    {
+                        connections.set(attempt, connection);
+                        if (attempt == 0)
+                        {
+                            // Hold the first connection until the second is
+                            // established, so that both addresses connect.
+                            client.getExecutor().execute(() ->
+                            {
+                                try
+                                {
+                                    secondLatch.await(5, TimeUnit.SECONDS);
+                                }
+                                catch (InterruptedException x)
+                                {
+                                    Thread.currentThread().interrupt();
+                                }
+                                getPromise().succeeded(connection);
+                            });
+                        }
+                        else
+                        {
+                            super.succeeded(connection);
+                            secondLatch.countDown();
+                        }
+                    }
+                });
+                super.connect(address, context);
+            }
+        });
+        client.setConnectionAttemptDelay(100);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+        client.setSocketAddressResolver((host, p, promise) -> promise.succeeded(Arrays.asList(address, address)));
+
+        ContentResponse response = client.newRequest("localhost", port)
+                .scheme(scheme)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals(2, attempts.get());
+
+        // The connection that lost the race is closed.
+        Connection loser = connections.get(0);
+        Assert.assertNotNull(loser);
+        long start = System.nanoTime();
+        while (!loser.isClosed() && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5)
+            TimeUnit.MILLISECONDS.sleep(10);
+        Assert.assertTrue(loser.isClosed());
+        Assert.assertFalse(connections.get(1).isClosed());
+    }
+}
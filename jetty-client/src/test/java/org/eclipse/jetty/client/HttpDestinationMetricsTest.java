@@ -0,0 +1,82 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpDestinationMetricsTest extends AbstractHttpClientServerTest
+{
+    public HttpDestinationMetricsTest(SslContextFactory sslContextFactory)
+    {
+        super(sslContextFactory);
+    }
+
+    @Test
+    public void testMetricsDisabledByDefault() throws Exception
+    {
+        start(new EmptyServerHandler());
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+        Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+
+        HttpDestination destination = (HttpDestination)client.getDestination(scheme, "localhost", connector.getLocalPort());
+        Assert.assertNull(destination.getMetrics());
+    }
+
+    @Test
+    public void testPhasesAreRecorded() throws Exception
+    {
+        start(new EmptyServerHandler());
+        client.setDestinationMetrics(true);
+
+        int count = 10;
+        for (int i = 0; i < count; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                    .scheme(scheme)
+                    .timeout(5, TimeUnit.SECONDS)
+                    .send();
+            Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+        }
+
+        HttpDestination destination = (HttpDestination)client.getDestination(scheme, "localhost", connector.getLocalPort());
+        HttpDestinationMetrics metrics = destination.getMetrics();
+        Assert.assertNotNull(metrics);
+        Assert.assertEquals(count, metrics.getQueueTime().getCount());
+        Assert.assertEquals(count, metrics.getResponseHeadersTime().getCount());
+        Assert.assertEquals(count, metrics.getResponseContentTime().getCount());
+        Assert.assertEquals(count, metrics.getExchangeCount());
+        Assert.assertEquals(1, metrics.getConnectTime().getCount());
+        Assert.assertEquals(sslContextFactory == null ? 0 : 1, metrics.getTLSHandshakeTime().getCount());
+        Assert.assertTrue(metrics.getExchangeTimeMax() >= metrics.getResponseHeadersTimeMax());
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getExchangeCount());
+    }
+}
@@ -0,0 +1,189 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.util.PathResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PathResponseListenerTest extends AbstractHttpClientServerTest
+{
+    private final byte[] data = new byte[4 * 1024 * 1024 + 7];
+    private Path file;
+
+    public PathResponseListenerTest(SslContextFactory sslContextFactory)
+    {
+        super(sslContextFactory);
+    }
+
+    @Before
+    public void prepare() throws Exception
+    {
+        new Random().nextBytes(data);
+        Path dir = MavenTestingUtils.getTargetTestingPath().resolve("path-response-listener");
+        Files.createDirectories(dir);
+        file = Files.createTempFile(dir, "download", ".bin");
+    }
+
+    @After
+    public void cleanup() throws Exception
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testDownload() throws Exception
+    {
+        start(new RangeHandler());
+
+        PathResponseListener listener = download(false);
+
+        Assert.assertEquals(HttpStatus.OK_200, listener.get(15, TimeUnit.SECONDS).getStatus());
+        Assert.assertArrayEquals(data, Files.readAllBytes(file));
+        Assert.assertEquals(data.length, listener.getLength());
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), listener.getDigest());
+    }
+
+    @Test
+    public void testResume() throws Exception
+    {
+        start(new RangeHandler());
+        Files.write(file, data);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+        {
+            raf.setLength(data.length / 3);
+        }
+
+        PathResponseListener listener = download(true);
+
+        Assert.assertEquals(HttpStatus.PARTIAL_CONTENT_206, listener.get(15, TimeUnit.SECONDS).getStatus());
+        Assert.assertArrayEquals(data, Files.readAllBytes(file));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), listener.getDigest());
+    }
+
+    @Test
+    public void testResumeCompleteFile() throws Exception
+    {
+        start(new RangeHandler());
+        Files.write(file, data);
+
+        PathResponseListener listener = download(true);
+
+        Assert.assertEquals(HttpStatus.RANGE_NOT_SATISFIABLE_416, listener.get(15, TimeUnit.SECONDS).getStatus());
+        Assert.assertArrayEquals(data, Files.readAllBytes(file));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), listener.getDigest());
+    }
+
+    @Test
+    public void testResumeIgnoredByServer() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                jettyRequest.setHandled(true);
+                response.getOutputStream().write(data);
+            }
+        });
+        Files.write(file, new byte[1024]);
+
+        PathResponseListener listener = download(true);
+
+        Assert.assertEquals(HttpStatus.OK_200, listener.get(15, TimeUnit.SECONDS).getStatus());
+        Assert.assertArrayEquals(data, Files.readAllBytes(file));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), listener.getDigest());
+    }
+
+    @Test
+    public void testErrorResponseIsNotWritten() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                jettyRequest.setHandled(true);
+                response.sendError(HttpStatus.NOT_FOUND_404);
+            }
+        });
+
+        PathResponseListener listener = download(false);
+
+        Assert.assertEquals(HttpStatus.NOT_FOUND_404, listener.get(15, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals(0, Files.size(file));
+    }
+
+    private PathResponseListener download(boolean resume) throws IOException
+    {
+        org.eclipse.jetty.client.api.Request request = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scheme)
+                .timeout(15, TimeUnit.SECONDS);
+        PathResponseListener listener = new PathResponseListener(request, file, resume, "SHA-256");
+        request.send(listener);
+        return listener;
+    }
+
+    private class RangeHandler extends AbstractHandler
+    {
+        @Override
+        public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+        {
+            jettyRequest.setHandled(true);
+            String range = request.getHeader(HttpHeader.RANGE.asString());
+            if (range == null)
+            {
+                response.getOutputStream().write(data);
+                return;
+            }
+
+            int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (start >= data.length)
+            {
+                response.setStatus(HttpStatus.RANGE_NOT_SATISFIABLE_416);
+                response.setHeader(HttpHeader.CONTENT_RANGE.asString(), "bytes */" + data.length);
+                return;
+            }
+
+            response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
+            response.setHeader(HttpHeader.CONTENT_RANGE.asString(), "bytes " + start + "-" + (data.length - 1) + "/" + data.length);
+            response.getOutputStream().write(data, start, data.length - start);
+        }
+    }
+}
@@ -35,6 +35,8 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.util.PathAttributesCache;
+
 /**
  * Inspired by nginx's try_files functionality.
  * <p>
@@ -62,14 +64,31 @@ import javax.servlet.http.HttpServletResponse;
  * <p>
  * The files are resolved using {@link ServletContext#getResource(String)} to make sure
  * that only files visible to the application are served.
+ * <p>
+ * The existence of the files may be cached in a {@link PathAttributesCache} by specifying
+ * the <code>pathAttributesCache</code> init-param, whose value is the name of the servlet
+ * context attribute that holds the cache; if the attribute is not present, a cache is
+ * created, configured with the <code>pathAttributesCacheTimeToLive</code> (in milliseconds),
+ * <code>pathAttributesCacheMaxEntries</code> and <code>pathAttributesCacheWatch</code>
+ * init-params, and stored under that attribute so that it can be shared, for example
+ * with the <code>DefaultServlet</code> that serves the static files.
+ * When <code>pathAttributesCacheWatch</code> is <code>true</code>, the document root is
+ * watched for changes that invalidate the cached entries.
  *
  * @see FastCGIProxyServlet
  */
 public class TryFilesFilter implements Filter
 {
     public static final String FILES_INIT_PARAM = "files";
+    public static final String CACHE_INIT_PARAM = "pathAttributesCache";
+    public static final String CACHE_TIME_TO_LIVE_INIT_PARAM = "pathAttributesCacheTimeToLive";
+    public static final String CACHE_MAX_ENTRIES_INIT_PARAM = "pathAttributesCacheMaxEntries";
+    public static final String CACHE_WATCH_INIT_PARAM = "pathAttributesCacheWatch";
 
     private String[] files;
+    private ServletContext context;
+    private PathAttributesCache cache;
+    private boolean ownCache;
 
     @Override
     public void init(FilterConfig config) throws ServletException
@@ -78,6 +97,58 @@ public class TryFilesFilter implements Filter
         if (param == null)
             throw new ServletException(String.format("Missing mandatory parameter '%s'", FILES_INIT_PARAM));
         files = param.split(" ");
+
+        context = config.getServletContext();
+        String cacheAttribute = config.getInitParameter(CACHE_INIT_PARAM);
+        if (cacheAttribute != null)
+        {
+            Object attribute = context.getAttribute(cacheAttribute);
+            if (attribute instanceof PathAttributesCache)
+            {
+                cache = (PathAttributesCache)attribute;
+            }
+            else if (attribute != null)
+            {
+                throw new ServletException(String.format("Attribute '%s' is not a %s", cacheAttribute, PathAttributesCache.class.getSimpleName()));
+            }
+            else
+            {
+                cache = newPathAttributesCache(config);
+                try
+                {
+                    cache.start();
+                }
+                catch (Exception x)
+                {
+                    throw new ServletException(x);
+                }
+                context.setAttribute(cacheAttribute, cache);
+                ownCache = true;
+            }
+        }
+    }
+
+    protected PathAttributesCache newPathAttributesCache(FilterConfig config)
+    {
+        PathAttributesCache cache = new PathAttributesCache();
+        String value = config.getInitParameter(CACHE_TIME_TO_LIVE_INIT_PARAM);
+        if (value != null)
+            cache.setTimeToLive(Long.parseLong(value));
+        value = config.getInitParameter(CACHE_MAX_ENTRIES_INIT_PARAM);
+        if (value != null)
+            cache.setMaxEntries(Integer.parseInt(value));
+        if (Boolean.parseBoolean(config.getInitParameter(CACHE_WATCH_INIT_PARAM)))
+        {
+            String root = config.getServletContext().getRealPath("/");
+            if (root != null)
+                cache.setWatchPath(Paths.get(root));
+        }
+        return cache;
+    }
+
+    public PathAttributesCache getPathAttributesCache()
+    {
+        return cache;
     }
 
     @Override
@@ -91,11 +162,7 @@ public class TryFilesFilter implements Filter
             String file = files[i];
             String resolved = resolve(httpRequest, file);
 
-            URL url = request.getServletContext().getResource(resolved);
-            if (url == null)
-                continue;
-
-            if (Files.isReadable(toPath(url)))
+            if (isReadable(resolved))
             {
                 chain.doFilter(httpRequest, httpResponse);
                 return;
@@ -106,6 +173,20 @@ public class TryFilesFilter implements Filter
         fallback(httpRequest, httpResponse, chain, files[files.length - 1]);
     }
 
+    private boolean isReadable(String resolved) throws IOException
+    {
+        if (cache != null)
+            return cache.get(resolved, this::toPath).isReadable();
+        Path path = toPath(resolved);
+        return path != null && Files.isReadable(path);
+    }
+
+    private Path toPath(String resolved) throws IOException
+    {
+        URL url = context.getResource(resolved);
+        return url == null ? null : toPath(url);
+    }
+
     private Path toPath(URL url) throws IOException
     {
         try
@@ -138,5 +219,18 @@ public class TryFilesFilter implements Filter
     @Override
     public void destroy()
     {
+        if (ownCache)
+        {
+            try
+            {
+                cache.stop();
+            }
+            catch (Exception x)
+            {
+                context.log("Could not stop " + cache, x);
+            }
+            ownCache = false;
+        }
+        cache = null;
     }
 }
@@ -0,0 +1,260 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * <p>A cache digest, that is a compact probabilistic representation of a set of
+ * URLs, encoded as a Golomb-coded set as described by the HTTP cache digest draft.</p>
+ * <p>Each URL is hashed with SHA-256 to a value of {@code log2(N*P)} bits, where
+ * {@code N} is the (power of 2) capacity of the digest and {@code 1/P} is the (power
+ * of 2) false positive probability. The sorted hash values are encoded as the 5 bits
+ * of {@code log2(N)}, the 5 bits of {@code log2(P)} and then, for each value, the
+ * difference from the previous value with the quotient by {@code P} in unary and the
+ * remainder in {@code log2(P)} bits.</p>
+ * <p>A digest may report that it {@link #contains(String) contains} a URL that was never
+ * added with probability {@code 1/P}, but never reports that it does not contain a URL
+ * that was added.</p>
+ *
+ * @see "https://tools.ietf.org/html/draft-ietf-httpbis-cache-digest"
+ */
+public class CacheDigest
+{
+    private static final long[] NO_VALUES = new long[0];
+
+    private final int _nLog2;
+    private final int _pLog2;
+    private long[] _values = NO_VALUES;
+    private int _size;
+
+    /**
+     * @param nLog2 the log2 of the capacity of the digest
+     * @param pLog2 the log2 of the inverse of the false positive probability
+     */
+    public CacheDigest(int nLog2, int pLog2)
+    {
+        if (nLog2 < 0 || nLog2 > 31 || pLog2 < 0 || pLog2 > 31)
+            throw new IllegalArgumentException("Invalid digest parameters " + nLog2 + "," + pLog2);
+        _nLog2 = nLog2;
+        _pLog2 = pLog2;
+    }
+
+    public int getNLog2()
+    {
+        return _nLog2;
+    }
+
+    public int getPLog2()
+    {
+        return _pLog2;
+    }
+
+    /**
+     * @return the number of distinct hash values in this digest
+     */
+    public int size()
+    {
+        return _size;
+    }
+
+    /**
+     * @return whether this digest holds as many values as its capacity
+     */
+    public boolean isFull()
+    {
+        return _size >= (1L << _nLog2);
+    }
+
+    /**
+     * @param url the URL to test
+     * @return whether the URL may have been added to this digest
+     */
+    public boolean contains(String url)
+    {
+        return Arrays.binarySearch(_values, 0, _size, hash(url)) >= 0;
+    }
+
+    /**
+     * @param url the URL to add
+     * @return whether the digest changed
+     */
+    public boolean add(String url)
+    {
+        return addValue(hash(url));
+    }
+
+    private boolean addValue(long value)
+    {
+        int index = Arrays.binarySearch(_values, 0, _size, value);
+        if (index >= 0)
+            return false;
+        index = -index - 1;
+        if (_size == _values.length)
+            _values = Arrays.copyOf(_values, Math.max(8, _size * 2));
+        System.arraycopy(_values, index, _values, index + 1, _size - index);
+        _values[index] = value;
+        ++_size;
+        return true;
+    }
+
+    private long hash(String url)
+    {
+        int bits = _nLog2 + _pLog2;
+        if (bits == 0)
+            return 0;
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; ++i)
+                value = (value << 8) | (digest[i] & 0xFF);
+            return value >>> (64 - bits);
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    /**
+     * @return the base64url encoding, without padding, of this digest
+     */
+    public String asString()
+    {
+        BitWriter writer = new BitWriter();
+        writer.write(_nLog2, 5);
+        writer.write(_pLog2, 5);
+        long previous = -1;
+        for (int i = 0; i < _size; ++i)
+        {
+            long delta = _values[i] - previous - 1;
+            previous = _values[i];
+            for (long q = delta >>> _pLog2; q > 0; --q)
+                writer.write(0, 1);
+            writer.write(1, 1);
+            writer.write(delta & ((1L << _pLog2) - 1), _pLog2);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(writer.toByteArray());
+    }
+
+    /**
+     * @param value the base64url encoding of a digest, with or without padding
+     * @return the digest
+     * @throws IllegalArgumentException if the value is not a valid digest
+     */
+    public static CacheDigest parse(String value)
+    {
+        byte[] bytes = Base64.getUrlDecoder().decode(value.trim());
+        BitReader reader = new BitReader(bytes);
+        if (reader.available() < 10)
+            throw new IllegalArgumentException("Invalid digest " + value);
+        CacheDigest digest = new CacheDigest((int)reader.read(5), (int)reader.read(5));
+        int pLog2 = digest._pLog2;
+        long max = 1L << (digest._nLog2 + pLog2);
+        long previous = -1;
+        while (true)
+        {
+            long q = 0;
+            boolean terminated = false;
+            while (reader.available() > 0)
+            {
+                if (reader.read(1) == 1)
+                {
+                    terminated = true;
+                    break;
+                }
+                ++q;
+            }
+            // Only the zero bits of the padding were left.
+            if (!terminated)
+                break;
+            if (reader.available() < pLog2)
+                throw new IllegalArgumentException("Invalid digest " + value);
+            long delta = (q << pLog2) | reader.read(pLog2);
+            previous = previous + delta + 1;
+            if (previous >= max)
+                throw new IllegalArgumentException("Invalid digest " + value);
+            digest.addValue(previous);
+        }
+        return digest;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{n=%d,p=%d,size=%d}", getClass().getSimpleName(), hashCode(), 1L << _nLog2, 1L << _pLog2, _size);
+    }
+
+    private static class BitWriter
+    {
+        private byte[] _bytes = new byte[16];
+        private long _bits;
+
+        private void write(long value, int bits)
+        {
+            for (int i = bits - 1; i >= 0; --i)
+            {
+                int index = (int)(_bits >>> 3);
+                if (index == _bytes.length)
+                    _bytes = Arrays.copyOf(_bytes, index * 2);
+                if (((value >>> i) & 1) != 0)
+                    _bytes[index] |= 0x80 >>> (_bits & 7);
+                ++_bits;
+            }
+        }
+
+        private byte[] toByteArray()
+        {
+            return Arrays.copyOf(_bytes, (int)((_bits + 7) >>> 3));
+        }
+    }
+
+    private static class BitReader
+    {
+        private final byte[] _bytes;
+        private long _bit;
+
+        private BitReader(byte[] bytes)
+        {
+            _bytes = bytes;
+        }
+
+        private long available()
+        {
+            return _bytes.length * 8L - _bit;
+        }
+
+        private long read(int bits)
+        {
+            long value = 0;
+            for (int i = 0; i < bits; ++i)
+            {
+                int b = _bytes[(int)(_bit >>> 3)] & 0xFF;
+                value = (value << 1) | ((b >>> (7 - (_bit & 7))) & 1);
+                ++_bit;
+            }
+            return value;
+        }
+    }
+}
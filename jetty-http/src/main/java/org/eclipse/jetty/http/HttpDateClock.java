@@ -0,0 +1,192 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.StringUtil;
+
+/**
+ * <p>A shared clock that publishes, for the current second, the {@code Date}
+ * response header as a {@link PreEncodedHttpField} and the NCSA access log
+ * timestamp.</p>
+ * <p>The {@link Tick} of a second is formatted by the first caller that observes
+ * that second and is published with a compare-and-set, so that all the other
+ * callers in the same second neither lock nor allocate.</p>
+ * <p>The NCSA timestamp of an older second, such as the start time of a request
+ * that is logged after the clock ticked, is obtained with
+ * {@link #getNCSATimestamp(long)}, which only formats that timestamp and keeps
+ * the last one so that the requests that started in the same second share it.</p>
+ */
+public class HttpDateClock
+{
+    private static final HttpDateClock __clock = new HttpDateClock();
+    private static final TimeZone __GMT = TimeZone.getTimeZone("GMT");
+
+    private final AtomicReference<Tick> _tick = new AtomicReference<>();
+    private final AtomicReference<NCSATimestamp> _older = new AtomicReference<>();
+
+    /**
+     * @return the clock shared by all the servers in the JVM
+     */
+    public static HttpDateClock getClock()
+    {
+        return __clock;
+    }
+
+    /**
+     * @return the tick of the current second
+     */
+    public Tick tick()
+    {
+        return tick(System.currentTimeMillis());
+    }
+
+    /**
+     * @param time the time in milliseconds
+     * @return the tick of the second of the given time, which is only
+     * published if it is not older than the current tick
+     */
+    public Tick tick(long time)
+    {
+        long seconds = time / 1000;
+        Tick tick = _tick.get();
+        if (tick != null && tick._seconds == seconds)
+            return tick;
+
+        Tick next = new Tick(seconds);
+        while (true)
+        {
+            tick = _tick.get();
+            if (tick != null && tick._seconds >= seconds)
+                return tick._seconds == seconds ? tick : next;
+            if (_tick.compareAndSet(tick, next))
+            {
+                if (tick != null)
+                    _older.set(new NCSATimestamp(tick._seconds, tick._ncsaTimestamp));
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @param time the time in milliseconds
+     * @return the NCSA timestamp "dd/MMM/yyyy:HH:mm:ss +0000" of the second of the given time
+     */
+    public String getNCSATimestamp(long time)
+    {
+        long seconds = time / 1000;
+        Tick tick = _tick.get();
+        if (tick == null || tick._seconds <= seconds)
+            return tick(time)._ncsaTimestamp;
+
+        NCSATimestamp older = _older.get();
+        if (older != null && older._seconds == seconds)
+            return older._value;
+        older = new NCSATimestamp(seconds, formatNCSATimestamp(seconds * 1000));
+        _older.set(older);
+        return older._value;
+    }
+
+    /**
+     * <p>The formatted representations of a second.</p>
+     */
+    public static class Tick
+    {
+        private final long _seconds;
+        private final HttpField _dateField;
+        private final String _ncsaTimestamp;
+
+        private Tick(long seconds)
+        {
+            _seconds = seconds;
+            long time = seconds * 1000;
+            _dateField = new PreEncodedHttpField(HttpHeader.DATE, DateGenerator.formatDate(time));
+            _ncsaTimestamp = formatNCSATimestamp(time);
+        }
+
+        /**
+         * @return the seconds since the epoch of this tick
+         */
+        public long getSeconds()
+        {
+            return _seconds;
+        }
+
+        /**
+         * @return the pre-encoded {@code Date} header for this tick
+         */
+        public HttpField getDateField()
+        {
+            return _dateField;
+        }
+
+        /**
+         * @return the NCSA timestamp "dd/MMM/yyyy:HH:mm:ss +0000" for this tick
+         */
+        public String getNCSATimestamp()
+        {
+            return _ncsaTimestamp;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%d}", getClass().getSimpleName(), hashCode(), _seconds);
+        }
+    }
+
+    private static class NCSATimestamp
+    {
+        private final long _seconds;
+        private final String _value;
+
+        private NCSATimestamp(long seconds, String value)
+        {
+            _seconds = seconds;
+            _value = value;
+        }
+    }
+
+    private static String formatNCSATimestamp(long time)
+    {
+        GregorianCalendar calendar = new GregorianCalendar(__GMT);
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+
+        StringBuilder buf = new StringBuilder(26);
+        StringUtil.append2digits(buf, calendar.get(Calendar.DAY_OF_MONTH));
+        buf.append('/');
+        buf.append(DateGenerator.MONTHS[calendar.get(Calendar.MONTH)]);
+        buf.append('/');
+        StringUtil.append2digits(buf, year / 100);
+        StringUtil.append2digits(buf, year % 100);
+        buf.append(':');
+        StringUtil.append2digits(buf, calendar.get(Calendar.HOUR_OF_DAY));
+        buf.append(':');
+        StringUtil.append2digits(buf, calendar.get(Calendar.MINUTE));
+        buf.append(':');
+        StringUtil.append2digits(buf, calendar.get(Calendar.SECOND));
+        buf.append(" +0000");
+        return buf.toString();
+    }
+}
@@ -56,8 +56,26 @@ public class HttpFields implements Iterable<HttpField>
 
     private static final Logger LOG = Log.getLogger(HttpFields.class);
 
+    /**
+     * The number of fields above which lookups by name use an index
+     * rather than scanning all the fields.
+     */
+    static final int INDEX_THRESHOLD = 12;
+    private static final int[] __headerHashes = new int[HttpHeader.values().length];
+    static
+    {
+        for (HttpHeader header : HttpHeader.values())
+            __headerHashes[header.ordinal()]=hash(header.asString());
+    }
+
     private HttpField[] _fields;
     private int _size;
+    /**
+     * An open addressed hash table, by case-insensitive field name, of
+     * the position+1 of the first field with that name, or null if the
+     * index has not been built or has been invalidated by a removal.
+     */
+    private volatile int[] _index;
     
     /**
      * Initialize an empty HttpFields.
@@ -143,7 +161,7 @@ public class HttpFields implements Iterable<HttpField>
 
     public HttpField getField(HttpHeader header)
     {
-        for (int i=0;i<_size;i++)
+        for (int i=first(header);i>=0 && i<_size;i++)
         {
             HttpField f=_fields[i];
             if (f.getHeader()==header)
@@ -154,7 +172,7 @@ public class HttpFields implements Iterable<HttpField>
 
     public HttpField getField(String name)
     {
-        for (int i=0;i<_size;i++)
+        for (int i=first(name);i>=0 && i<_size;i++)
         {
             HttpField f=_fields[i];
             if (f.getName().equalsIgnoreCase(name))
@@ -165,7 +183,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpField field)
     {
-        for (int i=_size;i-->0;)
+        int first=field.getHeader()==null?first(field.getName()):first(field.getHeader());
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.isSameName(field) && (f.equals(field)||f.contains(field.getValue())))
@@ -176,7 +195,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header, String value)
     {
-        for (int i=_size;i-->0;)
+        int first=first(header);
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.getHeader()==header && f.contains(value))
@@ -187,7 +207,8 @@ public class HttpFields implements Iterable<HttpField>
     
     public boolean contains(String name, String value)
     {
-        for (int i=_size;i-->0;)
+        int first=first(name);
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.getName().equalsIgnoreCase(name) && f.contains(value))
@@ -198,7 +219,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header)
     {
-        for (int i=_size;i-->0;)
+        int first=first(header);
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.getHeader()==header)
@@ -209,7 +231,8 @@ public class HttpFields implements Iterable<HttpField>
     
     public boolean containsKey(String name)
     {
-        for (int i=_size;i-->0;)
+        int first=first(name);
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.getName().equalsIgnoreCase(name))
@@ -226,7 +249,7 @@ public class HttpFields implements Iterable<HttpField>
     
     public String get(HttpHeader header)
     {
-        for (int i=0;i<_size;i++)
+        for (int i=first(header);i>=0 && i<_size;i++)
         {
             HttpField f=_fields[i];
             if (f.getHeader()==header)
@@ -243,7 +266,7 @@ public class HttpFields implements Iterable<HttpField>
     
     public String get(String header)
     {
-        for (int i=0;i<_size;i++)
+        for (int i=first(header);i>=0 && i<_size;i++)
         {
             HttpField f=_fields[i];
             if (f.getName().equalsIgnoreCase(header))
@@ -475,7 +498,7 @@ public class HttpFields implements Iterable<HttpField>
      */
     public Enumeration<String> getValues(final String name)
     {
-        for (int i=0;i<_size;i++)
+        for (int i=first(name);i>=0 && i<_size;i++)
         {
             final HttpField f = _fields[i];
             
@@ -573,7 +596,8 @@ public class HttpFields implements Iterable<HttpField>
     public void put(HttpField field)
     {
         boolean put=false;
-        for (int i=_size;i-->0;)
+        int first=field.getHeader()==null?first(field.getName()):first(field.getHeader());
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.isSameName(field))
@@ -581,6 +605,7 @@ public class HttpFields implements Iterable<HttpField>
                 if (put)
                 {
                     System.arraycopy(_fields,i+1,_fields,i,--_size-i);
+                    _index=null;
                 }
                 else
                 {
@@ -685,7 +710,8 @@ public class HttpFields implements Iterable<HttpField>
     public HttpField remove(HttpHeader name)
     {
         HttpField removed=null;
-        for (int i=_size;i-->0;)
+        int first=first(name);
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.getHeader()==name)
@@ -694,6 +720,8 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields,i+1,_fields,i,--_size-i);
             }
         }
+        if (removed!=null)
+            _index=null;
         return removed;
     }
 
@@ -706,7 +734,8 @@ public class HttpFields implements Iterable<HttpField>
     public HttpField remove(String name)
     {
         HttpField removed=null;
-        for (int i=_size;i-->0;)
+        int first=first(name);
+        for (int i=_size;first>=0 && i-->first;)
         {
             HttpField f=_fields[i];
             if (f.getName().equalsIgnoreCase(name))
@@ -715,6 +744,8 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields,i+1,_fields,i,--_size-i);
             }
         }
+        if (removed!=null)
+            _index=null;
         return removed;
     }
 
@@ -883,6 +914,7 @@ public class HttpFields implements Iterable<HttpField>
     public void clear()
     {
         _size=0;
+        _index=null;
     }
     
     public void add(HttpField field)
@@ -892,7 +924,119 @@ public class HttpFields implements Iterable<HttpField>
             if (_size==_fields.length)
                 _fields=Arrays.copyOf(_fields,_size*2);
             _fields[_size++]=field;
+            int[] index=_index;
+            if (index!=null)
+            {
+                // Keep the load factor of the index at most 1/2, rebuilding it lazily.
+                if (_size*2>index.length)
+                    _index=null;
+                else
+                    index(index,_size-1);
+            }
+        }
+    }
+
+    /**
+     * @param header the header to look up
+     * @return the position from which to scan for fields of the given header:
+     * 0 if the fields are not indexed, -1 if there are no such fields,
+     * otherwise the position of the first field with the header name.
+     */
+    private int first(HttpHeader header)
+    {
+        int[] index=index();
+        if (index==null)
+            return 0;
+        int mask=index.length-1;
+        String name=header.asString();
+        for (int h=__headerHashes[header.ordinal()]&mask;;h=(h+1)&mask)
+        {
+            int position=index[h]-1;
+            if (position<0)
+                return -1;
+            HttpField f=_fields[position];
+            if (f.getHeader()==header || f.getName().equalsIgnoreCase(name))
+                return position;
+        }
+    }
+
+    /**
+     * @param name the case-insensitive field name to look up
+     * @return the position from which to scan for fields of the given name:
+     * 0 if the fields are not indexed, -1 if there are no such fields,
+     * otherwise the position of the first field with the name.
+     */
+    private int first(String name)
+    {
+        int[] index=index();
+        if (index==null)
+            return 0;
+        int mask=index.length-1;
+        for (int h=hash(name)&mask;;h=(h+1)&mask)
+        {
+            int position=index[h]-1;
+            if (position<0)
+                return -1;
+            if (_fields[position].getName().equalsIgnoreCase(name))
+                return position;
+        }
+    }
+
+    private int[] index()
+    {
+        int[] index=_index;
+        if (index==null && _size>INDEX_THRESHOLD)
+        {
+            index=new int[Integer.highestOneBit(_size)<<2];
+            for (int i=0;i<_size;i++)
+                index(index,i);
+            _index=index;
+        }
+        return index;
+    }
+
+    private void index(int[] index, int position)
+    {
+        HttpField field=_fields[position];
+        HttpHeader header=field.getHeader();
+        String name=field.getName();
+        int mask=index.length-1;
+        for (int h=(header==null?hash(name):__headerHashes[header.ordinal()])&mask;;h=(h+1)&mask)
+        {
+            int existing=index[h]-1;
+            if (existing<0)
+            {
+                index[h]=position+1;
+                return;
+            }
+            // Only the first field of a given name is indexed.
+            if (_fields[existing].getName().equalsIgnoreCase(name))
+                return;
+        }
+    }
+
+    /**
+     * @param name the field name
+     * @return a hash of the field name, consistent with {@link String#equalsIgnoreCase(String)}
+     */
+    private static int hash(String name)
+    {
+        int hash=0;
+        for (int i=0;i<name.length();i++)
+        {
+            char c=name.charAt(i);
+            if (c<128)
+            {
+                if (c>='A' && c<='Z')
+                    c+='a'-'A';
+            }
+            else
+            {
+                c=Character.toLowerCase(Character.toUpperCase(c));
+            }
+            hash=31*hash+c;
         }
+        return hash^(hash>>>16);
     }
 
     public void addAll(HttpFields fields)
@@ -1088,6 +1232,7 @@ public class HttpFields implements Iterable<HttpField>
                 throw new IllegalStateException();
 
             System.arraycopy(_fields,_last+1,_fields,_last,--_size-_last);
+            _index=null;
             _cursor=_last;
             _last=-1;
         }
@@ -196,6 +196,24 @@ public class HttpGenerator
         return _contentPrepared;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * <p>Accounts for request content that was written to the connection without
+     * being passed to {@link #generateRequest(MetaData.Request, ByteBuffer, ByteBuffer, ByteBuffer, boolean)},
+     * for example content transferred directly from a file.</p>
+     *
+     * @param length the number of bytes of content written
+     * @throws IllegalStateException if the headers have not been generated, or the content is chunked
+     */
+    public void contentTransferred(long length)
+    {
+        if (_state!=State.COMMITTED)
+            throw new IllegalStateException(_state.toString());
+        if (isChunking())
+            throw new IllegalStateException("Chunked content cannot be transferred");
+        _contentPrepared+=length;
+    }
+
     /* ------------------------------------------------------------ */
     public void abort()
     {
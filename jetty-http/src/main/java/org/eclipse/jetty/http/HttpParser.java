@@ -165,6 +165,7 @@ public class HttpParser
     private String _methodString;
     private HttpVersion _version;
     private Utf8StringBuilder _uri=new Utf8StringBuilder(INITIAL_URI_LENGTH); // Tune?
+    private String _uriString;
     private EndOfContent _endOfContent;
     private long _contentLength;
     private long _contentPosition;
@@ -565,6 +566,14 @@ public class HttpParser
         return false;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    private String takeUri()
+    {
+        String uri=_uriString==null?_uri.toString():_uriString;
+        _uriString=null;
+        return uri;
+    }
+
     /* ------------------------------------------------------------------------------- */
     private void setString(String s)
     {
@@ -665,6 +674,7 @@ public class HttpParser
                         else
                         {
                             _uri.reset();
+                            _uriString=null;
                             setState(State.URI);
                             // quick scan for space or EoBuffer
                             if (buffer.hasArray())
@@ -684,7 +694,14 @@ public class HttpParser
                                     LOG.warn("URI is too large >"+_maxHeaderBytes);
                                     throw new BadMessageException(HttpStatus.REQUEST_URI_TOO_LONG_414);
                                 }
-                                _uri.append(array,p-1,len+1);
+                                if (ch>HttpTokens.SPACE && i<l && array[i]==HttpTokens.SPACE)
+                                {
+                                    // The whole URI is in the buffer and is US-ASCII, so
+                                    // create the String directly from the buffer bytes.
+                                    _uriString=new String(array,p-1,len+1,StandardCharsets.US_ASCII);
+                                }
+                                else
+                                    _uri.append(array,p-1,len+1);
                                 buffer.position(i-buffer.arrayOffset());
                             }
                             else
@@ -727,7 +744,7 @@ public class HttpParser
                         // HTTP/0.9
                         if (complianceViolation(RFC7230,"HTTP/0.9"))
                             throw new BadMessageException("HTTP/0.9 not supported");
-                        handle=_requestHandler.startRequest(_methodString,_uri.toString(), HttpVersion.HTTP_0_9);
+                        handle=_requestHandler.startRequest(_methodString,takeUri(), HttpVersion.HTTP_0_9);
                         setState(State.END);
                         BufferUtil.clear(buffer);
                         handle=_handler.headerComplete()||handle;
@@ -797,7 +814,7 @@ public class HttpParser
                             if (complianceViolation(RFC7230,"HTTP/0.9"))
                                 throw new BadMessageException("HTTP/0.9 not supported");
 
-                            handle=_requestHandler.startRequest(_methodString,_uri.toString(), HttpVersion.HTTP_0_9);
+                            handle=_requestHandler.startRequest(_methodString,takeUri(), HttpVersion.HTTP_0_9);
                             setState(State.END);
                             BufferUtil.clear(buffer);
                             handle=_handler.headerComplete()||handle;
@@ -829,7 +846,7 @@ public class HttpParser
 
                         setState(State.HEADER);
 
-                        handle=_requestHandler.startRequest(_methodString,_uri.toString(), _version)||handle;
+                        handle=_requestHandler.startRequest(_methodString,takeUri(), _version)||handle;
                         continue;
                     }
                     else if (ch>=HttpTokens.SPACE)
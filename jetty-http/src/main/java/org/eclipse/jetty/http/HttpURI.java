@@ -583,6 +583,25 @@ public class HttpURI
         return _decodedPath;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * The decoded path, with "." and ".." segments factored out.
+     * <p>Equivalent to {@code URIUtil.canonicalPath(getDecodedPath())}, except that
+     * an encoded path is decoded and canonicalized in a single pass and that
+     * paths that are not valid UTF-8 are rejected.</p>
+     *
+     * @return the decoded canonical path, or null if the path tries to .. above its root
+     * @throws IllegalArgumentException if the path is not validly encoded
+     * @see URIUtil#decodeCanonicalPath(String)
+     */
+    public String getDecodedCanonicalPath()
+    {
+        if (_path==null)
+            return null;
+        // Not derived from getDecodedPath(), which decodes invalid UTF-8 as ISO-8859-1.
+        return URIUtil.decodeCanonicalPath(_path);
+    }
+
     /* ------------------------------------------------------------ */
     public String getParam()
     {
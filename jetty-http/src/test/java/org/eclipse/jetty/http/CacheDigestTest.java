@@ -0,0 +1,82 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheDigestTest
+{
+    @Test
+    public void testEncodeDecode() throws Exception
+    {
+        CacheDigest digest = new CacheDigest(5, 7);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 20; ++i)
+        {
+            String url = "https://example.com/assets/" + i + ".css";
+            urls.add(url);
+            Assert.assertTrue(digest.add(url));
+        }
+        Assert.assertFalse(digest.add(urls.get(0)));
+
+        CacheDigest parsed = CacheDigest.parse(digest.asString());
+        Assert.assertEquals(5, parsed.getNLog2());
+        Assert.assertEquals(7, parsed.getPLog2());
+        Assert.assertEquals(digest.size(), parsed.size());
+        Assert.assertEquals(digest.asString(), parsed.asString());
+        for (String url : urls)
+            Assert.assertTrue(parsed.contains(url));
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception
+    {
+        CacheDigest digest = new CacheDigest(6, 8);
+        for (int i = 0; i < 64; ++i)
+            digest.add("https://example.com/" + i);
+
+        int falsePositives = 0;
+        int probes = 10_000;
+        for (int i = 0; i < probes; ++i)
+        {
+            if (digest.contains("https://example.com/missing/" + i))
+                ++falsePositives;
+        }
+        // Expected rate is 1/256, allow generous slack.
+        Assert.assertTrue(falsePositives < probes / 64);
+    }
+
+    @Test
+    public void testEmptyDigest() throws Exception
+    {
+        CacheDigest digest = CacheDigest.parse(new CacheDigest(3, 4).asString());
+        Assert.assertEquals(0, digest.size());
+        Assert.assertFalse(digest.contains("https://example.com/"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDigest() throws Exception
+    {
+        CacheDigest.parse("!!");
+    }
+}
@@ -0,0 +1,126 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.DateCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpDateClockTest
+{
+    @Test
+    public void testTickFormats() throws Exception
+    {
+        SimpleDateFormat ncsa = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+        ncsa.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        HttpDateClock clock = new HttpDateClock();
+        long[] times = {0L, 951782400000L, 1234567890123L, System.currentTimeMillis()};
+        for (long time : times)
+        {
+            HttpDateClock.Tick tick = clock.tick(time);
+            Assert.assertEquals(time / 1000, tick.getSeconds());
+            Assert.assertEquals(HttpHeader.DATE, tick.getDateField().getHeader());
+            Assert.assertEquals(DateGenerator.formatDate(time / 1000 * 1000), tick.getDateField().getValue());
+            Assert.assertEquals(ncsa.format(new Date(time)), tick.getNCSATimestamp());
+        }
+    }
+
+    @Test
+    public void testTickPublishedOncePerSecond() throws Exception
+    {
+        HttpDateClock clock = new HttpDateClock();
+        long now = 1234567890000L;
+
+        HttpDateClock.Tick tick = clock.tick(now);
+        Assert.assertSame(tick, clock.tick(now + 999));
+
+        // An older time is formatted but does not replace the current tick.
+        HttpDateClock.Tick older = clock.tick(now - 1000);
+        Assert.assertEquals(tick.getSeconds() - 1, older.getSeconds());
+        Assert.assertSame(tick, clock.tick(now));
+
+        HttpDateClock.Tick next = clock.tick(now + 1000);
+        Assert.assertNotSame(tick, next);
+        Assert.assertSame(next, clock.tick(now + 1500));
+    }
+
+    @Test
+    public void testOlderNCSATimestamp() throws Exception
+    {
+        SimpleDateFormat ncsa = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+        ncsa.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        HttpDateClock clock = new HttpDateClock();
+        long now = 1234567890000L;
+        HttpDateClock.Tick previous = clock.tick(now - 1000);
+        HttpDateClock.Tick tick = clock.tick(now);
+        Assert.assertSame(tick.getNCSATimestamp(), clock.getNCSATimestamp(now + 500));
+
+        // A request that started in the previous second reuses the previous tick.
+        Assert.assertSame(previous.getNCSATimestamp(), clock.getNCSATimestamp(now - 1));
+
+        // An older second is formatted once, and does not replace the current tick.
+        String older = clock.getNCSATimestamp(now - 5000);
+        Assert.assertEquals(ncsa.format(new Date(now - 5000)), older);
+        Assert.assertSame(older, clock.getNCSATimestamp(now - 4500));
+        Assert.assertSame(tick, clock.tick(now));
+
+        // A newer second publishes a new tick.
+        Assert.assertEquals(ncsa.format(new Date(now + 1000)), clock.getNCSATimestamp(now + 1000));
+        Assert.assertEquals(now / 1000 + 1, clock.tick(now + 1000).getSeconds());
+    }
+
+    @Stress("Measures the cost of the NCSA timestamp of the shared clock against DateCache")
+    @Test
+    public void testNCSATimestampCost() throws Exception
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        DateCache cache = new DateCache("dd/MMM/yyyy:HH:mm:ss Z", Locale.US, "GMT");
+        HttpDateClock clock = HttpDateClock.getClock();
+        int iterations = 1_000_000;
+        for (int run = 0; run < 3; ++run)
+        {
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long begin = System.nanoTime();
+            for (int i = 0; i < iterations; ++i)
+                cache.format(System.currentTimeMillis());
+            long cacheNanos = System.nanoTime() - begin;
+            long cacheBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+            bytes = threads.getThreadAllocatedBytes(thread);
+            begin = System.nanoTime();
+            for (int i = 0; i < iterations; ++i)
+                clock.getNCSATimestamp(System.currentTimeMillis());
+            long clockNanos = System.nanoTime() - begin;
+            long clockBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+            System.err.printf("DateCache %d ns/op %d B/op, HttpDateClock %d ns/op %d B/op%n",
+                    cacheNanos / iterations, cacheBytes / iterations, clockNanos / iterations, clockBytes / iterations);
+        }
+    }
+}
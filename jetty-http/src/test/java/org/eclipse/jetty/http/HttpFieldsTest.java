@@ -19,12 +19,17 @@
 package org.eclipse.jetty.http;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
 import org.eclipse.jetty.util.BufferUtil;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
@@ -602,4 +607,139 @@ public class HttpFieldsTest
 
         assertFalse(header.containsKey("n11"));
     }
+
+    @Test
+    public void testIndexedLookups() throws Exception
+    {
+        String[] names = new String[40];
+        for (int i = 0; i < names.length; ++i)
+            names[i] = i % 2 == 0 ? HttpHeader.values()[i].asString() : "X-Custom-" + i;
+
+        Random random = new Random(1234);
+        HttpFields fields = new HttpFields();
+        for (int op = 0; op < 20000; ++op)
+        {
+            String name = names[random.nextInt(names.length)];
+            if (random.nextBoolean())
+                name = name.toUpperCase(Locale.ENGLISH);
+            HttpHeader header = HttpHeader.CACHE.get(name);
+            String value = "v" + op;
+
+            switch (random.nextInt(10))
+            {
+                case 0:
+                    fields.remove(name);
+                    break;
+                case 1:
+                    if (header != null)
+                        fields.remove(header);
+                    break;
+                case 2:
+                    fields.put(name, value);
+                    break;
+                case 3:
+                    if (header != null)
+                        fields.put(header, value);
+                    break;
+                case 4:
+                    if (fields.size() > 0)
+                    {
+                        Iterator<HttpField> iterator = fields.iterator();
+                        for (int i = random.nextInt(fields.size()); i-- >= 0;)
+                            iterator.next();
+                        iterator.remove();
+                    }
+                    break;
+                case 5:
+                    if (fields.size() > 60)
+                        fields.clear();
+                    break;
+                default:
+                    if (header != null && random.nextBoolean())
+                        fields.add(header, value);
+                    else
+                        fields.add(name, value);
+                    break;
+            }
+
+            String lookup = names[random.nextInt(names.length)];
+            HttpHeader lookupHeader = HttpHeader.CACHE.get(lookup);
+            List<String> expected = new ArrayList<>();
+            for (HttpField field : fields)
+            {
+                if (field.getName().equalsIgnoreCase(lookup))
+                    expected.add(field.getValue());
+            }
+            String first = expected.isEmpty() ? null : expected.get(0);
+
+            assertEquals(first, fields.get(lookup));
+            assertEquals(first, fields.get(lookup.toLowerCase(Locale.ENGLISH)));
+            assertEquals(!expected.isEmpty(), fields.containsKey(lookup));
+            assertEquals(expected, Collections.list(fields.getValues(lookup)));
+            if (!expected.isEmpty())
+                assertTrue(fields.contains(lookup, expected.get(expected.size() - 1)));
+            assertFalse(fields.contains(lookup, "unknown"));
+            if (lookupHeader != null)
+            {
+                assertEquals(first, fields.get(lookupHeader));
+                assertEquals(!expected.isEmpty(), fields.contains(lookupHeader));
+                HttpField field = fields.getField(lookupHeader);
+                assertEquals(first, field == null ? null : field.getValue());
+            }
+        }
+    }
+
+    @Stress("Measures the throughput of header lookups with and without the index")
+    @Test
+    public void testLookupThroughput() throws Exception
+    {
+        for (int run = 0; run < 3; ++run)
+        {
+            for (int size : new int[]{8, 64})
+            {
+                HttpFields fields = new HttpFields();
+                for (int i = 0; i < size; ++i)
+                    fields.add("X-Header-" + i, "value" + i);
+                fields.add(HttpHeader.ACCEPT, "*/*");
+                fields.add(HttpHeader.USER_AGENT, "agent");
+
+                String[] lookups = {"x-header-1", "X-HEADER-" + (size / 2), "Accept", "X-Missing", "Authorization"};
+                long duration = TimeUnit.SECONDS.toNanos(1);
+                long scanned = 0;
+                long end = System.nanoTime() + duration;
+                while (System.nanoTime() < end)
+                {
+                    for (int i = 0; i < 1000; ++i)
+                    {
+                        for (String lookup : lookups)
+                        {
+                            // Linear scan baseline, equivalent to the unindexed lookup.
+                            for (HttpField field : fields)
+                            {
+                                if (field.getName().equalsIgnoreCase(lookup))
+                                    break;
+                            }
+                        }
+                    }
+                    scanned += 1000 * lookups.length;
+                }
+
+                long indexed = 0;
+                end = System.nanoTime() + duration;
+                while (System.nanoTime() < end)
+                {
+                    for (int i = 0; i < 1000; ++i)
+                    {
+                        for (String lookup : lookups)
+                            fields.get(lookup);
+                        fields.get(HttpHeader.USER_AGENT);
+                    }
+                    indexed += 1000 * (lookups.length + 1);
+                }
+
+                long millis = TimeUnit.NANOSECONDS.toMillis(duration);
+                System.err.printf("%d fields: scan %d lookups/ms, HttpFields %d lookups/ms%n", fields.size(), scanned / millis, indexed / millis);
+            }
+        }
+    }
 }
@@ -291,4 +291,48 @@ public class HttpGeneratorClientTest
 
     }
 
+    @Test
+    public void testRequestWithTransferredContent() throws Exception
+    {
+        ByteBuffer header=BufferUtil.allocate(4096);
+        HttpGenerator gen = new HttpGenerator();
+
+        Info info = new Info("POST","/index.html",58);
+        info.getFields().add("Host","something");
+
+        try
+        {
+            gen.contentTransferred(58);
+            Assert.fail();
+        }
+        catch(IllegalStateException e)
+        {
+            Assert.assertEquals(0, gen.getContentPrepared());
+        }
+
+        HttpGenerator.Result
+        result=gen.generateRequest(info,header,null,null, false);
+        Assert.assertEquals(HttpGenerator.Result.FLUSH, result);
+        Assert.assertEquals(HttpGenerator.State.COMMITTED, gen.getState());
+        String out = BufferUtil.toString(header);
+        BufferUtil.clear(header);
+
+        // The content is written to the connection without the generator.
+        gen.contentTransferred(13);
+        gen.contentTransferred(45);
+        Assert.assertTrue(gen.isWritten());
+        Assert.assertEquals(58, gen.getContentPrepared());
+
+        result=gen.generateRequest(null,null,null,null, true);
+        Assert.assertEquals(HttpGenerator.Result.CONTINUE, result);
+        Assert.assertEquals(HttpGenerator.State.COMPLETING, gen.getState());
+
+        result=gen.generateRequest(null,null,null,null, true);
+        Assert.assertEquals(HttpGenerator.Result.DONE, result);
+        Assert.assertEquals(HttpGenerator.State.END, gen.getState());
+
+        Assert.assertThat(out, Matchers.containsString("Content-Length: 58"));
+        Assert.assertEquals(58, gen.getContentPrepared());
+    }
+
 }
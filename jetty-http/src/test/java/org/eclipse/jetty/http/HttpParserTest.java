@@ -197,6 +197,49 @@ public class HttpParserTest
         Assert.assertEquals(-1, _headers);
     }
 
+    @Test
+    public void testLineParseURISplitAcrossBuffers() throws Exception
+    {
+        ByteBuffer buffer1 = BufferUtil.toBuffer("GET /foo/b");
+        ByteBuffer buffer2 = BufferUtil.toBuffer("ar?a=b HTTP/1.0\r\n" + "\r\n");
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parser.parseNext(buffer1);
+        parser.parseNext(buffer2);
+        Assert.assertEquals("GET", _methodOrVersion);
+        Assert.assertEquals("/foo/bar?a=b", _uriOrStatus);
+        Assert.assertEquals("HTTP/1.0", _versionOrReason);
+        Assert.assertEquals(-1, _headers);
+    }
+
+    @Test
+    public void testLineParseASCIIAndEncodedURIs() throws Exception
+    {
+        // The US-ASCII URI is taken directly from the buffer, the others are UTF-8 decoded.
+        ByteBuffer buffer = BufferUtil.toBuffer(
+                "GET /fo\u0690 HTTP/1.0\r\n" + "\r\n" +
+                "GET /bar%20baz HTTP/1.0\r\n" + "\r\n" +
+                "GET /b\u0690z HTTP/1.0\r\n" + "\r\n", StandardCharsets.UTF_8);
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parser.parseNext(buffer);
+        Assert.assertEquals("/fo\u0690", _uriOrStatus);
+
+        parser.reset();
+        init();
+        parser.parseNext(buffer);
+        Assert.assertEquals("/bar%20baz", _uriOrStatus);
+
+        parser.reset();
+        init();
+        parser.parseNext(buffer);
+        Assert.assertEquals("/b\u0690z", _uriOrStatus);
+        Assert.assertEquals("HTTP/1.0", _versionOrReason);
+        Assert.assertEquals(0, buffer.remaining());
+    }
+
     @Test
     public void testLongURLParse() throws Exception
     {
@@ -29,6 +29,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
 import org.eclipse.jetty.util.MultiMap;
+import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.Utf8Appendable;
 import org.junit.Assert;
 import org.junit.Test;
@@ -177,6 +178,47 @@ public class HttpURITest
         assertEquals("jsessionid=12345",uri.getParam());
     }
     
+    @Test
+    public void testDecodedCanonicalPath() throws Exception
+    {
+        assertEquals("/context/path/index.html",new HttpURI("/context/path/index.html").getDecodedCanonicalPath());
+        assertEquals("/context/file name.html",new HttpURI("/context/file%20name.html?a=b").getDecodedCanonicalPath());
+        assertEquals("/context/\u20ac/index.html",new HttpURI("/context/%e2%82%ac/./path/../index.html").getDecodedCanonicalPath());
+        assertEquals("/foo/bar",new HttpURI("/foo;abc=123/bar;jsessionid=12345").getDecodedCanonicalPath());
+        assertEquals("/index.html",new HttpURI("http://host:8080/path/%2e%2e/index.html").getDecodedCanonicalPath());
+        assertEquals(null,new HttpURI("/path/../../index.html").getDecodedCanonicalPath());
+        assertEquals(null,new HttpURI("http://host").getDecodedCanonicalPath());
+    }
+
+    @Test
+    public void testDecodedCanonicalPathRejectsInvalidEncoding() throws Exception
+    {
+        for (String path : new String[]{"/path/%c0%af","/path/%ed%a0%80","/path/%e2%82"})
+        {
+            // getDecodedPath() falls back to ISO-8859-1 for invalid UTF-8,
+            // which must not leak into getDecodedCanonicalPath().
+            HttpURI uri = new HttpURI(path);
+            assertThat(uri.getDecodedPath(),is(URIUtil.decodePath(path)));
+            assertInvalidDecodedCanonicalPath(uri);
+        }
+
+        assertInvalidDecodedCanonicalPath(new HttpURI("/path/%zz"));
+        assertInvalidDecodedCanonicalPath(new HttpURI("/path/%2"));
+    }
+
+    private void assertInvalidDecodedCanonicalPath(HttpURI uri)
+    {
+        try
+        {
+            uri.getDecodedCanonicalPath();
+            fail(uri.toString());
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertTrue(true);
+        }
+    }
+
     @Test
     public void testMutableURI()
     {
@@ -0,0 +1,286 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.BDPFlowControlStrategy;
+import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.Promise;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BDPFlowControlStrategyTest extends FlowControlStrategyTest
+{
+    private Supplier<FlowControlStrategy> strategies = BDPFlowControlStrategy::new;
+    private DelayProxy proxy;
+
+    @Override
+    protected FlowControlStrategy newFlowControlStrategy()
+    {
+        return strategies.get();
+    }
+
+    @After
+    @Override
+    public void dispose() throws Exception
+    {
+        if (proxy != null)
+            proxy.close();
+        super.dispose();
+    }
+
+    @Test
+    public void testRecvWindowGrowsOnHighLatencyLink() throws Exception
+    {
+        int length = 8 * 1024 * 1024;
+        start(new DownloadListener(length));
+        proxy = new DelayProxy(connector.getLocalPort(), 25);
+
+        Session session = newProxiedClient();
+        Assert.assertTrue(download(session, length) > 0);
+
+        BDPFlowControlStrategy flowControl = (BDPFlowControlStrategy)((HTTP2Session)session).getFlowControlStrategy();
+        Assert.assertTrue(flowControl.getRoundTripTime() >= TimeUnit.MILLISECONDS.toMicros(50));
+        Assert.assertTrue(flowControl.getSessionRecvWindowTarget() > FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        Assert.assertTrue(flowControl.getSessionRecvWindowTarget() <= flowControl.getMaxRecvWindow());
+    }
+
+    @Stress("Emulated high latency link")
+    @Test
+    public void testHighLatencyDownloadBenchmark() throws Exception
+    {
+        int length = 64 * 1024 * 1024;
+        for (int run = 0; run < 2; ++run)
+        {
+            benchmark("buffering", () -> new BufferingFlowControlStrategy(0.5F), length);
+            benchmark("bdp", BDPFlowControlStrategy::new, length);
+        }
+    }
+
+    private void benchmark(String name, Supplier<FlowControlStrategy> strategies, int length) throws Exception
+    {
+        if (proxy != null)
+        {
+            proxy.close();
+            client.stop();
+            server.stop();
+        }
+        this.strategies = strategies;
+        start(new DownloadListener(length));
+        proxy = new DelayProxy(connector.getLocalPort(), 50);
+
+        Session session = newProxiedClient();
+        long elapsed = download(session, length);
+        System.err.printf("%s: %d MiB in %d ms with 100 ms RTT%n", name, length >> 20, elapsed);
+    }
+
+    private Session newProxiedClient() throws Exception
+    {
+        FuturePromise<Session> promise = new FuturePromise<>();
+        client.connect(new InetSocketAddress("localhost", proxy.getLocalPort()), new Session.Listener.Adapter(), promise);
+        return promise.get(5, TimeUnit.SECONDS);
+    }
+
+    private long download(Session session, int length) throws Exception
+    {
+        long begin = System.nanoTime();
+        AtomicLong received = new AtomicLong();
+        CountDownLatch latch = new CountDownLatch(1);
+        MetaData.Request metaData = newRequest("GET", new HttpFields());
+        session.newStream(new HeadersFrame(metaData, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                received.addAndGet(frame.getData().remaining());
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(length, received.get());
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    private static class DownloadListener extends ServerSessionListener.Adapter
+    {
+        private final int length;
+
+        private DownloadListener(int length)
+        {
+            this.length = length;
+        }
+
+        @Override
+        public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+        {
+            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+            stream.headers(new HeadersFrame(stream.getId(), response, null, false), new Callback()
+            {
+                @Override
+                public void succeeded()
+                {
+                    stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP);
+                }
+            });
+            return null;
+        }
+    }
+
+    /**
+     * <p>A TCP proxy that delays the bytes in both directions, to emulate a high latency link.</p>
+     */
+    private static class DelayProxy implements AutoCloseable
+    {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final int port;
+        private final long delay;
+
+        private DelayProxy(int port, long delay) throws IOException
+        {
+            this.port = port;
+            this.delay = delay;
+            Thread acceptor = new Thread(this::accept, "delay-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int getLocalPort()
+        {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept()
+        {
+            try
+            {
+                while (true)
+                {
+                    Socket client = serverSocket.accept();
+                    Socket server = new Socket("localhost", port);
+                    pump(client, server);
+                    pump(server, client);
+                }
+            }
+            catch (IOException x)
+            {
+                // The proxy has been closed.
+            }
+        }
+
+        private void pump(Socket from, Socket to)
+        {
+            BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(() ->
+            {
+                try
+                {
+                    InputStream input = from.getInputStream();
+                    byte[] buffer = new byte[64 * 1024];
+                    while (true)
+                    {
+                        int read = input.read(buffer);
+                        if (read < 0)
+                            break;
+                        chunks.offer(new Chunk(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay), Arrays.copyOf(buffer, read)));
+                    }
+                }
+                catch (IOException x)
+                {
+                    // The connection has been closed.
+                }
+                chunks.offer(new Chunk(0, null));
+            });
+            Thread writer = new Thread(() ->
+            {
+                try
+                {
+                    OutputStream output = to.getOutputStream();
+                    while (true)
+                    {
+                        Chunk chunk = chunks.take();
+                        if (chunk.bytes == null)
+                            break;
+                        long wait = chunk.time - System.nanoTime();
+                        if (wait > 0)
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        output.write(chunk.bytes);
+                    }
+                }
+                catch (IOException | InterruptedException x)
+                {
+                    // The connection has been closed.
+                }
+                IO.close(to);
+            });
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        @Override
+        public void close()
+        {
+            IO.close(serverSocket);
+        }
+    }
+
+    private static class Chunk
+    {
+        private final long time;
+        private final byte[] bytes;
+
+        private Chunk(long time, byte[] bytes)
+        {
+            this.time = time;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
@@ -33,6 +34,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.CacheDigest;
 import org.eclipse.jetty.http.HostPortHttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -48,6 +50,7 @@ import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.PushPromiseFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlets.PushCacheFilter;
 import org.eclipse.jetty.util.Callback;
@@ -58,12 +61,15 @@ import org.junit.Test;
 public class PushCacheFilterTest extends AbstractTest
 {
     private String contextPath = "/push";
+    private final Map<String, String> filterParams = new HashMap<>();
+    private FilterHolder filterHolder;
 
     @Override
     protected void customizeContext(ServletContextHandler context)
     {
         context.setContextPath(contextPath);
-        context.addFilter(PushCacheFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+        filterHolder = context.addFilter(PushCacheFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+        filterHolder.setInitParameters(filterParams);
     }
 
     @Override
@@ -1008,4 +1014,132 @@ public class PushCacheFilterTest extends AbstractTest
         Assert.assertFalse(pushLatch.await(1, TimeUnit.SECONDS));
         Assert.assertTrue(primaryResponseLatch.await(5, TimeUnit.SECONDS));
     }
+
+    @Test
+    public void testPushSuppressedByCacheDigest() throws Exception
+    {
+        final String primaryResource = "/primary.html";
+        final String secondaryResource = "/secondary.png";
+        startPrimarySecondary(primaryResource, secondaryResource);
+
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session, primaryResource, secondaryResource);
+
+        // The client tells the server it has the secondary resource in its cache.
+        CacheDigest digest = new CacheDigest(3, 7);
+        digest.add(newURI(secondaryResource));
+        HttpFields primaryFields = new HttpFields();
+        primaryFields.put("Cache-Digest", digest.asString() + "; complete");
+        Assert.assertEquals(0, requestPrimary(session, primaryResource, primaryFields));
+
+        PushCacheFilter filter = (PushCacheFilter)filterHolder.getFilter();
+        Assert.assertEquals(0, filter.getPushes());
+        Assert.assertEquals(1, filter.getPushesSuppressedByCacheDigest());
+    }
+
+    @Test
+    public void testPushRepeatedOnSameConnectionByDefault() throws Exception
+    {
+        final String primaryResource = "/primary.html";
+        final String secondaryResource = "/secondary.png";
+        startPrimarySecondary(primaryResource, secondaryResource);
+
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session, primaryResource, secondaryResource);
+
+        Assert.assertEquals(1, requestPrimary(session, primaryResource, new HttpFields()));
+        Assert.assertEquals(1, requestPrimary(session, primaryResource, new HttpFields()));
+
+        PushCacheFilter filter = (PushCacheFilter)filterHolder.getFilter();
+        Assert.assertEquals(2, filter.getPushes());
+        Assert.assertEquals(0, filter.getPushesSuppressedByConnection());
+    }
+
+    @Test
+    public void testPushNotRepeatedOnSameConnection() throws Exception
+    {
+        final String primaryResource = "/primary.html";
+        final String secondaryResource = "/secondary.png";
+        filterParams.put("maxPushedPerConnection", "16");
+        startPrimarySecondary(primaryResource, secondaryResource);
+
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session, primaryResource, secondaryResource);
+
+        Assert.assertEquals(1, requestPrimary(session, primaryResource, new HttpFields()));
+        // The secondary resource has already been pushed on this connection.
+        Assert.assertEquals(0, requestPrimary(session, primaryResource, new HttpFields()));
+
+        // A different connection gets the push again.
+        Session session2 = newClient(new Session.Listener.Adapter());
+        Assert.assertEquals(1, requestPrimary(session2, primaryResource, new HttpFields()));
+
+        PushCacheFilter filter = (PushCacheFilter)filterHolder.getFilter();
+        Assert.assertEquals(2, filter.getPushes());
+        Assert.assertEquals(1, filter.getPushesSuppressedByConnection());
+    }
+
+    private void startPrimarySecondary(String primaryResource, String secondaryResource) throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+            {
+                String requestURI = req.getRequestURI();
+                ServletOutputStream output = resp.getOutputStream();
+                if (requestURI.endsWith(primaryResource))
+                    output.print("<html><head></head><body>PRIMARY</body></html>");
+                else if (requestURI.endsWith(secondaryResource))
+                    output.write("SECONDARY".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    private void warmup(Session session, String primaryResource, String secondaryResource) throws Exception
+    {
+        // Request for the primary and secondary resource to build the cache.
+        Assert.assertEquals(0, requestPrimary(session, primaryResource, new HttpFields()));
+        HttpFields secondaryFields = new HttpFields();
+        secondaryFields.put(HttpHeader.REFERER, newURI(primaryResource));
+        MetaData.Request secondaryRequest = newRequest("GET", secondaryResource, secondaryFields);
+        CountDownLatch latch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(secondaryRequest, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private int requestPrimary(Session session, String primaryResource, HttpFields fields) throws Exception
+    {
+        MetaData.Request primaryRequest = newRequest("GET", primaryResource, fields);
+        AtomicInteger pushes = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(primaryRequest, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public Stream.Listener onPush(Stream stream, PushPromiseFrame frame)
+            {
+                pushes.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return pushes.get();
+    }
 }
@@ -0,0 +1,293 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PushPromiseFrame;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlets.PushSessionCacheFilter;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PushSessionCacheFilterTest extends AbstractTest
+{
+    private static final String PRIMARY = "/index.html";
+    private static final int ASSETS = 32;
+
+    private final String contextPath = "/push";
+    private final AtomicInteger filtered = new AtomicInteger();
+    private String[] filtersSkippedOnPush = new String[0];
+    private String cookie;
+
+    @Override
+    protected void customizeContext(ServletContextHandler context)
+    {
+        context.setContextPath(contextPath);
+        context.addFilter(PushSessionCacheFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST)).setName("push");
+        FilterHolder counting = new FilterHolder(new CountingFilter());
+        counting.setName("counting");
+        context.addFilter(counting, "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.getServletHandler().setFiltersSkippedOnPush(filtersSkippedOnPush);
+    }
+
+    @Override
+    protected MetaData.Request newRequest(String method, String pathInfo, HttpFields fields)
+    {
+        return new MetaData.Request(method, HttpScheme.HTTP, new HostPortHttpField("localhost:" + connector.getLocalPort()), contextPath + servletPath + pathInfo, HttpVersion.HTTP_2, fields);
+    }
+
+    private String newURI(String pathInfo)
+    {
+        return "http://localhost:" + connector.getLocalPort() + contextPath + servletPath + pathInfo;
+    }
+
+    private void startPage() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+            {
+                if (req.getRequestURI().endsWith(PRIMARY))
+                    resp.getOutputStream().print("<html><head></head><body>PRIMARY</body></html>");
+                else
+                    resp.getOutputStream().write("ASSET".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    private String asset(int index)
+    {
+        return "/asset-" + index + ".css";
+    }
+
+    private void warmup(Session session) throws Exception
+    {
+        loadPage(session, new HttpFields());
+        for (int i = 0; i < ASSETS; ++i)
+        {
+            HttpFields fields = new HttpFields();
+            fields.put(HttpHeader.REFERER, newURI(PRIMARY));
+            request(session, asset(i), fields);
+        }
+    }
+
+    private void request(Session session, String path, HttpFields fields) throws Exception
+    {
+        if (cookie != null)
+            fields.put(HttpHeader.COOKIE, cookie);
+        CountDownLatch latch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(newRequest("GET", path, fields), null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private int loadPage(Session session, HttpFields fields) throws Exception
+    {
+        if (cookie != null)
+            fields.put(HttpHeader.COOKIE, cookie);
+        AtomicReference<String> setCookie = new AtomicReference<>();
+        AtomicInteger promises = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1 + ASSETS);
+        session.newStream(new HeadersFrame(newRequest("GET", PRIMARY, fields), null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                String value = frame.getMetaData().getFields().get(HttpHeader.SET_COOKIE);
+                if (value != null)
+                    setCookie.set(value.split(";")[0]);
+            }
+
+            @Override
+            public Stream.Listener onPush(Stream stream, PushPromiseFrame frame)
+            {
+                promises.incrementAndGet();
+                return new Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                            latch.countDown();
+                    }
+                };
+            }
+
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                {
+                    // Count the pushed responses that will not arrive.
+                    for (int i = promises.get(); i < ASSETS; ++i)
+                        latch.countDown();
+                    latch.countDown();
+                }
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        if (setCookie.get() != null)
+            cookie = setCookie.get();
+        return promises.get();
+    }
+
+    @Test
+    public void testAssociatedResourcesArePushedOnce() throws Exception
+    {
+        startPage();
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session);
+        Assert.assertNotNull(cookie);
+
+        Assert.assertEquals(ASSETS, loadPage(session, new HttpFields()));
+    }
+
+    @Test
+    public void testPushedResourcesBypassSkippedFilters() throws Exception
+    {
+        filtersSkippedOnPush = new String[]{"push", "counting"};
+        startPage();
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session);
+
+        filtered.set(0);
+        Assert.assertEquals(ASSETS, loadPage(session, new HttpFields()));
+        // Only the primary resource went through the filters.
+        Assert.assertEquals(1, filtered.get());
+    }
+
+    @Test
+    public void testPushedResourcesRunFiltersNotSkipped() throws Exception
+    {
+        // The counting filter stands for a filter, such as an authentication
+        // filter, that must be applied to pushed resources too.
+        filtersSkippedOnPush = new String[]{"push"};
+        startPage();
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session);
+
+        filtered.set(0);
+        Assert.assertEquals(ASSETS, loadPage(session, new HttpFields()));
+        Assert.assertEquals(1 + ASSETS, filtered.get());
+    }
+
+    @Stress("Measures the server CPU time per page load with pushed assets")
+    @Test
+    public void testServerCPUPerPageLoad() throws Exception
+    {
+        startPage();
+        Session session = newClient(new Session.Listener.Adapter());
+        warmup(session);
+
+        int pages = 2000;
+        for (int run = 0; run < 3; ++run)
+        {
+            long cpu = serverCPUTime();
+            long begin = System.nanoTime();
+            for (int i = 0; i < pages; ++i)
+                Assert.assertEquals(ASSETS, loadPage(session, new HttpFields()));
+            long elapsed = System.nanoTime() - begin;
+            cpu = serverCPUTime() - cpu;
+            System.err.printf("%d assets: %d us server CPU/page, %d us/page%n", ASSETS,
+                    TimeUnit.NANOSECONDS.toMicros(cpu / pages), TimeUnit.NANOSECONDS.toMicros(elapsed / pages));
+        }
+    }
+
+    private class CountingFilter implements Filter
+    {
+        @Override
+        public void init(FilterConfig filterConfig) throws ServletException
+        {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+        {
+            filtered.incrementAndGet();
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy()
+        {
+        }
+    }
+
+    private long serverCPUTime()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long result = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds()))
+        {
+            if (info != null && info.getThreadName().startsWith("server"))
+            {
+                long cpu = threads.getThreadCpuTime(info.getThreadId());
+                if (cpu > 0)
+                    result += cpu;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,384 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A flow control strategy that sizes the receive windows to the
+ * bandwidth-delay product (BDP) of the connection.</p>
+ * <p>While data is being received, a PING frame is sent and the bytes
+ * received until the PING reply arrives are counted: that count is a
+ * sample of the bytes in flight during one round-trip.
+ * If the sample is as large as the current session receive window allows,
+ * the window is what limits the throughput, and the target window is
+ * doubled, up to {@link #getMaxRecvWindow() a memory ceiling}.</p>
+ * <p>If instead the application consumes data more slowly than it is
+ * received, so that unconsumed data accumulates, the target window is
+ * halved, down to the initial window.
+ * Receive windows cannot be reduced explicitly, so they are shrunk by
+ * withholding window updates until they match the target.</p>
+ * <p>Stream receive windows grow and shrink by the same amount as the
+ * session target window, so that a single stream can use the whole
+ * bandwidth of the connection.</p>
+ * <p>Like {@link BufferingFlowControlStrategy}, window updates for the
+ * consumed data are accumulated until they reach a fraction of the window.</p>
+ */
+@ManagedObject
+public class BDPFlowControlStrategy extends AbstractFlowControlStrategy
+{
+    // Avoids flooding low latency connections with PING frames.
+    private static final long MIN_PING_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Map<IStream, Window> streamWindows = new HashMap<>();
+    private final Window sessionWindow = new Window(DEFAULT_WINDOW_SIZE);
+    private final int maxRecvWindow;
+    private final float bufferRatio;
+    private int sessionBaseWindow = DEFAULT_WINDOW_SIZE;
+    private int sessionTargetWindow = DEFAULT_WINDOW_SIZE;
+    private long received;
+    private long consumed;
+    private long pingPayload;
+    private long pingNanos;
+    private long pingReplyNanos;
+    private long pingReceived;
+    private long pingConsumed;
+    private long roundTripTime;
+    private long bandwidth;
+
+    public BDPFlowControlStrategy()
+    {
+        this(16 * 1024 * 1024);
+    }
+
+    public BDPFlowControlStrategy(int maxRecvWindow)
+    {
+        this(DEFAULT_WINDOW_SIZE, maxRecvWindow, 0.5F);
+    }
+
+    public BDPFlowControlStrategy(int initialStreamSendWindow, int maxRecvWindow, float bufferRatio)
+    {
+        super(initialStreamSendWindow);
+        this.maxRecvWindow = maxRecvWindow;
+        this.bufferRatio = bufferRatio;
+    }
+
+    @ManagedAttribute(value = "The max size of the session and stream receive windows", readonly = true)
+    public int getMaxRecvWindow()
+    {
+        return maxRecvWindow;
+    }
+
+    @ManagedAttribute(value = "The ratio between the receive window and the window update threshold", readonly = true)
+    public float getBufferRatio()
+    {
+        return bufferRatio;
+    }
+
+    @ManagedAttribute(value = "The target size of the session receive window", readonly = true)
+    public int getSessionRecvWindowTarget()
+    {
+        synchronized (this)
+        {
+            return sessionTargetWindow;
+        }
+    }
+
+    @ManagedAttribute(value = "The smoothed round-trip time, in microseconds", readonly = true)
+    public long getRoundTripTime()
+    {
+        synchronized (this)
+        {
+            return TimeUnit.NANOSECONDS.toMicros(roundTripTime);
+        }
+    }
+
+    @ManagedAttribute(value = "The estimated receive bandwidth, in bytes per second", readonly = true)
+    public long getBandwidth()
+    {
+        synchronized (this)
+        {
+            return bandwidth;
+        }
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream)
+    {
+        super.onStreamCreated(stream);
+        synchronized (this)
+        {
+            streamWindows.put(stream, new Window(getInitialStreamRecvWindow()));
+        }
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream)
+    {
+        synchronized (this)
+        {
+            streamWindows.remove(stream);
+        }
+        super.onStreamDestroyed(stream);
+    }
+
+    @Override
+    public void updateInitialStreamWindow(ISession session, int initialStreamWindow, boolean local)
+    {
+        int previous = getInitialStreamRecvWindow();
+        super.updateInitialStreamWindow(session, initialStreamWindow, local);
+        if (local)
+        {
+            synchronized (this)
+            {
+                for (Window window : streamWindows.values())
+                    window.size += initialStreamWindow - previous;
+            }
+        }
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+
+        PingFrame ping = null;
+        synchronized (this)
+        {
+            received += length;
+            long now = System.nanoTime();
+            if (pingNanos == 0 && (roundTripTime == 0 || now - pingReplyNanos >= MIN_PING_INTERVAL))
+            {
+                pingPayload = ThreadLocalRandom.current().nextLong();
+                pingNanos = now;
+                // The data that triggered the PING is part of the sample.
+                pingReceived = received - length;
+                pingConsumed = consumed;
+                ping = new PingFrame(pingPayload, false);
+            }
+        }
+
+        if (ping != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Sending BDP ping for {}", session);
+            session.ping(ping, Callback.NOOP);
+        }
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        synchronized (this)
+        {
+            if (pingNanos == 0 || frame.getPayloadAsLong() != pingPayload)
+                return false;
+
+            long now = System.nanoTime();
+            long rtt = Math.max(1, now - pingNanos);
+            pingNanos = 0;
+            pingReplyNanos = now;
+            roundTripTime = roundTripTime == 0 ? rtt : (7 * roundTripTime + rtt) / 8;
+
+            // The bytes received during a round-trip, bounded by the window.
+            long sample = received - pingReceived;
+            long sampleConsumed = consumed - pingConsumed;
+            long unconsumed = received - consumed;
+            bandwidth = sample * TimeUnit.SECONDS.toNanos(1) / rtt;
+
+            int target = sessionTargetWindow;
+            // Window updates are sent in batches, so a window limited
+            // sender cannot have more than this in flight.
+            long windowLimit = (long)(sessionWindow.size * (1 - bufferRatio));
+            if (unconsumed > target / 2 && sampleConsumed * 2 < sample)
+            {
+                // The application is not keeping up.
+                target = Math.max(sessionBaseWindow, target / 2);
+            }
+            else if (sample >= windowLimit && sampleConsumed >= windowLimit)
+            {
+                // The window is limiting the throughput.
+                target = (int)Math.min(maxRecvWindow, Math.max(target, 2 * Math.max(sessionWindow.size, sample)));
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("BDP sample {} bytes, rtt {}us, consumed {}/{}, target window {} -> {} for {}",
+                        sample, TimeUnit.NANOSECONDS.toMicros(rtt), sampleConsumed, unconsumed, sessionTargetWindow, target, session);
+            sessionTargetWindow = target;
+            return true;
+        }
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        WindowUpdateFrame windowFrame = null;
+        Frame[] windowFrames = Frame.EMPTY_ARRAY;
+        synchronized (this)
+        {
+            consumed += length;
+
+            int delta = sessionWindow.consumed(length, sessionTargetWindow);
+            if (delta > 0)
+            {
+                session.updateRecvWindow(delta);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, updated session recv window by {}, window {} for {}", length, delta, sessionWindow.size, session);
+                windowFrame = new BDPWindowUpdateFrame(0, delta);
+            }
+
+            if (stream != null && !stream.isClosed())
+            {
+                Window streamWindow = streamWindows.get(stream);
+                if (streamWindow != null)
+                {
+                    int initial = getInitialStreamRecvWindow();
+                    int target = Math.max(initial, Math.min(maxRecvWindow, initial + sessionTargetWindow - sessionBaseWindow));
+                    delta = streamWindow.consumed(length, target);
+                    if (delta > 0)
+                    {
+                        stream.updateRecvWindow(delta);
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, updated stream recv window by {}, window {} for {}", length, delta, streamWindow.size, stream);
+                        WindowUpdateFrame frame = new BDPWindowUpdateFrame(stream.getId(), delta);
+                        if (windowFrame == null)
+                            windowFrame = frame;
+                        else
+                            windowFrames = new Frame[]{frame};
+                    }
+                }
+            }
+        }
+
+        if (windowFrame != null)
+            session.frames(stream, Callback.NOOP, windowFrame, windowFrames);
+    }
+
+    @Override
+    public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+    {
+        super.windowUpdate(session, stream, frame);
+
+        // Window updates sent by this strategy are already accounted;
+        // other window updates (for example, the one that enlarges the
+        // initial session window) enlarge the windows unilaterally.
+        if (frame instanceof BDPWindowUpdateFrame)
+            return;
+
+        synchronized (this)
+        {
+            int delta = frame.getWindowDelta();
+            if (frame.getStreamId() == 0)
+            {
+                sessionWindow.size += delta;
+                sessionBaseWindow += delta;
+                sessionTargetWindow = Math.max(sessionTargetWindow, sessionBaseWindow);
+            }
+            else if (stream != null)
+            {
+                Window window = streamWindows.get(stream);
+                if (window != null)
+                    window.size += delta;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        synchronized (this)
+        {
+            return String.format("%s@%x[window=%d/%d/%d,rtt=%dus,bandwidth=%d,sessionStallTime=%dms,streamsStallTime=%dms]",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    sessionWindow.size,
+                    sessionTargetWindow,
+                    maxRecvWindow,
+                    TimeUnit.NANOSECONDS.toMicros(roundTripTime),
+                    bandwidth,
+                    getSessionStallTime(),
+                    getStreamsStallTime());
+        }
+    }
+
+    /**
+     * <p>The size of a receive window, that is the sum of the remaining
+     * window, of the data received but not yet consumed and of the data
+     * consumed but not yet returned to the sender via a window update.</p>
+     */
+    private class Window
+    {
+        private int size;
+        private int level;
+
+        private Window(int size)
+        {
+            this.size = size;
+        }
+
+        /**
+         * @param length the number of bytes consumed
+         * @param target the target window size
+         * @return the window update delta to send, or 0 if no window update must be sent
+         */
+        private int consumed(int length, int target)
+        {
+            level += length;
+            if (level <= size * bufferRatio && target <= size)
+                return 0;
+            int delta = level + target - size;
+            if (delta > 0)
+            {
+                size = target;
+            }
+            else
+            {
+                // Shrink the window by withholding the update.
+                size -= level;
+                delta = 0;
+            }
+            level = 0;
+            return delta;
+        }
+    }
+
+    /**
+     * <p>Marks the window updates sent by this strategy.</p>
+     */
+    private static class BDPWindowUpdateFrame extends WindowUpdateFrame
+    {
+        private BDPWindowUpdateFrame(int streamId, int windowDelta)
+        {
+            super(streamId, windowDelta);
+        }
+    }
+}
@@ -39,6 +39,7 @@ public class HTTP2Flusher extends IteratingCallback
     private static final Logger LOG = Log.getLogger(HTTP2Flusher.class);
 
     private final Queue<WindowEntry> windows = new ArrayDeque<>();
+    private final Queue<WindowEntry> windowsPool = new ArrayDeque<>();
     private final Deque<Entry> frames = new ArrayDeque<>();
     private final Queue<Entry> entries = new ArrayDeque<>();
     private final List<Entry> actives = new ArrayList<>();
@@ -60,7 +61,13 @@ public class HTTP2Flusher extends IteratingCallback
         {
             closed = terminated;
             if (closed == null)
-                windows.offer(new WindowEntry(stream, frame));
+            {
+                WindowEntry entry = windowsPool.poll();
+                if (entry == null)
+                    entry = new WindowEntry();
+                entry.prepare(stream, frame);
+                windows.offer(entry);
+            }
         }
         // Flush stalled data.
         if (closed == null)
@@ -128,6 +135,8 @@ public class HTTP2Flusher extends IteratingCallback
             {
                 WindowEntry entry = windows.poll();
                 entry.perform();
+                // WindowEntries never escape the flusher, so they can be reused.
+                windowsPool.offer(entry);
             }
 
             if (!frames.isEmpty())
@@ -359,10 +368,10 @@ public class HTTP2Flusher extends IteratingCallback
 
     private class WindowEntry
     {
-        private final IStream stream;
-        private final WindowUpdateFrame frame;
+        private IStream stream;
+        private WindowUpdateFrame frame;
 
-        public WindowEntry(IStream stream, WindowUpdateFrame frame)
+        private void prepare(IStream stream, WindowUpdateFrame frame)
         {
             this.stream = stream;
             this.frame = frame;
@@ -372,6 +381,8 @@ public class HTTP2Flusher extends IteratingCallback
         {
             FlowControlStrategy flowControl = session.getFlowControlStrategy();
             flowControl.onWindowUpdate(session, stream, frame);
+            stream = null;
+            frame = null;
         }
     }
 }
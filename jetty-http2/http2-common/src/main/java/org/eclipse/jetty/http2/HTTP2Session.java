@@ -26,8 +26,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -68,7 +66,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 {
     private static final Logger LOG = Log.getLogger(HTTP2Session.class);
 
-    private final ConcurrentMap<Integer, IStream> streams = new ConcurrentHashMap<>();
+    private final IntConcurrentMap<IStream> streams = new IntConcurrentMap<>();
     private final AtomicInteger streamIds = new AtomicInteger();
     private final AtomicInteger lastStreamId = new AtomicInteger();
     private final AtomicInteger localStreamCount = new AtomicInteger();
@@ -386,7 +384,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -527,22 +526,44 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         boolean queued;
         synchronized (this)
         {
-            int streamId = streamIds.getAndAdd(2);
-            frame = new PushPromiseFrame(frame.getStreamId(), streamId, frame.getMetaData());
-
-            final IStream pushStream = createLocalStream(streamId, promise);
-            if (pushStream == null)
-                return;
-            pushStream.setListener(listener);
+            queued = appendPush(promise, frame, listener);
+        }
+        // Iterate outside the synchronized block.
+        if (queued)
+            flusher.iterate();
+    }
 
-            ControlEntry entry = new ControlEntry(frame, pushStream, new PromiseCallback<>(promise, pushStream));
-            queued = flusher.append(entry);
+    @Override
+    public void push(IStream stream, List<Promise<Stream>> promises, List<PushPromiseFrame> frames, Stream.Listener listener)
+    {
+        // Append all the frames before iterating, so that
+        // they are generated and written together.
+        boolean queued = false;
+        synchronized (this)
+        {
+            for (int i = 0; i < frames.size(); ++i)
+                queued |= appendPush(promises.get(i), frames.get(i), listener);
         }
         // Iterate outside the synchronized block.
         if (queued)
             flusher.iterate();
     }
 
+    private boolean appendPush(Promise<Stream> promise, PushPromiseFrame frame, Stream.Listener listener)
+    {
+        // Must be called with the lock held.
+        int streamId = streamIds.getAndAdd(2);
+        frame = new PushPromiseFrame(frame.getStreamId(), streamId, frame.getMetaData());
+
+        final IStream pushStream = createLocalStream(streamId, promise);
+        if (pushStream == null)
+            return false;
+        pushStream.setListener(listener);
+
+        ControlEntry entry = new ControlEntry(frame, pushStream, new PromiseCallback<>(promise, pushStream));
+        return flusher.append(entry);
+    }
+
 
     @Override
     public void settings(SettingsFrame frame, Callback callback)
@@ -18,6 +18,8 @@
 
 package org.eclipse.jetty.http2;
 
+import java.util.List;
+
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.frames.DataFrame;
@@ -66,6 +68,25 @@ public interface ISession extends Session
      */
     public void push(IStream stream, Promise<Stream> promise, PushPromiseFrame frame, Stream.Listener listener);
 
+    /**
+     * <p>Enqueues the given PUSH_PROMISE frames to be written to the connection
+     * in a single flush.</p>
+     * <p>Like {@link #push(IStream, Promise, PushPromiseFrame, Stream.Listener)},
+     * this method generates atomically the stream ids for the pushed streams.</p>
+     * <p>The default implementation enqueues the frames one by one.</p>
+     *
+     * @param stream   the stream associated to the pushed streams
+     * @param promises the promises that get notified of the pushed streams creation,
+     *                 one for each frame
+     * @param frames   the PUSH_PROMISE frames to enqueue
+     * @param listener the listener that gets notified of pushed streams events
+     */
+    public default void push(IStream stream, List<Promise<Stream>> promises, List<PushPromiseFrame> frames, Stream.Listener listener)
+    {
+        for (int i = 0; i < frames.size(); ++i)
+            push(stream, promises.get(i), frames.get(i), listener);
+    }
+
     /**
      * <p>Enqueues the given DATA frame to be written to the connection.</p>
      *
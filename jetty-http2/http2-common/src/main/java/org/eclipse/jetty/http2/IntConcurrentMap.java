@@ -0,0 +1,176 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>A concurrent map with primitive {@code int} keys, used to look up
+ * streams by id without boxing the id for every frame.</p>
+ * <p>Lookups are lock-free: buckets hold immutable chains of nodes,
+ * so readers always see a consistent chain.
+ * Modifications are serialized by a lock, since they only happen when
+ * streams are created or destroyed, which is much less frequent than
+ * frames being received for those streams.</p>
+ *
+ * @param <V> the type of the values
+ */
+class IntConcurrentMap<V>
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile AtomicReferenceArray<Node<V>> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private volatile int size;
+
+    public V get(int key)
+    {
+        AtomicReferenceArray<Node<V>> table = this.table;
+        Node<V> node = table.get(index(key, table.length()));
+        while (node != null)
+        {
+            if (node.key == key)
+                return node.value;
+            node = node.next;
+        }
+        return null;
+    }
+
+    public V putIfAbsent(int key, V value)
+    {
+        synchronized (this)
+        {
+            AtomicReferenceArray<Node<V>> table = this.table;
+            int index = index(key, table.length());
+            Node<V> head = table.get(index);
+            for (Node<V> node = head; node != null; node = node.next)
+            {
+                if (node.key == key)
+                    return node.value;
+            }
+            table.set(index, new Node<>(key, value, head));
+            int size = ++this.size;
+            if (size > table.length() * 3 / 4)
+                resize(table, table.length() * 2);
+            return null;
+        }
+    }
+
+    public V remove(int key)
+    {
+        synchronized (this)
+        {
+            AtomicReferenceArray<Node<V>> table = this.table;
+            int index = index(key, table.length());
+            Node<V> head = table.get(index);
+            Node<V> node = head;
+            while (node != null && node.key != key)
+                node = node.next;
+            if (node == null)
+                return null;
+
+            // Nodes are immutable: copy the nodes that precede the removed one.
+            Node<V> chain = node.next;
+            for (Node<V> n = head; n != node; n = n.next)
+                chain = new Node<>(n.key, n.value, chain);
+            table.set(index, chain);
+
+            int size = --this.size;
+            if (table.length() > MIN_CAPACITY && size < table.length() / 8)
+                resize(table, table.length() / 2);
+            return node.value;
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * @return a snapshot of the values in this map
+     */
+    public List<V> values()
+    {
+        AtomicReferenceArray<Node<V>> table = this.table;
+        List<V> result = new ArrayList<>(size());
+        for (int i = 0; i < table.length(); ++i)
+        {
+            for (Node<V> node = table.get(i); node != null; node = node.next)
+                result.add(node.value);
+        }
+        return result;
+    }
+
+    public void clear()
+    {
+        synchronized (this)
+        {
+            table = new AtomicReferenceArray<>(MIN_CAPACITY);
+            size = 0;
+        }
+    }
+
+    private void resize(AtomicReferenceArray<Node<V>> table, int capacity)
+    {
+        AtomicReferenceArray<Node<V>> newTable = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < table.length(); ++i)
+        {
+            for (Node<V> node = table.get(i); node != null; node = node.next)
+            {
+                int index = index(node.key, capacity);
+                newTable.set(index, new Node<>(node.key, node.value, newTable.get(index)));
+            }
+        }
+        this.table = newTable;
+    }
+
+    private static int index(int key, int capacity)
+    {
+        // Stream ids of the same peer have the same parity, so spread the bits.
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[size=%d]", getClass().getSimpleName(), hashCode(), size());
+    }
+
+    private static class Node<V>
+    {
+        private final int key;
+        private final V value;
+        private final Node<V> next;
+
+        private Node(int key, V value, Node<V> next)
+        {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackMemoryBudget;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.log.Log;
@@ -50,6 +51,7 @@ public class Parser
     private final Listener listener;
     private final HeaderParser headerParser;
     private final BodyParser[] bodyParsers;
+    private final HpackDecoder hpackDecoder;
     private boolean continuation;
     private State state = State.HEADER;
 
@@ -59,7 +61,8 @@ public class Parser
         this.headerParser = new HeaderParser();
         this.bodyParsers = new BodyParser[FrameType.values().length];
 
-        HeaderBlockParser headerBlockParser = new HeaderBlockParser(byteBufferPool, new HpackDecoder(maxDynamicTableSize, maxHeaderSize));
+        this.hpackDecoder = new HpackDecoder(maxDynamicTableSize, maxHeaderSize);
+        HeaderBlockParser headerBlockParser = new HeaderBlockParser(byteBufferPool, hpackDecoder);
         HeaderBlockFragments headerBlockFragments = new HeaderBlockFragments();
 
         bodyParsers[FrameType.DATA.getType()] = new DataBodyParser(headerParser, listener);
@@ -74,6 +77,19 @@ public class Parser
         bodyParsers[FrameType.CONTINUATION.getType()] = new ContinuationBodyParser(headerParser, listener, headerBlockParser, headerBlockFragments);
     }
 
+    /**
+     * @param maxDynamicTableSize the max HPACK dynamic table size that the remote peer may signal
+     */
+    public void setMaxDynamicTableSize(int maxDynamicTableSize)
+    {
+        hpackDecoder.setLocalMaxDynamicTableSize(maxDynamicTableSize);
+    }
+
+    public void setHpackMemoryBudget(HpackMemoryBudget memoryBudget)
+    {
+        hpackDecoder.setMemoryBudget(memoryBudget);
+    }
+
     private void reset()
     {
         headerParser.reset();
@@ -0,0 +1,160 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class IntConcurrentMapTest
+{
+    @Test
+    public void testPutGetRemove() throws Exception
+    {
+        IntConcurrentMap<String> map = new IntConcurrentMap<>();
+        int count = 1000;
+        for (int i = 1; i <= count; i += 2)
+            Assert.assertNull(map.putIfAbsent(i, "s" + i));
+        Assert.assertEquals(count / 2, map.size());
+        Assert.assertEquals("s1", map.putIfAbsent(1, "other"));
+
+        for (int i = 1; i <= count; ++i)
+            Assert.assertEquals(i % 2 == 1 ? "s" + i : null, map.get(i));
+
+        for (int i = 1; i <= count; i += 4)
+            Assert.assertEquals("s" + i, map.remove(i));
+        Assert.assertNull(map.remove(1));
+        Assert.assertEquals(count / 4, map.size());
+        Assert.assertEquals(count / 4, map.values().size());
+        for (int i = 3; i <= count; i += 4)
+            Assert.assertEquals("s" + i, map.get(i));
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(3));
+    }
+
+    @Test
+    public void testConcurrentReadsDuringModifications() throws Exception
+    {
+        IntConcurrentMap<Integer> map = new IntConcurrentMap<>();
+        // Stable entries, that must always be found by readers.
+        for (int i = 0; i < 64; ++i)
+            map.putIfAbsent(-i - 1, i);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+        int readers = 4;
+        CountDownLatch latch = new CountDownLatch(readers);
+        for (int r = 0; r < readers; ++r)
+        {
+            new Thread(() ->
+            {
+                while (running.get())
+                {
+                    for (int i = 0; i < 64; ++i)
+                    {
+                        Integer value = map.get(-i - 1);
+                        if (value == null || value != i)
+                            failures.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        // Churn the map so that it resizes up and down.
+        for (int round = 0; round < 100; ++round)
+        {
+            for (int i = 1; i < 2048; i += 2)
+                map.putIfAbsent(i, i);
+            for (int i = 1; i < 2048; i += 2)
+                Assert.assertEquals(i, (int)map.remove(i));
+        }
+        running.set(false);
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(64, map.size());
+    }
+
+    @Stress("Allocation rate")
+    @Test
+    public void testLookupAllocationBenchmark() throws Exception
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean)threads;
+
+        int streams = 100;
+        int lookups = 10_000_000;
+        IntConcurrentMap<Object> intMap = new IntConcurrentMap<>();
+        ConcurrentMap<Integer, Object> boxedMap = new ConcurrentHashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < streams; ++i)
+        {
+            // Stream ids quickly grow past the Integer cache.
+            int id = 1001 + 2 * i;
+            ids.add(id);
+            intMap.putIfAbsent(id, ids);
+            boxedMap.putIfAbsent(id, ids);
+        }
+
+        for (int run = 0; run < 3; ++run)
+        {
+            long thread = Thread.currentThread().getId();
+            long begin = mxBean.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < lookups; ++i)
+            {
+                if (boxedMap.get(1001 + 2 * (i % streams)) != null)
+                    ++found;
+            }
+            long boxedTime = System.nanoTime() - start;
+            long boxedBytes = mxBean.getThreadAllocatedBytes(thread) - begin;
+
+            begin = mxBean.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; ++i)
+            {
+                if (intMap.get(1001 + 2 * (i % streams)) != null)
+                    ++found;
+            }
+            long intTime = System.nanoTime() - start;
+            long intBytes = mxBean.getThreadAllocatedBytes(thread) - begin;
+
+            Assert.assertEquals(2 * lookups, found);
+            System.err.printf("ConcurrentHashMap: %.2f B/op %d ms, IntConcurrentMap: %.2f B/op %d ms%n",
+                    (double)boxedBytes / lookups, TimeUnit.NANOSECONDS.toMillis(boxedTime),
+                    (double)intBytes / lookups, TimeUnit.NANOSECONDS.toMillis(intTime));
+        }
+    }
+}
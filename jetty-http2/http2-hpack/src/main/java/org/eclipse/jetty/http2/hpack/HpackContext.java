@@ -29,7 +29,6 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.util.ArrayTernaryTrie;
-import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.Trie;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -116,6 +115,7 @@ public class HpackContext
     private static final Trie<StaticEntry> __staticNameMap = new ArrayTernaryTrie<>(true,512);
     private static final StaticEntry[] __staticTableByHeader = new StaticEntry[HttpHeader.UNKNOWN.ordinal()];
     private static final StaticEntry[] __staticTable=new StaticEntry[STATIC_TABLE.length];
+    private static final Entry[] __emptyEntries = new Entry[0];
     public static final int STATIC_SIZE = STATIC_TABLE.length-1;
     static
     {
@@ -189,14 +189,11 @@ public class HpackContext
     private int _maxDynamicTableSizeInBytes;
     private int _dynamicTableSizeInBytes;
     private final DynamicTable _dynamicTable;
-    private final Map<HttpField,Entry> _fieldMap = new HashMap<>();
-    private final Map<String,Entry> _nameMap = new HashMap<>();
 
     HpackContext(int maxDynamicTableSize)
     {
         _maxDynamicTableSizeInBytes=maxDynamicTableSize;
-        int guesstimateEntries = 10+maxDynamicTableSize/(32+10+10);
-        _dynamicTable=new DynamicTable(guesstimateEntries);
+        _dynamicTable=new DynamicTable();
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] created max=%d",hashCode(),maxDynamicTableSize));
     }
@@ -211,7 +208,7 @@ public class HpackContext
 
     public Entry get(HttpField field)
     {
-        Entry entry = _fieldMap.get(field);
+        Entry entry = _dynamicTable.get(field);
         if (entry==null)
             entry=__staticFieldMap.get(field);
         return entry;
@@ -222,7 +219,7 @@ public class HpackContext
         Entry entry = __staticNameMap.get(name);
         if (entry!=null)
             return entry;
-        return _nameMap.get(StringUtil.asciiToLowerCase(name));
+        return _dynamicTable.get(name);
     }
 
     public Entry get(int index)
@@ -258,8 +255,6 @@ public class HpackContext
         }
         _dynamicTableSizeInBytes+=size;
         _dynamicTable.add(entry);
-        _fieldMap.put(field,entry);
-        _nameMap.put(StringUtil.asciiToLowerCase(field.getName()),entry);
 
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] added %s",hashCode(),entry));
@@ -318,24 +313,43 @@ public class HpackContext
         return String.format("HpackContext@%x{entries=%d,size=%d,max=%d}",hashCode(),_dynamicTable.size(),_dynamicTableSizeInBytes,_maxDynamicTableSizeInBytes);
     }
 
-    private class DynamicTable 
+    private static int nameHash(String name)
     {
-        Entry[] _entries;
-        int _size;
-        int _offset;
-        int _growby;
-        
-        private DynamicTable(int initCapacity)
+        int hash=0;
+        for (int i=0;i<name.length();i++)
         {
-            _entries=new Entry[initCapacity];
-            _growby=initCapacity;
+            char c=name.charAt(i);
+            if (c>='A' && c<='Z')
+                c+='a'-'A';
+            hash=31*hash+c;
         }
+        return spread(hash);
+    }
+
+    private static int spread(int hash)
+    {
+        return hash^(hash>>>16);
+    }
+
+    /**
+     * <p>The dynamic table is a ring of entries, indexed by field and by name with
+     * open addressing tables of entries, so that adding an entry allocates only the entry.
+     * The arrays are allocated lazily and grown by doubling, so that connections that
+     * do not use the dynamic table do not pay for it.</p>
+     */
+    private class DynamicTable
+    {
+        Entry[] _entries=__emptyEntries;
+        Entry[] _fieldIndex=__emptyEntries;
+        Entry[] _nameIndex=__emptyEntries;
+        int _size;
+        int _offset;
 
         public void add(Entry entry)
         {
             if (_size==_entries.length)
             {
-                Entry[] entries = new Entry[_entries.length+_growby];
+                Entry[] entries = new Entry[Math.max(8,_entries.length*2)];
                 for (int i=0;i<_size;i++)
                 {
                     int slot = (_offset+i)%_entries.length;
@@ -344,10 +358,61 @@ public class HpackContext
                 }
                 _entries=entries;
                 _offset=0;
+
+                // Rebuild the indexes, older entries first so that the newest entry for a name wins.
+                _fieldIndex=new Entry[2*entries.length];
+                _nameIndex=new Entry[2*entries.length];
+                for (int i=0;i<_size;i++)
+                    putIndexes(entries[i]);
             }
             int slot=(_size++ + _offset)%_entries.length;
             _entries[slot]=entry;
             entry._slot=slot;
+            putIndexes(entry);
+        }
+
+        private void putIndexes(Entry entry)
+        {
+            HttpField field=entry._field;
+            int mask=_fieldIndex.length-1;
+            int i=entry._fieldHash&mask;
+            while (_fieldIndex[i]!=null && !_fieldIndex[i]._field.equals(field))
+                i=(i+1)&mask;
+            _fieldIndex[i]=entry;
+
+            String name=field.getName();
+            i=entry._nameHash&mask;
+            while (_nameIndex[i]!=null && !_nameIndex[i]._field.getName().equalsIgnoreCase(name))
+                i=(i+1)&mask;
+            _nameIndex[i]=entry;
+        }
+
+        public Entry get(HttpField field)
+        {
+            if (_size==0)
+                return null;
+            int mask=_fieldIndex.length-1;
+            for (int i=spread(field.hashCode())&mask;_fieldIndex[i]!=null;i=(i+1)&mask)
+            {
+                Entry entry=_fieldIndex[i];
+                if (field.equals(entry._field))
+                    return entry;
+            }
+            return null;
+        }
+
+        public Entry get(String name)
+        {
+            if (_size==0)
+                return null;
+            int mask=_nameIndex.length-1;
+            for (int i=nameHash(name)&mask;_nameIndex[i]!=null;i=(i+1)&mask)
+            {
+                Entry entry=_nameIndex[i];
+                if (name.equalsIgnoreCase(entry._field.getName()))
+                    return entry;
+            }
+            return null;
         }
 
         public int index(Entry entry)
@@ -381,32 +446,61 @@ public class HpackContext
                     LOG.debug(String.format("HdrTbl[%x] evict %s",HpackContext.this.hashCode(),entry));
                 _dynamicTableSizeInBytes-=entry.getSize();
                 entry._slot=-1;
-                _fieldMap.remove(entry.getHttpField());
-                String lc=StringUtil.asciiToLowerCase(entry.getHttpField().getName());
-                if (entry==_nameMap.get(lc))
-                    _nameMap.remove(lc);
-
+                remove(_fieldIndex,entry,false);
+                remove(_nameIndex,entry,true);
             }
             if (LOG.isDebugEnabled())
                 LOG.debug(String.format("HdrTbl[%x] entries=%d, size=%d, max=%d",HpackContext.this.hashCode(),_dynamicTable.size(),_dynamicTableSizeInBytes,_maxDynamicTableSizeInBytes));
         }
 
+        private void remove(Entry[] index, Entry entry, boolean byName)
+        {
+            int mask=index.length-1;
+            int i=(byName?entry._nameHash:entry._fieldHash)&mask;
+            while (index[i]!=entry)
+            {
+                // The entry has been replaced by a newer entry with the same key.
+                if (index[i]==null)
+                    return;
+                i=(i+1)&mask;
+            }
+
+            // Remove by shifting back the entries that follow in the same probe sequence.
+            index[i]=null;
+            for (int j=(i+1)&mask;index[j]!=null;j=(j+1)&mask)
+            {
+                Entry next=index[j];
+                int k=(byName?next._nameHash:next._fieldHash)&mask;
+                if (i<=j ? (k<=i || k>j) : (k<=i && k>j))
+                {
+                    index[i]=next;
+                    index[j]=null;
+                    i=j;
+                }
+            }
+        }
     }
 
     public static class Entry
     {
         final HttpField _field;
+        final int _fieldHash;
+        final int _nameHash;
         int _slot; // The index within it's array
 
         Entry()
         {
             _slot=-1;
             _field=null;
+            _fieldHash=0;
+            _nameHash=0;
         }
 
         Entry(HttpField field)
         {
             _field=field;
+            _fieldHash=spread(field.hashCode());
+            _nameHash=nameHash(field.getName());
         }
 
         public int getSize()
@@ -44,6 +44,7 @@ public class HpackDecoder
     private final HpackContext _context;
     private final MetaDataBuilder _builder;
     private int _localMaxDynamicTableSize;
+    private HpackMemoryBudget _memoryBudget;
 
     /**
      * @param localMaxDynamicTableSize  The maximum allowed size of the local dynamic header field table.
@@ -66,6 +67,19 @@ public class HpackDecoder
         _localMaxDynamicTableSize=localMaxdynamciTableSize;
     }
 
+    public HpackMemoryBudget getMemoryBudget()
+    {
+        return _memoryBudget;
+    }
+
+    /**
+     * @param memoryBudget the budget used to intern the fields added to the dynamic table, or null
+     */
+    public void setMemoryBudget(HpackMemoryBudget memoryBudget)
+    {
+        _memoryBudget=memoryBudget;
+    }
+
     public MetaData decode(ByteBuffer buffer)
     {
         if (LOG.isDebugEnabled())
@@ -230,6 +244,10 @@ public class HpackDecoder
                     }
                 }
 
+                // Share the fields retained by the dynamic table with other connections.
+                if (indexed && _memoryBudget!=null && field.getClass()==HttpField.class)
+                    field=_memoryBudget.intern(field);
+
                 if (LOG.isDebugEnabled())
                 {
                     LOG.debug("decoded '{}' by {}/{}/{}",
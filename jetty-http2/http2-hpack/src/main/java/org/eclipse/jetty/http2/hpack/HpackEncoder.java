@@ -89,6 +89,7 @@ public class HpackEncoder
     private int _localMaxDynamicTableSize;
     private int _maxHeaderListSize;
     private int _headerListSize;
+    private HpackEncodingCache _encodingCache;
 
     public HpackEncoder()
     {
@@ -124,6 +125,19 @@ public class HpackEncoder
         _maxHeaderListSize = maxHeaderListSize;
     }
 
+    public HpackEncodingCache getEncodingCache()
+    {
+        return _encodingCache;
+    }
+
+    /**
+     * @param encodingCache the cache of encodings shared with other encoders, or null for no cache
+     */
+    public void setEncodingCache(HpackEncodingCache encodingCache)
+    {
+        _encodingCache=encodingCache;
+    }
+
     public HpackContext getHpackContext()
     {
         return _context;
@@ -260,21 +274,22 @@ public class HpackEncoder
                     // unknown name and value, so let's index this just in case it is
                     // the first time we have seen a custom name or a custom field.
                     // unless the name is changing, this is worthwhile
-                    indexed=true;
-                    encodeName(buffer,(byte)0x40,6,field.getName(),null);
-                    encodeValue(buffer,true,field.getValue());
+                    indexed=_encodingCache==null || _encodingCache.isIndexed(field,true);
+                    encodeName(buffer,indexed?(byte)0x40:(byte)0x00,indexed?6:4,field.getName(),null);
+                    encodeHuffmanValue(buffer,field);
                     if (_debug)
-                        encoding="LitHuffNHuffVIdx";
+                        encoding=indexed?"LitHuffNHuffVIdx":"LitHuffNHuffV!Idx";
                 }
                 else
                 {
                     // known custom name, but unknown value.
-                    // This is probably a custom field with changing value, so don't index.
-                    indexed=false;
-                    encodeName(buffer,(byte)0x00,4,field.getName(),null);
-                    encodeValue(buffer,true,field.getValue());
+                    // This is probably a custom field with changing value, so don't index,
+                    // unless the encoding cache has learnt that the values repeat.
+                    indexed=_encodingCache!=null && _encodingCache.isIndexed(field,false);
+                    encodeName(buffer,indexed?(byte)0x40:(byte)0x00,indexed?6:4,field.getName(),null);
+                    encodeHuffmanValue(buffer,field);
                     if (_debug)
-                        encoding="LitHuffNHuffV!Idx";
+                        encoding=indexed?"LitHuffNHuffVIdx":"LitHuffNHuffV!Idx";
                 }
             }
             else
@@ -318,14 +333,18 @@ public class HpackEncoder
                 }
                 else
                 {
-                    // indexed
-                    indexed=true;
+                    // indexed, unless the encoding cache has learnt that the values do not repeat
+                    indexed=_encodingCache==null || _encodingCache.isIndexed(field,true);
                     boolean huffman=!__DO_NOT_HUFFMAN.contains(header);
-                    encodeName(buffer,(byte)0x40,6,header.asString(),name);
-                    encodeValue(buffer,huffman,field.getValue());
+                    int bits=indexed?6:4;
+                    encodeName(buffer,indexed?(byte)0x40:(byte)0x00,bits,header.asString(),name);
+                    if (huffman)
+                        encodeHuffmanValue(buffer,field);
+                    else
+                        encodeValue(buffer,false,field.getValue());
                     if (_debug)
-                        encoding=((name==null)?"LitHuffN":("LitIdxN"+(name.isStatic()?"S":"")+(1+NBitInteger.octectsNeeded(6,_context.index(name)))))+
-                                (huffman?"HuffVIdx":"LitVIdx");
+                        encoding=((name==null)?"LitHuffN":("LitIdxN"+(name.isStatic()?"S":"")+(1+NBitInteger.octectsNeeded(bits,_context.index(name)))))+
+                                (huffman?"HuffV":"LitV")+(indexed?"Idx":"!Idx");
                 }
             }
 
@@ -361,6 +380,14 @@ public class HpackEncoder
         }
     }
 
+    private void encodeHuffmanValue(ByteBuffer buffer, HttpField field)
+    {
+        if (_encodingCache==null)
+            encodeValue(buffer,true,field.getValue());
+        else
+            _encodingCache.encodeValue(buffer,field);
+    }
+
     static void encodeValue(ByteBuffer buffer, boolean huffman, String value)
     {
         if (huffman)
@@ -0,0 +1,281 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/* ------------------------------------------------------------ */
+/**
+ * <p>A cache of HPACK encodings that is shared by the {@link HpackEncoder}s
+ * of many connections, typically all the connections of a server.</p>
+ * <p>The cache holds the Huffman encoded literal representation of header values,
+ * so that values that are identical across many responses (for example
+ * {@code Content-Type: application/json;charset=utf-8}, {@code Server} or CORS
+ * headers) are Huffman encoded only once rather than once per connection.
+ * The number of cached values is bounded; when the cache is full, the values that
+ * have not been used since the previous sweep are evicted.</p>
+ * <p>The cache also learns, for each header name, whether its values repeat
+ * across responses.  Fields whose values repeat are worth adding to the
+ * dynamic table of each connection; fields whose values rarely repeat (for
+ * example request ids) are instead sent as literals without indexing, so that
+ * they do not evict useful entries from the dynamic table, and their values
+ * are not cached.  Note that a {@code Date} value repeats in all the responses
+ * sent within the same second, so under load {@code Date} is learned as repeating.
+ * Until enough samples have been collected for a header name, the default policy
+ * of the {@link HpackEncoder} applies.</p>
+ * <p>The values of a header name that is learned as not repeating are still
+ * sampled against the last few values seen for that name, so that the policy
+ * adapts if they start to repeat.</p>
+ * <p>The statistics are updated without synchronization, so they are approximate.</p>
+ */
+@ManagedObject
+public class HpackEncodingCache
+{
+    private final Map<String,Value> _values=new ConcurrentHashMap<>();
+    private final Stats[] _headerStats=new Stats[HttpHeader.values().length];
+    private final Map<String,Stats> _nameStats=new ConcurrentHashMap<>();
+    private final AtomicBoolean _sweeping=new AtomicBoolean();
+    private final int _maxValues;
+    private final int _learningSamples;
+
+    public HpackEncodingCache()
+    {
+        this(4096,32);
+    }
+
+    /**
+     * @param maxValues the max number of cached values
+     * @param learningSamples the number of samples of a header name after which its indexing policy is learned
+     */
+    public HpackEncodingCache(int maxValues, int learningSamples)
+    {
+        _maxValues=maxValues;
+        _learningSamples=learningSamples;
+        for (int i=0;i<_headerStats.length;i++)
+            _headerStats[i]=new Stats();
+    }
+
+    @ManagedAttribute("The max number of cached values")
+    public int getMaxValues()
+    {
+        return _maxValues;
+    }
+
+    @ManagedAttribute("The number of cached values")
+    public int getSize()
+    {
+        return _values.size();
+    }
+
+    @ManagedAttribute("The number of samples of a header name after which its indexing policy is learned")
+    public int getLearningSamples()
+    {
+        return _learningSamples;
+    }
+
+    @ManagedOperation(value="Clears the cache and the learned policies",impact="ACTION")
+    public void clear()
+    {
+        _values.clear();
+        _nameStats.clear();
+        for (Stats stats : _headerStats)
+            stats.reset();
+    }
+
+    /**
+     * @param field the field to encode
+     * @param fallback the encoder's default policy
+     * @return whether the field should be added to the dynamic table
+     */
+    boolean isIndexed(HttpField field, boolean fallback)
+    {
+        Stats stats=getStats(field);
+        if (stats==null || stats._samples<_learningSamples)
+            return fallback;
+        return stats.isRepeating();
+    }
+
+    /**
+     * <p>Puts the Huffman encoded literal representation of the field value into the buffer,
+     * using the cached encoding if available, and learns whether the field values repeat.</p>
+     *
+     * @param buffer the buffer to encode into
+     * @param field the field whose value is encoded
+     */
+    void encodeValue(ByteBuffer buffer, HttpField field)
+    {
+        String value=field.getValue();
+        Stats stats=getStats(field);
+
+        Value cached=_values.get(value);
+        if (cached!=null)
+        {
+            cached._used=true;
+            if (stats!=null)
+                stats.sample(true);
+            buffer.put(cached._encoding);
+            return;
+        }
+
+        // Values that are not cached, for example because their name is learned
+        // as not repeating, may still repeat one of the last values seen.
+        boolean repeat=false;
+        if (stats!=null)
+        {
+            repeat=stats.seen(value.hashCode());
+            stats.sample(repeat);
+        }
+
+        int position=buffer.position();
+        HpackEncoder.encodeValue(buffer,true,value);
+
+        boolean admit=stats==null || repeat || stats._samples<_learningSamples || stats.isRepeating();
+        if (admit)
+        {
+            if (_values.size()>=_maxValues)
+                sweep();
+            if (_values.size()<_maxValues)
+            {
+                byte[] encoding=new byte[buffer.position()-position];
+                for (int i=0;i<encoding.length;i++)
+                    encoding[i]=buffer.get(position+i);
+                _values.putIfAbsent(value,new Value(encoding));
+            }
+        }
+    }
+
+    private Stats getStats(HttpField field)
+    {
+        HttpHeader header=field.getHeader();
+        if (header!=null)
+            return _headerStats[header.ordinal()];
+        String name=field.getName();
+        Stats stats=_nameStats.get(name);
+        if (stats==null && _nameStats.size()<_maxValues)
+        {
+            stats=new Stats();
+            Stats existing=_nameStats.putIfAbsent(name,stats);
+            if (existing!=null)
+                stats=existing;
+        }
+        return stats;
+    }
+
+    private void sweep()
+    {
+        // Only one thread sweeps, the others do not cache meanwhile.
+        if (!_sweeping.compareAndSet(false,true))
+            return;
+        try
+        {
+            for (Iterator<Value> i=_values.values().iterator();i.hasNext();)
+            {
+                Value value=i.next();
+                if (value._used)
+                    value._used=false;
+                else
+                    i.remove();
+            }
+        }
+        finally
+        {
+            _sweeping.set(false);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d}",getClass().getSimpleName(),hashCode(),getSize(),getMaxValues());
+    }
+
+    private static class Value
+    {
+        private final byte[] _encoding;
+        private volatile boolean _used;
+
+        private Value(byte[] encoding)
+        {
+            _encoding=encoding;
+        }
+    }
+
+    private static class Stats
+    {
+        // Halving the samples keeps the statistics adaptive.
+        private static final int MAX_SAMPLES=1024;
+        private static final int RECENT_VALUES=16;
+
+        private final int[] _recent=new int[RECENT_VALUES];
+        private int _next;
+        private int _samples;
+        private int _repeats;
+
+        /**
+         * @param hash the hash of a value that is not cached
+         * @return whether the value is one of the last values seen, otherwise it is recorded as seen
+         */
+        private boolean seen(int hash)
+        {
+            for (int recent : _recent)
+            {
+                if (recent==hash)
+                    return true;
+            }
+            _recent[_next++&(RECENT_VALUES-1)]=hash;
+            return false;
+        }
+
+        private void sample(boolean repeat)
+        {
+            int samples=_samples+1;
+            int repeats=_repeats+(repeat?1:0);
+            if (samples>=MAX_SAMPLES)
+            {
+                samples/=2;
+                repeats/=2;
+            }
+            _samples=samples;
+            _repeats=repeats;
+        }
+
+        private boolean isRepeating()
+        {
+            return _repeats*2>=_samples;
+        }
+
+        private void reset()
+        {
+            Arrays.fill(_recent,0);
+            _samples=0;
+            _repeats=0;
+        }
+    }
+}
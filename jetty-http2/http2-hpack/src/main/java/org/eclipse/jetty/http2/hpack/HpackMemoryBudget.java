@@ -0,0 +1,187 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/* ------------------------------------------------------------ */
+/**
+ * <p>A memory budget for the HPACK dynamic tables of the {@link HpackDecoder}s
+ * of many connections, typically all the connections of a server.</p>
+ * <p>Each connection {@link #acquire(int) acquires} from the budget the size of
+ * the dynamic table that it advertises to the remote peer via
+ * {@code SETTINGS_HEADER_TABLE_SIZE}, and {@link #release(int) releases} it when
+ * the connection is closed.  When the budget is under pressure, new connections
+ * are granted smaller tables, down to no dynamic table at all, so that the total
+ * memory retained by the decoder tables is capped.</p>
+ * <p>The budget also {@link #intern(HttpField) interns} the fields that are added
+ * to the decoder tables, so that the many connections that receive the same
+ * fields (for example {@code user-agent} or {@code accept} headers) retain
+ * one copy of the field rather than one copy per connection.
+ * The number of interned fields is bounded; when the pool is full, the fields
+ * that have not been interned since the previous sweep are evicted.</p>
+ */
+@ManagedObject
+public class HpackMemoryBudget
+{
+    private final AtomicLong _reserved=new AtomicLong();
+    private final Map<HttpField,Interned> _fields=new ConcurrentHashMap<>();
+    private final AtomicBoolean _sweeping=new AtomicBoolean();
+    private final long _maxMemory;
+    private final int _maxInternedFields;
+
+    /**
+     * @param maxMemory the max number of octets of all the dynamic tables
+     */
+    public HpackMemoryBudget(long maxMemory)
+    {
+        this(maxMemory,8192);
+    }
+
+    /**
+     * @param maxMemory the max number of octets of all the dynamic tables
+     * @param maxInternedFields the max number of interned fields
+     */
+    public HpackMemoryBudget(long maxMemory, int maxInternedFields)
+    {
+        _maxMemory=maxMemory;
+        _maxInternedFields=maxInternedFields;
+    }
+
+    @ManagedAttribute("The max number of octets of all the dynamic tables")
+    public long getMaxMemory()
+    {
+        return _maxMemory;
+    }
+
+    @ManagedAttribute("The number of octets of the dynamic tables currently granted")
+    public long getReservedMemory()
+    {
+        return _reserved.get();
+    }
+
+    @ManagedAttribute("The max number of interned fields")
+    public int getMaxInternedFields()
+    {
+        return _maxInternedFields;
+    }
+
+    @ManagedAttribute("The number of interned fields")
+    public int getInternedFields()
+    {
+        return _fields.size();
+    }
+
+    /**
+     * <p>Acquires from this budget the memory for a dynamic table.</p>
+     *
+     * @param tableSize the requested dynamic table size
+     * @return the granted dynamic table size, possibly smaller than the requested size or zero,
+     * that must be {@link #release(int) released} when the table is disposed
+     */
+    public int acquire(int tableSize)
+    {
+        while (true)
+        {
+            long reserved=_reserved.get();
+            int granted=(int)Math.max(0,Math.min(tableSize,_maxMemory-reserved));
+            if (_reserved.compareAndSet(reserved,reserved+granted))
+                return granted;
+        }
+    }
+
+    /**
+     * @param tableSize the dynamic table size returned by {@link #acquire(int)}
+     */
+    public void release(int tableSize)
+    {
+        _reserved.addAndGet(-tableSize);
+    }
+
+    /**
+     * @param field the field to intern
+     * @return a field equal to the given field, shared with other connections if possible
+     */
+    public HttpField intern(HttpField field)
+    {
+        Interned interned=_fields.get(field);
+        if (interned!=null)
+        {
+            interned._used=true;
+            return interned._field;
+        }
+
+        if (_fields.size()>=_maxInternedFields)
+            sweep();
+        if (_fields.size()<_maxInternedFields)
+        {
+            interned=_fields.putIfAbsent(field,new Interned(field));
+            if (interned!=null)
+                return interned._field;
+        }
+        return field;
+    }
+
+    private void sweep()
+    {
+        // Only one thread sweeps, the others do not intern meanwhile.
+        if (!_sweeping.compareAndSet(false,true))
+            return;
+        try
+        {
+            for (Iterator<Interned> i=_fields.values().iterator();i.hasNext();)
+            {
+                Interned interned=i.next();
+                if (interned._used)
+                    interned._used=false;
+                else
+                    i.remove();
+            }
+        }
+        finally
+        {
+            _sweeping.set(false);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{reserved=%d/%d,interned=%d/%d}",getClass().getSimpleName(),hashCode(),getReservedMemory(),getMaxMemory(),getInternedFields(),getMaxInternedFields());
+    }
+
+    private static class Interned
+    {
+        private final HttpField _field;
+        private volatile boolean _used;
+
+        private Interned(HttpField field)
+        {
+            _field=field;
+        }
+    }
+}
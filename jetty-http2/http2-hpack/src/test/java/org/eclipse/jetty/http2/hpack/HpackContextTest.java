@@ -26,6 +26,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http2.hpack.HpackContext.Entry;
@@ -448,4 +452,32 @@ public class HpackContextTest
         assertEquals("Wibble",ctx.get("Wibble").getHttpField().getName());
         
     }
+
+    @Test
+    public void testLookupsAfterManyEvictions()
+    {
+        HpackContext ctx = new HpackContext(1024);
+        Random random = new Random(1234);
+        List<HttpField> fields = new ArrayList<>();
+        for (int i=0;i<10000;i++)
+        {
+            HttpField field = new HttpField("name-"+random.nextInt(20),"value-"+random.nextInt(20));
+            ctx.add(field);
+            fields.add(0,field);
+
+            // The newest entries must be found by field and by name, with the index of the newest duplicate.
+            for (int j=0;j<ctx.size();j++)
+            {
+                HttpField f = fields.get(j);
+                Entry entry = ctx.get(HpackContext.STATIC_SIZE+1+j);
+                assertEquals(f,entry.getHttpField());
+                assertEquals(fields.indexOf(f),ctx.index(ctx.get(f))-HpackContext.STATIC_SIZE-1);
+                int byName = ctx.index(ctx.get(f.getName().toUpperCase(Locale.ENGLISH)))-HpackContext.STATIC_SIZE-1;
+                assertEquals(f.getName(),fields.get(byName).getName());
+                assertTrue(byName<=j);
+            }
+            assertNull(ctx.get(new HttpField("name-x","value-x")));
+            assertNull(ctx.get("name-x"));
+        }
+    }
 }
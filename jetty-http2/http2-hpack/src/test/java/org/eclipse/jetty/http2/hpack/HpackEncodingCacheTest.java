@@ -0,0 +1,214 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HpackEncodingCacheTest
+{
+    private MetaData.Response newResponse(int i)
+    {
+        HttpFields fields = new HttpFields();
+        fields.add(HttpHeader.CONTENT_TYPE,"application/json;charset=utf-8");
+        fields.add(HttpHeader.SERVER,"Jetty(9.3.x)");
+        fields.add(HttpHeader.DATE,DateGenerator.formatDate(1000L*i));
+        fields.add("Access-Control-Allow-Origin","https://www.example.com");
+        fields.add("X-Request-Id",Integer.toHexString(0x12345678+i));
+        return new MetaData.Response(HttpVersion.HTTP_2,200,fields);
+    }
+
+    private MetaData.Response encodeDecode(HpackEncoder encoder, HpackDecoder decoder, ByteBuffer buffer, MetaData.Response response)
+    {
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer,response);
+        BufferUtil.flipToFlush(buffer,0);
+        return (MetaData.Response)decoder.decode(buffer);
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int i=0;
+        for (int c=0;c<64;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setEncodingCache(cache);
+            HpackDecoder decoder = new HpackDecoder(4096,8192);
+            for (int r=0;r<4;r++)
+            {
+                MetaData.Response response = newResponse(i++);
+                MetaData.Response decoded = encodeDecode(encoder,decoder,buffer,response);
+                Assert.assertEquals(response.getStatus(),decoded.getStatus());
+                Assert.assertEquals(response.getFields(),decoded.getFields());
+            }
+        }
+        Assert.assertTrue(cache.getSize()>0);
+    }
+
+    @Test
+    public void testLearnsIndexingPolicy() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache(4096,16);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int i=0;
+        for (int c=0;c<32;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setEncodingCache(cache);
+            HpackDecoder decoder = new HpackDecoder(4096,8192);
+            encodeDecode(encoder,decoder,buffer,newResponse(i++));
+        }
+
+        // A new connection only adds the repeating fields to the dynamic table.
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setEncodingCache(cache);
+        HpackDecoder decoder = new HpackDecoder(4096,8192);
+        encodeDecode(encoder,decoder,buffer,newResponse(i++));
+        HpackContext context = encoder.getHpackContext();
+        Assert.assertNotNull(context.get(new HttpField(HttpHeader.CONTENT_TYPE,"application/json;charset=utf-8")));
+        Assert.assertNotNull(context.get(new HttpField(HttpHeader.SERVER,"Jetty(9.3.x)")));
+        Assert.assertNotNull(context.get(new HttpField("Access-Control-Allow-Origin","https://www.example.com")));
+        Assert.assertNull(context.get(new HttpField(HttpHeader.DATE,DateGenerator.formatDate(1000L*(i-1)))));
+        Assert.assertNull(context.get("X-Request-Id"));
+
+        // Without cache, the default policy applies.
+        HpackEncoder plain = new HpackEncoder();
+        encodeDecode(plain,new HpackDecoder(4096,8192),buffer,newResponse(i));
+        Assert.assertNotNull(plain.getHpackContext().get(new HttpField(HttpHeader.DATE,DateGenerator.formatDate(1000L*i))));
+    }
+
+    @Test
+    public void testRepeatedDateIsLearnedAsRepeating() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache(4096,16);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        // Under load, many responses are sent within the same second.
+        String date=DateGenerator.formatDate(1234567890000L);
+        for (int c=0;c<32;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setEncodingCache(cache);
+            HttpFields fields = new HttpFields();
+            fields.add(HttpHeader.DATE,date);
+            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2,200,fields);
+            Assert.assertEquals(fields,encodeDecode(encoder,new HpackDecoder(4096,8192),buffer,response).getFields());
+        }
+
+        HttpField field = new HttpField(HttpHeader.DATE,date);
+        Assert.assertTrue(cache.isIndexed(field,false));
+        Assert.assertEquals(1,cache.getSize());
+    }
+
+    @Test
+    public void testLearnsWhenValuesStartRepeating() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache(4096,16);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        for (int c=0;c<64;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setEncodingCache(cache);
+            encodeDecode(encoder,new HpackDecoder(4096,8192),buffer,newResponse(c));
+        }
+        HttpField requestId = new HttpField("X-Request-Id","cafebabe");
+        Assert.assertFalse(cache.isIndexed(requestId,true));
+
+        // The values of a name learned as not repeating now repeat.
+        for (int c=0;c<128;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setEncodingCache(cache);
+            HttpFields fields = new HttpFields();
+            fields.add(requestId);
+            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2,200,fields);
+            Assert.assertEquals(fields,encodeDecode(encoder,new HpackDecoder(4096,8192),buffer,response).getFields());
+        }
+        Assert.assertTrue(cache.isIndexed(requestId,false));
+
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setEncodingCache(cache);
+        HttpFields fields = new HttpFields();
+        fields.add(requestId);
+        encodeDecode(encoder,new HpackDecoder(4096,8192),buffer,new MetaData.Response(HttpVersion.HTTP_2,200,fields));
+        Assert.assertNotNull(encoder.getHpackContext().get(requestId));
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache(8,16);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        for (int c=0;c<100;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setEncodingCache(cache);
+            HttpFields fields = new HttpFields();
+            fields.add(HttpHeader.CONTENT_TYPE,"text/plain");
+            fields.add(HttpHeader.ETAG,"W/\""+c+"\"");
+            encodeDecode(encoder,new HpackDecoder(4096,8192),buffer,new MetaData.Response(HttpVersion.HTTP_2,200,fields));
+            Assert.assertTrue(cache.getSize()<=8);
+        }
+    }
+
+    @Stress("Compares the time to encode responses on new connections with and without the cache")
+    @Test
+    public void testEncodePerformance() throws Exception
+    {
+        int connections=20_000;
+        MetaData.Response[] responses = new MetaData.Response[64];
+        for (int i=0;i<responses.length;i++)
+            responses[i]=newResponse(i);
+
+        for (int run=0;run<4;run++)
+        {
+            for (HpackEncodingCache cache : new HpackEncodingCache[]{null,new HpackEncodingCache()})
+            {
+                ByteBuffer buffer = BufferUtil.allocate(4096);
+                long bytes=0;
+                long begin=System.nanoTime();
+                for (int c=0;c<connections;c++)
+                {
+                    HpackEncoder encoder = new HpackEncoder();
+                    encoder.setEncodingCache(cache);
+                    for (int r=0;r<4;r++)
+                    {
+                        BufferUtil.clearToFill(buffer);
+                        encoder.encode(buffer,responses[(c+r)%responses.length]);
+                        bytes+=buffer.position();
+                    }
+                }
+                long elapsed=System.nanoTime()-begin;
+                System.err.printf("cache=%b %d ns/response %d bytes/response%n",cache!=null,elapsed/(4*connections),bytes/(4*connections));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HpackMemoryBudgetTest
+{
+    @Test
+    public void testAcquireRelease() throws Exception
+    {
+        HpackMemoryBudget budget = new HpackMemoryBudget(10000);
+        Assert.assertEquals(4096,budget.acquire(4096));
+        Assert.assertEquals(4096,budget.acquire(4096));
+        Assert.assertEquals(1808,budget.acquire(4096));
+        Assert.assertEquals(0,budget.acquire(4096));
+        Assert.assertEquals(10000,budget.getReservedMemory());
+
+        budget.release(4096);
+        budget.release(0);
+        Assert.assertEquals(4096,budget.acquire(4096));
+        budget.release(4096);
+        budget.release(4096);
+        budget.release(1808);
+        Assert.assertEquals(0,budget.getReservedMemory());
+    }
+
+    @Test
+    public void testDecodersShareIndexedFields() throws Exception
+    {
+        HpackMemoryBudget budget = new HpackMemoryBudget(1024*1024);
+        HttpField[] fields = new HttpField[2];
+        for (int c=0;c<fields.length;c++)
+        {
+            HpackEncoder encoder = new HpackEncoder();
+            HpackDecoder decoder = new HpackDecoder(4096,8192);
+            decoder.setMemoryBudget(budget);
+
+            HttpFields headers = new HttpFields();
+            headers.add(HttpHeader.USER_AGENT,"Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101 Firefox/47.0");
+            headers.add("x-custom","some value");
+            MetaData.Request request = new MetaData.Request("GET",HttpScheme.HTTP,new HostPortHttpField("localhost:8080"),"/",HttpVersion.HTTP_2,headers);
+
+            ByteBuffer buffer = BufferUtil.allocate(4096);
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer,request);
+            BufferUtil.flipToFlush(buffer,0);
+            MetaData decoded = decoder.decode(buffer);
+
+            fields[c] = decoded.getFields().getField(HttpHeader.USER_AGENT);
+            Assert.assertNotNull(decoder.getHpackContext().get(fields[c]));
+            Assert.assertEquals("some value",decoded.getFields().get("x-custom"));
+        }
+        Assert.assertSame(fields[0],fields[1]);
+        Assert.assertEquals(2,budget.getInternedFields());
+    }
+
+    @Test
+    public void testInternedFieldsAreBounded() throws Exception
+    {
+        HpackMemoryBudget budget = new HpackMemoryBudget(1024*1024,16);
+        for (int i=0;i<100;i++)
+        {
+            HttpField field = new HttpField("x-field","value-"+i);
+            Assert.assertEquals(field,budget.intern(field));
+            Assert.assertTrue(budget.getInternedFields()<=16);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.client.HttpReceiver;
 import org.eclipse.jetty.client.HttpSender;
 import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http2.ErrorCode;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
@@ -111,5 +112,7 @@ public class HttpChannelOverHTTP2 extends HttpChannel
     {
         super.exchangeTerminated(exchange, result);
         release();
+        if (!result.isFailed() && result.getResponse().getStatus() == HttpStatus.MISDIRECTED_REQUEST_421)
+            connection.misdirected();
     }
 }
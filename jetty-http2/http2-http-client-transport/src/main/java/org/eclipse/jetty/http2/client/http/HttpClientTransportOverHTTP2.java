@@ -20,6 +20,8 @@ package org.eclipse.jetty.http2.client.http;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -52,6 +54,8 @@ public class HttpClientTransportOverHTTP2 extends ContainerLifeCycle implements
     private ClientConnectionFactory connectionFactory;
     private HttpClient httpClient;
     private boolean useALPN = true;
+    private boolean connectionCoalescing;
+    private SessionCoalescer sessionCoalescer;
 
     public HttpClientTransportOverHTTP2(HTTP2Client client)
     {
@@ -74,6 +78,33 @@ public class HttpClientTransportOverHTTP2 extends ContainerLifeCycle implements
         this.useALPN = useALPN;
     }
 
+    @ManagedAttribute(value = "Whether HTTP/2 sessions are shared across destinations")
+    public boolean isConnectionCoalescing()
+    {
+        return connectionCoalescing;
+    }
+
+    /**
+     * <p>Sets whether a TLS session opened for a destination may be used for the requests
+     * of other destinations whose host resolves to the same address and is covered by
+     * the server certificate, as allowed by RFC 7540, section 9.1.1.</p>
+     *
+     * @param connectionCoalescing whether HTTP/2 sessions are shared across destinations
+     * @see SessionCoalescer
+     */
+    public void setConnectionCoalescing(boolean connectionCoalescing)
+    {
+        this.connectionCoalescing = connectionCoalescing;
+    }
+
+    /**
+     * @return the session coalescer, or null if {@link #isConnectionCoalescing() connection coalescing} is disabled
+     */
+    public SessionCoalescer getSessionCoalescer()
+    {
+        return sessionCoalescer;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -87,6 +118,11 @@ public class HttpClientTransportOverHTTP2 extends ContainerLifeCycle implements
             client.setInputBufferSize(httpClient.getResponseBufferSize());
         }
         addBean(client);
+        if (isConnectionCoalescing())
+        {
+            sessionCoalescer = new SessionCoalescer(this);
+            addBean(sessionCoalescer);
+        }
         super.doStart();
 
         this.connectionFactory = new HTTP2ClientConnectionFactory();
@@ -102,6 +138,8 @@ public class HttpClientTransportOverHTTP2 extends ContainerLifeCycle implements
     {
         super.doStop();
         removeBean(client);
+        removeBean(sessionCoalescer);
+        sessionCoalescer = null;
     }
 
     protected HttpClient getHttpClient()
@@ -174,6 +212,9 @@ public class HttpClientTransportOverHTTP2 extends ContainerLifeCycle implements
         public void succeeded(Session session)
         {
             connection = newHttpConnection(destination(), session);
+            SessionCoalescer coalescer = sessionCoalescer;
+            if (coalescer != null)
+                coalescer.register(connection);
             promise().succeeded(connection);
         }
 
@@ -207,27 +248,50 @@ public class HttpClientTransportOverHTTP2 extends ContainerLifeCycle implements
         {
             Map<Integer, Integer> settings = frame.getSettings();
             if (settings.containsKey(SettingsFrame.MAX_CONCURRENT_STREAMS))
-                destination().setMaxRequestsPerConnection(settings.get(SettingsFrame.MAX_CONCURRENT_STREAMS));
+            {
+                int maxConcurrentStreams = settings.get(SettingsFrame.MAX_CONCURRENT_STREAMS);
+                destination().setMaxRequestsPerConnection(maxConcurrentStreams);
+                SessionCoalescer coalescer = sessionCoalescer;
+                if (coalescer != null)
+                    coalescer.setMaxConcurrentStreams(session, maxConcurrentStreams);
+            }
         }
 
         @Override
         public void onClose(Session session, GoAwayFrame frame)
         {
-            HttpClientTransportOverHTTP2.this.onClose(connection, frame);
+            for (HttpConnectionOverHTTP2 c : connections(session))
+                HttpClientTransportOverHTTP2.this.onClose(c, frame);
         }
 
         @Override
         public boolean onIdleTimeout(Session session)
         {
-            return connection.onIdleTimeout(((HTTP2Session)session).getEndPoint().getIdleTimeout());
+            long idleTimeout = ((HTTP2Session)session).getEndPoint().getIdleTimeout();
+            Collection<HttpConnectionOverHTTP2> connections = connections(session);
+            if (connections.size() == 1)
+                return connections.iterator().next().onIdleTimeout(idleTimeout);
+            // A shared session is closed when the last connection sharing it idle times out.
+            for (HttpConnectionOverHTTP2 c : connections)
+                c.onIdleTimeout(idleTimeout);
+            return false;
         }
 
         @Override
         public void onFailure(Session session, Throwable failure)
         {
-            HttpConnectionOverHTTP2 c = connection;
-            if (c != null)
+            for (HttpConnectionOverHTTP2 c : connections(session))
                 c.close(failure);
         }
+
+        private Collection<HttpConnectionOverHTTP2> connections(Session session)
+        {
+            SessionCoalescer coalescer = sessionCoalescer;
+            Collection<HttpConnectionOverHTTP2> connections = coalescer == null ? null : coalescer.getConnections(session);
+            if (connections != null)
+                return connections;
+            HttpConnectionOverHTTP2 c = connection;
+            return c == null ? Collections.emptyList() : Collections.singletonList(c);
+        }
     }
 }
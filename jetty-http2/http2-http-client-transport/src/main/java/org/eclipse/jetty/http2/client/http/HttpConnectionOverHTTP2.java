@@ -20,6 +20,7 @@ package org.eclipse.jetty.http2.client.http;
 
 import java.nio.channels.AsynchronousCloseException;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,6 +43,7 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicInteger sweeps = new AtomicInteger();
     private final Session session;
+    private volatile SessionCoalescer coalescer;
 
     public HttpConnectionOverHTTP2(HttpDestination destination, Session session)
     {
@@ -54,8 +56,37 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
         return session;
     }
 
+    void setSessionCoalescer(SessionCoalescer coalescer)
+    {
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Invoked when the server answered {@code 421 Misdirected Request}, to stop using
+     * the session for this connection's destination if the session is shared.
+     */
+    protected void misdirected()
+    {
+        SessionCoalescer coalescer = this.coalescer;
+        if (coalescer != null)
+            coalescer.misdirected(this);
+    }
+
     @Override
     protected SendFailure send(HttpExchange exchange)
+    {
+        if (!acquireStream())
+            return new SendFailure(new RejectedExecutionException("Max concurrent streams reached on shared session " + session), false);
+        return sendOnStream(exchange);
+    }
+
+    /**
+     * <p>Sends the given exchange on a stream already reserved with {@link #acquireStream()}.</p>
+     *
+     * @param exchange the exchange to send
+     * @return the send failure, or null if the exchange has been sent
+     */
+    SendFailure sendOnStream(HttpExchange exchange)
     {
         exchange.getRequest().version(HttpVersion.HTTP_2);
         normalizeRequest(exchange.getRequest());
@@ -64,7 +95,35 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
         HttpChannel channel = newHttpChannel();
         channels.add(channel);
 
-        return send(channel, exchange);
+        SendFailure result = send(channel, exchange);
+        if (result != null && channels.remove(channel))
+            releaseStream();
+        return result;
+    }
+
+    /**
+     * @return whether the session, possibly shared with other destinations, has a stream available
+     */
+    boolean hasStream()
+    {
+        SessionCoalescer coalescer = this.coalescer;
+        return coalescer == null || coalescer.hasStream(this);
+    }
+
+    /**
+     * @return whether a stream of the session, possibly shared with other destinations, has been reserved
+     */
+    boolean acquireStream()
+    {
+        SessionCoalescer coalescer = this.coalescer;
+        return coalescer == null || coalescer.acquireStream(this);
+    }
+
+    private void releaseStream()
+    {
+        SessionCoalescer coalescer = this.coalescer;
+        if (coalescer != null)
+            coalescer.releaseStream(this);
     }
 
     protected HttpChannelOverHTTP2 newHttpChannel()
@@ -74,7 +133,8 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
 
     protected void release(HttpChannel channel)
     {
-        channels.remove(channel);
+        if (channels.remove(channel))
+            releaseStream();
         getHttpDestination().release(this);
     }
 
@@ -101,7 +161,10 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
 
             abort(failure);
 
-            session.close(ErrorCode.NO_ERROR.code, failure.getMessage(), Callback.NOOP);
+            // The session may be shared with the connections of other destinations.
+            SessionCoalescer coalescer = this.coalescer;
+            if (coalescer == null || coalescer.release(this))
+                session.close(ErrorCode.NO_ERROR.code, failure.getMessage(), Callback.NOOP);
         }
     }
 
@@ -118,8 +181,9 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
             HttpExchange exchange = channel.getHttpExchange();
             if (exchange != null)
                 exchange.getRequest().abort(failure);
+            if (channels.remove(channel))
+                releaseStream();
         }
-        channels.clear();
     }
 
     @Override
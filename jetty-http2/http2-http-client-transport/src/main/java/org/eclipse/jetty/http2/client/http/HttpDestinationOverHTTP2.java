@@ -18,12 +18,18 @@
 
 package org.eclipse.jetty.http2.client.http;
 
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
 import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.client.MultiplexHttpDestination;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.SendFailure;
 import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Promise;
 
 public class HttpDestinationOverHTTP2 extends MultiplexHttpDestination
 {
@@ -32,9 +38,67 @@ public class HttpDestinationOverHTTP2 extends MultiplexHttpDestination
         super(client, origin);
     }
 
+    @Override
+    public void newConnection(Promise<Connection> promise)
+    {
+        SessionCoalescer coalescer = null;
+        HttpClientTransport transport = getHttpClient().getTransport();
+        if (transport instanceof HttpClientTransportOverHTTP2)
+            coalescer = ((HttpClientTransportOverHTTP2)transport).getSessionCoalescer();
+        if (coalescer == null || coalescer.isEmpty() || !isSecure() || getProxy() != null)
+        {
+            super.newConnection(promise);
+            return;
+        }
+
+        // RFC 7540, 9.1.1: a session may be reused if the host resolves to the same address.
+        SessionCoalescer sessionCoalescer = coalescer;
+        getHttpClient().getSocketAddressResolver().resolve(getHost(), getPort(), new Promise<List<InetSocketAddress>>()
+        {
+            @Override
+            public void succeeded(List<InetSocketAddress> addresses)
+            {
+                Connection connection = sessionCoalescer.coalesce(HttpDestinationOverHTTP2.this, addresses);
+                if (connection == null)
+                    createConnection(promise);
+                else
+                    promise.succeeded(connection);
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                createConnection(promise);
+            }
+        });
+    }
+
+    @Override
+    public boolean process(Connection connection)
+    {
+        // The session may be shared with other destinations that took all its streams:
+        // the exchanges stay queued until a stream of the session is released.
+        if (!((HttpConnectionOverHTTP2)connection).hasStream())
+        {
+            if (!getConnectionPool().release(connection))
+                connection.close();
+            return false;
+        }
+        return super.process(connection);
+    }
+
     @Override
     protected SendFailure send(Connection connection, HttpExchange exchange)
     {
-        return ((HttpConnectionOverHTTP2)connection).send(exchange);
+        HttpConnectionOverHTTP2 http2Connection = (HttpConnectionOverHTTP2)connection;
+        if (!http2Connection.acquireStream())
+        {
+            // Another destination took the last stream of the shared session:
+            // give back the connection and queue the exchange again.
+            if (!getConnectionPool().release(connection))
+                connection.close();
+            return new SendFailure(new RejectedExecutionException("Max concurrent streams reached on shared session"), true);
+        }
+        return http2Connection.sendOnStream(exchange);
     }
 }
@@ -0,0 +1,465 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client.http;
+
+import java.net.InetSocketAddress;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.util.ConcurrentHashSet;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Reuses HTTP/2 sessions across destinations, as allowed by
+ * <a href="https://tools.ietf.org/html/rfc7540#section-9.1.1">RFC 7540, section 9.1.1</a>.</p>
+ * <p>A TLS session opened for a destination may be used for the requests of another
+ * destination with the same scheme and port, when the host of the other destination
+ * resolves to the IP address the session is connected to, and the certificate
+ * presented by the server is valid for that host.
+ * The other destination then gets a connection that shares the session, rather than
+ * opening a new TCP connection and performing a new TLS handshake.</p>
+ * <p>The session is closed when all the connections that share it are closed.</p>
+ * <p>The connections that share a session also share the max number of concurrent
+ * streams that the server allows on that session: a request is only sent when the
+ * session has a stream available, whichever destination the request is for.</p>
+ * <p>If a server answers {@code 421 Misdirected Request} on a shared session,
+ * the session is no longer shared with the destination of that request.</p>
+ *
+ * @see HttpClientTransportOverHTTP2#setConnectionCoalescing(boolean)
+ */
+@ManagedObject("HTTP/2 connection coalescing")
+public class SessionCoalescer
+{
+    private static final Logger LOG = Log.getLogger(SessionCoalescer.class);
+
+    private final Map<Session, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<HttpConnectionOverHTTP2, Entry> connections = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder misdirected = new LongAdder();
+    private final HttpClientTransportOverHTTP2 transport;
+
+    public SessionCoalescer(HttpClientTransportOverHTTP2 transport)
+    {
+        this.transport = transport;
+    }
+
+    @ManagedAttribute(value = "The number of sessions that may be shared", readonly = true)
+    public int getSessionCount()
+    {
+        return entries.size();
+    }
+
+    @ManagedAttribute(value = "The number of connections currently sharing another destination's session", readonly = true)
+    public int getCoalescedConnectionCount()
+    {
+        int result = 0;
+        for (Entry entry : entries.values())
+            result += entry.connections.size() - 1;
+        return result;
+    }
+
+    @ManagedAttribute(value = "The number of connections not opened because a session was shared", readonly = true)
+    public long getConnectionsSaved()
+    {
+        return coalesced.sum();
+    }
+
+    @ManagedAttribute(value = "The number of 421 Misdirected Request responses on shared sessions", readonly = true)
+    public long getMisdirectedCount()
+    {
+        return misdirected.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        coalesced.reset();
+        misdirected.reset();
+    }
+
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    /**
+     * <p>Makes the session of the given connection available to other destinations.</p>
+     *
+     * @param connection a connection that has just been opened
+     * @return whether the session of the connection may be shared
+     */
+    public boolean register(HttpConnectionOverHTTP2 connection)
+    {
+        HttpDestinationOverHTTP2 destination = (HttpDestinationOverHTTP2)connection.getHttpDestination();
+        if (!destination.isSecure() || destination.getProxy() != null)
+            return false;
+
+        Session session = connection.getSession();
+        if (!(session instanceof HTTP2Session))
+            return false;
+        EndPoint endPoint = ((HTTP2Session)session).getEndPoint();
+        if (!(endPoint instanceof SslConnection.DecryptedEndPoint))
+            return false;
+        X509Certificate certificate = getPeerCertificate(((SslConnection.DecryptedEndPoint)endPoint).getSslConnection().getSSLEngine().getSession());
+        if (certificate == null)
+            return false;
+
+        Entry entry = new Entry(session, endPoint.getRemoteAddress(), destination.getScheme(), certificate);
+        entry.connections.add(connection);
+        entries.put(session, entry);
+        connections.put(connection, entry);
+        connection.setSessionCoalescer(this);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Registered {} for {}", session, entry);
+        return true;
+    }
+
+    /**
+     * <p>Returns a new connection for the given destination that shares
+     * the session of another destination, if one is suitable.</p>
+     *
+     * @param destination the destination that needs a connection
+     * @param addresses the addresses the destination host resolves to
+     * @return a connection sharing an existing session, or null if no session can be shared
+     */
+    public HttpConnectionOverHTTP2 coalesce(HttpDestinationOverHTTP2 destination, List<InetSocketAddress> addresses)
+    {
+        String host = destination.getHost().toLowerCase(Locale.ENGLISH);
+        for (Entry entry : entries.values())
+        {
+            if (!entry.matches(destination.getScheme(), host, addresses))
+                continue;
+
+            HttpConnectionOverHTTP2 connection = transport.newHttpConnection(destination, entry.session);
+            synchronized (entry)
+            {
+                if (entry.session.isClosed() || entry.connections.isEmpty())
+                    continue;
+                entry.connections.add(connection);
+            }
+            connections.put(connection, entry);
+            connection.setSessionCoalescer(this);
+            if (entry.maxConcurrentStreams > 0)
+                destination.setMaxRequestsPerConnection(entry.maxConcurrentStreams);
+            coalesced.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Coalesced {} for {}", connection, destination);
+            return connection;
+        }
+        return null;
+    }
+
+    /**
+     * @param session the session
+     * @return the connections that share the given session
+     */
+    public Collection<HttpConnectionOverHTTP2> getConnections(Session session)
+    {
+        Entry entry = entries.get(session);
+        if (entry == null)
+            return null;
+        return new ArrayList<>(entry.connections);
+    }
+
+    /**
+     * Propagates the max number of concurrent streams of a session to all the connections sharing it.
+     *
+     * @param session the session
+     * @param maxConcurrentStreams the max number of concurrent streams
+     */
+    public void setMaxConcurrentStreams(Session session, int maxConcurrentStreams)
+    {
+        Entry entry = entries.get(session);
+        if (entry == null)
+            return;
+        entry.maxConcurrentStreams = maxConcurrentStreams;
+        for (HttpConnectionOverHTTP2 connection : entry.connections)
+            ((HttpDestinationOverHTTP2)connection.getHttpDestination()).setMaxRequestsPerConnection(maxConcurrentStreams);
+        // The limit may have been raised, so queued requests may now be sent.
+        process(entry);
+    }
+
+    /**
+     * @param connection a connection that may share its session
+     * @return whether the session of the connection has a stream available for a new request
+     */
+    protected boolean hasStream(HttpConnectionOverHTTP2 connection)
+    {
+        Entry entry = connections.get(connection);
+        if (entry == null)
+            return true;
+        int maxConcurrentStreams = entry.maxConcurrentStreams;
+        return maxConcurrentStreams <= 0 || entry.streams.get() < maxConcurrentStreams;
+    }
+
+    /**
+     * <p>Reserves a stream of the session of the given connection for a new request.</p>
+     * <p>The reservation must be given back with {@link #releaseStream(HttpConnectionOverHTTP2)}
+     * when the request completes.</p>
+     *
+     * @param connection a connection that may share its session
+     * @return whether a stream has been reserved, or false if the session has no streams available
+     */
+    protected boolean acquireStream(HttpConnectionOverHTTP2 connection)
+    {
+        Entry entry = connections.get(connection);
+        if (entry == null)
+            return true;
+        while (true)
+        {
+            int streams = entry.streams.get();
+            int maxConcurrentStreams = entry.maxConcurrentStreams;
+            if (maxConcurrentStreams > 0 && streams >= maxConcurrentStreams)
+                return false;
+            if (entry.streams.compareAndSet(streams, streams + 1))
+                return true;
+        }
+    }
+
+    /**
+     * <p>Gives back a stream reserved with {@link #acquireStream(HttpConnectionOverHTTP2)}.</p>
+     * <p>If the session had no streams available, the requests queued by all the
+     * destinations sharing the session are processed.</p>
+     *
+     * @param connection the connection that reserved the stream
+     */
+    protected void releaseStream(HttpConnectionOverHTTP2 connection)
+    {
+        Entry entry = connections.get(connection);
+        if (entry == null)
+            return;
+        int maxConcurrentStreams = entry.maxConcurrentStreams;
+        int streams = entry.streams.getAndDecrement();
+        if (maxConcurrentStreams > 0 && streams >= maxConcurrentStreams)
+            process(entry);
+    }
+
+    private void process(Entry entry)
+    {
+        Set<HttpDestination> destinations = new HashSet<>();
+        for (HttpConnectionOverHTTP2 connection : entry.connections)
+        {
+            HttpDestination destination = connection.getHttpDestination();
+            if (destinations.add(destination))
+                destination.send();
+        }
+    }
+
+    /**
+     * <p>Stops sharing the session of the given connection with the destination of the connection,
+     * because the server answered that it cannot serve the destination on that session.</p>
+     *
+     * @param connection the connection that received a {@code 421 Misdirected Request} response
+     */
+    public void misdirected(HttpConnectionOverHTTP2 connection)
+    {
+        Entry entry = connections.get(connection);
+        if (entry == null)
+            return;
+        misdirected.increment();
+        entry.misdirected.add(connection.getHttpDestination().getHost().toLowerCase(Locale.ENGLISH));
+        if (LOG.isDebugEnabled())
+            LOG.debug("Misdirected {} on {}", connection.getHttpDestination(), entry.session);
+        // Closing a connection that does not own the last share of the session leaves it open.
+        connection.close();
+    }
+
+    /**
+     * @param connection the connection being closed
+     * @return whether the session of the connection is no longer shared and must be closed
+     */
+    protected boolean release(HttpConnectionOverHTTP2 connection)
+    {
+        Entry entry = connections.remove(connection);
+        if (entry == null)
+            return true;
+        synchronized (entry)
+        {
+            entry.connections.remove(connection);
+            if (!entry.connections.isEmpty())
+                return false;
+        }
+        entries.remove(entry.session, entry);
+        return true;
+    }
+
+    private static X509Certificate getPeerCertificate(SSLSession sslSession)
+    {
+        try
+        {
+            Certificate[] certificates = sslSession.getPeerCertificates();
+            if (certificates.length > 0 && certificates[0] instanceof X509Certificate)
+                return (X509Certificate)certificates[0];
+        }
+        catch (SSLPeerUnverifiedException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug(x);
+        }
+        return null;
+    }
+
+    /**
+     * @param host the lower case host name or IP address
+     * @param certificate the server certificate
+     * @return whether the certificate is valid for the given host
+     */
+    protected static boolean isCoveredBy(String host, X509Certificate certificate)
+    {
+        boolean ip = isIPAddress(host);
+        boolean hasDNSNames = false;
+        try
+        {
+            Collection<List<?>> names = certificate.getSubjectAlternativeNames();
+            if (names != null)
+            {
+                for (List<?> name : names)
+                {
+                    int type = (Integer)name.get(0);
+                    String value = String.valueOf(name.get(1)).toLowerCase(Locale.ENGLISH);
+                    if (type == 2)
+                    {
+                        hasDNSNames = true;
+                        if (!ip && matchesDNSName(host, value))
+                            return true;
+                    }
+                    else if (type == 7)
+                    {
+                        if (ip && host.equals(value))
+                            return true;
+                    }
+                }
+            }
+        }
+        catch (CertificateParsingException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug(x);
+            return false;
+        }
+        // Like hostname verification, only fall back to the common name when there are no DNS names.
+        if (ip || hasDNSNames)
+            return false;
+        String cn = getCommonName(certificate);
+        return cn != null && matchesDNSName(host, cn);
+    }
+
+    private static boolean matchesDNSName(String host, String name)
+    {
+        if (name.startsWith("*."))
+        {
+            // A wildcard matches exactly one label.
+            String suffix = name.substring(1);
+            if (!host.endsWith(suffix))
+                return false;
+            String label = host.substring(0, host.length() - suffix.length());
+            return !label.isEmpty() && label.indexOf('.') < 0;
+        }
+        return host.equals(name);
+    }
+
+    private static boolean isIPAddress(String host)
+    {
+        return host.indexOf(':') >= 0 || host.chars().allMatch(c -> c == '.' || Character.isDigit(c));
+    }
+
+    private static String getCommonName(X509Certificate certificate)
+    {
+        String dn = certificate.getSubjectX500Principal().getName();
+        for (String rdn : dn.split(","))
+        {
+            rdn = rdn.trim();
+            if (rdn.regionMatches(true, 0, "CN=", 0, 3))
+                return rdn.substring(3).toLowerCase(Locale.ENGLISH);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[sessions=%d,saved=%d]", getClass().getSimpleName(), hashCode(), getSessionCount(), getConnectionsSaved());
+    }
+
+    private static class Entry
+    {
+        private final Set<HttpConnectionOverHTTP2> connections = new ConcurrentHashSet<>();
+        private final Set<String> misdirected = new ConcurrentHashSet<>();
+        private final AtomicInteger streams = new AtomicInteger();
+        private final Session session;
+        private final InetSocketAddress address;
+        private final String scheme;
+        private final X509Certificate certificate;
+        private volatile int maxConcurrentStreams;
+
+        private Entry(Session session, InetSocketAddress address, String scheme, X509Certificate certificate)
+        {
+            this.session = session;
+            this.address = address;
+            this.scheme = scheme;
+            this.certificate = certificate;
+        }
+
+        private boolean matches(String scheme, String host, List<InetSocketAddress> addresses)
+        {
+            if (session.isClosed() || !this.scheme.equalsIgnoreCase(scheme) || misdirected.contains(host))
+                return false;
+            boolean sameAddress = false;
+            for (InetSocketAddress candidate : addresses)
+            {
+                if (candidate.getPort() == address.getPort() && candidate.getAddress() != null &&
+                        candidate.getAddress().equals(address.getAddress()))
+                {
+                    sameAddress = true;
+                    break;
+                }
+            }
+            return sameAddress && isCoveredBy(host, certificate);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%s,connections=%d,streams=%d/%d", scheme, address, connections.size(), streams.get(), maxConcurrentStreams);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.client.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.TestTracker;
+import org.eclipse.jetty.util.ConcurrentHashSet;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ConnectionCoalescingTest
+{
+    @Rule
+    public TestTracker tracker = new TestTracker();
+    private Server server;
+    private ServerConnector connector;
+    private HttpClient client;
+    private HttpClientTransportOverHTTP2 transport;
+
+    private void start(Handler handler, boolean coalescing) throws Exception
+    {
+        start(handler, coalescing, -1);
+    }
+
+    private void start(Handler handler, boolean coalescing, int maxConcurrentStreams) throws Exception
+    {
+        QueuedThreadPool serverThreads = new QueuedThreadPool();
+        serverThreads.setName("server");
+        server = new Server(serverThreads);
+        HttpConfiguration httpsConfig = new HttpConfiguration();
+        httpsConfig.addCustomizer(new SecureRequestCustomizer());
+        HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpsConfig);
+        if (maxConcurrentStreams > 0)
+            h2.setMaxConcurrentStreams(maxConcurrentStreams);
+        ConnectionFactory ssl = new SslConnectionFactory(newSslContextFactory(), h2.getProtocol());
+        connector = new ServerConnector(server, 1, 1, ssl, h2);
+        server.addConnector(connector);
+        server.setHandler(handler);
+        server.start();
+
+        QueuedThreadPool clientThreads = new QueuedThreadPool();
+        clientThreads.setName("client");
+        transport = new HttpClientTransportOverHTTP2(new HTTP2Client());
+        transport.setUseALPN(false);
+        transport.setConnectionCoalescing(coalescing);
+        client = new HttpClient(transport, newSslContextFactory());
+        client.setExecutor(clientThreads);
+        client.start();
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    private SslContextFactory newSslContextFactory()
+    {
+        // The certificate covers both "localhost" and "127.0.0.1".
+        SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setKeyStorePath("src/test/resources/keystore_san.jks");
+        sslContextFactory.setKeyStorePassword("storepwd");
+        sslContextFactory.setUseCipherSuitesOrder(true);
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+        return sslContextFactory;
+    }
+
+    private ContentResponse send(String host) throws Exception
+    {
+        return client.newRequest(host, connector.getLocalPort())
+                .scheme(HttpScheme.HTTPS.asString())
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+    }
+
+    @Test
+    public void testDestinationsCoveredByCertificateShareSession() throws Exception
+    {
+        Set<Integer> ports = new ConcurrentHashSet<>();
+        start(new PortHandler(ports), true);
+
+        Assert.assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        Assert.assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        Assert.assertEquals(2, client.getDestinations().size());
+        Assert.assertEquals(1, ports.size());
+        SessionCoalescer coalescer = transport.getSessionCoalescer();
+        Assert.assertEquals(1, coalescer.getConnectionsSaved());
+        Assert.assertEquals(1, coalescer.getCoalescedConnectionCount());
+    }
+
+    @Test
+    public void testNoCoalescingByDefault() throws Exception
+    {
+        Set<Integer> ports = new ConcurrentHashSet<>();
+        start(new PortHandler(ports), false);
+
+        Assert.assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        Assert.assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        Assert.assertEquals(2, ports.size());
+        Assert.assertNull(transport.getSessionCoalescer());
+    }
+
+    @Test
+    public void testMisdirectedRequestStopsCoalescing() throws Exception
+    {
+        Set<Integer> ports = new ConcurrentHashSet<>();
+        start(new PortHandler(ports)
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                super.handle(target, baseRequest, request, response);
+                // Pretend the server cannot serve "localhost" on the session opened for "127.0.0.1".
+                if ("localhost".equals(request.getServerName()) && ports.size() == 1)
+                    response.setStatus(HttpStatus.MISDIRECTED_REQUEST_421);
+            }
+        }, true);
+
+        Assert.assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        Assert.assertEquals(HttpStatus.MISDIRECTED_REQUEST_421, send("localhost").getStatus());
+        Assert.assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        Assert.assertEquals(2, ports.size());
+        SessionCoalescer coalescer = transport.getSessionCoalescer();
+        Assert.assertEquals(1, coalescer.getMisdirectedCount());
+
+        // The original session is still usable.
+        Assert.assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        Assert.assertEquals(2, ports.size());
+    }
+
+    @Test
+    public void testCoalescedDestinationsShareMaxConcurrentStreams() throws Exception
+    {
+        int maxConcurrentStreams = 2;
+        Set<Integer> ports = new ConcurrentHashSet<>();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        start(new PortHandler(ports)
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                super.handle(target, baseRequest, request, response);
+                int current = active.incrementAndGet();
+                maxActive.accumulateAndGet(current, Math::max);
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new ServletException(x);
+                }
+                finally
+                {
+                    active.decrementAndGet();
+                }
+            }
+        }, true, maxConcurrentStreams);
+
+        // Open the session and receive the server SETTINGS.
+        Assert.assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+
+        int requests = 4;
+        List<Result> results = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2 * requests);
+        for (int i = 0; i < requests; ++i)
+        {
+            for (String host : new String[]{"127.0.0.1", "localhost"})
+            {
+                client.newRequest(host, connector.getLocalPort())
+                        .scheme(HttpScheme.HTTPS.asString())
+                        .timeout(5, TimeUnit.SECONDS)
+                        .send(result ->
+                        {
+                            synchronized (results)
+                            {
+                                results.add(result);
+                            }
+                            latch.countDown();
+                        });
+            }
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (Result result : results)
+        {
+            Assert.assertTrue(String.valueOf(result.getFailure()), result.isSucceeded());
+            Assert.assertEquals(HttpStatus.OK_200, result.getResponse().getStatus());
+        }
+        Assert.assertEquals(1, ports.size());
+        Assert.assertTrue(maxActive.get() <= maxConcurrentStreams);
+    }
+
+    private static class PortHandler extends AbstractHandler
+    {
+        private final Set<Integer> ports;
+
+        private PortHandler(Set<Integer> ports)
+        {
+            this.ports = ports;
+        }
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+        {
+            baseRequest.setHandled(true);
+            ports.add(request.getRemotePort());
+        }
+    }
+}
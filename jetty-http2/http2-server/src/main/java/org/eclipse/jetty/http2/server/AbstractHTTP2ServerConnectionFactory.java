@@ -23,8 +23,11 @@ import java.util.Objects;
 import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
 import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.ISession;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackEncodingCache;
+import org.eclipse.jetty.http2.hpack.HpackMemoryBudget;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
@@ -48,6 +51,8 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private int maxHeaderBlockFragment = 0;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
     private long streamIdleTimeout;
+    private HpackEncodingCache hpackEncodingCache;
+    private HpackMemoryBudget hpackMemoryBudget;
 
     public AbstractHTTP2ServerConnectionFactory(@Name("config") HttpConfiguration httpConfiguration)
     {
@@ -139,6 +144,41 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.streamIdleTimeout = streamIdleTimeout;
     }
 
+    @ManagedAttribute("The HPACK encoding cache shared by all connections")
+    public HpackEncodingCache getHpackEncodingCache()
+    {
+        return hpackEncodingCache;
+    }
+
+    /**
+     * @param hpackEncodingCache the HPACK encoding cache shared by all connections, or null for no cache
+     */
+    public void setHpackEncodingCache(HpackEncodingCache hpackEncodingCache)
+    {
+        updateBean(this.hpackEncodingCache, hpackEncodingCache);
+        this.hpackEncodingCache = hpackEncodingCache;
+    }
+
+    @ManagedAttribute("The HPACK memory budget shared by all connections")
+    public HpackMemoryBudget getHpackMemoryBudget()
+    {
+        return hpackMemoryBudget;
+    }
+
+    /**
+     * <p>Sets the budget that caps the memory of the HPACK dynamic tables of the decoders
+     * of all connections. When the budget is under pressure, new connections advertise
+     * smaller tables via {@code SETTINGS_HEADER_TABLE_SIZE}.</p>
+     * <p>The budget must be set before the connector is started.</p>
+     *
+     * @param hpackMemoryBudget the HPACK memory budget shared by all connections, or null for no budget
+     */
+    public void setHpackMemoryBudget(HpackMemoryBudget hpackMemoryBudget)
+    {
+        updateBean(this.hpackMemoryBudget, hpackMemoryBudget);
+        this.hpackMemoryBudget = hpackMemoryBudget;
+    }
+
     public HttpConfiguration getHttpConfiguration()
     {
         return httpConfiguration;
@@ -150,6 +190,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        generator.setHpackEncodingCache(getHpackEncodingCache());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
@@ -165,6 +206,18 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
 
         ServerParser parser = newServerParser(connector, session);
+        HpackMemoryBudget memoryBudget = getHpackMemoryBudget();
+        if (memoryBudget != null)
+        {
+            // The client may use the default table size until it receives
+            // the SETTINGS, so the decoder table only shrinks when the client
+            // signals the table size update required by the HPACK specification.
+            int headerTableSize = memoryBudget.acquire(getMaxDynamicTableSize());
+            session.setLocalHeaderTableSize(headerTableSize);
+            parser.setMaxDynamicTableSize(headerTableSize);
+            parser.setHpackMemoryBudget(memoryBudget);
+        }
+
         HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
                         endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
         connection.addListener(connectionListener);
@@ -189,7 +242,15 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         @Override
         public void onClosed(Connection connection)
         {
-            removeBean(((HTTP2Connection)connection).getSession());
+            ISession session = ((HTTP2Connection)connection).getSession();
+            removeBean(session);
+            HpackMemoryBudget memoryBudget = getHpackMemoryBudget();
+            if (memoryBudget != null && session instanceof HTTP2ServerSession)
+            {
+                int headerTableSize = ((HTTP2ServerSession)session).getLocalHeaderTableSize();
+                if (headerTableSize >= 0)
+                    memoryBudget.release(headerTableSize);
+            }
         }
     }
 }
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.server;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.jetty.http.MetaData;
@@ -47,6 +48,7 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
     private static final Logger LOG = Log.getLogger(HTTP2ServerSession.class);
 
     private final ServerSessionListener listener;
+    private int localHeaderTableSize = -1;
 
     public HTTP2ServerSession(Scheduler scheduler, EndPoint endPoint, Generator generator, ServerSessionListener listener, FlowControlStrategy flowControl)
     {
@@ -54,6 +56,26 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
         this.listener = listener;
     }
 
+    /**
+     * @return the max HPACK dynamic table size of the decoder, or -1 if not set
+     */
+    public int getLocalHeaderTableSize()
+    {
+        return localHeaderTableSize;
+    }
+
+    /**
+     * <p>Sets the max HPACK dynamic table size of the decoder, that is advertised
+     * to the client via {@code SETTINGS_HEADER_TABLE_SIZE} if smaller than the one
+     * returned by the session listener.</p>
+     *
+     * @param localHeaderTableSize the max HPACK dynamic table size of the decoder
+     */
+    public void setLocalHeaderTableSize(int localHeaderTableSize)
+    {
+        this.localHeaderTableSize = localHeaderTableSize;
+    }
+
     @Override
     public void onPreface()
     {
@@ -61,6 +83,15 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
         Map<Integer, Integer> settings = notifyPreface(this);
         if (settings == null)
             settings = Collections.emptyMap();
+        if (localHeaderTableSize >= 0)
+        {
+            Integer headerTableSize = settings.get(SettingsFrame.HEADER_TABLE_SIZE);
+            if (headerTableSize == null || headerTableSize > localHeaderTableSize)
+            {
+                settings = new HashMap<>(settings);
+                settings.put(SettingsFrame.HEADER_TABLE_SIZE, localHeaderTableSize);
+            }
+        }
         SettingsFrame settingsFrame = new SettingsFrame(settings, false);
 
         WindowUpdateFrame windowFrame = null;
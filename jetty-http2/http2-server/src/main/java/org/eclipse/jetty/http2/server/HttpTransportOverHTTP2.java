@@ -19,6 +19,8 @@
 package org.eclipse.jetty.http2.server;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jetty.http.HttpStatus;
@@ -171,6 +173,43 @@ public class HttpTransportOverHTTP2 implements HttpTransport
         }, new Stream.Listener.Adapter()); // TODO: handle reset from the client ?
     }
 
+    @Override
+    public void push(List<MetaData.Request> requests)
+    {
+        if (!stream.getSession().isPushEnabled())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("HTTP/2 Push disabled for {}", requests);
+            return;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("HTTP/2 Push {}", requests);
+
+        List<PushPromiseFrame> frames = new ArrayList<>(requests.size());
+        List<Promise<Stream>> promises = new ArrayList<>(requests.size());
+        for (MetaData.Request request : requests)
+        {
+            frames.add(new PushPromiseFrame(stream.getId(), 0, request));
+            promises.add(new Promise<Stream>()
+            {
+                @Override
+                public void succeeded(Stream pushStream)
+                {
+                    connection.push(connector, (IStream)pushStream, request);
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Could not push " + request, x);
+                }
+            });
+        }
+        stream.getSession().push(stream, promises, frames, new Stream.Listener.Adapter());
+    }
+
     private void commit(MetaData.Response info, boolean endStream, Callback callback)
     {
         if (LOG.isDebugEnabled())
@@ -38,6 +38,7 @@ import javax.servlet.ServletRequest;
 
 import org.eclipse.jetty.jaas.callback.ObjectCallback;
 import org.eclipse.jetty.jaas.callback.RequestParameterCallback;
+import org.eclipse.jetty.security.AuthenticationCache;
 import org.eclipse.jetty.security.DefaultIdentityService;
 import org.eclipse.jetty.security.IdentityService;
 import org.eclipse.jetty.security.LoginService;
@@ -65,6 +66,7 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
     protected String _loginModuleName;
     protected JAASUserPrincipal _defaultUser = new JAASUserPrincipal(null, null, null);
     protected IdentityService _identityService;
+    protected AuthenticationCache _authenticationCache;
 
     /* ---------------------------------------------------- */
     /**
@@ -168,6 +170,30 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
         return _roleClassNames;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the cache of successful authentications, or null if every login runs the login modules
+     */
+    public AuthenticationCache getAuthenticationCache()
+    {
+        return _authenticationCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set a cache of successful authentications, so that repeated logins with the
+     * same credentials do not run the login modules again (for example an LDAP bind).
+     * Only logins using the default callback handler are cached.
+     *
+     * @param authenticationCache the cache of successful authentications, or null for no caching
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Running");
+        _authenticationCache = authenticationCache;
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * @see org.eclipse.jetty.util.component.AbstractLifeCycle#doStart()
@@ -179,10 +205,30 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
         super.doStart();
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @see org.eclipse.jetty.util.component.AbstractLifeCycle#doStop()
+     */
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_authenticationCache != null)
+            _authenticationCache.invalidateAll();
+        super.doStop();
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public UserIdentity login(final String username,final Object credentials, final ServletRequest request)
     {
+        AuthenticationCache cache = _callbackHandlerClass == null ? _authenticationCache : null;
+        if (cache != null)
+        {
+            UserIdentity cached = cache.get(username, credentials);
+            if (cached != null)
+                return newUserIdentity(cached.getSubject());
+        }
+
         try
         {
             CallbackHandler callbackHandler = null;
@@ -236,6 +282,8 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
             JAASUserPrincipal userPrincipal = new JAASUserPrincipal(getUserName(callbackHandler), subject, loginContext);
             subject.getPrincipals().add(userPrincipal);
 
+            if (cache != null)
+                cache.put(username, credentials, newUserIdentity(subject));
             return _identityService.newUserIdentity(subject,userPrincipal,getGroups(subject));
         }
         catch (LoginException e)
@@ -284,7 +332,13 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
     public void logout(UserIdentity user)
     {
         Set<JAASUserPrincipal> userPrincipals = user.getSubject().getPrincipals(JAASUserPrincipal.class);
-        LoginContext loginContext = userPrincipals.iterator().next().getLoginContext();
+        JAASUserPrincipal userPrincipal = userPrincipals.iterator().next();
+        if (_authenticationCache != null)
+            _authenticationCache.invalidate(userPrincipal.getName());
+        //identities copied from the cache have no login context of their own
+        LoginContext loginContext = userPrincipal.getLoginContext();
+        if (loginContext == null)
+            return;
         try
         {
             loginContext.logout();
@@ -296,6 +350,35 @@ public class JAASLoginService extends AbstractLifeCycle implements LoginService
     }
 
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Copy the principals and credentials of an authenticated subject into a new subject.
+     * The login modules clear the subject of a login context when it is logged out, so
+     * the cache keeps a copy and every login served from the cache gets its own copy,
+     * without a login context, that other requests cannot clear.
+     *
+     * @param subject the authenticated subject
+     * @return a user identity with a copy of the subject
+     */
+    private UserIdentity newUserIdentity(Subject subject)
+    {
+        Subject copy = new Subject();
+        JAASUserPrincipal userPrincipal = null;
+        for (Principal principal : subject.getPrincipals())
+        {
+            if (principal instanceof JAASUserPrincipal)
+            {
+                userPrincipal = new JAASUserPrincipal(principal.getName(), copy, null);
+                copy.getPrincipals().add(userPrincipal);
+            }
+            else
+                copy.getPrincipals().add(principal);
+        }
+        copy.getPublicCredentials().addAll(subject.getPublicCredentials());
+        copy.getPrivateCredentials().addAll(subject.getPrivateCredentials());
+        return _identityService.newUserIdentity(copy,userPrincipal,getGroups(copy));
+    }
+
     /* ------------------------------------------------------------ */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private String[] getGroups (Subject subject)
@@ -42,6 +42,7 @@ public abstract class AbstractLoginService extends AbstractLifeCycle implements
     protected IdentityService _identityService=new DefaultIdentityService();
     protected String _name;
     protected boolean _fullValidate = false;
+    protected AuthenticationCache _authenticationCache;
     
     
     /* ------------------------------------------------------------ */
@@ -165,6 +166,14 @@ public abstract class AbstractLoginService extends AbstractLifeCycle implements
         if (username == null)
             return null;
 
+        AuthenticationCache cache = _authenticationCache;
+        if (cache != null)
+        {
+            UserIdentity cached = cache.get(username, credentials);
+            if (cached != null)
+                return cached;
+        }
+
         UserPrincipal userPrincipal = loadUserInfo(username);
         if (userPrincipal != null && userPrincipal.authenticate(credentials))
         {
@@ -178,7 +187,10 @@ public abstract class AbstractLoginService extends AbstractLifeCycle implements
                 for (String role : roles)
                     subject.getPrincipals().add(new RolePrincipal(role));
             subject.setReadOnly();
-            return _identityService.newUserIdentity(subject,userPrincipal,roles);
+            UserIdentity identity = _identityService.newUserIdentity(subject,userPrincipal,roles);
+            if (cache != null)
+                cache.put(username, credentials, identity);
+            return identity;
         }
 
         return null;
@@ -233,6 +245,39 @@ public abstract class AbstractLoginService extends AbstractLifeCycle implements
 
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the cache of successful authentications, or null if every login goes to the user store
+     */
+    public AuthenticationCache getAuthenticationCache()
+    {
+        return _authenticationCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set a cache of successful authentications, so that repeated logins with the
+     * same credentials do not call {@link #loadUserInfo(String)} and {@link #loadRoleInfo(UserPrincipal)}.
+     * A cache should not be shared between login services.
+     * 
+     * @param authenticationCache the cache of successful authentications, or null for no caching
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Running");
+        _authenticationCache = authenticationCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_authenticationCache != null)
+            _authenticationCache.invalidateAll();
+        super.doStop();
+    }
+
     /* ------------------------------------------------------------ */
     public boolean isFullValidate()
     {
@@ -0,0 +1,344 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.security;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.server.UserIdentity;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/* ------------------------------------------------------------ */
+/**
+ * AuthenticationCache
+ * <p>
+ * A bounded cache of successful authentications, so that a {@link LoginService}
+ * does not have to go back to its user store (a database, a directory, a JAAS
+ * login module) for every request of a client that presents the same credentials
+ * each time, as for BASIC authentication.
+ * <p>
+ * An entry is keyed by the username and a salted digest of the presented credentials.
+ * The credentials themselves are never stored, and the salt is generated randomly
+ * for each cache instance. Only credentials presented as a {@link String},
+ * a {@code char[]} or a {@code byte[]} are cached; any other credentials (for example
+ * the per-request DIGEST responses) always miss.
+ * <p>
+ * Entries expire after a fixed time to live, so that changes in the user store are
+ * eventually seen, and may be explicitly invalidated by username or all at once.
+ */
+@ManagedObject("Cache of successful authentications")
+public class AuthenticationCache
+{
+    private static final Logger LOG = Log.getLogger(AuthenticationCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_TIME_TO_LIVE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final ConcurrentMap<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final byte[] _salt = new byte[16];
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+    private volatile int _maxEntries;
+    private volatile long _timeToLiveMs;
+
+    /* ------------------------------------------------------------ */
+    public AuthenticationCache()
+    {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE_MS);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param maxEntries the maximum number of cached authentications
+     * @param timeToLiveMs the time in milliseconds a cached authentication remains valid
+     */
+    public AuthenticationCache(@Name("maxEntries") int maxEntries, @Name("timeToLiveMs") long timeToLiveMs)
+    {
+        setMaxEntries(maxEntries);
+        setTimeToLive(timeToLiveMs);
+        new SecureRandom().nextBytes(_salt);
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The maximum number of cached authentications")
+    public int getMaxEntries()
+    {
+        return _maxEntries;
+    }
+
+    /* ------------------------------------------------------------ */
+    public void setMaxEntries(int maxEntries)
+    {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries <= 0");
+        _maxEntries = maxEntries;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The time in ms a cached authentication remains valid")
+    public long getTimeToLive()
+    {
+        return _timeToLiveMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    public void setTimeToLive(long timeToLiveMs)
+    {
+        if (timeToLiveMs <= 0)
+            throw new IllegalArgumentException("timeToLive <= 0");
+        _timeToLiveMs = timeToLiveMs;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Get the identity of a previous successful authentication with the same credentials.
+     *
+     * @param username the username
+     * @param credentials the credentials presented
+     * @return the cached identity, or null if there is no valid cached authentication
+     */
+    public UserIdentity get(String username, Object credentials)
+    {
+        byte[] digest = username == null ? null : digest(username, credentials);
+        if (digest == null)
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        Entry entry = _entries.get(username);
+        if (entry == null)
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        if (entry.isExpired(System.nanoTime()))
+        {
+            _entries.remove(username, entry);
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(entry._digest, digest))
+        {
+            _misses.incrementAndGet();
+            return null;
+        }
+
+        _hits.incrementAndGet();
+        return entry._identity;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Cache a successful authentication.
+     *
+     * @param username the username
+     * @param credentials the credentials that were successfully authenticated
+     * @param identity the identity resulting from the authentication
+     */
+    public void put(String username, Object credentials, UserIdentity identity)
+    {
+        if (username == null || identity == null)
+            return;
+
+        byte[] digest = digest(username, credentials);
+        if (digest == null)
+            return;
+
+        if (!_entries.containsKey(username) && _entries.size() >= _maxEntries)
+            evict();
+
+        long expiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_timeToLiveMs);
+        _entries.put(username, new Entry(digest, identity, expiry));
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Remove the cached authentication of a user, for example because the
+     * user has been changed or removed from the user store.
+     *
+     * @param username the username
+     */
+    @ManagedOperation(value="Invalidate the cached authentication of a user", impact="ACTION")
+    public void invalidate(@Name("username") String username)
+    {
+        if (username != null && _entries.remove(username) != null && LOG.isDebugEnabled())
+            LOG.debug("Invalidated {}", username);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Remove all cached authentications.
+     */
+    @ManagedOperation(value="Invalidate all cached authentications", impact="ACTION")
+    public void invalidateAll()
+    {
+        _entries.clear();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of cached authentications")
+    public int getSize()
+    {
+        return _entries.size();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of authentications found in the cache")
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of authentications not found in the cache")
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The number of authentications evicted because the cache was full")
+    public long getEvictions()
+    {
+        return _evictions.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedOperation(value="Reset the statistics", impact="ACTION")
+    public void resetStatistics()
+    {
+        _hits.set(0);
+        _misses.set(0);
+        _evictions.set(0);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Make room for a new entry, by removing expired entries or,
+     * if there are none, the entry closest to expiry.
+     */
+    private void evict()
+    {
+        long now = System.nanoTime();
+        Map.Entry<String, Entry> oldest = null;
+        boolean expired = false;
+        for (Iterator<Map.Entry<String, Entry>> i = _entries.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry<String, Entry> e = i.next();
+            if (e.getValue().isExpired(now))
+            {
+                i.remove();
+                expired = true;
+            }
+            else if (oldest == null || e.getValue()._expiry - oldest.getValue()._expiry < 0)
+            {
+                oldest = e;
+            }
+        }
+
+        if (!expired && oldest != null && _entries.remove(oldest.getKey(), oldest.getValue()))
+            _evictions.incrementAndGet();
+    }
+
+    /* ------------------------------------------------------------ */
+    private byte[] digest(String username, Object credentials)
+    {
+        byte[] bytes;
+        if (credentials instanceof String)
+            bytes = ((String)credentials).getBytes(StandardCharsets.UTF_8);
+        else if (credentials instanceof char[])
+        {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap((char[])credentials));
+            bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            Arrays.fill(buffer.array(), (byte)0);
+        }
+        else if (credentials instanceof byte[])
+            bytes = ((byte[])credentials).clone();
+        else
+            return null;
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(_salt);
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(bytes);
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            LOG.warn(e);
+            return null;
+        }
+        finally
+        {
+            Arrays.fill(bytes, (byte)0);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,max=%d,ttl=%dms,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), getSize(), _maxEntries, _timeToLiveMs, getHits(), getMisses());
+    }
+
+
+    /* ------------------------------------------------------------ */
+    private static class Entry
+    {
+        private final byte[] _digest;
+        private final UserIdentity _identity;
+        private final long _expiry;
+
+        private Entry(byte[] digest, UserIdentity identity, long expiry)
+        {
+            _digest = digest;
+            _identity = identity;
+            _expiry = expiry;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - _expiry >= 0;
+        }
+    }
+}
@@ -189,6 +189,37 @@ public class HashLoginService extends AbstractLoginService
             _propertyUserStore.setConfigPath(_config);
             _propertyUserStore.start();
         }
+
+        //also for a user store that was set up by a subclass
+        if (_authenticationCache != null)
+            _propertyUserStore.registerUserListener(new AuthenticationCacheInvalidator(_authenticationCache));
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Invalidate cached authentications of users that are changed or removed
+     * when the property file is reloaded.
+     */
+    private static class AuthenticationCacheInvalidator implements UserListener
+    {
+        private final AuthenticationCache _cache;
+
+        private AuthenticationCacheInvalidator(AuthenticationCache cache)
+        {
+            _cache = cache;
+        }
+
+        @Override
+        public void update(String username, Credential credential, String[] roleArray)
+        {
+            _cache.invalidate(username);
+        }
+
+        @Override
+        public void remove(String username)
+        {
+            _cache.invalidate(username);
+        }
     }
 
     /* ------------------------------------------------------------ */
@@ -0,0 +1,126 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.UserIdentity;
+import org.eclipse.jetty.util.security.Credential;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AuthenticationCacheTest
+{
+    private final AtomicInteger _loads = new AtomicInteger();
+    private TestLoginService _loginService;
+    private AuthenticationCache _cache;
+
+    @Before
+    public void init() throws Exception
+    {
+        _loginService = new TestLoginService("test")
+        {
+            @Override
+            protected UserPrincipal loadUserInfo(String username)
+            {
+                _loads.incrementAndGet();
+                return super.loadUserInfo(username);
+            }
+        };
+        _loginService.putUser("fred", Credential.getCredential("pwd"), new String[]{"user"});
+        _cache = new AuthenticationCache(2, 60000);
+        _loginService.setAuthenticationCache(_cache);
+        _loginService.start();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _loginService.stop();
+    }
+
+    @Test
+    public void testCachedLogin() throws Exception
+    {
+        UserIdentity first = _loginService.login("fred", "pwd", null);
+        assertNotNull(first);
+        UserIdentity second = _loginService.login("fred", "pwd", null);
+        assertSame(first, second);
+        assertEquals(1, _loads.get());
+        assertEquals(1, _cache.getHits());
+        assertEquals(1, _cache.getMisses());
+    }
+
+    @Test
+    public void testWrongCredentialsNotCached() throws Exception
+    {
+        assertNotNull(_loginService.login("fred", "pwd", null));
+        assertNull(_loginService.login("fred", "wrong", null));
+        assertNull(_loginService.login("fred", "wrong", null));
+        assertEquals(3, _loads.get());
+        assertEquals(1, _cache.getSize());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception
+    {
+        assertNotNull(_loginService.login("fred", "pwd", null));
+        _cache.invalidate("fred");
+        assertEquals(0, _cache.getSize());
+        assertNotNull(_loginService.login("fred", "pwd", null));
+        assertEquals(2, _loads.get());
+    }
+
+    @Test
+    public void testExpiry() throws Exception
+    {
+        _cache.setTimeToLive(1);
+        assertNotNull(_loginService.login("fred", "pwd", null));
+        Thread.sleep(10);
+        assertNotNull(_loginService.login("fred", "pwd", null));
+        assertEquals(2, _loads.get());
+        assertEquals(0, _cache.getHits());
+    }
+
+    @Test
+    public void testBounded() throws Exception
+    {
+        _loginService.putUser("wilma", Credential.getCredential("pwd"), new String[]{"user"});
+        _loginService.putUser("barney", Credential.getCredential("pwd"), new String[]{"user"});
+        assertNotNull(_loginService.login("fred", "pwd", null));
+        assertNotNull(_loginService.login("wilma", "pwd", null));
+        assertNotNull(_loginService.login("barney", "pwd", null));
+        assertEquals(2, _cache.getSize());
+        assertEquals(1, _cache.getEvictions());
+    }
+
+    @Test
+    public void testUncacheableCredentials() throws Exception
+    {
+        _cache.put("fred", new Object(), _loginService.login("fred", "pwd", null));
+        assertNull(_cache.get("fred", new Object()));
+    }
+}
@@ -19,10 +19,14 @@
 package org.eclipse.jetty.server;
 
 import java.io.IOException;
+import java.text.DateFormatSymbols;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.TimeZone;
 
 import javax.servlet.http.Cookie;
 
+import org.eclipse.jetty.http.HttpDateClock;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.pathmap.PathMappings;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
@@ -60,6 +64,7 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
     private boolean _logServer = false;
     private boolean _preferProxiedForAddress;
     private transient DateCache _logDateCache;
+    private transient boolean _logDateClock;
     private String _logDateFormat = "dd/MMM/yyyy:HH:mm:ss Z";
     private Locale _logLocale = Locale.getDefault();
     private String _logTimeZone = "GMT";
@@ -131,7 +136,9 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
             append(buf,(authentication instanceof Authentication.User)?((Authentication.User)authentication).getUserIdentity().getUserPrincipal().getName():null);
 
             buf.append(" [");
-            if (_logDateCache != null)
+            if (_logDateClock)
+                buf.append(HttpDateClock.getClock().getNCSATimestamp(request.getTimeStamp()));
+            else if (_logDateCache != null)
                 buf.append(_logDateCache.format(request.getTimeStamp()));
             else
                 buf.append(request.getTimeStamp());
@@ -396,6 +403,21 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
         return _extended;
     }
 
+    /**
+     * @return true if the configured date format is the default NCSA format in GMT
+     * with English month names, as formatted by the shared {@link HttpDateClock}
+     */
+    private boolean isNCSADateFormat()
+    {
+        if (!"dd/MMM/yyyy:HH:mm:ss Z".equals(_logDateFormat))
+            return false;
+        TimeZone timeZone = TimeZone.getTimeZone(_logTimeZone);
+        if (timeZone.getRawOffset() != 0 || timeZone.useDaylightTime())
+            return false;
+        Locale locale = _logLocale == null ? Locale.getDefault() : _logLocale;
+        return Arrays.equals(DateFormatSymbols.getInstance(locale).getShortMonths(), DateFormatSymbols.getInstance(Locale.US).getShortMonths());
+    }
+
     /**
      * Set up request logging and open log file.
      *
@@ -407,6 +429,7 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
         if (_logDateFormat != null)
         {
             _logDateCache = new DateCache(_logDateFormat, _logLocale ,_logTimeZone);
+            _logDateClock = isNCSADateFormat();
         }
 
         if (_ignorePaths != null && _ignorePaths.length > 0)
@@ -425,6 +448,7 @@ public abstract class AbstractNCSARequestLog extends AbstractLifeCycle implement
     protected void doStop() throws Exception
     {
         _logDateCache = null;
+        _logDateClock = false;
         super.doStop();
     }
 
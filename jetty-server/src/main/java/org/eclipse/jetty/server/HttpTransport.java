@@ -19,6 +19,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -49,6 +50,18 @@ public interface HttpTransport
      */
     void push(MetaData.Request request);
 
+    /**
+     * <p>Pushes the given requests, allowing the transport to send
+     * all the push promises together.</p>
+     *
+     * @param requests the requests to use as the basis for generating pushed responses.
+     */
+    default void push(List<MetaData.Request> requests)
+    {
+        for (MetaData.Request request : requests)
+            push(request);
+    }
+
     /**
      * Called to indicated the end of the current request/response cycle (which may be
      * some time after the last content is sent).
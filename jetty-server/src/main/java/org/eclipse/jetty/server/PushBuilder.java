@@ -238,6 +238,29 @@ public interface PushBuilder
      * IllegalStateException.
      */
     public abstract void push();
+
+    /** Starts a batch of pushes.
+     * 
+     * <p>The resources pushed with {@link #push()} after this call are
+     * not sent until {@link #endBatch()} is called, so that the transport
+     * may send all their push promises together.</p>
+     * <p>The default implementation does nothing, so that each resource
+     * is sent when {@link #push()} is called.</p>
+     *
+     * @return this builder
+     */
+    public default PushBuilder beginBatch()
+    {
+        return this;
+    }
+
+    /** Ends a batch of pushes started with {@link #beginBatch()},
+     * sending all the resources pushed since then.
+     * <p>The default implementation does nothing.</p>
+     */
+    public default void endBatch()
+    {
+    }
     
     public abstract String getMethod();
     public abstract String getQueryString();
@@ -18,6 +18,8 @@
 
 package org.eclipse.jetty.server;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.jetty.http.HttpField;
@@ -49,6 +51,7 @@ public class PushBuilderImpl implements PushBuilder
     private String _path;
     private String _etag;
     private String _lastModified;
+    private List<MetaData.Request> _batch;
 
     public PushBuilderImpl(Request request, HttpFields fields, String method, String queryString, String sessionId, boolean conditional)
     {
@@ -238,24 +241,53 @@ public class PushBuilderImpl implements PushBuilder
             //      _fields.add("Cookie","JSESSIONID="+_sessionId);
         }
 
+        // Each push has its own fields, as the push may be processed
+        // after this builder has been modified for another push.
+        HttpFields fields = new HttpFields(_fields);
         if (_conditional)
         {
             if (_etag!=null)
-                _fields.add(HttpHeader.IF_NONE_MATCH,_etag);
+                fields.add(HttpHeader.IF_NONE_MATCH,_etag);
             else if (_lastModified!=null)
-                _fields.add(HttpHeader.IF_MODIFIED_SINCE,_lastModified);
+                fields.add(HttpHeader.IF_MODIFIED_SINCE,_lastModified);
         }
 
         HttpURI uri = HttpURI.createHttpURI(_request.getScheme(),_request.getServerName(),_request.getServerPort(),path,param,query,null);
-        MetaData.Request push = new MetaData.Request(_method,uri,_request.getHttpVersion(),_fields);
+        MetaData.Request push = new MetaData.Request(_method,uri,_request.getHttpVersion(),fields);
 
         if (LOG.isDebugEnabled())
-            LOG.debug("Push {} {} inm={} ims={}",_method,uri,_fields.get(HttpHeader.IF_NONE_MATCH),_fields.get(HttpHeader.IF_MODIFIED_SINCE));
+            LOG.debug("Push {} {} inm={} ims={}",_method,uri,fields.get(HttpHeader.IF_NONE_MATCH),fields.get(HttpHeader.IF_MODIFIED_SINCE));
 
-        _request.getHttpChannel().getHttpTransport().push(push);
+        if (_batch!=null)
+            _batch.add(push);
+        else
+            _request.getHttpChannel().getHttpTransport().push(push);
         _path=null;
         _etag=null;
         _lastModified=null;
     }
 
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public PushBuilder beginBatch()
+    {
+        if (_batch==null)
+            _batch=new ArrayList<>();
+        return this;
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public void endBatch()
+    {
+        List<MetaData.Request> batch=_batch;
+        _batch=null;
+        if (batch==null || batch.isEmpty())
+            return;
+        if (batch.size()==1)
+            _request.getHttpChannel().getHttpTransport().push(batch.get(0));
+        else
+            _request.getHttpChannel().getHttpTransport().push(batch);
+    }
 }
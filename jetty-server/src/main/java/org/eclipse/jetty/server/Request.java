@@ -1739,6 +1739,31 @@ public class Request implements HttpServletRequest
         HttpURI uri = request.getURI();
         _originalURI=uri.isAbsolute()&&request.getHttpVersion()!=HttpVersion.HTTP_2?uri.toString():uri.getPathQuery();
 
+        // Common case: decode and canonicalize an absolute path in a single pass.
+        String encoded = uri.getPath();
+        if (encoded!=null && encoded.startsWith("/"))
+        {
+            String info;
+            try
+            {
+                info = uri.getDecodedCanonicalPath();
+            }
+            catch (IllegalArgumentException e)
+            {
+                setPathInfo(encoded);
+                throw new BadMessageException(400,"Bad URI",e);
+            }
+
+            if (info == null)
+            {
+                setPathInfo(uri.getDecodedPath());
+                throw new BadMessageException(400,"Bad URI");
+            }
+
+            setPathInfo(info);
+            return;
+        }
+
         String path = uri.getDecodedPath();
         String info;
         if (path==null || path.length()==0)
@@ -18,7 +18,9 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +29,7 @@ import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.HttpContent.ContentFactory;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.util.PathAttributesCache;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 
@@ -41,6 +44,7 @@ public class ResourceContentFactory implements ContentFactory
     private final ResourceFactory _factory;
     private final MimeTypes _mimeTypes;
     private final CompressedContentFormat[] _precompressedFormats;
+    private PathAttributesCache _pathAttributesCache;
     
     /* ------------------------------------------------------------ */
     public ResourceContentFactory(ResourceFactory factory, MimeTypes mimeTypes, CompressedContentFormat[] precompressedFormats)
@@ -50,11 +54,34 @@ public class ResourceContentFactory implements ContentFactory
         _precompressedFormats=precompressedFormats;
     }
 
+    /* ------------------------------------------------------------ */
+    public PathAttributesCache getPathAttributesCache()
+    {
+        return _pathAttributesCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * <p>Sets the cache used to avoid looking up resources that do not exist.</p>
+     * <p>The cache is only consulted for the existence of resources. Resources that
+     * are not files of the file system, such as the entries of a jar or war resource
+     * base, are not cached and are always looked up.</p>
+     *
+     * @param pathAttributesCache the cache of the existence of paths in context, or null for no cache
+     */
+    public void setPathAttributesCache(PathAttributesCache pathAttributesCache)
+    {
+        _pathAttributesCache = pathAttributesCache;
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public HttpContent getContent(String pathInContext,int maxBufferSize)
         throws IOException
     {
+        if (!exists(pathInContext))
+            return null;
+
         // try loading the content from our factory.
         Resource resource=_factory.getResource(pathInContext);
         HttpContent loaded = load(pathInContext,resource,maxBufferSize);
@@ -81,6 +108,8 @@ public class ResourceContentFactory implements ContentFactory
             for (CompressedContentFormat format : _precompressedFormats)
             {
                 String compressedPathInContext = pathInContext + format._extension;
+                if (!exists(compressedPathInContext))
+                    continue;
                 Resource compressedResource = _factory.getResource(compressedPathInContext);
                 if (compressedResource.exists() && compressedResource.lastModified() >= resource.lastModified()
                         && compressedResource.length() < resource.length())
@@ -94,6 +123,28 @@ public class ResourceContentFactory implements ContentFactory
     }
     
     
+    /* ------------------------------------------------------------ */
+    private boolean exists(String pathInContext)
+    {
+        PathAttributesCache cache = _pathAttributesCache;
+        if (cache == null)
+            return true;
+        PathAttributesCache.Attributes attributes = cache.get(pathInContext,this::toPath);
+        return attributes == null || attributes.exists();
+    }
+
+    /* ------------------------------------------------------------ */
+    private Path toPath(String pathInContext) throws IOException
+    {
+        Resource resource=_factory.getResource(pathInContext);
+        if (resource==null || !resource.exists())
+            return null;
+        File file=resource.getFile();
+        if (file==null)
+            throw new PathAttributesCache.NotAFileException(pathInContext);
+        return file.toPath();
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public String toString()
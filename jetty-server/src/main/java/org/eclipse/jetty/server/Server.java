@@ -38,14 +38,12 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpDateClock;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpGenerator;
-import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpURI;
-import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ErrorHandler;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
@@ -63,7 +61,6 @@ import org.eclipse.jetty.util.component.Graceful;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
-import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ShutdownThread;
 import org.eclipse.jetty.util.thread.ThreadPool;
@@ -91,10 +88,6 @@ public class Server extends HandlerWrapper implements Attributes
     private ErrorHandler _errorHandler;
     private RequestLog _requestLog;
 
-    private final Locker _dateLocker = new Locker();
-    private volatile DateField _dateField;
-
-
     /* ------------------------------------------------------------ */
     public Server()
     {
@@ -325,24 +318,7 @@ public class Server extends HandlerWrapper implements Attributes
     /* ------------------------------------------------------------ */
     public HttpField getDateField()
     {
-        long now=System.currentTimeMillis();
-        long seconds = now/1000;
-        DateField df = _dateField;
-
-        if (df==null || df._seconds!=seconds)
-        {
-            try(Locker.Lock lock = _dateLocker.lock())
-            {
-                df = _dateField;
-                if (df==null || df._seconds!=seconds)
-                {
-                    HttpField field=new PreEncodedHttpField(HttpHeader.DATE,DateGenerator.formatDate(now));
-                    _dateField=new DateField(seconds,field);
-                    return field;
-                }
-            }
-        }
-        return df._dateField;
+        return HttpDateClock.getClock().tick().getDateField();
     }
 
     /* ------------------------------------------------------------ */
@@ -759,19 +735,4 @@ public class Server extends HandlerWrapper implements Attributes
     {
         System.err.println(getVersion());
     }
-
-    /* ------------------------------------------------------------ */
-    /* ------------------------------------------------------------ */
-    private static class DateField
-    {
-        final long _seconds;
-        final HttpField _dateField;
-        public DateField(long seconds, HttpField dateField)
-        {
-            super();
-            _seconds = seconds;
-            _dateField = dateField;
-        }
-
-    }
 }
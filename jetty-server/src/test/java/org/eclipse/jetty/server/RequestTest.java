@@ -420,6 +420,57 @@ public class RequestTest
         assertThat(responses,startsWith("HTTP/1.1 200"));
     }
 
+    @Test
+    public void testDecodedCanonicalPath() throws Exception
+    {
+        final ArrayList<String> results = new ArrayList<>();
+        _handler._checker = new RequestTester()
+        {
+            @Override
+            public boolean check(HttpServletRequest request,HttpServletResponse response)
+            {
+                results.add(request.getPathInfo());
+                results.add(request.getRequestURI());
+                return true;
+            }
+        };
+
+        String request="GET /context/%e2%82%ac/./path/../file%20name.html;jsessionid=12345?a=b HTTP/1.1\r\n"+
+        "Host: whatever\r\n"+
+        "Connection: close\r\n"+
+        "\r\n";
+
+        String responses=_connector.getResponse(request);
+        assertThat(responses,startsWith("HTTP/1.1 200"));
+        assertEquals("/context/\u20ac/file name.html",results.get(0));
+        assertEquals("/context/%e2%82%ac/./path/../file%20name.html;jsessionid=12345",results.get(1));
+    }
+
+    @Test
+    public void testBadUtf8Path() throws Exception
+    {
+        _handler._checker = new RequestTester()
+        {
+            @Override
+            public boolean check(HttpServletRequest request,HttpServletResponse response)
+            {
+                return true;
+            }
+        };
+
+        // Paths that are not valid UTF-8 are rejected rather than decoded as ISO-8859-1.
+        for (String path : new String[]{"/path/%c0%af","/path/%ed%a0%80","/path/%e2%82"})
+        {
+            String request="GET "+path+" HTTP/1.1\r\n"+
+            "Host: whatever\r\n"+
+            "Connection: close\r\n"+
+            "\r\n";
+
+            String responses=_connector.getResponse(request);
+            assertThat(path,responses,startsWith("HTTP/1.1 400"));
+        }
+    }
+
     @Test
     public void testInvalidHostHeader() throws Exception
     {
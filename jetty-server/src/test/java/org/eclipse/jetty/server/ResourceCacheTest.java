@@ -19,6 +19,8 @@
 package org.eclipse.jetty.server;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
@@ -26,6 +28,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpContent;
@@ -33,6 +38,7 @@ import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.toolchain.test.OS;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.PathAttributesCache;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceCollection;
 import org.junit.Test;
@@ -290,7 +296,35 @@ public class ResourceCacheTest
         assertEquals("4 - four (no extension)", getContent(cache, "four"));
     }
 
-    
+    @Test
+    public void testPathAttributesCacheWithJarBase() throws Exception
+    {
+        File jar = File.createTempFile("base",".jar");
+        jar.deleteOnExit();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            out.putNextEntry(new JarEntry("index.txt"));
+            out.write("jar - index".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        Resource base = Resource.newResource("jar:" + jar.toURI() + "!/");
+        ResourceContentFactory factory = new ResourceContentFactory(base,new MimeTypes(),CompressedContentFormat.NONE);
+        PathAttributesCache pathAttributesCache = new PathAttributesCache();
+        factory.setPathAttributesCache(pathAttributesCache);
+
+        for (int i=0;i<2;i++)
+        {
+            HttpContent content = factory.getContent("/index.txt",4096);
+            assertNotNull(content);
+            assertEquals("jar - index",BufferUtil.toString(content.getIndirectBuffer()));
+            assertNull(factory.getContent("/missing.txt",4096));
+        }
+
+        // Only the missing entry is cached.
+        assertEquals(1,pathAttributesCache.getSize());
+    }
+
     static String getContent(Resource r, String path) throws Exception
     {
         StringBuilder buffer = new StringBuilder();
@@ -42,6 +42,7 @@ import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
 import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.PathAttributesCache;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -94,6 +95,13 @@ import org.eclipse.jetty.util.resource.ResourceFactory;
  *  resourceCache     If set, this is a context attribute name, which the servlet
  *                    will use to look for a shared ResourceCache instance.
  *
+ *  pathAttributesCache
+ *                    If set, this is a context attribute name, which the servlet
+ *                    will use to look for a shared PathAttributesCache instance
+ *                    (for example created by the FastCGI TryFilesFilter), used to
+ *                    avoid looking up files that do not exist. Only used without
+ *                    resourceCache and with the context resource base.
+ *
  *  relativeResourceBase
  *                    Set with a pathname relative to the base of the
  *                    servlet context root. Useful for only serving static content out
@@ -274,10 +282,28 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
             throw new UnavailableException(e.toString());
         }
 
+        String pathAttributesCache = getInitParameter("pathAttributesCache");
+        if (pathAttributesCache!=null)
+        {
+            if (_relativeResourceBase!=null || _resourceBase!=null)
+                throw new UnavailableException("pathAttributesCache specified with resource bases");
+            if (_cache!=null)
+                LOG.debug("ignoring pathAttributesCache, using resourceCache");
+        }
+
         HttpContent.ContentFactory contentFactory=_cache;
         if (contentFactory==null)
         {
-            contentFactory=new ResourceContentFactory(this,_mimeTypes,_resourceService.getPrecompressedFormats());
+            ResourceContentFactory resourceContentFactory=new ResourceContentFactory(this,_mimeTypes,_resourceService.getPrecompressedFormats());
+            if (pathAttributesCache!=null)
+            {
+                Object attribute=_servletContext.getAttribute(pathAttributesCache);
+                if (attribute instanceof PathAttributesCache)
+                    resourceContentFactory.setPathAttributesCache((PathAttributesCache)attribute);
+                else
+                    LOG.warn("No {} for pathAttributesCache attribute {}",PathAttributesCache.class.getSimpleName(),pathAttributesCache);
+            }
+            contentFactory=resourceContentFactory;
             if (resourceCache!=null)
                 _servletContext.setAttribute(resourceCache,contentFactory);
         }
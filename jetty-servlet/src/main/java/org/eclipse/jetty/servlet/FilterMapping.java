@@ -23,7 +23,6 @@ import java.util.EnumSet;
 
 import javax.servlet.DispatcherType;
 
-import org.eclipse.jetty.http.PathMap;
 import org.eclipse.jetty.util.TypeUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -95,6 +94,7 @@ public class FilterMapping implements Dumpable
     private String _filterName;
     private transient FilterHolder _holder;
     private String[] _pathSpecs;
+    private PathSpecMatcher[] _matchers;
     private String[] _servletNames;
 
     /* ------------------------------------------------------------ */
@@ -111,8 +111,8 @@ public class FilterMapping implements Dumpable
     {
         if (appliesTo(type))
         {
-            for (int i=0;i<_pathSpecs.length;i++)
-                if (_pathSpecs[i]!=null &&  PathMap.match(_pathSpecs[i], path,true))
+            for (int i=0;i<_matchers.length;i++)
+                if (_matchers[i]!=null && _matchers[i].matches(path))
                     return true;
         }
 
@@ -249,6 +249,7 @@ public class FilterMapping implements Dumpable
     public void setPathSpecs(String[] pathSpecs)
     {
         _pathSpecs = pathSpecs;
+        _matchers = compile(pathSpecs);
     }
 
     /* ------------------------------------------------------------ */
@@ -257,7 +258,18 @@ public class FilterMapping implements Dumpable
      */
     public void setPathSpec(String pathSpec)
     {
-        _pathSpecs = new String[]{pathSpec};
+        setPathSpecs(new String[]{pathSpec});
+    }
+
+    /* ------------------------------------------------------------ */
+    private static PathSpecMatcher[] compile(String[] pathSpecs)
+    {
+        if (pathSpecs==null)
+            return null;
+        PathSpecMatcher[] matchers = new PathSpecMatcher[pathSpecs.length];
+        for (int i=0;i<pathSpecs.length;i++)
+            matchers[i]=pathSpecs[i]==null?null:new PathSpecMatcher(pathSpecs[i]);
+        return matchers;
     }
 
     /* ------------------------------------------------------------ */
@@ -311,4 +323,69 @@ public class FilterMapping implements Dumpable
     {
         return ContainerLifeCycle.dump(this);
     }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * A filter path spec precompiled into its match type, with the same
+     * semantic of {@code PathMap.match(pathSpec, path, true)}.
+     */
+    private static class PathSpecMatcher
+    {
+        private static final int NONE=0;
+        private static final int EXACT=1;
+        private static final int PREFIX=2;
+        private static final int SUFFIX=3;
+
+        private final int _type;
+        private final String _match;
+
+        private PathSpecMatcher(String pathSpec)
+        {
+            if (pathSpec.length()==0)
+            {
+                _type=EXACT;
+                _match="/";
+            }
+            else if (pathSpec.charAt(0)=='/')
+            {
+                if (pathSpec.endsWith("/*"))
+                {
+                    // "/foo/*" matches "/foo" and "/foo/..." but not "/foobar".
+                    _type=PREFIX;
+                    _match=pathSpec.substring(0,pathSpec.length()-2);
+                }
+                else
+                {
+                    _type=EXACT;
+                    _match=pathSpec;
+                }
+            }
+            else if (pathSpec.charAt(0)=='*')
+            {
+                _type=SUFFIX;
+                _match=pathSpec.substring(1);
+            }
+            else
+            {
+                _type=NONE;
+                _match=null;
+            }
+        }
+
+        private boolean matches(String path)
+        {
+            switch (_type)
+            {
+                case EXACT:
+                    return _match.equals(path);
+                case PREFIX:
+                    int length=_match.length();
+                    return path.startsWith(_match) && (path.length()==length || path.charAt(length)=='/');
+                case SUFFIX:
+                    return path.endsWith(_match);
+                default:
+                    return false;
+            }
+        }
+    }
 }
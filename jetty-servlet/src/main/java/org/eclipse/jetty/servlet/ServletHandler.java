@@ -103,6 +103,7 @@ public class ServletHandler extends ScopedHandler
     private int _matchBeforeIndex = -1; //index of last programmatic FilterMapping with isMatchAfter=false
     private int _matchAfterIndex = -1;  //index of 1st programmatic FilterMapping with isMatchAfter=true
     private boolean _filterChainsCached=true;
+    private Set<String> _filtersSkippedOnPush=Collections.emptySet();
     private int _maxFilterChainsCacheSize=512;
     private boolean _startWithUnavailable=false;
     private boolean _ensureDefaultServlet=true;
@@ -122,10 +123,10 @@ public class ServletHandler extends ScopedHandler
     private ListenerHolder[] _listeners=new ListenerHolder[0];
 
     @SuppressWarnings("unchecked")
-    protected final ConcurrentMap<String, FilterChain> _chainCache[] = new ConcurrentMap[FilterMapping.ALL];
+    protected final ConcurrentMap<FilterChainKey, FilterChain> _chainCache[] = new ConcurrentMap[FilterMapping.ALL];
 
     @SuppressWarnings("unchecked")
-    protected final Queue<String>[] _chainLRU = new Queue[FilterMapping.ALL];
+    protected final Queue<FilterChainKey>[] _chainLRU = new Queue[FilterMapping.ALL];
 
 
 
@@ -552,9 +553,29 @@ public class ServletHandler extends ScopedHandler
 
     protected FilterChain getFilterChain(Request baseRequest, String pathInContext, ServletHolder servletHolder)
     {
-        String key=pathInContext==null?servletHolder.getName():pathInContext;
         int dispatch = FilterMapping.dispatch(baseRequest.getDispatcherType());
+        List<FilterMapping> filterPathMappings=_filterPathMappings;
+        Set<String> skipped=baseRequest.isPush()?_filtersSkippedOnPush:Collections.emptySet();
 
+        // Match the path filters: the chain only depends on which filters matched
+        // and on the servlet, so many paths share the same cached chain.
+        long[] matches=null;
+        if (pathInContext!=null && filterPathMappings!=null)
+        {
+            int size=filterPathMappings.size();
+            for (int i=0; i<size; i++)
+            {
+                FilterMapping mapping=filterPathMappings.get(i);
+                if (mapping.appliesTo(pathInContext, dispatch) && !skipped.contains(mapping.getFilterHolder().getName()))
+                {
+                    if (matches==null)
+                        matches=new long[(size+63)/64];
+                    matches[i>>6]|=1L<<i;
+                }
+            }
+        }
+
+        FilterChainKey key=new FilterChainKey(matches,servletHolder,!skipped.isEmpty());
         if (_filterChainsCached && _chainCache!=null)
         {
             FilterChain chain = _chainCache[dispatch].get(key);
@@ -566,12 +587,12 @@ public class ServletHandler extends ScopedHandler
         List<FilterHolder> filters = new ArrayList<>();
 
         // Path filters
-        if (pathInContext!=null && _filterPathMappings!=null)
+        if (matches!=null)
         {
-            for (FilterMapping filterPathMapping : _filterPathMappings)
+            for (int i=0; i<filterPathMappings.size(); i++)
             {
-                if (filterPathMapping.appliesTo(pathInContext, dispatch))
-                    filters.add(filterPathMapping.getFilterHolder());
+                if ((matches[i>>6]&(1L<<i))!=0)
+                    filters.add(filterPathMappings.get(i).getFilterHolder());
             }
         }
 
@@ -583,7 +604,7 @@ public class ServletHandler extends ScopedHandler
             for (int i=0; i<LazyList.size(o);i++)
             {
                 FilterMapping mapping = LazyList.get(o,i);
-                if (mapping.appliesTo(dispatch))
+                if (mapping.appliesTo(dispatch) && !skipped.contains(mapping.getFilterHolder().getName()))
                     filters.add(mapping.getFilterHolder());
             }
 
@@ -591,7 +612,7 @@ public class ServletHandler extends ScopedHandler
             for (int i=0; i<LazyList.size(o);i++)
             {
                 FilterMapping mapping = LazyList.get(o,i);
-                if (mapping.appliesTo(dispatch))
+                if (mapping.appliesTo(dispatch) && !skipped.contains(mapping.getFilterHolder().getName()))
                     filters.add(mapping.getFilterHolder());
             }
         }
@@ -603,31 +624,33 @@ public class ServletHandler extends ScopedHandler
         FilterChain chain = null;
         if (_filterChainsCached)
         {
-            if (filters.size() > 0)
-                chain = newCachedChain(filters, servletHolder);
+            chain = newCachedChain(filters, servletHolder);
 
-            final Map<String,FilterChain> cache=_chainCache[dispatch];
-            final Queue<String> lru=_chainLRU[dispatch];
+            final Map<FilterChainKey,FilterChain> cache=_chainCache[dispatch];
+            final Queue<FilterChainKey> lru=_chainLRU[dispatch];
 
-                // Do we have too many cached chains?
-                while (_maxFilterChainsCacheSize>0 && cache.size()>=_maxFilterChainsCacheSize)
+            // Do we have too many cached chains?
+            while (_maxFilterChainsCacheSize>0 && cache.size()>=_maxFilterChainsCacheSize)
+            {
+                // The LRU list is not atomic with the cache map, so be prepared to invalidate if
+                // a key is not found to delete.
+                // Delete by LRU (where U==created)
+                FilterChainKey k=lru.poll();
+                if (k==null)
                 {
-                    // The LRU list is not atomic with the cache map, so be prepared to invalidate if
-                    // a key is not found to delete.
-                    // Delete by LRU (where U==created)
-                    String k=lru.poll();
-                    if (k==null)
-                    {
-                        cache.clear();
-                        break;
-                    }
-                    cache.remove(k);
+                    cache.clear();
+                    break;
                 }
+                cache.remove(k);
+            }
 
-                cache.put(key,chain);
+            FilterChain existing=cache.putIfAbsent(key,chain);
+            if (existing==null)
                 lru.add(key);
+            else
+                chain=existing;
         }
-        else if (filters.size() > 0)
+        else
             chain = new Chain(baseRequest,filters, servletHolder);
 
         return chain;
@@ -1563,6 +1586,57 @@ public class ServletHandler extends ScopedHandler
         invalidateChainsCache();
     }
 
+    /* ------------------------------------------------------------ */
+    /* ------------------------------------------------------------ */
+    /**
+     * The key of a cached filter chain: the set of matched filter path
+     * mappings, as indexes into the path mappings, plus the target servlet,
+     * and whether the filters skipped on push have been left out.
+     */
+    protected static class FilterChainKey
+    {
+        private final long[] _matches;
+        private final ServletHolder _servletHolder;
+        private final boolean _push;
+        private final int _hash;
+
+        protected FilterChainKey(long[] matches, ServletHolder servletHolder)
+        {
+            this(matches,servletHolder,false);
+        }
+
+        protected FilterChainKey(long[] matches, ServletHolder servletHolder, boolean push)
+        {
+            _matches=matches;
+            _servletHolder=servletHolder;
+            _push=push;
+            _hash=31*(31*Arrays.hashCode(matches)+System.identityHashCode(servletHolder))+Boolean.hashCode(push);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this==obj)
+                return true;
+            if (!(obj instanceof FilterChainKey))
+                return false;
+            FilterChainKey that=(FilterChainKey)obj;
+            return _hash==that._hash && _servletHolder==that._servletHolder && _push==that._push && Arrays.equals(_matches,that._matches);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%s,%s,push=%b}",getClass().getSimpleName(),hashCode(),Arrays.toString(_matches),_servletHolder,_push);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
     protected class CachedChain implements FilterChain
@@ -1740,6 +1814,9 @@ public class ServletHandler extends ScopedHandler
     /** Set the maximum filter chain cache size.
      * Filter chains are cached if {@link #isFilterChainsCached()} is true. If the max cache size
      * is greater than zero, then the cache is flushed whenever it grows to be this size.
+     * Chains are cached by the set of matched filter mappings and the target servlet, so the
+     * number of entries is bounded by the distinct filter combinations rather than by the
+     * number of distinct request paths.
      *
      * @param maxFilterChainsCacheSize  the maximum number of entries in a filter chain cache.
      */
@@ -1748,6 +1825,39 @@ public class ServletHandler extends ScopedHandler
         _maxFilterChainsCacheSize = maxFilterChainsCacheSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return the names of the filters that are not applied to pushed requests.
+     * @see #setFiltersSkippedOnPush(String...)
+     */
+    public String[] getFiltersSkippedOnPush()
+    {
+        return _filtersSkippedOnPush.toArray(new String[_filtersSkippedOnPush.size()]);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Set the names of the filters that are not applied to pushed requests.
+     * A pushed request (see {@link Request#isPush()}) runs the filters mapped to
+     * its path except the ones named here; if none remain, it is handled directly
+     * by its servlet, typically a {@link DefaultServlet} that serves the resource
+     * from its cache.
+     * <p>
+     * Only name filters that are safe to skip, such as the push filter itself.
+     * The resources to push are learned from the {@code Referer} header, which the
+     * client controls, so a client can have any resource pushed to it: skipping a
+     * filter that authenticates or authorizes requests would let clients obtain the
+     * resources it protects. Filters that modify responses (for example to compress
+     * them or add headers) are not applied to pushed responses if they are named here.
+     * By default no filter is skipped.
+     *
+     * @param filterNames the names of the filters that are not applied to pushed requests.
+     */
+    public void setFiltersSkippedOnPush(String... filterNames)
+    {
+        _filtersSkippedOnPush = filterNames==null || filterNames.length==0 ? Collections.emptySet() : new HashSet<>(Arrays.asList(filterNames));
+        invalidateChainsCache();
+    }
+
     /* ------------------------------------------------------------ */
     void destroyServlet(Servlet servlet)
     {
@@ -81,6 +81,8 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
     private JspContainer _jspContainer;
 
     private transient Servlet _servlet;
+    /* The initialized and available servlet, read without locking on the request path */
+    private transient volatile Servlet _availableServlet;
     private transient Config _config;
     private transient long _unavailable;
     private transient boolean _enabled = true;
@@ -169,6 +171,7 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
             throw new IllegalArgumentException();
 
         _extInstance=true;
+        _availableServlet=null;
         _servlet=servlet;
         setHeldClass(servlet.getClass());
         if (getName()==null)
@@ -307,6 +310,7 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
         throws Exception
     {
         _unavailable=0;
+        _availableServlet=null;
         if (!_enabled)
             return;
 
@@ -434,6 +438,7 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
     public void doStop()
         throws Exception
     {
+        _availableServlet=null;
         Object old_run_as = null;
         if (_servlet!=null)
         {
@@ -559,6 +564,7 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
     /* ------------------------------------------------------------ */
     private void makeUnavailable(UnavailableException e)
     {
+        _availableServlet=null;
         if (_unavailableEx==e && _unavailable!=0)
             return;
 
@@ -581,6 +587,7 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
 
     private void makeUnavailable(final Throwable e)
     {
+        _availableServlet=null;
         if (e instanceof UnavailableException)
             makeUnavailable((UnavailableException)e);
         else
@@ -770,20 +777,40 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
             baseRequest.setAttribute(Request.__MULTIPART_CONFIG_ELEMENT, mpce);
     }
 
-    public synchronized Servlet ensureInstance()
+    /**
+     * <p>Returns the servlet instance, initializing it if necessary.</p>
+     * <p>Once the servlet is initialized and available, this method only
+     * performs volatile reads; the lock on this holder is only taken to
+     * lazily initialize the servlet and to handle its unavailability.</p>
+     *
+     * @return the servlet instance
+     * @throws ServletException if the servlet cannot be initialized
+     * @throws UnavailableException if the servlet is not available
+     */
+    public Servlet ensureInstance()
     throws ServletException, UnavailableException
     {
-        if (_class==null)
-            throw new UnavailableException("Servlet Not Initialized");
-        Servlet servlet=_servlet;
-        if (!isStarted())
-            throw new UnavailableException("Servlet not initialized", -1);
-        if (_unavailable!=0 || (!_initOnStartup && servlet==null))
-            servlet=getServlet();
-        if (servlet==null)
-            throw new UnavailableException("Could not instantiate "+_class);
-
-        return servlet;
+        Servlet servlet=_availableServlet;
+        if (servlet!=null && isStarted())
+            return servlet;
+
+        synchronized (this)
+        {
+            if (_class==null)
+                throw new UnavailableException("Servlet Not Initialized");
+            servlet=_servlet;
+            if (!isStarted())
+                throw new UnavailableException("Servlet not initialized", -1);
+            if (_unavailable!=0 || (!_initOnStartup && servlet==null))
+                servlet=getServlet();
+            if (servlet==null)
+                throw new UnavailableException("Could not instantiate "+_class);
+
+            // The servlet is initialized and available, publish it for the fast path.
+            if (_unavailable==0)
+                _availableServlet=servlet;
+            return servlet;
+        }
     }
 
     /* ------------------------------------------------------------ */
@@ -839,8 +866,11 @@ public class ServletHolder extends Holder<Servlet> implements UserIdentity.Scope
         }
         catch(UnavailableException e)
         {
-            makeUnavailable(e);
-            throw _unavailableEx;
+            synchronized (this)
+            {
+                makeUnavailable(e);
+                throw _unavailableEx;
+            }
         }
         finally
         {
@@ -20,13 +20,24 @@ package org.eclipse.jetty.servlet;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.EnumSet;
 
 import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 
 import org.eclipse.jetty.http.pathmap.MappedResource;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -672,4 +683,69 @@ public class ServletHandlerTest
     }
   
     
+
+    @Test
+    public void testFilterChainsCachedByMatchedMappings() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(server, "/");
+        ServletHandler handler = context.getServletHandler();
+        ServletHolder holder = context.addServlet(DefaultServlet.class, "/");
+
+        fh1.setHeldClass(TestFilter.class);
+        fm1.setPathSpec("/orders/*");
+        handler.addFilter(fh1);
+        handler.addFilterMapping(fm1);
+
+        fh2.setHeldClass(TestFilter.class);
+        fm2.setPathSpec("*.json");
+        handler.addFilter(fh2);
+        handler.addFilterMapping(fm2);
+
+        server.start();
+        try
+        {
+            Request request = new Request(null, null);
+            request.setDispatcherType(DispatcherType.REQUEST);
+
+            FilterChain chain = handler.getFilterChain(request, "/orders/1", holder);
+            assertNotNull(chain);
+            for (int i = 2; i < 1000; ++i)
+                assertSame(chain, handler.getFilterChain(request, "/orders/" + i, holder));
+
+            FilterChain jsonChain = handler.getFilterChain(request, "/orders/1.json", holder);
+            assertNotNull(jsonChain);
+            assertTrue(chain != jsonChain);
+            assertSame(jsonChain, handler.getFilterChain(request, "/orders/2.json", holder));
+            assertNotNull(handler.getFilterChain(request, "/items/1.json", holder));
+
+            assertNull(handler.getFilterChain(request, "/items/1", holder));
+
+            // One chain per distinct combination of matched filters, regardless of the number of paths.
+            assertEquals(3, handler._chainCache[FilterMapping.REQUEST].size());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    public static class TestFilter implements Filter
+    {
+        @Override
+        public void init(FilterConfig filterConfig) throws ServletException
+        {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+        {
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy()
+        {
+        }
+    }
 }
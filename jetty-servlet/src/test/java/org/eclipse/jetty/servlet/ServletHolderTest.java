@@ -18,11 +18,28 @@
 
 package org.eclipse.jetty.servlet;
 
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.UnavailableException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 public class ServletHolderTest {
 
@@ -52,4 +69,189 @@ public class ServletHolderTest {
         Assert.assertTrue(two.compareTo(three) < 0);
         Assert.assertTrue(one.compareTo(three) < 0);
     }
+
+    public static class CountingServlet extends HttpServlet
+    {
+        private static final AtomicInteger inits = new AtomicInteger();
+
+        @Override
+        public void init(ServletConfig config) throws ServletException
+        {
+            super.init(config);
+            inits.incrementAndGet();
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+        }
+    }
+
+    public static class UnavailableServlet extends HttpServlet
+    {
+        @Override
+        public void init(ServletConfig config) throws ServletException
+        {
+            throw new UnavailableException("test", 1);
+        }
+    }
+
+    @Test
+    public void testConcurrentLazyInitialization() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(server, "/");
+        ServletHolder holder = context.addServlet(CountingServlet.class, "/*");
+        CountingServlet.inits.set(0);
+        server.start();
+        try
+        {
+            int threads = 16;
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            CountDownLatch latch = new CountDownLatch(threads);
+            AtomicReference<Servlet> servlet = new AtomicReference<>();
+            AtomicInteger mismatches = new AtomicInteger();
+            for (int i = 0; i < threads; ++i)
+            {
+                new Thread(() ->
+                {
+                    try
+                    {
+                        barrier.await();
+                        Servlet instance = holder.ensureInstance();
+                        if (!servlet.compareAndSet(null, instance) && servlet.get() != instance)
+                            mismatches.incrementAndGet();
+                    }
+                    catch (Throwable x)
+                    {
+                        mismatches.incrementAndGet();
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }).start();
+            }
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, mismatches.get());
+            Assert.assertEquals(1, CountingServlet.inits.get());
+            Assert.assertSame(servlet.get(), holder.getServlet());
+        }
+        finally
+        {
+            server.stop();
+        }
+
+        // After stop the instance must not be returned.
+        try
+        {
+            holder.ensureInstance();
+            Assert.fail();
+        }
+        catch (UnavailableException expected)
+        {
+        }
+    }
+
+    @Test
+    public void testUnavailableServletIsNotCached() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(server, "/");
+        ServletHolder holder = context.addServlet(UnavailableServlet.class, "/*");
+        server.start();
+        try
+        {
+            for (int i = 0; i < 2; ++i)
+            {
+                try
+                {
+                    holder.ensureInstance();
+                    Assert.fail();
+                }
+                catch (UnavailableException expected)
+                {
+                }
+            }
+            Assert.assertFalse(holder.isAvailable());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Stress("Measures the throughput of ServletHolder.ensureInstance() with many threads")
+    @Test
+    public void testEnsureInstanceThroughput() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(server, "/");
+        ServletHolder holder = context.addServlet(CountingServlet.class, "/*");
+        server.start();
+        try
+        {
+            holder.ensureInstance();
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            for (int run = 0; run < 3; ++run)
+            {
+                // The synchronized variant reproduces the previous behavior of ensureInstance().
+                long locked = benchmark(threads, () ->
+                {
+                    synchronized (holder)
+                    {
+                        holder.ensureInstance();
+                    }
+                });
+                long unlocked = benchmark(threads, holder::ensureInstance);
+                System.err.printf("%d threads: synchronized %d ops/ms, volatile %d ops/ms%n", threads, locked, unlocked);
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private interface Dispatch
+    {
+        void dispatch() throws Exception;
+    }
+
+    private long benchmark(int threads, Dispatch dispatch) throws Exception
+    {
+        long duration = TimeUnit.SECONDS.toNanos(2);
+        LongAdder operations = new LongAdder();
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; ++i)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    barrier.await();
+                    long end = System.nanoTime() + duration;
+                    long count = 0;
+                    while (System.nanoTime() < end)
+                    {
+                        for (int j = 0; j < 1000; ++j)
+                            dispatch.dispatch();
+                        count += 1000;
+                    }
+                    operations.add(count);
+                }
+                catch (Throwable x)
+                {
+                    x.printStackTrace();
+                }
+                finally
+                {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        Assert.assertTrue(latch.await(duration * 10, TimeUnit.NANOSECONDS));
+        return operations.sum() / TimeUnit.NANOSECONDS.toMillis(duration);
+    }
 }
@@ -20,9 +20,11 @@ package org.eclipse.jetty.servlets;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -31,6 +33,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -38,14 +41,19 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.CacheDigest;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.PushBuilder;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.util.StringUtil;
@@ -71,6 +79,16 @@ import org.eclipse.jetty.util.log.Logger;
  * secondary resources are pushed to the client, unless the request carries
  * {@code If-xxx} header that hint that the client has the resources in its
  * cache.</p>
+ * <p>Secondary resources are not pushed if the client already has them:</p>
+ * <ul>
+ * <li>if they are present in a {@link CacheDigest cache digest} sent by the client
+ * in the {@code Cache-Digest} header, or maintained by this filter in the cookie
+ * named by the {@code cacheDigestCookie} init-param, which records the resources
+ * pushed to the client;</li>
+ * <li>if they have already been pushed on the same connection, when the
+ * {@code maxPushedPerConnection} init-param is set to the maximum number of
+ * pushed resources to remember per connection (by default this is disabled).</li>
+ * </ul>
  */
 @ManagedObject("Push cache based on the HTTP 'Referer' header")
 public class PushCacheFilter implements Filter
@@ -83,6 +101,15 @@ public class PushCacheFilter implements Filter
     private long _associatePeriod = 4000L;
     private int _maxAssociations = 16;
     private long _renew = System.nanoTime();
+    private String _cacheDigestCookie;
+    private int _cacheDigestCookieMaxAge = -1;
+    private int _cacheDigestSizeLog2 = 6;
+    private int _cacheDigestProbabilityLog2 = 7;
+    private int _maxPushedPerConnection;
+    private final ConcurrentMap<Connection, Set<String>> _pushedByConnection = new ConcurrentHashMap<>();
+    private final LongAdder _pushes = new LongAdder();
+    private final LongAdder _suppressedByDigest = new LongAdder();
+    private final LongAdder _suppressedByConnection = new LongAdder();
 
     @Override
     public void init(FilterConfig config) throws ServletException
@@ -104,6 +131,24 @@ public class PushCacheFilter implements Filter
             for (String p : StringUtil.csvSplit(ports))
                 _ports.add(Integer.parseInt(p));
 
+        _cacheDigestCookie = config.getInitParameter("cacheDigestCookie");
+
+        String cacheDigestCookieMaxAge = config.getInitParameter("cacheDigestCookieMaxAge");
+        if (cacheDigestCookieMaxAge != null)
+            _cacheDigestCookieMaxAge = Integer.parseInt(cacheDigestCookieMaxAge);
+
+        String cacheDigestSize = config.getInitParameter("cacheDigestSize");
+        if (cacheDigestSize != null)
+            _cacheDigestSizeLog2 = log2(Integer.parseInt(cacheDigestSize));
+
+        String cacheDigestProbability = config.getInitParameter("cacheDigestProbability");
+        if (cacheDigestProbability != null)
+            _cacheDigestProbabilityLog2 = log2(Integer.parseInt(cacheDigestProbability));
+
+        String maxPushedPerConnection = config.getInitParameter("maxPushedPerConnection");
+        if (maxPushedPerConnection != null)
+            _maxPushedPerConnection = Integer.parseInt(maxPushedPerConnection);
+
         // Expose for JMX.
         config.getServletContext().setAttribute(config.getFilterName(), this);
 
@@ -131,13 +176,18 @@ public class PushCacheFilter implements Filter
         HttpFields fields = jettyRequest.getHttpFields();
         boolean conditional = false;
         String referrer = null;
+        List<CacheDigest> digests = null;
         loop:
         for (int i = 0; i < fields.size(); i++)
         {
             HttpField field = fields.getField(i);
             HttpHeader header = field.getHeader();
             if (header == null)
+            {
+                if ("Cache-Digest".equalsIgnoreCase(field.getName()))
+                    digests = parseCacheDigests(field.getValue(), digests);
                 continue;
+            }
 
             switch (header)
             {
@@ -264,6 +314,23 @@ public class PushCacheFilter implements Filter
         {
             PushBuilder pushBuilder = jettyRequest.getPushBuilder();
 
+            String origin = origin(request);
+            CacheDigest cookieDigest = null;
+            if (_cacheDigestCookie != null)
+            {
+                cookieDigest = cookieCacheDigest(request);
+                if (cookieDigest != null)
+                {
+                    if (digests == null)
+                        digests = new ArrayList<>(1);
+                    digests.add(cookieDigest);
+                }
+                if (cookieDigest == null || cookieDigest.isFull())
+                    cookieDigest = new CacheDigest(_cacheDigestSizeLog2, _cacheDigestProbabilityLog2);
+            }
+            Set<String> pushed = pushedResources(jettyRequest);
+            boolean digestChanged = false;
+
             // Breadth-first push of associated resources.
             Queue<PrimaryResource> queue = new ArrayDeque<>();
             queue.offer(primaryResource);
@@ -276,20 +343,205 @@ public class PushCacheFilter implements Filter
                     if (child != null)
                         queue.offer(child);
 
+                    String childURL = origin + childPath;
+                    if (inCacheDigests(digests, childURL))
+                    {
+                        _suppressedByDigest.increment();
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Not pushing {} for {}, in client cache digest", childPath, path);
+                        continue;
+                    }
+
+                    if (pushed != null && pushed.contains(childPath))
+                    {
+                        _suppressedByConnection.increment();
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Not pushing {} for {}, already pushed on this connection", childPath, path);
+                        continue;
+                    }
+
                     if (LOG.isDebugEnabled())
                         LOG.debug("Pushing {} for {}", childPath, path);
                     pushBuilder.path(childPath).push();
+                    _pushes.increment();
+
+                    // Not strictly concurrent-safe, just best effort to limit memory.
+                    if (pushed != null && pushed.size() < _maxPushedPerConnection)
+                        pushed.add(childPath);
+                    if (cookieDigest != null && !cookieDigest.isFull())
+                        digestChanged |= cookieDigest.add(childURL);
                 }
             }
+
+            if (digestChanged)
+            {
+                Cookie cookie = new Cookie(_cacheDigestCookie, cookieDigest.asString());
+                String contextPath = request.getContextPath();
+                cookie.setPath(contextPath.isEmpty() ? "/" : contextPath);
+                cookie.setMaxAge(_cacheDigestCookieMaxAge);
+                cookie.setHttpOnly(true);
+                cookie.setSecure(request.isSecure());
+                ((HttpServletResponse)resp).addCookie(cookie);
+            }
         }
 
         chain.doFilter(request, resp);
     }
 
+    private List<CacheDigest> parseCacheDigests(String value, List<CacheDigest> digests)
+    {
+        for (String element : StringUtil.csvSplit(value))
+        {
+            String[] parts = element.split(";");
+            boolean usable = true;
+            for (int i = 1; i < parts.length; ++i)
+            {
+                // Digests of stale responses or keyed by validators do not tell
+                // whether a fresh response is cached, so they are ignored.
+                String flag = parts[i].trim();
+                if ("stale".equalsIgnoreCase(flag) || "validators".equalsIgnoreCase(flag))
+                    usable = false;
+            }
+            if (!usable)
+                continue;
+            try
+            {
+                if (digests == null)
+                    digests = new ArrayList<>(1);
+                digests.add(CacheDigest.parse(parts[0]));
+            }
+            catch (IllegalArgumentException x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Invalid cache digest " + element, x);
+            }
+        }
+        return digests;
+    }
+
+    private CacheDigest cookieCacheDigest(HttpServletRequest request)
+    {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null)
+            return null;
+        for (Cookie cookie : cookies)
+        {
+            if (_cacheDigestCookie.equals(cookie.getName()))
+            {
+                try
+                {
+                    CacheDigest digest = CacheDigest.parse(cookie.getValue());
+                    if (digest.getNLog2() == _cacheDigestSizeLog2 && digest.getPLog2() == _cacheDigestProbabilityLog2)
+                        return digest;
+                }
+                catch (IllegalArgumentException x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Invalid cache digest cookie " + cookie.getValue(), x);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean inCacheDigests(List<CacheDigest> digests, String url)
+    {
+        if (digests == null)
+            return false;
+        for (CacheDigest digest : digests)
+        {
+            if (digest.contains(url))
+                return true;
+        }
+        return false;
+    }
+
+    private Set<String> pushedResources(Request jettyRequest)
+    {
+        if (_maxPushedPerConnection <= 0)
+            return null;
+        EndPoint endPoint = jettyRequest.getHttpChannel().getEndPoint();
+        Connection connection = endPoint == null ? null : endPoint.getConnection();
+        if (connection == null)
+            return null;
+
+        Set<String> pushed = _pushedByConnection.get(connection);
+        if (pushed == null)
+        {
+            Set<String> set = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            pushed = _pushedByConnection.putIfAbsent(connection, set);
+            if (pushed == null)
+            {
+                pushed = set;
+                connection.addListener(new Connection.Listener()
+                {
+                    @Override
+                    public void onOpened(Connection connection)
+                    {
+                    }
+
+                    @Override
+                    public void onClosed(Connection connection)
+                    {
+                        _pushedByConnection.remove(connection);
+                    }
+                });
+                // The connection may have been closed before the listener was added.
+                if (!endPoint.isOpen())
+                    _pushedByConnection.remove(connection);
+            }
+        }
+        return pushed;
+    }
+
+    private static String origin(HttpServletRequest request)
+    {
+        String scheme = request.getScheme();
+        int port = request.getServerPort();
+        StringBuilder origin = new StringBuilder(scheme).append("://").append(request.getServerName());
+        if (port > 0 && !("https".equalsIgnoreCase(scheme) ? port == 443 : port == 80))
+            origin.append(':').append(port);
+        return origin.toString();
+    }
+
+    private static int log2(int value)
+    {
+        if (value <= 0 || Integer.bitCount(value) != 1)
+            throw new IllegalArgumentException("Not a power of 2: " + value);
+        return Integer.numberOfTrailingZeros(value);
+    }
+
     @Override
     public void destroy()
     {
         clearPushCache();
+        _pushedByConnection.clear();
+    }
+
+    @ManagedAttribute("The number of pushed resources")
+    public long getPushes()
+    {
+        return _pushes.sum();
+    }
+
+    @ManagedAttribute("The number of pushes suppressed because the resource is in the client cache digest")
+    public long getPushesSuppressedByCacheDigest()
+    {
+        return _suppressedByDigest.sum();
+    }
+
+    @ManagedAttribute("The number of pushes suppressed because the resource was already pushed on the connection")
+    public long getPushesSuppressedByConnection()
+    {
+        return _suppressedByConnection.sum();
+    }
+
+    @ManagedOperation(value = "Resets the push statistics", impact = "ACTION")
+    public void resetPushStatistics()
+    {
+        _pushes.reset();
+        _suppressedByDigest.reset();
+        _suppressedByConnection.reset();
     }
 
     @ManagedAttribute("The push cache contents")
@@ -20,7 +20,9 @@ package org.eclipse.jetty.servlets;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -131,7 +133,9 @@ public class PushSessionCacheFilter implements Filter
         if (LOG.isDebugEnabled())
             LOG.debug("{} {} push={}", baseRequest.getMethod(), uri, baseRequest.isPush());
 
-        HttpSession session = baseRequest.getSession(true);
+        // Pushed requests are not associated, so they do not need a session.
+        boolean push = baseRequest.isPush();
+        HttpSession session = baseRequest.getSession(!push);
 
         // find the target for this resource
         Target target = _cache.get(uri);
@@ -144,36 +148,47 @@ public class PushSessionCacheFilter implements Filter
         request.setAttribute(TARGET_ATTR, target);
 
         // Set the timestamp for this resource in this session
-        ConcurrentHashMap<String, Long> timestamps = (ConcurrentHashMap<String, Long>)session.getAttribute(TIMESTAMP_ATTR);
-        if (timestamps == null)
+        if (session != null)
         {
-            timestamps = new ConcurrentHashMap<>();
-            session.setAttribute(TIMESTAMP_ATTR, timestamps);
+            ConcurrentHashMap<String, Long> timestamps = (ConcurrentHashMap<String, Long>)session.getAttribute(TIMESTAMP_ATTR);
+            if (timestamps == null)
+            {
+                timestamps = new ConcurrentHashMap<>();
+                session.setAttribute(TIMESTAMP_ATTR, timestamps);
+            }
+            timestamps.put(uri, System.currentTimeMillis());
         }
-        timestamps.put(uri, System.currentTimeMillis());
 
         // push any associated resources
-        if (baseRequest.isPushSupported() && !baseRequest.isPush() && !target._associated.isEmpty())
+        if (!push && baseRequest.isPushSupported() && !target._associated.isEmpty())
         {
-            // Breadth-first push of associated resources.
+            PushBuilder builder = baseRequest.getPushBuilder();
+            builder.addHeader("X-Pusher", PushSessionCacheFilter.class.toString());
+
+            // Breadth-first push of associated resources, each pushed only once,
+            // with all the push promises sent together at the end.
+            builder.beginBatch();
+            Set<String> pushed = new HashSet<>();
+            pushed.add(uri);
             Queue<Target> queue = new ArrayDeque<>();
             queue.offer(target);
             while (!queue.isEmpty())
             {
                 Target parent = queue.poll();
-                PushBuilder builder = baseRequest.getPushBuilder();
-                builder.addHeader("X-Pusher", PushSessionCacheFilter.class.toString());
                 for (Target child : parent._associated.values())
                 {
+                    String path = child._path;
+                    if (!pushed.add(path))
+                        continue;
                     queue.offer(child);
 
-                    String path = child._path;
                     if (LOG.isDebugEnabled())
                         LOG.debug("PUSH {} <- {}", path, uri);
 
                     builder.path(path).etag(child._etag).lastModified(child._lastModified).push();
                 }
             }
+            builder.endBatch();
         }
 
         chain.doFilter(request, response);
@@ -65,6 +65,7 @@ public class UnixSocketConnector extends AbstractConnector
     private volatile UnixServerSocketChannel _acceptChannel;
     private volatile int _acceptQueueSize = 0;
     private volatile boolean _reuseAddress = true;
+    private volatile int _writeAggregationSize = 16 * 1024;
 
 
     /* ------------------------------------------------------------ */
@@ -91,6 +92,43 @@ public class UnixSocketConnector extends AbstractConnector
         this(server,null,null,null,selectors,new HttpConnectionFactory());
     }
     
+    /* ------------------------------------------------------------ */
+    /** HTTP Server Connection.
+     * <p>Construct a ServerConnector with a private instance of {@link HttpConnectionFactory} as the only factory.</p>
+     * @param server The {@link Server} this connector will accept connection for. 
+     * @param acceptors 
+     *          the number of acceptor threads to use, or 0 to accept connections in the selectors.
+     *          The jnr accept call cannot be interrupted, so the acceptors are woken up
+     *          with a connection to the socket when this connector is stopped.
+     * @param selectors
+     *          the number of selector threads, or &lt;=0 for a default value. Selectors notice and schedule established connection that can make IO progress.
+     */
+    public UnixSocketConnector(
+        @Name("server") Server server,
+        @Name("acceptors") int acceptors,
+        @Name("selectors") int selectors)
+    {
+        this(server,null,null,null,acceptors,selectors,new HttpConnectionFactory());
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Generic Server Connection.
+     * @param server The {@link Server} this connector will accept connection for. 
+     * @param acceptors 
+     *          the number of acceptor threads to use, or 0 to accept connections in the selectors.
+     * @param selectors
+     *          the number of selector threads, or &lt;=0 for a default value. Selectors notice and schedule established connection that can make IO progress.
+     * @param factories Zero or more {@link ConnectionFactory} instances used to create and configure connections.
+     */
+    public UnixSocketConnector(
+        @Name("server") Server server,
+        @Name("acceptors") int acceptors,
+        @Name("selectors") int selectors,
+        @Name("factories") ConnectionFactory... factories)
+    {
+        this(server,null,null,null,acceptors,selectors,factories);
+    }
+
     /* ------------------------------------------------------------ */
     /** HTTP Server Connection.
      * <p>Construct a ServerConnector with a private instance of {@link HttpConnectionFactory} as the only factory.</p>
@@ -189,7 +227,36 @@ public class UnixSocketConnector extends AbstractConnector
         @Name("selectors") int selectors,
         @Name("factories") ConnectionFactory... factories)
     {
-        super(server,executor,scheduler,bufferPool,0,factories);
+        this(server,executor,scheduler,bufferPool,0,selectors,factories);
+    }
+
+    /** Generic Server Connection.
+     * @param server    
+     *          The server this connector will be accept connection for.  
+     * @param executor  
+     *          An executor used to run tasks for handling requests, acceptors and selectors.
+     *          If null then use the servers executor
+     * @param scheduler 
+     *          A scheduler used to schedule timeouts. If null then use the servers scheduler
+     * @param bufferPool
+     *          A ByteBuffer pool used to allocate buffers.  If null then create a private pool with default configuration.
+     * @param acceptors 
+     *          the number of acceptor threads to use, or 0 to accept connections in the selectors.
+     * @param selectors
+     *          the number of selector threads, or &lt;=0 for a default value(1). Selectors notice and schedule established connection that can make IO progress.
+     * @param factories 
+     *          Zero or more {@link ConnectionFactory} instances used to create and configure connections.
+     */
+    public UnixSocketConnector(
+        @Name("server") Server server,
+        @Name("executor") Executor executor,
+        @Name("scheduler") Scheduler scheduler,
+        @Name("bufferPool") ByteBufferPool bufferPool,
+        @Name("acceptors") int acceptors,
+        @Name("selectors") int selectors,
+        @Name("factories") ConnectionFactory... factories)
+    {
+        super(server,executor,scheduler,bufferPool,acceptors,factories);
         _manager = newSelectorManager(getExecutor(), getScheduler(),
             selectors>0?selectors:1);
         addBean(_manager, true);
@@ -212,6 +279,35 @@ public class UnixSocketConnector extends AbstractConnector
         return new UnixSocketConnectorManager(executor, scheduler, selectors);
     }
 
+    @ManagedAttribute("The number of selectors")
+    public int getSelectors()
+    {
+        return _manager.getSelectorCount();
+    }
+
+    /**
+     * @return the maximum number of bytes of multiple buffers that are copied into
+     * a single buffer to be written with one system call
+     */
+    @ManagedAttribute("The maximum number of bytes aggregated in a single write")
+    public int getWriteAggregationSize()
+    {
+        return _writeAggregationSize;
+    }
+
+    /**
+     * <p>Sets the maximum number of bytes of multiple buffers (typically the response
+     * headers and the first chunk of content) that are copied into a single buffer
+     * to be written with one system call, when the native channel does not support
+     * gathering writes.</p>
+     *
+     * @param writeAggregationSize the maximum number of bytes aggregated in a single write, or 0 to not aggregate writes
+     */
+    public void setWriteAggregationSize(int writeAggregationSize)
+    {
+        _writeAggregationSize = writeAggregationSize;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -287,16 +383,49 @@ public class UnixSocketConnector extends AbstractConnector
     @Override
     public void accept(int acceptorID) throws IOException
     {
-        LOG.warn("Blocking UnixSocket accept used.  Cannot be interrupted!");
         UnixServerSocketChannel serverChannel = _acceptChannel;
         if (serverChannel != null && serverChannel.isOpen())
         {
-            LOG.debug("accept {}",serverChannel);
+            if (LOG.isDebugEnabled())
+                LOG.debug("accept {}",serverChannel);
             UnixSocketChannel channel = serverChannel.accept();
-            LOG.debug("accepted {}",channel);
+            if (LOG.isDebugEnabled())
+                LOG.debug("accepted {}",channel);
+            if (channel == null)
+                return;
+            if (!isRunning())
+            {
+                // Woken up by interruptAcceptors().
+                channel.close();
+                return;
+            }
             accepted(channel);
         }
     }
+
+    @Override
+    protected void interruptAcceptors()
+    {
+        super.interruptAcceptors();
+
+        // The blocking native accept cannot be interrupted,
+        // so connect once for each acceptor to wake it up.
+        if (isOpen())
+        {
+            for (int i = 0; i < getAcceptors(); ++i)
+            {
+                try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(new File(_unixSocket))))
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("woke up acceptor with {}",channel);
+                }
+                catch (IOException x)
+                {
+                    LOG.ignore(x);
+                }
+            }
+        }
+    }
     
     protected void accepted(UnixSocketChannel channel) throws IOException
     {
@@ -317,7 +446,7 @@ public class UnixSocketConnector extends AbstractConnector
 
     protected UnixSocketEndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key) throws IOException
     {
-        return new UnixSocketEndPoint((UnixSocketChannel)channel,selector,key,getScheduler());
+        return new UnixSocketEndPoint((UnixSocketChannel)channel,selector,key,getScheduler(),getByteBufferPool(),getWriteAggregationSize());
     }
 
 
@@ -20,10 +20,15 @@ package org.eclipse.jetty.unixsocket;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ChannelEndPoint;
+import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -36,11 +41,31 @@ public class UnixSocketEndPoint extends ChannelEndPoint
     private static final Logger LOG = Log.getLogger(UnixSocketEndPoint.class);
 
     private final UnixSocketChannel _channel;
+    private final ByteBufferPool _bufferPool;
+    private final int _aggregationSize;
     
     public UnixSocketEndPoint(UnixSocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
+    {
+        this(channel,selector,key,scheduler,null,0);
+    }
+
+    /**
+     * @param channel the channel
+     * @param selector the selector
+     * @param key the selection key
+     * @param scheduler the scheduler for idle timeouts
+     * @param bufferPool the pool of the buffers used to aggregate writes, or null to not aggregate writes
+     * @param aggregationSize the maximum number of bytes of multiple buffers that are aggregated in a single
+     * write when the channel does not support gathering writes, or 0 to not aggregate writes
+     */
+    public UnixSocketEndPoint(UnixSocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler, ByteBufferPool bufferPool, int aggregationSize)
     {
         super(channel,selector,key,scheduler);
         _channel=channel;
+        // Aggregation is only needed if the native channel cannot write multiple buffers in one call.
+        boolean gathering=channel instanceof GatheringByteChannel;
+        _bufferPool=gathering?null:bufferPool;
+        _aggregationSize=_bufferPool==null?0:aggregationSize;
     }
 
     @Override
@@ -55,7 +80,62 @@ public class UnixSocketEndPoint extends ChannelEndPoint
         return null;
     }
 
-    
+    @Override
+    public boolean flush(ByteBuffer... buffers) throws IOException
+    {
+        if (_aggregationSize<=0 || buffers.length<2)
+            return super.flush(buffers);
+
+        long remaining=0;
+        for (ByteBuffer b : buffers)
+            remaining+=b.remaining();
+        if (remaining>_aggregationSize)
+            return super.flush(buffers);
+
+        // Copy the buffers into one so that they are written with a single
+        // system call, then consume from the buffers what has been written.
+        ByteBuffer aggregate=_bufferPool.acquire((int)remaining,true);
+        try
+        {
+            BufferUtil.clearToFill(aggregate);
+            for (ByteBuffer b : buffers)
+                aggregate.put(b.slice());
+            BufferUtil.flipToFlush(aggregate,0);
+
+            int flushed;
+            try
+            {
+                flushed=_channel.write(aggregate);
+            }
+            catch (IOException e)
+            {
+                throw new EofException(e);
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("flushed {} aggregated {}",flushed,this);
+
+            if (flushed>0)
+            {
+                notIdle();
+                for (ByteBuffer b : buffers)
+                {
+                    int consumed=Math.min(flushed,b.remaining());
+                    b.position(b.position()+consumed);
+                    flushed-=consumed;
+                }
+            }
+        }
+        finally
+        {
+            _bufferPool.release(aggregate);
+        }
+
+        for (ByteBuffer b : buffers)
+            if (!BufferUtil.isEmpty(b))
+                return false;
+        return true;
+    }
+
     @Override
     protected void doShutdownOutput()
     {
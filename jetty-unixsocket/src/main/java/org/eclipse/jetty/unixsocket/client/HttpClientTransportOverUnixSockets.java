@@ -0,0 +1,80 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.unixsocket.client;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>The HTTP/1.1 client transport that connects to a server listening on a
+ * Unix-domain socket, such as a {@link org.eclipse.jetty.unixsocket.UnixSocketConnector}.</p>
+ * <p>All the connections are opened to the same Unix-domain socket, whatever the
+ * host and port of the request URI; the request URI host is still used for the
+ * {@code Host} header and to select the destination and its connection pool.</p>
+ */
+@ManagedObject("The HTTP/1.1 client transport over Unix-domain sockets")
+public class HttpClientTransportOverUnixSockets extends HttpClientTransportOverHTTP
+{
+    private final UnixSocketClientSupport support;
+
+    public HttpClientTransportOverUnixSockets(String unixSocket)
+    {
+        this(1, unixSocket);
+    }
+
+    public HttpClientTransportOverUnixSockets(int selectors, String unixSocket)
+    {
+        super(selectors);
+        this.support = new UnixSocketClientSupport(unixSocket);
+    }
+
+    @ManagedAttribute(value = "The Unix-domain socket path", readonly = true)
+    public String getUnixSocket()
+    {
+        return support.getUnixSocket();
+    }
+
+    /**
+     * <p>Connects to the Unix-domain socket, ignoring the given address.</p>
+     * <p>The connect is blocking, so it is performed by a thread of the client executor.</p>
+     */
+    @Override
+    public void connect(InetSocketAddress address, Map<String, Object> context)
+    {
+        support.connect(getHttpClient(), getSelectorManager(), context);
+    }
+
+    @Override
+    protected SelectorManager newSelectorManager(HttpClient client)
+    {
+        return support.newSelectorManager(client, getSelectors());
+    }
+
+    @Override
+    public String toString()
+    {
+        return support.toString(this);
+    }
+}
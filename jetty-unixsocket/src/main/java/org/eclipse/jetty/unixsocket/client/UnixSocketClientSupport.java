@@ -0,0 +1,167 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.unixsocket.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Map;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.unixsocket.UnixSocketEndPoint;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+import jnr.enxio.channels.NativeSelectorProvider;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+/**
+ * <p>The Unix-domain socket support shared by the client transports of this package:
+ * connecting to the Unix-domain socket and the {@link SelectorManager} of its channels.</p>
+ */
+class UnixSocketClientSupport
+{
+    private static final Logger LOG = Log.getLogger(UnixSocketClientSupport.class);
+
+    private final String unixSocket;
+
+    UnixSocketClientSupport(String unixSocket)
+    {
+        this.unixSocket = unixSocket;
+    }
+
+    String getUnixSocket()
+    {
+        return unixSocket;
+    }
+
+    /**
+     * <p>Connects to the Unix-domain socket and registers the channel with the selector manager.</p>
+     * <p>The connect to a Unix-domain socket is blocking, so it is performed by a thread of the
+     * client executor rather than by the thread that sends the request, and the channel is then
+     * handed to the selector as already connected.</p>
+     *
+     * @param client the client of the transport
+     * @param selectorManager the selector manager of the transport
+     * @param context the connection context
+     */
+    void connect(HttpClient client, SelectorManager selectorManager, Map<String, Object> context)
+    {
+        try
+        {
+            client.getExecutor().execute(() -> connect(selectorManager, context));
+        }
+        catch (Throwable x)
+        {
+            connectFailed(context, x);
+        }
+    }
+
+    private void connect(SelectorManager selectorManager, Map<String, Object> context)
+    {
+        UnixSocketChannel channel = null;
+        try
+        {
+            channel = UnixSocketChannel.open(new UnixSocketAddress(new File(unixSocket)));
+            channel.configureBlocking(false);
+            selectorManager.accept(channel, context);
+        }
+        catch (Throwable x)
+        {
+            IO.close(channel);
+            connectFailed(context, x);
+        }
+    }
+
+    private static void connectFailed(Map<String, Object> context, Throwable x)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Could not connect to {}", context.get(HttpClientTransport.HTTP_DESTINATION_CONTEXT_KEY));
+        @SuppressWarnings("unchecked")
+        Promise<Connection> promise = (Promise<Connection>)context.get(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY);
+        promise.failed(x);
+    }
+
+    SelectorManager newSelectorManager(HttpClient client, int selectors)
+    {
+        return new UnixSocketSelectorManager(client, selectors);
+    }
+
+    /**
+     * @param transport the transport
+     * @return the string representation of the transport, with the Unix-domain socket path
+     */
+    String toString(Object transport)
+    {
+        return String.format("%s@%x{%s}", transport.getClass().getName(), transport.hashCode(), unixSocket);
+    }
+
+    private static class UnixSocketSelectorManager extends SelectorManager
+    {
+        private final HttpClient client;
+
+        private UnixSocketSelectorManager(HttpClient client, int selectors)
+        {
+            super(client.getExecutor(), client.getScheduler(), selectors);
+            this.client = client;
+        }
+
+        @Override
+        protected Selector newSelector() throws IOException
+        {
+            return NativeSelectorProvider.getInstance().openSelector();
+        }
+
+        @Override
+        protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+        {
+            UnixSocketEndPoint endPoint = new UnixSocketEndPoint((UnixSocketChannel)channel, selector, key, getScheduler());
+            endPoint.setIdleTimeout(client.getIdleTimeout());
+            return endPoint;
+        }
+
+        @Override
+        public org.eclipse.jetty.io.Connection newConnection(SelectableChannel channel, EndPoint endPoint, Object attachment) throws IOException
+        {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> context = (Map<String, Object>)attachment;
+            HttpDestination destination = (HttpDestination)context.get(HttpClientTransport.HTTP_DESTINATION_CONTEXT_KEY);
+            return destination.getClientConnectionFactory().newConnection(endPoint, context);
+        }
+
+        @Override
+        protected void connectionFailed(SelectableChannel channel, Throwable x, Object attachment)
+        {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> context = (Map<String, Object>)attachment;
+            connectFailed(context, x);
+        }
+    }
+}
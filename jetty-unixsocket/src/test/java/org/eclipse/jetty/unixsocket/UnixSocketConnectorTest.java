@@ -0,0 +1,250 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.unixsocket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.OS;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.unixsocket.client.HttpClientTransportOverUnixSockets;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UnixSocketConnectorTest
+{
+    private Path unixSocket;
+    private Server server;
+    private HttpClient client;
+
+    @Before
+    public void prepare() throws Exception
+    {
+        Assume.assumeFalse(OS.IS_WINDOWS);
+        unixSocket = Files.createTempFile("jetty", ".sock");
+        Files.delete(unixSocket);
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        client = null;
+        if (server != null)
+            server.stop();
+        server = null;
+        if (unixSocket != null)
+            Files.deleteIfExists(unixSocket);
+    }
+
+    private ConnectionStatistics startServer(AbstractConnector connector, int contentLength) throws Exception
+    {
+        server = connector.getServer();
+        ConnectionStatistics statistics = new ConnectionStatistics();
+        connector.addBean(statistics);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                // Write the content in small pieces so that headers
+                // and chunks are flushed together in multiple buffers.
+                ServletOutputStream output = response.getOutputStream();
+                byte[] chunk = new byte[512];
+                for (int written = 0; written < contentLength; written += chunk.length)
+                {
+                    int length = Math.min(chunk.length, contentLength - written);
+                    Arrays.fill(chunk, 0, length, (byte)('a' + (written / chunk.length) % 26));
+                    output.write(chunk, 0, length);
+                    output.flush();
+                }
+            }
+        });
+        server.start();
+        return statistics;
+    }
+
+    private UnixSocketConnector newUnixSocketConnector(int acceptors)
+    {
+        UnixSocketConnector connector = new UnixSocketConnector(new Server(), acceptors, 1);
+        connector.setUnixSocket(unixSocket.toString());
+        return connector;
+    }
+
+    private void startClient(HttpClientTransport transport) throws Exception
+    {
+        client = new HttpClient(transport, null);
+        client.start();
+    }
+
+    private static byte[] expectedContent(int contentLength)
+    {
+        byte[] content = new byte[contentLength];
+        for (int i = 0; i < contentLength; ++i)
+            content[i] = (byte)('a' + (i / 512) % 26);
+        return content;
+    }
+
+    @Test
+    public void testMultipleAcceptors() throws Exception
+    {
+        UnixSocketConnector connector = newUnixSocketConnector(2);
+        ConnectionStatistics statistics = startServer(connector, 1024);
+        startClient(new HttpClientTransportOverUnixSockets(unixSocket.toString()));
+
+        int requests = 10;
+        for (int i = 0; i < requests; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", 8080)
+                    .header(HttpHeader.CONNECTION, HttpHeaderValue.CLOSE.asString())
+                    .timeout(5, TimeUnit.SECONDS)
+                    .send();
+            Assert.assertEquals(200, response.getStatus());
+            Assert.assertArrayEquals(expectedContent(1024), response.getContent());
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (statistics.getConnectionsTotal() < requests && System.nanoTime() < end)
+            Thread.sleep(10);
+        Assert.assertEquals(requests, statistics.getConnectionsTotal());
+        Assert.assertTrue(statistics.getSentBytes() > 0);
+        Assert.assertTrue(statistics.getReceivedBytes() > 0);
+
+        // The acceptors blocked in the native accept must not prevent the stop.
+        long begin = System.nanoTime();
+        server.stop();
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) < connector.getStopTimeout());
+        Assert.assertFalse(connector.isOpen());
+    }
+
+    @Test
+    public void testAggregatedWrites() throws Exception
+    {
+        UnixSocketConnector connector = newUnixSocketConnector(0);
+        int contentLength = 3 * connector.getWriteAggregationSize() + 17;
+        startServer(connector, contentLength);
+        startClient(new HttpClientTransportOverUnixSockets(unixSocket.toString()));
+
+        for (int i = 0; i < 5; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", 8080)
+                    .timeout(5, TimeUnit.SECONDS)
+                    .send();
+            Assert.assertEquals(200, response.getStatus());
+            Assert.assertArrayEquals(expectedContent(contentLength), response.getContent());
+        }
+    }
+
+    @Stress("Compares UnixSocketConnector and ServerConnector behind a reverse proxy stand-in")
+    @Test
+    public void testThroughputVersusServerConnector() throws Exception
+    {
+        // The client plays the role of a reverse proxy in front of the server:
+        // a small pool of persistent upstream connections, or a new upstream
+        // connection per request to measure the accept path.
+        int requests = 50_000;
+        for (int run = 0; run < 3; ++run)
+        {
+            for (boolean persistent : new boolean[]{true, false})
+            {
+                benchmark("tcp       ", persistent, requests, null);
+                benchmark("unix 0 acc", persistent, requests, 0);
+                benchmark("unix 2 acc", persistent, requests, 2);
+            }
+        }
+    }
+
+    private void benchmark(String name, boolean persistent, int requests, Integer acceptors) throws Exception
+    {
+        HttpClientTransport transport;
+        AbstractConnector connector;
+        int port;
+        if (acceptors == null)
+        {
+            ServerConnector serverConnector = new ServerConnector(new Server(), 1, 1);
+            connector = serverConnector;
+            transport = new HttpClientTransportOverHTTP(1);
+        }
+        else
+        {
+            connector = newUnixSocketConnector(acceptors);
+            transport = new HttpClientTransportOverUnixSockets(1, unixSocket.toString());
+        }
+        ConnectionStatistics statistics = startServer(connector, 1024);
+        port = connector instanceof ServerConnector ? ((ServerConnector)connector).getLocalPort() : 8080;
+        startClient(transport);
+        client.setMaxConnectionsPerDestination(8);
+        client.setMaxRequestsQueuedPerDestination(requests);
+
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(requests);
+        long begin = System.nanoTime();
+        for (int i = 0; i < requests; ++i)
+        {
+            Request request = client.newRequest("localhost", port);
+            if (!persistent)
+                request.header(HttpHeader.CONNECTION, HttpHeaderValue.CLOSE.asString());
+            request.send(result ->
+            {
+                if (result.isFailed())
+                    failures.incrementAndGet();
+                latch.countDown();
+            });
+        }
+        Assert.assertTrue(latch.await(120, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - begin;
+        Assert.assertEquals(0, failures.get());
+        System.err.printf("%s %s: %d requests/s, %d connections%n",
+                name, persistent ? "persistent" : "close     ",
+                requests * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                statistics.getConnectionsTotal());
+
+        dispose();
+        unixSocket = Files.createTempFile("jetty", ".sock");
+        Files.delete(unixSocket);
+    }
+}
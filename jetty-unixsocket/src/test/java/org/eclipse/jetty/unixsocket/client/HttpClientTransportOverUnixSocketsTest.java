@@ -0,0 +1,214 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.unixsocket.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.fcgi.client.http.HttpClientTransportOverFCGI;
+import org.eclipse.jetty.fcgi.server.ServerFCGIConnectionFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.OS;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientTransportOverUnixSocketsTest
+{
+    private static final byte[] CONTENT = new byte[1024];
+
+    private Path unixSocket;
+    private Server server;
+    private HttpClient client;
+
+    @Before
+    public void prepare() throws Exception
+    {
+        Assume.assumeFalse(OS.IS_WINDOWS);
+        unixSocket = Files.createTempFile("jetty", ".sock");
+        Files.delete(unixSocket);
+    }
+
+    private void startServer(Connector connector) throws Exception
+    {
+        server = connector.getServer();
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLength(CONTENT.length);
+                response.getOutputStream().write(CONTENT);
+            }
+        });
+        server.start();
+    }
+
+    private UnixSocketConnector newUnixSocketConnector(boolean fastCGI)
+    {
+        Server server = new Server();
+        HttpConfiguration configuration = new HttpConfiguration();
+        UnixSocketConnector connector = new UnixSocketConnector(server, fastCGI ? new ServerFCGIConnectionFactory(configuration) : new HttpConnectionFactory(configuration));
+        connector.setUnixSocket(unixSocket.toString());
+        return connector;
+    }
+
+    private void startClient(HttpClientTransport transport) throws Exception
+    {
+        client = new HttpClient(transport, null);
+        client.start();
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+        if (unixSocket != null)
+            Files.deleteIfExists(unixSocket);
+    }
+
+    @Test
+    public void testHTTP() throws Exception
+    {
+        startServer(newUnixSocketConnector(false));
+        startClient(new HttpClientTransportOverUnixSockets(unixSocket.toString()));
+
+        ContentResponse response = client.newRequest("localhost", 8080)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertArrayEquals(CONTENT, response.getContent());
+    }
+
+    @Test
+    public void testFastCGIPooled() throws Exception
+    {
+        testFastCGI(false);
+    }
+
+    @Test
+    public void testFastCGIMultiplexed() throws Exception
+    {
+        testFastCGI(true);
+    }
+
+    private void testFastCGI(boolean multiplexed) throws Exception
+    {
+        startServer(newUnixSocketConnector(true));
+        startClient(new HttpClientTransportOverFCGIUnixSockets(1, multiplexed, "", unixSocket.toString()));
+        client.setMaxConnectionsPerDestination(2);
+
+        int requests = 20;
+        CountDownLatch latch = new CountDownLatch(requests);
+        for (int i = 0; i < requests; ++i)
+        {
+            client.newRequest("localhost", 9000)
+                    .path("/index.php")
+                    .send(result ->
+                    {
+                        if (result.isSucceeded() && result.getResponse().getStatus() == 200)
+                            latch.countDown();
+                    });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Stress("Compares the throughput of FastCGI requests over a Unix-domain socket and over TCP loopback")
+    @Test
+    public void testFastCGIThroughput() throws Exception
+    {
+        int requests = 50_000;
+        for (int run = 0; run < 3; ++run)
+        {
+            for (boolean unix : new boolean[]{false, true})
+            {
+                HttpClientTransport transport;
+                int port;
+                if (unix)
+                {
+                    startServer(newUnixSocketConnector(true));
+                    transport = new HttpClientTransportOverFCGIUnixSockets(1, false, "", unixSocket.toString());
+                    port = 9000;
+                }
+                else
+                {
+                    Server server = new Server();
+                    ServerConnector connector = new ServerConnector(server, new ServerFCGIConnectionFactory(new HttpConfiguration()));
+                    startServer(connector);
+                    transport = new HttpClientTransportOverFCGI(1, false, "");
+                    port = connector.getLocalPort();
+                }
+                startClient(transport);
+                client.setMaxConnectionsPerDestination(8);
+                client.setMaxRequestsQueuedPerDestination(requests);
+
+                AtomicInteger failures = new AtomicInteger();
+                CountDownLatch latch = new CountDownLatch(requests);
+                long begin = System.nanoTime();
+                for (int i = 0; i < requests; ++i)
+                {
+                    client.newRequest("localhost", port)
+                            .path("/index.php")
+                            .send(result ->
+                            {
+                                if (result.isFailed())
+                                    failures.incrementAndGet();
+                                latch.countDown();
+                            });
+                }
+                Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+                long elapsed = System.nanoTime() - begin;
+                Assert.assertEquals(0, failures.get());
+                System.err.printf("%s: %d requests/s%n", unix ? "unix" : "tcp ", requests * TimeUnit.SECONDS.toNanos(1) / elapsed);
+
+                dispose();
+                client = null;
+                server = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+
+/**
+ * <p>A {@link SocketAddressResolver} that caches the addresses resolved by another resolver.</p>
+ * <p>Successful resolutions are cached for {@link #getPositiveTimeToLive() a positive time to live},
+ * and failures to resolve an unknown host for {@link #getNegativeTimeToLive() a negative time to live}.
+ * When a cached resolution is used after {@link #getRefreshRatio() a fraction} of its time to live,
+ * it is refreshed in the background, so that hot hosts are never resolved in the request path.</p>
+ * <p>Concurrent resolutions of the same host that miss the cache are coalesced into a single
+ * resolution by the delegate resolver.</p>
+ * <p>Example usage:</p>
+ * <pre>
+ * HttpClient httpClient = new HttpClient();
+ * httpClient.setSocketAddressResolver(new CachingSocketAddressResolver(new SocketAddressResolver.Async(executor, scheduler, timeout)));
+ * </pre>
+ */
+@ManagedObject("The caching address resolver")
+public class CachingSocketAddressResolver extends ContainerLifeCycle implements SocketAddressResolver
+{
+    private static final Logger LOG = Log.getLogger(CachingSocketAddressResolver.class);
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Lookup> lookups = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final SampleStatistic latency = new SampleStatistic();
+    private final SocketAddressResolver delegate;
+    private long positiveTimeToLive = TimeUnit.SECONDS.toMillis(60);
+    private long negativeTimeToLive = TimeUnit.SECONDS.toMillis(5);
+    private double refreshRatio = 0.75;
+    private int maxEntries = 4096;
+
+    /**
+     * @param delegate the resolver that performs the actual resolutions
+     */
+    public CachingSocketAddressResolver(SocketAddressResolver delegate)
+    {
+        this.delegate = delegate;
+        addBean(delegate);
+    }
+
+    public SocketAddressResolver getDelegate()
+    {
+        return delegate;
+    }
+
+    @ManagedAttribute("The time, in milliseconds, successful resolutions are cached")
+    public long getPositiveTimeToLive()
+    {
+        return positiveTimeToLive;
+    }
+
+    /**
+     * @param positiveTimeToLive the time, in milliseconds, successful resolutions are cached
+     */
+    public void setPositiveTimeToLive(long positiveTimeToLive)
+    {
+        this.positiveTimeToLive = positiveTimeToLive;
+    }
+
+    @ManagedAttribute("The time, in milliseconds, failed resolutions are cached")
+    public long getNegativeTimeToLive()
+    {
+        return negativeTimeToLive;
+    }
+
+    /**
+     * @param negativeTimeToLive the time, in milliseconds, failures to resolve unknown hosts are cached,
+     * or zero to not cache failures
+     */
+    public void setNegativeTimeToLive(long negativeTimeToLive)
+    {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    @ManagedAttribute("The fraction of the positive time to live after which a cached resolution is refreshed")
+    public double getRefreshRatio()
+    {
+        return refreshRatio;
+    }
+
+    /**
+     * @param refreshRatio the fraction of the positive time to live after which a cached resolution
+     * is refreshed in the background when used, or a value of 1 or more to never refresh in the background
+     */
+    public void setRefreshRatio(double refreshRatio)
+    {
+        this.refreshRatio = refreshRatio;
+    }
+
+    @ManagedAttribute("The maximum number of cached hosts")
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    @ManagedAttribute("The number of cached hosts")
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+    @ManagedAttribute("The number of resolutions served from the cache")
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("The number of cached failures served from the cache")
+    public long getNegativeHits()
+    {
+        return negativeHits.sum();
+    }
+
+    @ManagedAttribute("The number of resolutions not found in the cache")
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("The number of resolutions that joined a resolution in progress")
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @ManagedAttribute("The number of background refreshes of cached resolutions")
+    public long getRefreshes()
+    {
+        return refreshes.sum();
+    }
+
+    @ManagedAttribute("The mean time, in milliseconds, of resolutions by the delegate resolver")
+    public double getResolutionTimeMean()
+    {
+        return latency.getCount() == 0 ? 0 : latency.getMean();
+    }
+
+    @ManagedAttribute("The maximum time, in milliseconds, of resolutions by the delegate resolver")
+    public long getResolutionTimeMax()
+    {
+        return latency.getMax();
+    }
+
+    @ManagedOperation(value = "Clears the cache", impact = "ACTION")
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        hits.reset();
+        negativeHits.reset();
+        misses.reset();
+        coalesced.reset();
+        refreshes.reset();
+        latency.reset();
+    }
+
+    @Override
+    public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+    {
+        if (resolveCached(host, port, promise))
+            return;
+
+        misses.increment();
+        while (true)
+        {
+            Lookup lookup = lookups.get(host);
+            if (lookup == null)
+            {
+                lookup = new Lookup(host);
+                Lookup existing = lookups.putIfAbsent(host, lookup);
+                if (existing == null)
+                {
+                    lookup.add(port, promise);
+                    lookup.start();
+                    return;
+                }
+                lookup = existing;
+            }
+            if (lookup.add(port, promise))
+            {
+                coalesced.increment();
+                return;
+            }
+            // The lookup completed while we were joining it
+            lookups.remove(host, lookup);
+            if (resolveCached(host, port, promise))
+                return;
+        }
+    }
+
+    private boolean resolveCached(String host, int port, Promise<List<InetSocketAddress>> promise)
+    {
+        long now = System.nanoTime();
+        Entry entry = cache.get(host);
+        if (entry == null || entry.isExpired(now))
+            return false;
+
+        if (entry.failure != null)
+        {
+            negativeHits.increment();
+            promise.failed(entry.failure);
+        }
+        else
+        {
+            hits.increment();
+            if (entry.needsRefresh(now))
+                refresh(host);
+            promise.succeeded(entry.toSocketAddresses(port));
+        }
+        return true;
+    }
+
+    private void refresh(String host)
+    {
+        Lookup lookup = new Lookup(host);
+        if (lookups.putIfAbsent(host, lookup) == null)
+        {
+            refreshes.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Refreshing {}", host);
+            lookup.start();
+        }
+    }
+
+    private void cache(String host, Entry entry)
+    {
+        if (cache.size() >= maxEntries && !cache.containsKey(host))
+        {
+            long now = System.nanoTime();
+            cache.values().removeIf(e -> e.isExpired(now));
+            Iterator<String> iterator = cache.keySet().iterator();
+            while (cache.size() >= maxEntries && iterator.hasNext())
+            {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        cache.put(host, entry);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), getSize(), getHits(), getMisses());
+    }
+
+    private class Entry
+    {
+        private final InetAddress[] addresses;
+        private final Throwable failure;
+        private final long created;
+        private final long expires;
+        private final AtomicBoolean refreshed = new AtomicBoolean();
+
+        private Entry(InetAddress[] addresses, Throwable failure, long created, long timeToLive)
+        {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.created = created;
+            this.expires = created + TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - expires >= 0;
+        }
+
+        private boolean needsRefresh(long now)
+        {
+            double ratio = getRefreshRatio();
+            if (ratio >= 1)
+                return false;
+            long threshold = (long)((expires - created) * ratio);
+            return now - created >= threshold && refreshed.compareAndSet(false, true);
+        }
+
+        private List<InetSocketAddress> toSocketAddresses(int port)
+        {
+            List<InetSocketAddress> result = new ArrayList<>(addresses.length);
+            for (InetAddress address : addresses)
+                result.add(new InetSocketAddress(address, port));
+            return result;
+        }
+    }
+
+    private class Lookup implements Promise<List<InetSocketAddress>>
+    {
+        private final List<Waiter> waiters = new ArrayList<>();
+        private final String host;
+        private boolean complete;
+        private long start;
+
+        private Lookup(String host)
+        {
+            this.host = host;
+        }
+
+        private synchronized boolean add(int port, Promise<List<InetSocketAddress>> promise)
+        {
+            if (complete)
+                return false;
+            waiters.add(new Waiter(port, promise));
+            return true;
+        }
+
+        private void start()
+        {
+            start = System.nanoTime();
+            delegate.resolve(host, 0, this);
+        }
+
+        @Override
+        public void succeeded(List<InetSocketAddress> result)
+        {
+            long now = System.nanoTime();
+            latency.set(TimeUnit.NANOSECONDS.toMillis(now - start));
+            InetAddress[] addresses = new InetAddress[result.size()];
+            for (int i = 0; i < addresses.length; ++i)
+                addresses[i] = result.get(i).getAddress();
+            Entry entry = new Entry(addresses, null, now, getPositiveTimeToLive());
+            if (getPositiveTimeToLive() > 0)
+                cache(host, entry);
+            for (Waiter waiter : complete())
+                waiter.promise.succeeded(entry.toSocketAddresses(waiter.port));
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            long now = System.nanoTime();
+            latency.set(TimeUnit.NANOSECONDS.toMillis(now - start));
+            if (x instanceof UnknownHostException && getNegativeTimeToLive() > 0)
+            {
+                // Do not replace a valid entry that failed to refresh
+                Entry current = cache.get(host);
+                if (current == null || current.failure != null || current.isExpired(now))
+                    cache(host, new Entry(null, x, now, getNegativeTimeToLive()));
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not resolve " + host, x);
+            for (Waiter waiter : complete())
+                waiter.promise.failed(x);
+        }
+
+        private List<Waiter> complete()
+        {
+            synchronized (this)
+            {
+                complete = true;
+            }
+            lookups.remove(host, this);
+            return waiters;
+        }
+    }
+
+    private static class Waiter
+    {
+        private final int port;
+        private final Promise<List<InetSocketAddress>> promise;
+
+        private Waiter(int port, Promise<List<InetSocketAddress>> promise)
+        {
+            this.port = port;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A cache of the existence and basic attributes of the files of a document root,
+ * keyed by their path in context (for example {@code /wp-content/themes/style.css}).</p>
+ * <p>Components that need to know whether a path in context maps to a file, such as
+ * filters that route requests either to static files or to a FastCGI server, and the
+ * resource service that serves the static files, can share one instance of this cache
+ * so that the file system is not queried on every request.</p>
+ * <p>Entries, including those for files that do not exist, are cached for
+ * {@link #getTimeToLive() a time to live}. In addition, if a {@link #setWatchPath(Path) watch path}
+ * is configured, a {@link PathWatcher} invalidates the entries of the files that are
+ * added, modified or deleted under that path.</p>
+ * <p>When the cache holds {@link #getMaxEntries() the maximum number of entries}, each
+ * insertion evicts an entry chosen with the CLOCK algorithm: entries are queued in
+ * insertion order, and an entry that was looked up since it was last examined is given
+ * a second chance instead of being evicted. Entries for files that do not exist and
+ * that are never looked up again, such as those for the paths of random requests, are
+ * therefore evicted first, and an eviction costs constant amortized time.</p>
+ * <p>The cache is only correct if the paths in context always map to the same files,
+ * that is if all the components that share the cache use the same document root.</p>
+ */
+@ManagedObject("The cache of path attributes")
+public class PathAttributesCache extends ContainerLifeCycle implements PathWatcher.Listener
+{
+    private static final Logger LOG = Log.getLogger(PathAttributesCache.class);
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private long timeToLive = TimeUnit.SECONDS.toMillis(5);
+    private int maxEntries = 16384;
+    private Path watchPath;
+    private PathWatcher watcher;
+
+    @ManagedAttribute("The time, in milliseconds, path attributes are cached")
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * @param timeToLive the time, in milliseconds, path attributes are cached
+     */
+    public void setTimeToLive(long timeToLive)
+    {
+        this.timeToLive = timeToLive;
+    }
+
+    @ManagedAttribute("The maximum number of cached paths")
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    @ManagedAttribute("The document root watched for changes")
+    public Path getWatchPath()
+    {
+        return watchPath;
+    }
+
+    /**
+     * @param watchPath the document root that is watched for changes to invalidate
+     * the cached entries, or null to rely only on the time to live
+     */
+    public void setWatchPath(Path watchPath)
+    {
+        this.watchPath = watchPath;
+    }
+
+    @ManagedAttribute("The number of cached paths")
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+    @ManagedAttribute("The number of lookups served from the cache")
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("The number of lookups that queried the file system")
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of lookups served from the cache")
+    public double getHitRatio()
+    {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    @ManagedAttribute("The number of entries invalidated by file system changes")
+    public long getInvalidations()
+    {
+        return invalidations.sum();
+    }
+
+    @ManagedOperation(value = "Clears the cache", impact = "ACTION")
+    public void clear()
+    {
+        cache.clear();
+        clock.clear();
+        clockSize.set(0);
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        invalidations.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (watchPath != null)
+        {
+            PathWatcher.Config config = new PathWatcher.Config(watchPath);
+            config.setRecurseDepth(PathWatcher.Config.UNLIMITED_DEPTH);
+            watcher = new PathWatcher();
+            watcher.watch(config);
+            watcher.addListener(this);
+            watcher.setNotifyExistingOnStart(false);
+            addBean(watcher);
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        if (watcher != null)
+        {
+            removeBean(watcher);
+            watcher = null;
+        }
+        clear();
+    }
+
+    /**
+     * <p>Returns the attributes of the file that the given path in context maps to,
+     * from the cache if possible, otherwise resolving the path in context with the
+     * given resolver and reading the attributes from the file system.</p>
+     *
+     * @param pathInContext the path in context
+     * @param resolver the resolver of the path in context to a file system path
+     * @return the attributes of the file, or null if the resolver threw
+     * {@link NotAFileException} because the path in context does not map to a file
+     */
+    public Attributes get(String pathInContext, Resolver resolver)
+    {
+        long now = System.nanoTime();
+        Entry entry = cache.get(pathInContext);
+        if (entry != null)
+        {
+            Attributes attributes = entry.attributes;
+            if (!attributes.isExpired(now))
+            {
+                entry.referenced = true;
+                hits.increment();
+                return attributes;
+            }
+        }
+
+        misses.increment();
+        Attributes attributes;
+        try
+        {
+            attributes = load(pathInContext, resolver, now);
+        }
+        catch (NotAFileException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Not caching " + pathInContext, x);
+            return null;
+        }
+        if (getTimeToLive() > 0)
+            cache(pathInContext, entry, attributes);
+        return attributes;
+    }
+
+    private Attributes load(String pathInContext, Resolver resolver, long now) throws NotAFileException
+    {
+        long expires = now + TimeUnit.MILLISECONDS.toNanos(getTimeToLive());
+        try
+        {
+            Path path = resolver.resolve(pathInContext);
+            if (path == null)
+                return new Attributes(null, false, false, -1, -1, expires);
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Attributes(path, true, Files.isReadable(path), attributes.size(), attributes.lastModifiedTime().toMillis(), expires);
+        }
+        catch (NoSuchFileException x)
+        {
+            return new Attributes(null, false, false, -1, -1, expires);
+        }
+        catch (NotAFileException x)
+        {
+            throw x;
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not read attributes of " + pathInContext, x);
+            return new Attributes(null, false, false, -1, -1, expires);
+        }
+    }
+
+    private void cache(String pathInContext, Entry expired, Attributes attributes)
+    {
+        // Refresh an expired entry in place, so that it keeps its place in the clock.
+        if (expired != null && cache.get(pathInContext) == expired)
+        {
+            expired.attributes = attributes;
+            return;
+        }
+
+        Entry entry = new Entry(pathInContext, attributes);
+        Entry existing = cache.putIfAbsent(pathInContext, entry);
+        if (existing != null)
+        {
+            existing.attributes = attributes;
+            return;
+        }
+
+        clock.offer(entry);
+        if (clockSize.incrementAndGet() > getMaxEntries())
+            evict(System.nanoTime());
+    }
+
+    private void evict(long now)
+    {
+        // The clock also holds the entries that were invalidated, so that
+        // bounding its size also bounds the memory they retain.
+        while (clockSize.get() > getMaxEntries())
+        {
+            Entry entry = clock.poll();
+            if (entry == null)
+                return;
+            if (cache.get(entry.pathInContext) == entry)
+            {
+                if (entry.referenced && !entry.attributes.isExpired(now))
+                {
+                    // Second chance.
+                    entry.referenced = false;
+                    clock.offer(entry);
+                    continue;
+                }
+                cache.remove(entry.pathInContext, entry);
+            }
+            clockSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param pathInContext the path in context whose cached attributes are discarded
+     */
+    public void invalidate(String pathInContext)
+    {
+        if (cache.remove(pathInContext) != null)
+            invalidations.increment();
+    }
+
+    @Override
+    public void onPathWatchEvent(PathWatcher.PathWatchEvent event)
+    {
+        Path root = watchPath;
+        Path path = event.getPath();
+        if (root == null || !path.startsWith(root))
+            return;
+        StringBuilder pathInContext = new StringBuilder();
+        for (Path segment : root.relativize(path))
+            pathInContext.append('/').append(segment.toString());
+        if (pathInContext.length() == 0)
+            pathInContext.append('/');
+        if (LOG.isDebugEnabled())
+            LOG.debug("Invalidating {} on {}", pathInContext, event);
+        invalidate(pathInContext.toString());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), getSize(), getHits(), getMisses());
+    }
+
+    /**
+     * <p>Resolves a path in context to a file system path.</p>
+     */
+    @FunctionalInterface
+    public interface Resolver
+    {
+        /**
+         * @param pathInContext the path in context
+         * @return the file system path, or null if the path in context does not map to a file
+         * @throws NotAFileException if the path in context maps to a resource that is not a file,
+         * in which case nothing is cached
+         * @throws IOException if the path in context cannot be resolved
+         */
+        Path resolve(String pathInContext) throws IOException;
+    }
+
+    /**
+     * <p>Thrown by a {@link Resolver} when a path in context maps to a resource that
+     * exists but is not a file, for example an entry of a jar file, so that the path
+     * in context is not cached as not existing.</p>
+     */
+    public static class NotAFileException extends IOException
+    {
+        public NotAFileException(String pathInContext)
+        {
+            super(pathInContext);
+        }
+    }
+
+    private static class Entry
+    {
+        private final String pathInContext;
+        private volatile Attributes attributes;
+        private volatile boolean referenced;
+
+        private Entry(String pathInContext, Attributes attributes)
+        {
+            this.pathInContext = pathInContext;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * <p>The cached attributes of a file.</p>
+     */
+    public static class Attributes
+    {
+        private final Path path;
+        private final boolean exists;
+        private final boolean readable;
+        private final long size;
+        private final long lastModified;
+        private final long expires;
+
+        private Attributes(Path path, boolean exists, boolean readable, long size, long lastModified, long expires)
+        {
+            this.path = path;
+            this.exists = exists;
+            this.readable = readable;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - expires >= 0;
+        }
+
+        /**
+         * @return the file system path, or null if the file does not exist
+         */
+        public Path getPath()
+        {
+            return path;
+        }
+
+        public boolean exists()
+        {
+            return exists;
+        }
+
+        public boolean isReadable()
+        {
+            return readable;
+        }
+
+        /**
+         * @return the size of the file, or -1 if the file does not exist
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        /**
+         * @return the last modified time of the file, in milliseconds since the epoch, or -1 if the file does not exist
+         */
+        public long getLastModified()
+        {
+            return lastModified;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%s,exists=%b,readable=%b}", getClass().getSimpleName(), hashCode(), path, exists, readable);
+        }
+    }
+}
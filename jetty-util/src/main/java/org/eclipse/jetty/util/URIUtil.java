@@ -23,7 +23,6 @@ import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
 
 import org.eclipse.jetty.util.Utf8Appendable.NotUtf8Exception;
 import org.eclipse.jetty.util.log.Log;
@@ -47,7 +46,6 @@ public class URIUtil
     public static final String SLASH="/";
     public static final String HTTP="http";
     public static final String HTTPS="https";
-    private static final Pattern __PATH_SPLIT = Pattern.compile("(?<=\\/)");
 
     // Use UTF-8 as per http://www.w3.org/TR/html40/appendix/notes.html#non-ascii-chars
     public static final Charset __CHARSET=StandardCharsets.UTF_8 ;
@@ -560,34 +558,231 @@ public class URIUtil
         if(path.startsWith("/.."))
             return null;
 
-        List<String> directories = new ArrayList<>();
-        Collections.addAll(directories, __PATH_SPLIT.split(path));
-        
-        for(ListIterator<String> iterator = directories.listIterator(); iterator.hasNext();)
+        // Only copy the path if it has dot segments to remove.
+        if (!hasDotSegment(path))
+            return path;
+
+        char[] chars = path.toCharArray();
+        int length = canonicalize(chars, chars.length);
+        return length<0 ? null : new String(chars, 0, length);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Decode a UTF-8 URI path, strip its parameters and convert it to a canonical form.
+     * <p>This is equivalent to <code>canonicalPath(decodePath(path))</code>, but done with
+     * a single pass over the encoded path and a single copy, and the original path is
+     * returned if it needs neither decoding nor canonicalization. Unlike
+     * {@link #decodePath(String)}, paths that are not valid UTF-8 are rejected rather
+     * than decoded as ISO-8859-1.</p>
+     * @param path the encoded path
+     * @return the decoded canonical path, or null if the path tries to .. above its root
+     * @throws IllegalArgumentException if the path has a bad % encoding or is not valid UTF-8
+     */
+    public static String decodeCanonicalPath(String path)
+    {
+        int end = path.length();
+        int i = 0;
+        while (i<end)
         {
-            switch (iterator.next()) {
-                case "./":
-                case ".":
-                    if (iterator.hasNext() && directories.get(iterator.nextIndex()).equals("/"))
+            char c = path.charAt(i);
+            if (c=='%' || c==';')
+                break;
+            i++;
+        }
+        if (i==end)
+            return canonicalPath(path);
+
+        // The decoded path is never longer than the encoded path.
+        char[] chars = new char[end];
+        path.getChars(0, i, chars, 0);
+        int length = i;
+        int remaining = 0;
+        int codePoint = 0;
+        int minimum = 0;
+        for (; i<end; i++)
+        {
+            char c = path.charAt(i);
+            switch (c)
+            {
+                case '%':
+                {
+                    if (i+2>=end)
+                        throw new IllegalArgumentException("Bad URI % encoding");
+                    char u = path.charAt(i+1);
+                    if (u=='u')
+                    {
+                        if (remaining>0 || i+5>=end)
+                            throw new IllegalArgumentException("Bad URI %u encoding");
+                        chars[length++] = (char)(0xffff&TypeUtil.parseInt(path,i+2,4,16));
+                        i+=5;
                         break;
+                    }
+                    int hi = hexDigit(u);
+                    int lo = hexDigit(path.charAt(i+2));
+                    if (hi<0 || lo<0)
+                        throw new IllegalArgumentException("Bad URI % encoding");
+                    int b = (hi<<4)+lo;
+                    i+=2;
 
-                    iterator.remove();
+                    if (remaining==0)
+                    {
+                        if (b<0x80)
+                            chars[length++] = (char)b;
+                        else if (b>=0xC2 && b<=0xDF)
+                        {
+                            remaining = 1;
+                            codePoint = b&0x1F;
+                            minimum = 0x80;
+                        }
+                        else if (b>=0xE0 && b<=0xEF)
+                        {
+                            remaining = 2;
+                            codePoint = b&0x0F;
+                            minimum = 0x800;
+                        }
+                        else if (b>=0xF0 && b<=0xF4)
+                        {
+                            remaining = 3;
+                            codePoint = b&0x07;
+                            minimum = 0x10000;
+                        }
+                        else
+                            throw new IllegalArgumentException("Bad UTF-8 encoding");
+                    }
+                    else
+                    {
+                        if ((b&0xC0)!=0x80)
+                            throw new IllegalArgumentException("Bad UTF-8 encoding");
+                        codePoint = (codePoint<<6)|(b&0x3F);
+                        if (--remaining==0)
+                        {
+                            if (codePoint<minimum || codePoint>Character.MAX_CODE_POINT || codePoint>=Character.MIN_SURROGATE && codePoint<=Character.MAX_SURROGATE)
+                                throw new IllegalArgumentException("Bad UTF-8 encoding");
+                            length += Character.toChars(codePoint, chars, length);
+                        }
+                    }
                     break;
-                case "../":
-                case "..":
-                    if(iterator.previousIndex() == 0)
-                        return null;
+                }
 
-                    iterator.remove();
-                    if(iterator.previous().equals("/") && iterator.nextIndex() == 0)
-                        return null;
+                case ';':
+                    if (remaining>0)
+                        throw new IllegalArgumentException("Bad UTF-8 encoding");
+                    while (++i<end)
+                    {
+                        if (path.charAt(i)=='/')
+                        {
+                            chars[length++] = '/';
+                            break;
+                        }
+                    }
+                    break;
 
-                    iterator.remove();
+                default:
+                    if (remaining>0)
+                        throw new IllegalArgumentException("Bad UTF-8 encoding");
+                    chars[length++] = c;
                     break;
             }
         }
+        if (remaining>0)
+            throw new IllegalArgumentException("Bad UTF-8 encoding");
+
+        if (length>=3 && chars[0]=='/' && chars[1]=='.' && chars[2]=='.')
+            return null;
+        length = canonicalize(chars, length);
+        return length<0 ? null : new String(chars, 0, length);
+    }
+
+    /* ------------------------------------------------------------ */
+    private static int hexDigit(char c)
+    {
+        if (c>='0' && c<='9')
+            return c-'0';
+        if (c>='a' && c<='f')
+            return c-'a'+10;
+        if (c>='A' && c<='F')
+            return c-'A'+10;
+        return -1;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param path the path to check
+     * @return true if the path has a "." or ".." segment
+     */
+    private static boolean hasDotSegment(String path)
+    {
+        int end = path.length();
+        int start = 0;
+        for (int i=0; i<=end; i++)
+        {
+            if (i==end || path.charAt(i)=='/')
+            {
+                int length = i-start;
+                if (length==1 && path.charAt(start)=='.' || length==2 && path.charAt(start)=='.' && path.charAt(start+1)=='.')
+                    return true;
+                start = i+1;
+            }
+        }
+        return false;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * <p>Factors out the "." and ".." segments of a path, in place.</p>
+     * <p>The path is processed as a list of tokens, each ending after a '/' or at the end
+     * of the path. A "." token is removed unless it is followed by an empty segment, and a
+     * ".." token removes the preceding token.</p>
+     * @param chars the path characters
+     * @param length the path length
+     * @return the length of the canonical path, or -1 if the path tries to .. above its root
+     */
+    private static int canonicalize(char[] chars, int length)
+    {
+        int written = 0;
+        int start = 0;
+        while (start<length)
+        {
+            int end = start;
+            while (end<length && chars[end]!='/')
+                end++;
+            int segment = end-start;
+            if (end<length)
+                end++;
+
+            if (segment==1 && chars[start]=='.')
+            {
+                // Keep "./" only if followed by an empty segment.
+                if (end<length && chars[end]=='/' && chars[end-1]=='/')
+                    written = copy(chars, start, end, written);
+            }
+            else if (segment==2 && chars[start]=='.' && chars[start+1]=='.')
+            {
+                if (written==0)
+                    return -1;
+                // The kept tokens all end with '/', so look back for the start of the last one.
+                int previous = written-1;
+                while (previous>0 && chars[previous-1]!='/')
+                    previous--;
+                if (previous==0 && written==1 && chars[0]=='/')
+                    return -1;
+                written = previous;
+            }
+            else
+            {
+                written = copy(chars, start, end, written);
+            }
+            start = end;
+        }
+        return written;
+    }
 
-        return String.join("", directories);
+    /* ------------------------------------------------------------ */
+    private static int copy(char[] chars, int start, int end, int written)
+    {
+        if (written!=start)
+            System.arraycopy(chars, start, chars, written, end-start);
+        return written+end-start;
     }
 
     /* ------------------------------------------------------------ */
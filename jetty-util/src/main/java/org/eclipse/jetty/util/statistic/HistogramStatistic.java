@@ -0,0 +1,152 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* ------------------------------------------------------------ */
+/** Histogram of non negative samples.
+ * <p>
+ * Samples are counted in buckets of logarithmic width: each power of two
+ * is divided into {@value #SUB_BUCKETS} linear buckets, so that a percentile
+ * is reported with a relative error of at most 1/{@value #SUB_BUCKETS} over
+ * the whole range of long values.
+ * <p>
+ * The memory used is fixed, and recording a sample does not allocate,
+ * so that it can be used to record every request of a busy system.
+ */
+public class HistogramStatistic
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator _max = new LongAccumulator(Math::max,0L);
+    private final LongAdder _total = new LongAdder();
+    private final LongAdder _count = new LongAdder();
+
+    /* ------------------------------------------------------------ */
+    public void reset()
+    {
+        for (int i=0;i<BUCKETS;i++)
+            _buckets.set(i,0);
+        _max.reset();
+        _total.reset();
+        _count.reset();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param sample the sample to record; negative samples are recorded as zero
+     */
+    public void set(long sample)
+    {
+        if (sample<0)
+            sample=0;
+        _buckets.incrementAndGet(index(sample));
+        _max.accumulate(sample);
+        _total.add(sample);
+        _count.increment();
+    }
+
+    /* ------------------------------------------------------------ */
+    public long getCount()
+    {
+        return _count.sum();
+    }
+
+    /* ------------------------------------------------------------ */
+    public long getTotal()
+    {
+        return _total.sum();
+    }
+
+    /* ------------------------------------------------------------ */
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    /* ------------------------------------------------------------ */
+    public double getMean()
+    {
+        long count=getCount();
+        return count==0?0.0:(double)getTotal()/count;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value of the bucket where the given percentile of the samples
+     * falls, but not more than the maximum sample, or 0 if there are no samples
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long count=0;
+        long[] buckets=new long[BUCKETS];
+        for (int i=0;i<BUCKETS;i++)
+        {
+            buckets[i]=_buckets.get(i);
+            count+=buckets[i];
+        }
+        if (count==0)
+            return 0;
+
+        long rank=Math.max(1,(long)Math.ceil(Math.min(100.0,Math.max(0.0,percentile))*count/100.0));
+        long seen=0;
+        for (int i=0;i<BUCKETS;i++)
+        {
+            seen+=buckets[i];
+            if (seen>=rank)
+                return Math.min(highestValue(i),getMax());
+        }
+        return getMax();
+    }
+
+    /* ------------------------------------------------------------ */
+    static int index(long value)
+    {
+        if (value<SUB_BUCKETS)
+            return (int)value;
+        int exponent=63-Long.numberOfLeadingZeros(value);
+        int shift=exponent-SUB_BUCKET_BITS;
+        int subBucket=(int)(value>>>shift)&(SUB_BUCKETS-1);
+        return (shift+1)*SUB_BUCKETS+subBucket;
+    }
+
+    /* ------------------------------------------------------------ */
+    static long highestValue(int index)
+    {
+        if (index<SUB_BUCKETS)
+            return index;
+        int shift=index/SUB_BUCKETS-1;
+        long lowest=(long)(SUB_BUCKETS+index%SUB_BUCKETS)<<shift;
+        return lowest+((1L<<shift)-1);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{c=%d,m=%d,t=%d,p50=%d,p99=%d}",this.getClass().getSimpleName(),hashCode(),getCount(),getMax(),getTotal(),getValueAtPercentile(50),getValueAtPercentile(99));
+    }
+}
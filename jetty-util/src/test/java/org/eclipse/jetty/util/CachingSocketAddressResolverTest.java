@@ -0,0 +1,181 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class CachingSocketAddressResolverTest
+{
+    private static class ManualResolver implements SocketAddressResolver
+    {
+        private final AtomicInteger resolutions = new AtomicInteger();
+        private final List<Promise<List<InetSocketAddress>>> pending = new ArrayList<>();
+
+        @Override
+        public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+        {
+            resolutions.incrementAndGet();
+            pending.add(promise);
+        }
+
+        private void succeed() throws Exception
+        {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress(new byte[]{127, 0, 0, 1}), 0);
+            for (Promise<List<InetSocketAddress>> promise : pending)
+                promise.succeeded(Collections.singletonList(address));
+            pending.clear();
+        }
+
+        private void fail()
+        {
+            for (Promise<List<InetSocketAddress>> promise : pending)
+                promise.failed(new UnknownHostException());
+            pending.clear();
+        }
+    }
+
+    private static class Result implements Promise<List<InetSocketAddress>>
+    {
+        private final AtomicReference<List<InetSocketAddress>> addresses = new AtomicReference<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        @Override
+        public void succeeded(List<InetSocketAddress> result)
+        {
+            addresses.set(result);
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            failure.set(x);
+        }
+    }
+
+    @Test
+    public void testHitAfterMiss() throws Exception
+    {
+        ManualResolver delegate = new ManualResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(delegate);
+
+        Result first = new Result();
+        resolver.resolve("localhost", 8080, first);
+        delegate.succeed();
+        assertEquals(8080, first.addresses.get().get(0).getPort());
+
+        Result second = new Result();
+        resolver.resolve("localhost", 8443, second);
+        assertEquals(8443, second.addresses.get().get(0).getPort());
+
+        assertEquals(1, delegate.resolutions.get());
+        assertEquals(1, resolver.getMisses());
+        assertEquals(1, resolver.getHits());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception
+    {
+        ManualResolver delegate = new ManualResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(delegate);
+
+        Result first = new Result();
+        Result second = new Result();
+        resolver.resolve("localhost", 80, first);
+        resolver.resolve("localhost", 80, second);
+        assertNull(first.addresses.get());
+        delegate.succeed();
+
+        assertNotNull(first.addresses.get());
+        assertNotNull(second.addresses.get());
+        assertEquals(1, delegate.resolutions.get());
+        assertEquals(1, resolver.getCoalesced());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception
+    {
+        ManualResolver delegate = new ManualResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(delegate);
+
+        Result first = new Result();
+        resolver.resolve("unknown", 80, first);
+        delegate.fail();
+        assertTrue(first.failure.get() instanceof UnknownHostException);
+
+        Result second = new Result();
+        resolver.resolve("unknown", 80, second);
+        assertTrue(second.failure.get() instanceof UnknownHostException);
+        assertEquals(1, delegate.resolutions.get());
+        assertEquals(1, resolver.getNegativeHits());
+    }
+
+    @Test
+    public void testExpiry() throws Exception
+    {
+        ManualResolver delegate = new ManualResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(delegate);
+        resolver.setPositiveTimeToLive(1);
+
+        resolver.resolve("localhost", 80, new Result());
+        delegate.succeed();
+        Thread.sleep(10);
+
+        resolver.resolve("localhost", 80, new Result());
+        assertEquals(2, delegate.resolutions.get());
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception
+    {
+        ManualResolver delegate = new ManualResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(delegate);
+        resolver.setRefreshRatio(0);
+
+        resolver.resolve("localhost", 80, new Result());
+        delegate.succeed();
+
+        // Served from the cache, and triggers a single refresh
+        Result result = new Result();
+        resolver.resolve("localhost", 80, result);
+        resolver.resolve("localhost", 80, new Result());
+        assertNotNull(result.addresses.get());
+        assertEquals(2, delegate.resolutions.get());
+        assertEquals(1, resolver.getRefreshes());
+
+        // A failed refresh keeps the cached addresses
+        delegate.fail();
+        result = new Result();
+        resolver.resolve("localhost", 80, result);
+        assertNotNull(result.addresses.get());
+    }
+}
@@ -0,0 +1,173 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PathAttributesCacheTest
+{
+    private Path root;
+    private AtomicInteger resolutions;
+    private PathAttributesCache.Resolver resolver;
+
+    @Before
+    public void prepare() throws Exception
+    {
+        root = Files.createTempDirectory("pac");
+        resolutions = new AtomicInteger();
+        resolver = pathInContext ->
+        {
+            resolutions.incrementAndGet();
+            return root.resolve(pathInContext.substring(1));
+        };
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        IO.delete(root.toFile());
+    }
+
+    @Test
+    public void testExistingAndMissingPathsAreCached() throws Exception
+    {
+        Files.write(root.resolve("index.html"), new byte[]{'a', 'b', 'c'});
+        PathAttributesCache cache = new PathAttributesCache();
+
+        PathAttributesCache.Attributes attributes = cache.get("/index.html", resolver);
+        assertTrue(attributes.exists());
+        assertTrue(attributes.isReadable());
+        assertEquals(3, attributes.getSize());
+        assertFalse(cache.get("/missing.html", resolver).exists());
+
+        assertTrue(cache.get("/index.html", resolver).exists());
+        assertFalse(cache.get("/missing.html", resolver).exists());
+
+        assertEquals(2, resolutions.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception
+    {
+        PathAttributesCache cache = new PathAttributesCache();
+        cache.setTimeToLive(100);
+
+        assertFalse(cache.get("/index.html", resolver).exists());
+        Files.write(root.resolve("index.html"), new byte[]{'a'});
+        assertFalse(cache.get("/index.html", resolver).exists());
+
+        TimeUnit.MILLISECONDS.sleep(2 * cache.getTimeToLive());
+
+        assertTrue(cache.get("/index.html", resolver).exists());
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testNoTimeToLiveDisablesCaching() throws Exception
+    {
+        PathAttributesCache cache = new PathAttributesCache();
+        cache.setTimeToLive(0);
+
+        cache.get("/index.html", resolver);
+        cache.get("/index.html", resolver);
+
+        assertEquals(0, cache.getSize());
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception
+    {
+        PathAttributesCache cache = new PathAttributesCache();
+        cache.setMaxEntries(16);
+
+        for (int i = 0; i < 64; ++i)
+            cache.get("/file" + i, resolver);
+
+        assertTrue(cache.getSize() <= cache.getMaxEntries());
+    }
+
+    @Test
+    public void testLookedUpEntriesSurviveEvictionOfMissingPaths() throws Exception
+    {
+        Files.write(root.resolve("index.html"), new byte[]{'a'});
+        PathAttributesCache cache = new PathAttributesCache();
+        cache.setMaxEntries(16);
+
+        assertTrue(cache.get("/index.html", resolver).exists());
+        for (int i = 0; i < 1024; ++i)
+        {
+            assertTrue(cache.get("/index.html", resolver).exists());
+            assertFalse(cache.get("/missing" + i, resolver).exists());
+            assertTrue(cache.getSize() <= cache.getMaxEntries());
+        }
+
+        // Only the first lookup of /index.html resolved it.
+        assertEquals(1 + 1024, resolutions.get());
+    }
+
+    @Test
+    public void testPathsThatAreNotFilesAreNotCached() throws Exception
+    {
+        PathAttributesCache cache = new PathAttributesCache();
+        PathAttributesCache.Resolver jarResolver = pathInContext ->
+        {
+            resolutions.incrementAndGet();
+            throw new PathAttributesCache.NotAFileException(pathInContext);
+        };
+
+        assertNull(cache.get("/index.html", jarResolver));
+        assertNull(cache.get("/index.html", jarResolver));
+
+        assertEquals(0, cache.getSize());
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testWatchEventInvalidatesEntry() throws Exception
+    {
+        Files.createDirectory(root.resolve("dir"));
+        PathAttributesCache cache = new PathAttributesCache();
+        cache.setWatchPath(root);
+
+        assertFalse(cache.get("/dir/index.html", resolver).exists());
+        Path file = root.resolve("dir").resolve("index.html");
+        Files.write(file, new byte[]{'a'});
+        cache.onPathWatchEvent(new PathWatcher.PathWatchEvent(file, PathWatcher.PathWatchEventType.ADDED));
+
+        assertTrue(cache.get("/dir/index.html", resolver).exists());
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(2, resolutions.get());
+    }
+}
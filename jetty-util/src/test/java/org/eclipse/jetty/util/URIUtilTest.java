@@ -21,12 +21,16 @@ package org.eclipse.jetty.util;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -90,6 +94,88 @@ public class URIUtilTest
         assertEquals(odd,URIUtil.decodePath("/%00/"));
     }
 
+    /* ------------------------------------------------------------ */
+    @Test
+    public void testDecodeCanonicalPath()
+    {
+        String[][] paths =
+        {
+            {"/foo/bar","/foo/bar"},
+            {"/f%20o/b%20r","/f o/b r"},
+            {"/foo;ignore/bar;ignore","/foo/bar"},
+            {"/f%d8%a9%d8%a9%2523;ignore/bar;ignore","/f\u0629\u0629%23/bar"},
+            {"/foo/%e2%82%ac/%F0%9F%98%80","/foo/\u20ac/\ud83d\ude00"},
+            {"/foo/./bar/../baz","/foo/baz"},
+            {"/foo/%2e/bar/%2E%2e/baz","/foo/baz"},
+            {"/foo/..;x/bar","/bar"},
+            {"/foo%2F..%2Fbar","/bar"},
+            {"/foo/bar/..","/foo/"},
+            {"/foo//../bar","/foo/bar"},
+            {"/%00/","/\u0000/"},
+            {"/..",null},
+            {"/%2e%2e/foo",null},
+            {"/foo/../../bar",null},
+        };
+
+        for (String[] path : paths)
+        {
+            assertEquals(path[0], path[1], URIUtil.decodeCanonicalPath(path[0]));
+            String decoded = URIUtil.decodePath(path[0]);
+            assertEquals(path[0], URIUtil.canonicalPath(decoded), URIUtil.decodeCanonicalPath(path[0]));
+        }
+
+        // Paths that need no decoding nor canonicalization are returned as is.
+        String path = "/context/path/index.html";
+        assertSame(path, URIUtil.decodeCanonicalPath(path));
+        assertSame(path, URIUtil.canonicalPath(path));
+    }
+
+    /* ------------------------------------------------------------ */
+    @Test
+    public void testDecodeCanonicalPathBadEncoding()
+    {
+        String[] paths = {"/%", "/%4", "/foo%zz", "/%@1", "/%C3", "/%C3/", "/%C3x", "/%C0%AF", "/%80", "/%E2%82", "/%ED%A0%80", "/%F5%80%80%80"};
+        for (String path : paths)
+        {
+            try
+            {
+                URIUtil.decodeCanonicalPath(path);
+                Assert.fail(path);
+            }
+            catch (IllegalArgumentException expected)
+            {
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    @Stress("Measures the allocations of decoding and canonicalizing paths")
+    @Test
+    public void testDecodeCanonicalPathAllocations()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        String[] paths = {"/context/path/index.html", "/context/path/to/file%20name.html", "/context/%e2%82%ac/./path/../index.html"};
+        int iterations = 1_000_000;
+        for (int run = 0; run < 3; ++run)
+        {
+            for (String path : paths)
+            {
+                long before = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < iterations; ++i)
+                    URIUtil.canonicalPath(URIUtil.decodePath(path));
+                long composed = threads.getThreadAllocatedBytes(thread) - before;
+
+                before = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < iterations; ++i)
+                    URIUtil.decodeCanonicalPath(path);
+                long fused = threads.getThreadAllocatedBytes(thread) - before;
+
+                System.err.printf("%s: decodePath+canonicalPath %d B/op, decodeCanonicalPath %d B/op%n", path, composed / iterations, fused / iterations);
+            }
+        }
+    }
+
     /* ------------------------------------------------------------ */
     @Test
     public void testAddPaths()
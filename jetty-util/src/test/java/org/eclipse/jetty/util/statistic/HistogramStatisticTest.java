@@ -0,0 +1,74 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testEmpty()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99), 0);
+        Assert.assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void testBucketsCoverAllValues()
+    {
+        long previous = -1;
+        for (int i = 0; i < 64 * 8 - 3 * 8; ++i)
+        {
+            long highest = HistogramStatistic.highestValue(i);
+            Assert.assertTrue(highest > previous);
+            Assert.assertEquals(i, HistogramStatistic.index(previous + 1));
+            Assert.assertEquals(i, HistogramStatistic.index(highest));
+            previous = highest;
+        }
+        Assert.assertEquals(Long.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (int i = 1; i <= 1000; ++i)
+            histogram.set(i);
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(500.5, histogram.getMean(), 0.001);
+        assertWithin(500, histogram.getValueAtPercentile(50));
+        assertWithin(990, histogram.getValueAtPercentile(99));
+        Assert.assertEquals(1000, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private void assertWithin(long expected, long actual)
+    {
+        // The relative error is at most 1/8.
+        Assert.assertTrue(actual + " vs " + expected, actual >= expected && actual <= expected + expected / 8);
+    }
+}